@@ -4,6 +4,7 @@ package jetbrains.buildServer.xmlReportPlugin;
 
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.problems.BuildProblemUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.TextNormalizer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -16,11 +17,18 @@ public class BaseMessageLogger implements MessageLogger {
   protected final String myBuildProblemType;
   @NotNull
   protected final String myBaseFolder;
+  // base folder prefixes removed from messages
+  @NotNull
+  private final String mySlashPrefix;
+  @NotNull
+  private final String myBackslashPrefix;
 
   public BaseMessageLogger(@NotNull final BuildProgressLogger logger, @NotNull final String buildProblemType, @NotNull final String baseFolder) {
     myLogger = logger;
     myBuildProblemType = buildProblemType;
     myBaseFolder = baseFolder;
+    mySlashPrefix = baseFolder.replace("\\", "/") + "/";
+    myBackslashPrefix = baseFolder.replace("/", "\\") + "\\";
   }
 
   @Override
@@ -46,6 +54,6 @@ public class BaseMessageLogger implements MessageLogger {
 
   @NotNull
   protected String makeRelativePaths(@NotNull final String message) {
-    return message.replace(myBaseFolder.replace("\\", "/") + "/", "").replace(myBaseFolder.replace("/", "\\") + "\\", "");
+    return TextNormalizer.removeAll(message, mySlashPrefix, myBackslashPrefix);
   }
 }
\ No newline at end of file
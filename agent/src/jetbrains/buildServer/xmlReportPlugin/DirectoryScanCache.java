@@ -0,0 +1,201 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers listings of the scanned directories along with their modification times,
+ * so that a directory is listed again only when entries were added to or removed from it.
+ * Only the entries which may match the filter are kept, the subtrees which can't contain matches are never visited.
+ */
+public class DirectoryScanCache {
+  public static final String TEAMCITY_PROPERTY_ENABLED = "teamcity.xmlReport.scanCache.enabled";
+
+  // listing taken so soon after the modification may miss changes made within the same timestamp
+  private static final long RACY_LISTING_MILLIS = 2000L;
+
+  public interface PathFilter {
+    /**
+     * @param path system independent absolute path of a directory below the scan roots
+     * @return whether the directory may contain accepted files
+     */
+    boolean acceptDirectory(@NotNull String path);
+
+    /**
+     * @param path system independent absolute path of a file
+     */
+    boolean acceptFile(@NotNull String path);
+  }
+
+  @NotNull
+  private final PathFilter myFilter;
+  @NotNull
+  private Map<String, Listing> myListings = new HashMap<String, Listing>();
+
+  public DirectoryScanCache(@NotNull PathFilter filter) {
+    myFilter = filter;
+  }
+
+  /**
+   * The filters match paths with {@link org.springframework.util.AntPathMatcher}, which may disagree with
+   * the file collector on some patterns, so the cache is used only if {@link #TEAMCITY_PROPERTY_ENABLED} is true
+   */
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_ENABLED);
+  }
+
+  /**
+   * Scans the roots and returns the accepted regular files with their attributes.
+   * Listings of the directories not visited by this scan are forgotten.
+   */
+  @NotNull
+  public synchronized Map<File, BasicFileAttributes> scan(@NotNull Collection<File> roots) {
+    final Map<File, BasicFileAttributes> result = new LinkedHashMap<File, BasicFileAttributes>();
+    final Map<String, Listing> visited = new HashMap<String, Listing>();
+    final List<String> rootPaths = new ArrayList<String>();
+    for (File root : roots) {
+      rootPaths.add(FileUtil.toSystemIndependentName(FileUtil.normalizeAbsolutePath(root.getAbsolutePath())));
+    }
+    Collections.sort(rootPaths);
+    String previous = null;
+    for (String rootPath : rootPaths) {
+      // nested roots are scanned along with the enclosing one
+      if (previous != null && isAncestor(previous, rootPath)) continue;
+      previous = rootPath;
+
+      final File root = new File(rootPath);
+      final BasicFileAttributes attributes = readAttributes(root);
+      if (attributes == null || !attributes.isDirectory()) continue;
+      scanDirectory(root, rootPath, attributes, new HashSet<Object>(), visited, result);
+    }
+    myListings = visited;
+    return result;
+  }
+
+  /**
+   * @return attributes of the files which are regular files
+   */
+  @NotNull
+  public static Map<File, BasicFileAttributes> readAttributes(@NotNull Collection<File> files) {
+    final Map<File, BasicFileAttributes> result = new LinkedHashMap<File, BasicFileAttributes>();
+    for (File file : files) {
+      final BasicFileAttributes attributes = readAttributes(file);
+      if (attributes != null && attributes.isRegularFile()) result.put(file, attributes);
+    }
+    return result;
+  }
+
+  /**
+   * @return attributes read with a single call or null if the file doesn't exist or can't be accessed
+   */
+  @Nullable
+  public static BasicFileAttributes readAttributes(@NotNull File file) {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // invalid path
+      return null;
+    }
+  }
+
+  private void scanDirectory(@NotNull File dir,
+                             @NotNull String path,
+                             @NotNull BasicFileAttributes attributes,
+                             @NotNull Set<Object> ancestors,
+                             @NotNull Map<String, Listing> visited,
+                             @NotNull Map<File, BasicFileAttributes> result) {
+    final Object key = attributes.fileKey();
+    // symbolic links may form cycles
+    if (key != null && !ancestors.add(key)) return;
+
+    final long lastModified = attributes.lastModifiedTime().toMillis();
+    Listing listing = myListings.get(path);
+    if (listing == null || !listing.isUpToDate(lastModified, key)) {
+      listing = list(dir, path, lastModified, key);
+    }
+    visited.put(path, listing);
+
+    for (String name : listing.myFiles) {
+      final File file = new File(dir, name);
+      final BasicFileAttributes fileAttributes = readAttributes(file);
+      if (fileAttributes != null && fileAttributes.isRegularFile()) result.put(file, fileAttributes);
+    }
+    for (String name : listing.myDirectories) {
+      final File subDir = new File(dir, name);
+      final BasicFileAttributes dirAttributes = readAttributes(subDir);
+      if (dirAttributes != null && dirAttributes.isDirectory()) {
+        scanDirectory(subDir, childPath(path, name), dirAttributes, ancestors, visited, result);
+      }
+    }
+
+    if (key != null) ancestors.remove(key);
+  }
+
+  @NotNull
+  private Listing list(@NotNull File dir, @NotNull String path, long lastModified, @Nullable Object key) {
+    final long listedAt = System.currentTimeMillis();
+    final String[] names = dir.list();
+    if (names == null) return new Listing(lastModified, key, listedAt, new String[0], new String[0]);
+
+    Arrays.sort(names);
+    final List<String> files = new ArrayList<String>();
+    final List<String> directories = new ArrayList<String>();
+    for (String name : names) {
+      final String childPath = childPath(path, name);
+      final boolean acceptFile = myFilter.acceptFile(childPath);
+      final boolean acceptDirectory = myFilter.acceptDirectory(childPath);
+      if (!acceptFile && !acceptDirectory) continue;
+
+      final BasicFileAttributes attributes = readAttributes(new File(dir, name));
+      if (attributes == null) continue;
+      if (attributes.isDirectory()) {
+        if (acceptDirectory) directories.add(name);
+      } else if (acceptFile) {
+        files.add(name);
+      }
+    }
+    return new Listing(lastModified, key, listedAt, files.toArray(new String[0]), directories.toArray(new String[0]));
+  }
+
+  @NotNull
+  private static String childPath(@NotNull String path, @NotNull String name) {
+    return path.endsWith("/") ? path + name : path + "/" + name;
+  }
+
+  private static boolean isAncestor(@NotNull String ancestor, @NotNull String path) {
+    return path.equals(ancestor) || path.startsWith(ancestor.endsWith("/") ? ancestor : ancestor + "/");
+  }
+
+  private static final class Listing {
+    private final long myLastModified;
+    @Nullable
+    private final Object myKey;
+    private final long myListedAt;
+    @NotNull
+    private final String[] myFiles;
+    @NotNull
+    private final String[] myDirectories;
+
+    private Listing(long lastModified, @Nullable Object key, long listedAt, @NotNull String[] files, @NotNull String[] directories) {
+      myLastModified = lastModified;
+      myKey = key;
+      myListedAt = listedAt;
+      myFiles = files;
+      myDirectories = directories;
+    }
+
+    private boolean isUpToDate(long lastModified, @Nullable Object key) {
+      return lastModified == myLastModified && (key == null ? myKey == null : key.equals(myKey)) &&
+             myListedAt - myLastModified > RACY_LISTING_MILLIS;
+    }
+  }
+}
@@ -3,11 +3,14 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: Victory.Bedrosova
@@ -17,6 +20,8 @@ import org.jetbrains.annotations.NotNull;
 public class FileRules implements Rules {
   @NotNull
   private final File myFile;
+  @Nullable
+  private DirectoryScanCache myScanCache;
 
   public FileRules(@NotNull final File file) {
     myFile = file;
@@ -40,6 +45,36 @@ public class FileRules implements Rules {
     return myFile.isDirectory() ? collectFilesInFolder(myFile) : Collections.singletonList(myFile);
   }
 
+  @NotNull
+  @Override
+  public synchronized Map<File, BasicFileAttributes> scanFiles() {
+    if (!DirectoryScanCache.isEnabled() || !myFile.isDirectory()) return DirectoryScanCache.readAttributes(collectFiles());
+    if (myScanCache == null) {
+      myScanCache = new DirectoryScanCache(new DirectoryScanCache.PathFilter() {
+        public boolean acceptDirectory(@NotNull final String path) {
+          return false;
+        }
+
+        public boolean acceptFile(@NotNull final String path) {
+          return true;
+        }
+      });
+    }
+    return myScanCache.scan(Collections.singletonList(myFile));
+  }
+
+  @Nullable
+  @Override
+  public Collection<File> getWatchRoots() {
+    // a single file or folder is cheap to rescan
+    return null;
+  }
+
+  @Override
+  public boolean matches(@NotNull final File file) {
+    return myFile.equals(file) || myFile.equals(file.getParentFile());
+  }
+
   @NotNull
   private List<File> collectFilesInFolder(@NotNull File folder) {
     final File[] files = folder.listFiles();
@@ -3,10 +3,13 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.Map;
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -42,44 +45,74 @@ public class MonitorRulesCommand {
   private final MonitorRulesListener myListener;
   private final boolean myQuietMode;
 
+  @Nullable
+  private final ReportWatcher myWatcher;
+  @Nullable
+  private ReportWatcher.Subscription mySubscription;
+
   private boolean myFirstRun;
 
   public MonitorRulesCommand(@NotNull MonitorRulesParameters parameters,
                              @NotNull ReportStateHolder reportStateHolder,
                              final boolean quietMode,
                              @NotNull MonitorRulesListener listener) {
+    this(parameters, reportStateHolder, quietMode, listener, null);
+  }
+
+  public MonitorRulesCommand(@NotNull MonitorRulesParameters parameters,
+                             @NotNull ReportStateHolder reportStateHolder,
+                             final boolean quietMode,
+                             @NotNull MonitorRulesListener listener,
+                             @Nullable ReportWatcher watcher) {
     myParameters = parameters;
     myReportStateHolder = reportStateHolder;
     myListener = listener;
     myQuietMode = quietMode;
+    myWatcher = watcher;
 
     myFirstRun = true;
   }
 
-  public void run() {
+  public boolean run() {
+    return run(false);
+  }
+
+  /**
+   * @param fullScan whether to scan all the rules even if only some watched files changed
+   * @return true if new or modified reports were found
+   */
+  public boolean run(boolean fullScan) {
     if (myFirstRun) {
       if (!myQuietMode) {
         logWatchingPaths();
       }
+      if (myWatcher != null) {
+        final Collection<File> roots = myParameters.getRules().getWatchRoots();
+        if (roots != null) mySubscription = myWatcher.subscribe(roots);
+      }
 
       myFirstRun = false;
     }
 
+    final boolean[] changed = new boolean[1];
     monitorRules(
       new MonitorRulesFileProcessor() {
-        public void processFile(@NotNull File file) {
-          if (acceptFile(file)) {
+        public void processFile(@NotNull File file, @NotNull BasicFileAttributes attributes) {
+          if (acceptFile(attributes)) {
 
-            final long fileLastModified = file.lastModified();
-            final long fileLength = file.length();
+            final long fileLastModified = attributes.lastModifiedTime().toMillis();
+            final long fileLength = attributes.size();
 
             if (timeConstraintsSatisfied(fileLastModified)) {
-              switch (myReportStateHolder.getReportState(file)) {
+              final ReportStateHolder.ReportState state = myReportStateHolder.getReportState(file);
+              switch (state) {
                 case ON_PROCESSING:
                   return;
                 case UNKNOWN:
-                  myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength);
-                  modificationDetected(file);
+                  if (file.canRead() && myReportStateHolder.compareAndSetReportState(file, state, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength)) {
+                    modificationDetected(file);
+                    changed[0] = true;
+                  }
                   return;
                 case PROCESSED:
                   if (!myParameters.isReparseUpdated()) return;
@@ -91,9 +124,10 @@ public class MonitorRulesCommand {
                   assert lastModified != null;
                   assert length != null;
 
-                  if (fileLastModified > lastModified || fileLength > length) {
-                    myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength);
+                  if (isModified(file, fileLastModified, fileLength, lastModified, length) && file.canRead() &&
+                      myReportStateHolder.compareAndSetReportState(file, state, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength)) {
                     modificationDetected(file);
+                    changed[0] = true;
                   }
               }
             } else {
@@ -101,8 +135,9 @@ public class MonitorRulesCommand {
             }
           }
         }
-      }
+      }, fullScan
     );
+    return changed[0];
   }
 
   public void logWatchingPaths() {
@@ -134,17 +169,36 @@ public class MonitorRulesCommand {
   }
 
   private interface MonitorRulesFileProcessor {
-    void processFile(@NotNull File file);
+    void processFile(@NotNull File file, @NotNull BasicFileAttributes attributes);
   }
 
-  private void monitorRules(@NotNull MonitorRulesFileProcessor monitorRulesFileProcessor) {
-    for (File file : myParameters.getRules().collectFiles()) {
-      monitorRulesFileProcessor.processFile(file);
+  private void monitorRules(@NotNull MonitorRulesFileProcessor monitorRulesFileProcessor, boolean fullScan) {
+    final Rules rules = myParameters.getRules();
+    final Collection<File> changes = mySubscription == null ? null : mySubscription.drainChanges();
+
+    if (changes == null || fullScan) {
+      for (Map.Entry<File, BasicFileAttributes> entry : rules.scanFiles().entrySet()) {
+        monitorRulesFileProcessor.processFile(entry.getKey(), entry.getValue());
+      }
+      return;
+    }
+    for (File file : changes) {
+      if (!rules.matches(file)) continue;
+      final BasicFileAttributes attributes = DirectoryScanCache.readAttributes(file);
+      if (attributes != null) monitorRulesFileProcessor.processFile(file, attributes);
     }
   }
 
-  private boolean acceptFile(@NotNull File f) {
-      return f.isFile() && f.canRead() && f.length() > 0;
+  private boolean isModified(@NotNull File file, long fileLastModified, long fileLength, long lastModified, long length) {
+    if (fileLastModified > lastModified || fileLength > length) return true;
+    final Long checkpoint = myReportStateHolder.getCheckpointOffset(file);
+    // partially parsed report rewritten below the checkpoint has to be parsed from the beginning
+    return checkpoint != null && fileLength < checkpoint;
+  }
+
+  // readability is checked only for new and modified reports
+  private boolean acceptFile(@NotNull BasicFileAttributes attributes) {
+      return attributes.isRegularFile() && attributes.size() > 0;
   }
 
   private boolean timeConstraintsSatisfied(long lastModified) {
@@ -0,0 +1,124 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decides how long the report monitor waits between scans.
+ * The interval is the shortest one while scans keep finding changed reports and doubles up to the longest one
+ * while nothing changes. It's also stretched so that scanning takes no more than the CPU budget share of the time
+ * the monitor runs. {@link #wakeUp()} ends the current or the next wait at once.
+ */
+public class MonitorScheduler {
+  public static final String TEAMCITY_PROPERTY_MIN_INTERVAL = "teamcity.xmlReport.monitor.minInterval";
+  public static final String TEAMCITY_PROPERTY_MAX_INTERVAL = "teamcity.xmlReport.monitor.maxInterval";
+  public static final String TEAMCITY_PROPERTY_CPU_BUDGET = "teamcity.xmlReport.monitor.cpuBudgetPercent";
+
+  static final long DEFAULT_MIN_INTERVAL = 50L;
+  static final long DEFAULT_MAX_INTERVAL = 5000L;
+  static final int DEFAULT_CPU_BUDGET_PERCENT = 5;
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final long myMinInterval;
+  private final long myMaxInterval;
+  private final double myCpuBudget;
+  private final long myStartNanos = System.nanoTime();
+
+  private long myInterval;
+  private long myScanNanos;
+
+  private boolean myWokenUp;
+  // thread waiting for report watcher events, it's interrupted to wake up
+  @Nullable
+  private Thread myWaitingThread;
+  private boolean myInterrupted;
+
+  public MonitorScheduler(long minInterval, long maxInterval, int cpuBudgetPercent) {
+    myMinInterval = Math.max(1L, minInterval);
+    myMaxInterval = Math.max(myMinInterval, maxInterval);
+    myCpuBudget = Math.max(1, Math.min(100, cpuBudgetPercent)) / 100.0;
+    myInterval = myMinInterval;
+  }
+
+  @NotNull
+  public static MonitorScheduler fromProperties() {
+    return new MonitorScheduler(TeamCityProperties.getLong(TEAMCITY_PROPERTY_MIN_INTERVAL, DEFAULT_MIN_INTERVAL),
+                                TeamCityProperties.getLong(TEAMCITY_PROPERTY_MAX_INTERVAL, DEFAULT_MAX_INTERVAL),
+                                TeamCityProperties.getInteger(TEAMCITY_PROPERTY_CPU_BUDGET, DEFAULT_CPU_BUDGET_PERCENT));
+  }
+
+  /**
+   * @return CPU time of the current thread or wall time if it's not supported, in nanoseconds
+   */
+  public static long currentThreadTime() {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  /**
+   * Records a finished scan
+   * @param changed whether the scan found changed reports
+   * @param scanNanos time spent scanning
+   * @return time to wait before the next scan, in milliseconds
+   */
+  public synchronized long scanFinished(boolean changed, long scanNanos) {
+    myScanNanos += Math.max(0L, scanNanos);
+    myInterval = changed ? myMinInterval : Math.min(myMaxInterval, 2 * myInterval);
+
+    final long elapsedNanos = System.nanoTime() - myStartNanos;
+    final long budgetNanos = (long)(myScanNanos / myCpuBudget) - elapsedNanos;
+    return Math.max(myInterval, TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+  }
+
+  /**
+   * Waits for the given time, for report watcher events if the watcher is set, or until woken up
+   */
+  public void await(long millis, @Nullable ReportWatcher watcher) {
+    synchronized (this) {
+      if (myWokenUp) {
+        myWokenUp = false;
+        return;
+      }
+      if (watcher == null) {
+        try {
+          wait(millis);
+        } catch (InterruptedException ignore) {
+          // scan again, the monitor loop stops once its processing is finished
+        }
+        myWokenUp = false;
+        return;
+      }
+      myWaitingThread = Thread.currentThread();
+    }
+
+    try {
+      watcher.awaitChanges(millis);
+    } catch (InterruptedException ignore) {
+      // woken up
+    } finally {
+      synchronized (this) {
+        myWaitingThread = null;
+        // the interrupt may have arrived after the wait had finished
+        if (myInterrupted) Thread.interrupted();
+        myInterrupted = false;
+        myWokenUp = false;
+      }
+    }
+  }
+
+  /**
+   * Makes the monitor scan again right away
+   */
+  public synchronized void wakeUp() {
+    myWokenUp = true;
+    notifyAll();
+    if (myWaitingThread != null && !myInterrupted) {
+      myInterrupted = true;
+      myWaitingThread.interrupt();
+    }
+  }
+}
@@ -3,12 +3,19 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import jetbrains.buildServer.util.CollectionsUtil;
 import jetbrains.buildServer.util.Converter;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.util.pathMatcher.AntPatternFileCollector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.util.AntPathMatcher;
 
 /**
  * User: Victory.Bedrosova
@@ -16,10 +23,16 @@ import org.jetbrains.annotations.NotNull;
  * Time: 2:23 PM
  */
 public class OptimizingIncludeExcludeRules implements Rules {
+  private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
   @NotNull
   private final File myBaseDir;
   @NotNull
   private final Collection<String> myBody;
+  @Nullable
+  private volatile List<String> myIncludePatterns;
+  @Nullable
+  private DirectoryScanCache myScanCache;
 
   public OptimizingIncludeExcludeRules(@NotNull final File baseDir, @NotNull Collection<String> body) {
     myBaseDir = baseDir;
@@ -61,6 +74,104 @@ public class OptimizingIncludeExcludeRules implements Rules {
     return myBaseDir.exists() ? AntPatternFileCollector.scanDir(myBaseDir, getRulesArray(), getScanOptions()) : Collections.emptyList();
   }
 
+  @NotNull
+  @Override
+  public synchronized Map<File, BasicFileAttributes> scanFiles() {
+    final Collection<File> roots = getWatchRoots();
+    // the scan relies on single file matching, which is ambiguous with exclusions
+    if (roots == null || !DirectoryScanCache.isEnabled()) return DirectoryScanCache.readAttributes(collectFiles());
+    if (myScanCache == null) {
+      myScanCache = new DirectoryScanCache(new DirectoryScanCache.PathFilter() {
+        public boolean acceptDirectory(@NotNull final String path) {
+          return mayContainMatches(path);
+        }
+
+        public boolean acceptFile(@NotNull final String path) {
+          return matchesPath(path);
+        }
+      });
+    }
+    return myScanCache.scan(roots);
+  }
+
+  @Nullable
+  @Override
+  public Collection<File> getWatchRoots() {
+    final List<File> roots = new ArrayList<File>();
+    for (String rule : myBody) {
+      // rule strictness makes single file matching ambiguous when there are exclusions
+      if (!isIncludeRule(rule)) return null;
+      roots.add(getFixedRoot(getIncludePattern(rule)));
+    }
+    return roots.isEmpty() ? null : roots;
+  }
+
+  @Override
+  public boolean matches(@NotNull final File file) {
+    return matchesPath(FileUtil.toSystemIndependentName(file.getAbsolutePath()));
+  }
+
+  private boolean matchesPath(@NotNull String path) {
+    for (String pattern : getIncludePatterns()) {
+      if (MATCHER.isPattern(pattern) ? MATCHER.match(pattern, path) : path.equals(pattern) || path.startsWith(pattern + "/")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean mayContainMatches(@NotNull String dirPath) {
+    for (String pattern : getIncludePatterns()) {
+      if (MATCHER.isPattern(pattern) ? MATCHER.matchStart(pattern, dirPath) : isAncestor(dirPath, pattern) || isAncestor(pattern, dirPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAncestor(@NotNull String ancestor, @NotNull String path) {
+    return path.equals(ancestor) || path.startsWith(ancestor + "/");
+  }
+
+  @NotNull
+  private List<String> getIncludePatterns() {
+    List<String> patterns = myIncludePatterns;
+    if (patterns == null) {
+      patterns = new ArrayList<String>();
+      for (String rule : myBody) {
+        if (isIncludeRule(rule)) patterns.add(getIncludePattern(rule));
+      }
+      myIncludePatterns = patterns;
+    }
+    return patterns;
+  }
+
+  @NotNull
+  private String getIncludePattern(@NotNull String rule) {
+    final String path = FileUtil.resolvePath(myBaseDir, getRulePath(rule)).getAbsolutePath();
+    return FileUtil.toSystemIndependentName(FileUtil.normalizeAbsolutePath(path));
+  }
+
+  @NotNull
+  private static File getFixedRoot(@NotNull String pattern) {
+    if (!MATCHER.isPattern(pattern)) {
+      final File file = new File(pattern);
+      final File parent = file.getParentFile();
+      return file.isDirectory() || parent == null ? file : parent;
+    }
+    final int wildcard = firstWildcard(pattern);
+    final int separator = pattern.lastIndexOf('/', wildcard);
+    return new File(pattern.substring(0, separator + 1));
+  }
+
+  private static int firstWildcard(@NotNull String pattern) {
+    for (int i = 0; i < pattern.length(); ++i) {
+      final char c = pattern.charAt(i);
+      if (c == '*' || c == '?' || c == '{') return i;
+    }
+    return pattern.length();
+  }
+
   @NotNull
   private String[] getRulesArray() {
     return  myBody.toArray(new String[0]);
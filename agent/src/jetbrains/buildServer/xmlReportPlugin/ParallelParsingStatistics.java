@@ -0,0 +1,55 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+/**
+ * Accumulates time spent by parse tasks during one build.
+ * Speedup is the total time spent in tasks divided by the time at least one task was running.
+ */
+public class ParallelParsingStatistics {
+  private int myTaskCount;
+  private int myRunningTasks;
+  private int myMaxRunningTasks;
+
+  private long myBusyNanos;
+  private long myActiveNanos;
+  private long myActiveStartNanos;
+
+  public long taskStarted() {
+    return taskStarted(System.nanoTime());
+  }
+
+  public void taskFinished(long startNanos) {
+    taskFinished(startNanos, System.nanoTime());
+  }
+
+  synchronized long taskStarted(long nowNanos) {
+    if (myRunningTasks++ == 0) myActiveStartNanos = nowNanos;
+    if (myRunningTasks > myMaxRunningTasks) myMaxRunningTasks = myRunningTasks;
+    return nowNanos;
+  }
+
+  synchronized void taskFinished(long startNanos, long nowNanos) {
+    ++myTaskCount;
+    myBusyNanos += nowNanos - startNanos;
+    if (--myRunningTasks == 0) myActiveNanos += nowNanos - myActiveStartNanos;
+  }
+
+  public synchronized int getTaskCount() {
+    return myTaskCount;
+  }
+
+  public synchronized int getMaxRunningTasks() {
+    return myMaxRunningTasks;
+  }
+
+  public synchronized long getBusyMillis() {
+    return myBusyNanos / 1000000L;
+  }
+
+  public synchronized long getActiveMillis() {
+    return myActiveNanos / 1000000L;
+  }
+
+  public synchronized double getSpeedup() {
+    return myActiveNanos == 0 ? 1.0 : (double)myBusyNanos / myActiveNanos;
+  }
+}
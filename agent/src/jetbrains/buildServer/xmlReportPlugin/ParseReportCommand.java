@@ -3,8 +3,21 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.BufferingDuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.BufferingInspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -12,6 +25,10 @@ import org.jetbrains.annotations.NotNull;
  * Time: 18:06
  */
 public class ParseReportCommand implements Runnable {
+  // inspections and duplicates are reported to agent-wide reporters which expect one caller at a time,
+  // so parsers get buffering reporters which send batches under this lock
+  private static final Object SHARED_REPORTER_LOCK = new Object();
+
   @NotNull
   private final File myFile;
 
@@ -24,14 +41,49 @@ public class ParseReportCommand implements Runnable {
   @NotNull
   private final ParserFactory myParserFactory;
 
+  @Nullable
+  private final ParallelParsingStatistics myStatistics;
+
+  @Nullable
+  private final ReportParsingMetrics myMetrics;
+
+  @Nullable
+  private final ReportContentRegistry myContentRegistry;
+
+  @Nullable
+  private final ParseResultCache myResultCache;
+  private final long myDiscoveryLatency;
+  private boolean myQueued;
+  private long myQueuedNanos;
+
   public ParseReportCommand(@NotNull final File file,
                             @NotNull final ParseParameters parameters,
                             @NotNull final RulesState rulesState,
-                            @NotNull final ParserFactory parserFactory) {
+                            @NotNull final ParserFactory parserFactory,
+                            @NotNull final ParsingServices services) {
     myFile = file;
     myParameters = parameters;
     myRulesState = rulesState;
     myParserFactory = parserFactory;
+    myStatistics = services.getStatistics();
+    myMetrics = services.getMetrics();
+    myContentRegistry = services.getContentRegistry();
+    myResultCache = services.getResultCache();
+    if (myMetrics == null) {
+      myDiscoveryLatency = 0;
+    } else {
+      final Long lastModified = rulesState.getLastModified(file);
+      myDiscoveryLatency = System.currentTimeMillis() - (lastModified == null ? file.lastModified() : lastModified);
+    }
+  }
+
+  /**
+   * Called by the scheduler when the command is put to the parsing queue
+   */
+  void queued() {
+    if (myMetrics == null) return;
+    myQueuedNanos = myMetrics.reportQueued();
+    myQueued = true;
   }
 
   @NotNull
@@ -39,13 +91,126 @@ public class ParseReportCommand implements Runnable {
     return myParserFactory.getParsingStage();
   }
 
+  @NotNull
+  public File getFile() {
+    return myFile;
+  }
+
+  @NotNull
+  public String getType() {
+    return myParameters.getType();
+  }
+
   public void run() {
-    final Parser parser = myParserFactory.createParser(myParameters);
+    if (myStatistics == null) {
+      collectingMetricsParse();
+      return;
+    }
+    final long started = myStatistics.taskStarted();
+    try {
+      collectingMetricsParse();
+    } finally {
+      myStatistics.taskFinished(started);
+    }
+  }
+
+  private void collectingMetricsParse() {
+    if (myMetrics == null) {
+      parse();
+      return;
+    }
+    // a command run directly has not been in the queue
+    final long started = myQueued ? myMetrics.reportStarted() : System.nanoTime();
+    final long queueNanos = myQueued ? started - myQueuedNanos : 0;
+    final ParsingResult prevResult = myRulesState.getParsingResult(myFile);
+    final Long checkpointOffset = myRulesState.getCheckpointOffset(myFile);
+    try {
+      parse();
+    } finally {
+      final long parseNanos = System.nanoTime() - started;
+      final ParsingResult result = myRulesState.getParsingResult(myFile);
+      final long bytes = Math.max(0, myFile.length() - (checkpointOffset == null ? 0 : checkpointOffset));
+      myMetrics.reportParsed(myParameters.getType(), myFile, myDiscoveryLatency, queueNanos, parseNanos, bytes,
+                             result == null || result == prevResult ? 0 : ReportParsingMetrics.getReportedItems(result, prevResult));
+    }
+  }
+
+  private void parse() {
+    final ReportContentRegistry registry = myContentRegistry;
+    // only reports parsed for the first time are compared or taken from the cache,
+    // a reparsed report has already sent a part of its content
+    if (registry == null && myResultCache == null || myRulesState.getParsingResult(myFile) != null) {
+      parseReport(null, 0);
+      return;
+    }
+
+    final ReportContentRegistry.Claim claim = registry == null ? null : registry.claim(myParameters.getType(), myFile);
+    final File original = claim == null ? null : claim.getOwner();
+    if (original != null) {
+      // the copy stays on processing until the owner is parsed, it's parsed on its own if the owner fails
+      if (claim.awaitOwner()) {
+        LoggingUtils.message("Skipped " + myFile + ": same content as " + original, myParameters.getThreadLogger());
+        myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, myParserFactory.createEmptyResult());
+      } else {
+        parseReport(null, 0);
+      }
+      return;
+    }
+
+    boolean processed = false;
+    try {
+      final ReportContentRegistry.ContentKey contentKey = myResultCache == null ? null
+        : claim == null ? ReportContentRegistry.computeKey(myParameters.getType(), myFile) : claim.getContentKey();
+      final String cacheEntry = contentKey == null ? null : myResultCache.getEntryName(contentKey, myParserFactory, myParameters);
+      processed = cacheEntry != null && replayCached(cacheEntry) ||
+                  parseReport(cacheEntry, contentKey == null ? 0 : contentKey.getSize()) == ReportStateHolder.ReportState.PROCESSED;
+    } finally {
+      // a failed or still growing report is parsed again when modified, so its copies are parsed on their own
+      if (claim != null) claim.finish(processed && myFile.length() == claim.getSize());
+    }
+  }
+
+  private boolean replayCached(@NotNull String cacheEntry) {
+    assert myResultCache != null;
+    final byte[] record = myResultCache.get(cacheEntry);
+    if (record == null) return false;
+
+    final FlushingParseParameters parameters = new FlushingParseParameters(myParameters);
+    final ParsingResult parsingResult;
+    try {
+      parsingResult = ReportEventRecorder.replay(record, parameters, myParserFactory.createEmptyResult());
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to replay cached events of " + myFile + ", the report will be parsed", e);
+      myResultCache.remove(cacheEntry);
+      return false;
+    } finally {
+      parameters.flushReporters();
+    }
+    LoggingUtils.LOG.debug("Reported cached events of " + myFile);
+
+    parsingResult.logAsFileResult(myFile, myParameters);
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, parsingResult);
+    return true;
+  }
+
+  /**
+   * @param cacheEntry cache entry to save reported events to if the report is processed, null not to save
+   * @param cachedLength length of the report content the cache entry is computed for
+   */
+  @NotNull
+  private ReportStateHolder.ReportState parseReport(@Nullable String cacheEntry, long cachedLength) {
+    final FlushingParseParameters parameters = new FlushingParseParameters(myParameters);
+    final ReportEventRecorder recorder = cacheEntry == null || myResultCache == null ? null : new ReportEventRecorder(myResultCache.getMaxEntrySize());
+    final Parser parser = myParserFactory.createParser(recorder == null ? parameters : recorder.wrap(parameters));
 
     boolean finished;
     Throwable problem = null;
     try {
-      finished = parser.parse(myFile, myRulesState.getParsingResult(myFile));
+      try {
+        finished = parser.parse(myFile, myRulesState.getParsingResult(myFile));
+      } finally {
+        parameters.flushReporters();
+      }
     } catch (ParsingException e) {
       finished = true;
       problem = e;
@@ -60,12 +225,93 @@ public class ParseReportCommand implements Runnable {
 
     if (problem != null) parsingResult.setProblem(problem);
 
+    final ReportStateHolder.ReportState state;
     if (finished) { // file processed
       parsingResult.logAsFileResult(myFile, myParameters);
-      myRulesState.setReportState(myFile, problem == null ? ReportStateHolder.ReportState.PROCESSED : ReportStateHolder.ReportState.ERROR, parsingResult);
+      state = problem == null ? ReportStateHolder.ReportState.PROCESSED : ReportStateHolder.ReportState.ERROR;
     } else {
       //todo: log file not processed
-      myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, parsingResult);
+      state = ReportStateHolder.ReportState.ERROR;
+    }
+    myRulesState.setReportState(myFile, state, parsingResult);
+
+    if (recorder != null && state == ReportStateHolder.ReportState.PROCESSED && myFile.length() == cachedLength) {
+      final byte[] record = recorder.toByteArray(parsingResult);
+      if (record != null) myResultCache.put(cacheEntry, record);
+    }
+    return state;
+  }
+
+  /**
+   * Remembers reporters created for the parser, so events they buffer are sent when parsing stops
+   */
+  private static class FlushingParseParameters implements ParseParameters {
+    @NotNull
+    private final ParseParameters myDelegate;
+    @NotNull
+    private final List<Flushable> myReporters = new ArrayList<Flushable>(1);
+
+    private FlushingParseParameters(@NotNull ParseParameters delegate) {
+      myDelegate = delegate;
+    }
+
+    private void flushReporters() {
+      for (Flushable reporter : myReporters) {
+        try {
+          reporter.flush();
+        } catch (IOException e) {
+          LoggingUtils.LOG.warn("Failed to flush " + reporter, e);
+        }
+      }
+    }
+
+    @NotNull
+    private <T> T remember(@NotNull T reporter) {
+      if (reporter instanceof Flushable) myReporters.add((Flushable)reporter);
+      return reporter;
+    }
+
+    public boolean isVerbose() {
+      return myDelegate.isVerbose();
+    }
+
+    @NotNull
+    public BuildProgressLogger getThreadLogger() {
+      return myDelegate.getThreadLogger();
+    }
+
+    @NotNull
+    public InspectionReporter getInspectionReporter() {
+      return remember(new BufferingInspectionReporter(myDelegate.getInspectionReporter(),
+        TeamCityProperties.getInteger(BufferingInspectionReporter.TEAMCITY_PROPERTY_BATCH_SIZE, BufferingInspectionReporter.DEFAULT_BATCH_SIZE),
+        SHARED_REPORTER_LOCK));
+    }
+
+    @NotNull
+    public DuplicationReporter getDuplicationReporter() {
+      return remember(new BufferingDuplicationReporter(myDelegate.getDuplicationReporter(),
+        TeamCityProperties.getInteger(BufferingDuplicationReporter.TEAMCITY_PROPERTY_BATCH_SIZE, BufferingDuplicationReporter.DEFAULT_BATCH_SIZE),
+        SHARED_REPORTER_LOCK));
+    }
+
+    @NotNull
+    public TestReporter getTestReporter() {
+      return remember(myDelegate.getTestReporter());
+    }
+
+    @NotNull
+    public Map<String, String> getParameters() {
+      return myDelegate.getParameters();
+    }
+
+    @NotNull
+    public String getType() {
+      return myDelegate.getType();
+    }
+
+    @NotNull
+    public File getCheckoutDir() {
+      return myDelegate.getCheckoutDir();
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Agent wide cache of reporter events recorded while parsing reports, kept in files under the agent cache directory.
+ * An entry is keyed by the report content hash, the parser and the parameters which may affect the parser output,
+ * so an unchanged report found by a later build is reported again without being parsed.
+ * Entries which were not used for the longest time are removed when the total size exceeds the limit.
+ * The cache is disabled by default, when enabled every report parsed for the first time is read once more to compute its hash.
+ */
+public class ParseResultCache {
+  public static final String TEAMCITY_PROPERTY_ENABLED = "teamcity.xmlReport.parseResultCache.enabled";
+  public static final String TEAMCITY_PROPERTY_MAX_SIZE_MB = "teamcity.xmlReport.parseResultCache.maxSizeMb";
+
+  private static final String ENTRY_SUFFIX = ".events";
+  private static final String PARAMETERS_PREFIX = "xmlReportParsing.";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @NotNull
+  private final File myDirectory;
+  private final long myMaxSize;
+  // entry sizes in the order of use, the least recently used first
+  @NotNull
+  private final LinkedHashMap<String, Long> myEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+  private long mySize;
+  private boolean myLoaded;
+
+  public ParseResultCache(@NotNull File directory, long maxSize) {
+    myDirectory = directory;
+    myMaxSize = maxSize;
+  }
+
+  @Nullable
+  public static ParseResultCache create(@NotNull File cacheDirectory) {
+    if (!TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_ENABLED)) return null;
+    final long maxSizeMb = TeamCityProperties.getLong(TEAMCITY_PROPERTY_MAX_SIZE_MB, 128);
+    return maxSizeMb > 0 ? new ParseResultCache(new File(cacheDirectory, "parse-results"), maxSizeMb * 1024 * 1024) : null;
+  }
+
+  /**
+   * @return maximum size of one entry
+   */
+  public long getMaxEntrySize() {
+    return myMaxSize / 8;
+  }
+
+  /**
+   * @return name of the entry for the report parsed with the specified parser and parameters
+   */
+  @NotNull
+  public String getEntryName(@NotNull ReportContentRegistry.ContentKey contentKey,
+                             @NotNull ParserFactory parserFactory,
+                             @NotNull ParseParameters parameters) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(digest, contentKey.getType());
+    update(digest, String.valueOf(contentKey.getSize()));
+    digest.update(contentKey.getHash());
+    update(digest, String.valueOf(ReportEventRecorder.FORMAT_VERSION));
+    update(digest, parserFactory.getClass().getName());
+    update(digest, String.valueOf(parserFactory.getClass().getPackage() == null ? null : parserFactory.getClass().getPackage().getImplementationVersion()));
+    // parsers make paths relative to the checkout directory and read feature parameters only
+    update(digest, parameters.getCheckoutDir().getAbsolutePath());
+    for (Map.Entry<String, String> parameter : new TreeMap<String, String>(parameters.getParameters()).entrySet()) {
+      if (!parameter.getKey().startsWith(PARAMETERS_PREFIX)) continue;
+      update(digest, parameter.getKey());
+      update(digest, parameter.getValue());
+    }
+
+    final StringBuilder name = new StringBuilder(32);
+    for (byte b : digest.digest()) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return name.toString();
+  }
+
+  private static void update(@NotNull MessageDigest digest, @Nullable String s) {
+    if (s != null) digest.update(s.getBytes(UTF_8));
+    digest.update((byte)0);
+  }
+
+  /**
+   * @return recorded events or null if there is no such entry
+   */
+  @Nullable
+  public byte[] get(@NotNull String name) {
+    synchronized (this) {
+      load();
+      if (myEntries.get(name) == null) return null;
+    }
+    final File file = getFile(name);
+    try {
+      final byte[] record = FileUtil.loadFileBytes(file);
+      // the order of use survives agent restarts
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      return record;
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to read cached report events from " + file, e);
+      remove(name);
+      return null;
+    }
+  }
+
+  public void put(@NotNull String name, @NotNull byte[] record) {
+    if (record.length > getMaxEntrySize()) return;
+
+    final File file = getFile(name);
+    final File tempFile = new File(myDirectory, name + ".tmp" + Thread.currentThread().getId());
+    try {
+      FileUtil.writeToFile(tempFile, record);
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to save report events to " + file, e);
+      FileUtil.delete(tempFile);
+      return;
+    }
+
+    synchronized (this) {
+      load();
+      final Long oldSize = myEntries.put(name, (long)record.length);
+      mySize += record.length - (oldSize == null ? 0 : oldSize);
+      evict();
+    }
+  }
+
+  public synchronized void remove(@NotNull String name) {
+    final Long size = myEntries.remove(name);
+    if (size != null) mySize -= size;
+    FileUtil.delete(getFile(name));
+  }
+
+  synchronized long getSize() {
+    load();
+    return mySize;
+  }
+
+  private void evict() {
+    final Iterator<Map.Entry<String, Long>> it = myEntries.entrySet().iterator();
+    while (mySize > myMaxSize && it.hasNext()) {
+      final Map.Entry<String, Long> entry = it.next();
+      it.remove();
+      mySize -= entry.getValue();
+      FileUtil.delete(getFile(entry.getKey()));
+    }
+  }
+
+  private void load() {
+    if (myLoaded) return;
+    myLoaded = true;
+
+    final File[] files = myDirectory.listFiles();
+    if (files == null) return;
+    final List<File> entries = new ArrayList<File>(files.length);
+    for (File file : files) {
+      if (file.getName().endsWith(ENTRY_SUFFIX)) entries.add(file);
+    }
+    Collections.sort(entries, new Comparator<File>() {
+      public int compare(File o1, File o2) {
+        final long m1 = o1.lastModified();
+        final long m2 = o2.lastModified();
+        return m1 < m2 ? -1 : m1 == m2 ? 0 : 1;
+      }
+    });
+    for (File file : entries) {
+      final String name = file.getName();
+      final long size = file.length();
+      myEntries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+      mySize += size;
+    }
+    evict();
+  }
+
+  @NotNull
+  private File getFile(@NotNull String name) {
+    return new File(myDirectory, name + ENTRY_SUFFIX);
+  }
+}
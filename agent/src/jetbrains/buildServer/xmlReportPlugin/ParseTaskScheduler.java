@@ -0,0 +1,187 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Orders parse tasks waiting for a parsing thread.
+ * By default tasks of the earlier parsing stage go first and among them the one with the largest estimated cost,
+ * so a huge report discovered last doesn't start after all the small ones and set the time the build waits at finish.
+ * The cost is the report size multiplied by the parse time per byte observed for reports of its type.
+ * Tasks submitted together are held until all of them are queued, otherwise free threads would start them in the submission order.
+ */
+public class ParseTaskScheduler {
+  public static final String TEAMCITY_PROPERTY_QUEUE_ORDER = "teamcity.xmlReport.parsingQueue.order";
+
+  private static final double DEFAULT_NANOS_PER_BYTE = 1.0;
+  private static final double ESTIMATE_WEIGHT = 0.3;
+
+  public enum Order {
+    FIFO, LARGEST_FIRST;
+
+    @NotNull
+    public static Order fromProperty() {
+      return "fifo".equalsIgnoreCase(TeamCityProperties.getProperty(TEAMCITY_PROPERTY_QUEUE_ORDER, "largestFirst")) ? FIFO : LARGEST_FIRST;
+    }
+  }
+
+  @NotNull
+  private final ExecutorService myExecutor;
+  @NotNull
+  private final Order myOrder;
+  @NotNull
+  private final PriorityBlockingQueue<ScheduledTask> myQueue = new PriorityBlockingQueue<ScheduledTask>();
+  @NotNull
+  private final AtomicLong mySequence = new AtomicLong();
+  @NotNull
+  private final Map<String, Double> myNanosPerByte = new ConcurrentHashMap<String, Double>();
+  // guarded by this
+  private int myHolds;
+  private int myHeldTasks;
+
+  public ParseTaskScheduler(@NotNull ExecutorService executor, @NotNull Order order) {
+    myExecutor = executor;
+    myOrder = order;
+  }
+
+  @NotNull
+  public Order getOrder() {
+    return myOrder;
+  }
+
+  @NotNull
+  public Future<?> submit(@NotNull ParseReportCommand command) {
+    final ScheduledTask task = new ScheduledTask(command, estimateCost(command), mySequence.incrementAndGet());
+    command.queued();
+    myQueue.add(task);
+    synchronized (this) {
+      if (myHolds > 0) {
+        ++myHeldTasks;
+        return task;
+      }
+    }
+    dispatch();
+    return task;
+  }
+
+  /**
+   * Queues all the commands before any of them starts
+   */
+  @NotNull
+  public List<Future<?>> submitAll(@NotNull Collection<ParseReportCommand> commands) {
+    final List<Future<?>> result = new ArrayList<Future<?>>(commands.size());
+    hold();
+    try {
+      for (ParseReportCommand command : commands) {
+        result.add(submit(command));
+      }
+    } finally {
+      release();
+    }
+    return result;
+  }
+
+  /**
+   * Holds the tasks submitted from now on until the matching {@link #release()}
+   */
+  public synchronized void hold() {
+    ++myHolds;
+  }
+
+  public void release() {
+    final int tasks;
+    synchronized (this) {
+      if (--myHolds > 0) return;
+      tasks = myHeldTasks;
+      myHeldTasks = 0;
+    }
+    for (int i = 0; i < tasks; ++i) {
+      dispatch();
+    }
+  }
+
+  // every submitted runnable runs the task which is first in the queue at the moment a thread is free
+  private void dispatch() {
+    myExecutor.submit(new Runnable() {
+      public void run() {
+        final ScheduledTask next = myQueue.poll();
+        if (next != null) next.run();
+      }
+    });
+  }
+
+  int getQueueSize() {
+    return myQueue.size();
+  }
+
+  double estimateCost(@NotNull ParseReportCommand command) {
+    return command.getFile().length() * getNanosPerByte(command.getType());
+  }
+
+  private double getNanosPerByte(@NotNull String type) {
+    final Double estimate = myNanosPerByte.get(type);
+    if (estimate != null) return estimate;
+    // types never parsed yet are compared with the others by size
+    double sum = 0;
+    int count = 0;
+    for (Double value : myNanosPerByte.values()) {
+      sum += value;
+      ++count;
+    }
+    return count == 0 ? DEFAULT_NANOS_PER_BYTE : sum / count;
+  }
+
+  void taskFinished(@NotNull String type, long bytes, long nanos) {
+    if (bytes <= 0) return;
+    final double observed = (double)nanos / bytes;
+    final Double estimate = myNanosPerByte.get(type);
+    myNanosPerByte.put(type, estimate == null ? observed : estimate + ESTIMATE_WEIGHT * (observed - estimate));
+  }
+
+  private final class ScheduledTask extends FutureTask<Object> implements Comparable<ScheduledTask> {
+    @NotNull
+    private final ParseReportCommand myCommand;
+    private final double myCost;
+    private final long mySequenceNumber;
+    private final long myQueuedNanos = System.nanoTime();
+
+    private ScheduledTask(@NotNull ParseReportCommand command, double cost, long sequenceNumber) {
+      super(command, null);
+      myCommand = command;
+      myCost = cost;
+      mySequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public void run() {
+      final long started = System.nanoTime();
+      final File file = myCommand.getFile();
+      final long bytes = file.length();
+      if (LoggingUtils.LOG.isDebugEnabled()) {
+        LoggingUtils.LOG.debug(String.format("Parsing %s (%s, %d bytes, task #%d) after %d ms in queue, %d more tasks waiting",
+                                             file, myCommand.getType(), bytes, mySequenceNumber,
+                                             (started - myQueuedNanos) / 1000000L, myQueue.size()));
+      }
+      super.run();
+      taskFinished(myCommand.getType(), bytes, System.nanoTime() - started);
+    }
+
+    public int compareTo(@NotNull ScheduledTask o) {
+      if (myOrder == Order.LARGEST_FIRST) {
+        final int stage = myCommand.getParsingStage().compareTo(o.myCommand.getParsingStage());
+        if (stage != 0) return stage;
+        final int cost = Double.compare(o.myCost, myCost);
+        if (cost != 0) return cost;
+      }
+      return mySequenceNumber < o.mySequenceNumber ? -1 : mySequenceNumber == o.mySequenceNumber ? 0 : 1;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Build wide services shared by report parse commands, any of them may be absent.
+ */
+public class ParsingServices {
+  @NotNull
+  public static final ParsingServices NONE = new ParsingServices(null, null, null, null);
+
+  @Nullable
+  private final ParallelParsingStatistics myStatistics;
+  @Nullable
+  private final ReportParsingMetrics myMetrics;
+  @Nullable
+  private final ReportContentRegistry myContentRegistry;
+  @Nullable
+  private final ParseResultCache myResultCache;
+
+  public ParsingServices(@Nullable ParallelParsingStatistics statistics,
+                         @Nullable ReportParsingMetrics metrics,
+                         @Nullable ReportContentRegistry contentRegistry,
+                         @Nullable ParseResultCache resultCache) {
+    myStatistics = statistics;
+    myMetrics = metrics;
+    myContentRegistry = contentRegistry;
+    myResultCache = resultCache;
+  }
+
+  @Nullable
+  public ParallelParsingStatistics getStatistics() {
+    return myStatistics;
+  }
+
+  @Nullable
+  public ReportParsingMetrics getMetrics() {
+    return myMetrics;
+  }
+
+  @Nullable
+  public ReportContentRegistry getContentRegistry() {
+    return myContentRegistry;
+  }
+
+  @Nullable
+  public ParseResultCache getResultCache() {
+    return myResultCache;
+  }
+}
@@ -0,0 +1,260 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers contents of reports parsed during the build, shared by all rules of the build.
+ * A report of the same type, size and content hash as a report already parsed by other rule or found
+ * at other path is not parsed and sent again.
+ * Reports are compared by type and size first, the content is hashed only when reports of the same type and size are found.
+ */
+public class ReportContentRegistry {
+  public static final String TEAMCITY_PROPERTY_DEDUPLICATE_REPORTS = "teamcity.xmlReport.deduplicateReports";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte[] NO_HASH = new byte[0];
+
+  // the first report of each type and size, its content is hashed when other report of the same type and size is claimed
+  @NotNull
+  private final Map<ContentKey, Claim> myBySize = new HashMap<ContentKey, Claim>();
+  @NotNull
+  private final Map<ContentKey, Claim> myByContent = new HashMap<ContentKey, Claim>();
+  @NotNull
+  private final AtomicInteger mySkipped = new AtomicInteger();
+  @NotNull
+  private final AtomicInteger myHashed = new AtomicInteger();
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(TEAMCITY_PROPERTY_DEDUPLICATE_REPORTS);
+  }
+
+  /**
+   * @return content key of the report or null if it can't be read
+   */
+  @Nullable
+  public static ContentKey computeKey(@NotNull String type, @NotNull File report) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    long size = 0;
+    try {
+      final InputStream is = new FileInputStream(report);
+      try {
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+          digest.update(buffer, 0, read);
+          size += read;
+        }
+      } finally {
+        is.close();
+      }
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to compute content hash of " + report, e);
+      return null;
+    }
+    return new ContentKey(type, size, digest.digest());
+  }
+
+  /**
+   * Makes the report the owner of its content unless other report already owns the same content
+   * @return claim of the report, the report should be parsed if it owns the content
+   */
+  @NotNull
+  public Claim claim(@NotNull String type, @NotNull File report) {
+    final ContentKey sizeKey = new ContentKey(type, report.length(), NO_HASH);
+    final Claim sizeOwner;
+    synchronized (this) {
+      final Claim claim = myBySize.get(sizeKey);
+      if (claim == null) {
+        final Claim owner = new Claim(this, report, sizeKey, null);
+        myBySize.put(sizeKey, owner);
+        return owner;
+      }
+      if (claim.myReport.equals(report)) return claim;
+      sizeOwner = claim;
+    }
+
+    // both contents are hashed outside the lock, the owner content is hashed once
+    final ContentKey ownerKey = sizeOwner.getContentKey();
+    final Claim claim = new Claim(this, report, sizeKey, null);
+    final ContentKey contentKey = claim.getContentKey();
+    // an unreadable report is parsed without being registered
+    if (contentKey == null) return claim;
+
+    synchronized (this) {
+      // the owner content is registered unless the owner failed or was modified since it was claimed
+      if (ownerKey != null && ownerKey.getSize() == sizeKey.getSize() && myBySize.get(sizeKey) == sizeOwner) {
+        if (!myByContent.containsKey(ownerKey)) myByContent.put(ownerKey, sizeOwner);
+      }
+      final Claim owner = myByContent.get(contentKey);
+      if (owner == null) {
+        myByContent.put(contentKey, claim);
+        return claim;
+      }
+      if (owner.myReport.equals(report)) return owner;
+      return new Claim(this, report, sizeKey, owner);
+    }
+  }
+
+  private synchronized void release(@NotNull Claim claim) {
+    if (myBySize.get(claim.mySizeKey) == claim) myBySize.remove(claim.mySizeKey);
+    final ContentKey contentKey = claim.myContentKey;
+    if (contentKey != null && myByContent.get(contentKey) == claim) myByContent.remove(contentKey);
+  }
+
+  public int getSkippedCount() {
+    return mySkipped.get();
+  }
+
+  /**
+   * @return number of reports which content was hashed
+   */
+  int getHashedCount() {
+    return myHashed.get();
+  }
+
+  /**
+   * Claim of a report content, either made by the report which owns the content and parses it
+   * or by a copy of the report which waits for the owner to finish
+   */
+  public static final class Claim {
+    @NotNull
+    private final ReportContentRegistry myRegistry;
+    @NotNull
+    private final File myReport;
+    @NotNull
+    private final ContentKey mySizeKey;
+    @Nullable
+    private final Claim myOwner;
+    @NotNull
+    private final CountDownLatch myFinished = new CountDownLatch(1);
+    private volatile boolean myProcessed;
+    private volatile ContentKey myContentKey;
+    private boolean myHashed;
+
+    private Claim(@NotNull ReportContentRegistry registry, @NotNull File report, @NotNull ContentKey sizeKey, @Nullable Claim owner) {
+      myRegistry = registry;
+      myReport = report;
+      mySizeKey = sizeKey;
+      myOwner = owner;
+    }
+
+    /**
+     * @return report which owns the content or null if this report owns it
+     */
+    @Nullable
+    public File getOwner() {
+      return myOwner == null ? null : myOwner.myReport;
+    }
+
+    /**
+     * @return size of the report when it was claimed
+     */
+    public long getSize() {
+      return mySizeKey.getSize();
+    }
+
+    /**
+     * @return content key of the report, the content is hashed on the first call, null if the report can't be read
+     */
+    @Nullable
+    public synchronized ContentKey getContentKey() {
+      if (!myHashed) {
+        myHashed = true;
+        myRegistry.myHashed.incrementAndGet();
+        myContentKey = computeKey(mySizeKey.getType(), myReport);
+      }
+      return myContentKey;
+    }
+
+    /**
+     * Is called by the owner when it stops parsing, the content is forgotten unless the report was processed,
+     * so copies of a failed or still growing report are parsed on their own
+     * @param processed whether the report was processed and was not modified since it was claimed
+     */
+    public void finish(boolean processed) {
+      myProcessed = processed;
+      if (!processed) myRegistry.release(this);
+      myFinished.countDown();
+    }
+
+    /**
+     * Waits for the owner to finish parsing
+     * @return true if the owner was processed and this report may be skipped
+     */
+    public boolean awaitOwner() {
+      final Claim owner = myOwner;
+      if (owner == null) return false;
+      try {
+        owner.myFinished.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      if (!owner.myProcessed) return false;
+      myRegistry.mySkipped.incrementAndGet();
+      return true;
+    }
+  }
+
+  public static final class ContentKey {
+    @NotNull
+    private final String myType;
+    private final long mySize;
+    @NotNull
+    private final byte[] myHash;
+    private final int myHashCode;
+
+    ContentKey(@NotNull String type, long size, @NotNull byte[] hash) {
+      myType = type;
+      mySize = size;
+      myHash = hash;
+      myHashCode = 31 * (31 * type.hashCode() + (int)(size ^ (size >>> 32))) + Arrays.hashCode(hash);
+    }
+
+    @NotNull
+    public String getType() {
+      return myType;
+    }
+
+    public long getSize() {
+      return mySize;
+    }
+
+    @NotNull
+    public byte[] getHash() {
+      return myHash.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ContentKey)) return false;
+      final ContentKey key = (ContentKey)o;
+      return mySize == key.mySize && myType.equals(key.myType) && Arrays.equals(myHash, key.myHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return myHashCode;
+    }
+  }
+}
@@ -0,0 +1,692 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicatingFragment;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.*;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records events a parser sends to inspection, duplication and test reporters in a compact binary form
+ * and replays them, so an unchanged report is reported again without being parsed.
+ * Strings are written once and referenced by index afterwards, numbers are written as varints.
+ */
+public class ReportEventRecorder {
+  static final int FORMAT_VERSION = 2;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int END = 0;
+  private static final int INSPECTION = 1;
+  private static final int INSPECTION_TYPE = 2;
+  private static final int MARK_INSPECTIONS_BUILD = 3;
+  private static final int START_DUPLICATES = 4;
+  private static final int DUPLICATE = 5;
+  private static final int FINISH_DUPLICATES = 6;
+  private static final int OPEN_TEST_SUITE = 7;
+  private static final int OPEN_TEST = 8;
+  private static final int TEST_STD_OUTPUT = 9;
+  private static final int TEST_ERR_OUTPUT = 10;
+  private static final int TEST_FAIL = 11;
+  private static final int TEST_IGNORED = 12;
+  private static final int CLOSE_TEST = 13;
+  private static final int CLOSE_TEST_SUITE = 14;
+  // messages are followed by the reporter they were sent to
+  private static final int INFO = 15;
+  private static final int WARNING = 16;
+  private static final int ERROR = 17;
+  private static final int FAILURE = 18;
+
+  private static final int INSPECTION_REPORTER = 0;
+  private static final int DUPLICATION_REPORTER = 1;
+  private static final int TEST_REPORTER = 2;
+
+  private static final int NO_RESULT = 0;
+  private static final int INSPECTION_RESULT = 1;
+  private static final int TEST_RESULT = 2;
+  private static final int DUPLICATION_RESULT = 3;
+
+  private final long myLimit;
+  @NotNull
+  private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+  @NotNull
+  private final DataOutputStream myOut = new DataOutputStream(myBytes);
+  @NotNull
+  private final Map<String, Integer> myStrings = new HashMap<String, Integer>();
+  private boolean myOverflow;
+
+  /**
+   * @param limit maximum size of the record, the recording stops when exceeded
+   */
+  public ReportEventRecorder(long limit) {
+    myLimit = limit;
+  }
+
+  /**
+   * @return parameters providing reporters which record events and pass them to the reporters of the specified parameters
+   */
+  @NotNull
+  public ParseParameters wrap(@NotNull ParseParameters parameters) {
+    return new RecordingParseParameters(parameters);
+  }
+
+  /**
+   * @return the record with the counters of the specified result, null if the recording exceeded the limit
+   */
+  @Nullable
+  public byte[] toByteArray(@NotNull ParsingResult result) {
+    if (myOverflow) return null;
+    try {
+      writeInt(END);
+      if (result instanceof InspectionParsingResult) {
+        final InspectionParsingResult inspections = (InspectionParsingResult)result;
+        writeInt(INSPECTION_RESULT);
+        writeInt(inspections.getErrors());
+        writeInt(inspections.getWarnings());
+        writeInt(inspections.getInfos());
+      } else if (result instanceof TestParsingResult) {
+        final TestParsingResult tests = (TestParsingResult)result;
+        writeInt(TEST_RESULT);
+        writeInt(tests.getSuites());
+        writeInt(tests.getTests());
+      } else if (result instanceof DuplicationParsingResult) {
+        writeInt(DUPLICATION_RESULT);
+        writeInt(((DuplicationParsingResult)result).getDuplicates());
+      } else {
+        writeInt(NO_RESULT);
+      }
+      myOut.flush();
+    } catch (IOException e) {
+      return null;
+    }
+    return myBytes.size() > myLimit ? null : myBytes.toByteArray();
+  }
+
+  /**
+   * Sends recorded events to the reporters of the parameters. The whole record is checked first,
+   * so nothing is reported from a corrupted one.
+   * @param emptyResult result to add the recorded counters to
+   * @return the result
+   * @throws IOException if the record is corrupted
+   */
+  @NotNull
+  public static ParsingResult replay(@NotNull byte[] record, @NotNull ParseParameters parameters, @NotNull ParsingResult emptyResult) throws IOException {
+    new Replay(record, null).run(emptyResult);
+    return new Replay(record, parameters).run(emptyResult);
+  }
+
+  private void record(int event) {
+    if (myOverflow) return;
+    try {
+      writeInt(event);
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+  }
+
+  private void record(int event, @Nullable String s) {
+    if (myOverflow) return;
+    try {
+      writeInt(event);
+      writeString(s);
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+    checkLimit();
+  }
+
+  private void recordMessage(int event, int reporter, @NotNull String message) {
+    record(event, message);
+    record(reporter);
+  }
+
+  private void recordInspection(@NotNull InspectionResult inspection) {
+    if (myOverflow) return;
+    try {
+      writeInt(INSPECTION);
+      writeString(inspection.getFilePath());
+      writeString(inspection.getInspectionId());
+      writeString(inspection.getMessage());
+      writeInt(inspection.getLine());
+      writeInt(inspection.getPriority());
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+    checkLimit();
+  }
+
+  private void recordInspectionType(@NotNull InspectionTypeResult inspectionType) {
+    if (myOverflow) return;
+    try {
+      writeInt(INSPECTION_TYPE);
+      writeString(inspectionType.getId());
+      writeString(inspectionType.getName());
+      writeString(inspectionType.getDescription());
+      writeString(inspectionType.getCategory());
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+    checkLimit();
+  }
+
+  private void recordDuplicate(@NotNull DuplicationResult duplicate) {
+    if (myOverflow) return;
+    try {
+      writeInt(DUPLICATE);
+      writeInt(duplicate.getLines());
+      writeInt(duplicate.getTokens());
+      writeInt(duplicate.getHash());
+      writeInt(duplicate.getFragments().size());
+      for (DuplicatingFragment fragment : duplicate.getFragments()) {
+        writeString(fragment.getPath());
+        writeInt(fragment.getLine());
+        writeInt(fragment.getHash());
+      }
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+    checkLimit();
+  }
+
+  private void recordTestFail(@Nullable String error, @Nullable String stacktrace) {
+    if (myOverflow) return;
+    try {
+      writeInt(TEST_FAIL);
+      writeString(error);
+      writeString(stacktrace);
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+    checkLimit();
+  }
+
+  private void recordCloseTest(long duration) {
+    if (myOverflow) return;
+    try {
+      writeInt(CLOSE_TEST);
+      writeLong(duration);
+    } catch (IOException e) {
+      myOverflow = true;
+    }
+  }
+
+  private void checkLimit() {
+    if (myBytes.size() > myLimit) {
+      myOverflow = true;
+      myStrings.clear();
+    }
+  }
+
+  private void writeString(@Nullable String s) throws IOException {
+    if (s == null) {
+      writeInt(0);
+      return;
+    }
+    final Integer index = myStrings.get(s);
+    if (index != null) {
+      writeInt(index + 2);
+      return;
+    }
+    myStrings.put(s, myStrings.size());
+    final byte[] bytes = s.getBytes(UTF_8);
+    writeInt(1);
+    writeInt(bytes.length);
+    myOut.write(bytes);
+  }
+
+  // zig-zag encoded, so small negative numbers like an unknown line are short too
+  private void writeInt(int value) throws IOException {
+    writeLong(value);
+  }
+
+  private void writeLong(long value) throws IOException {
+    long v = (value << 1) ^ (value >> 63);
+    while ((v & ~0x7FL) != 0) {
+      myOut.write((int)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    myOut.write((int)v);
+  }
+
+  private static final class Replay {
+    @NotNull
+    private final DataInputStream myIn;
+    @Nullable
+    private final ParseParameters myParameters;
+    @NotNull
+    private final List<String> myStrings = new ArrayList<String>();
+    @Nullable
+    private InspectionReporter myInspectionReporter;
+    @Nullable
+    private DuplicationReporter myDuplicationReporter;
+    @Nullable
+    private TestReporter myTestReporter;
+
+    /**
+     * @param parameters parameters to report to, null to only read the record
+     */
+    private Replay(@NotNull byte[] record, @Nullable ParseParameters parameters) {
+      myIn = new DataInputStream(new ByteArrayInputStream(record));
+      myParameters = parameters;
+    }
+
+    @NotNull
+    private ParsingResult run(@NotNull ParsingResult emptyResult) throws IOException {
+      int event;
+      while ((event = readInt()) != END) {
+        switch (event) {
+          case INSPECTION: {
+            final InspectionResult inspection = new InspectionResult(readString(), readString(), readString(), readInt(), readInt());
+            if (myParameters != null) getInspectionReporter().reportInspection(inspection);
+            break;
+          }
+          case INSPECTION_TYPE: {
+            final InspectionTypeResult inspectionType = new InspectionTypeResult(readString(), readString(), readString(), readString());
+            if (myParameters != null) getInspectionReporter().reportInspectionType(inspectionType);
+            break;
+          }
+          case MARK_INSPECTIONS_BUILD: {
+            if (myParameters != null && getInspectionReporter() instanceof InspectionsBuildMarker) {
+              ((InspectionsBuildMarker)getInspectionReporter()).markBuildAsInspectionsBuild();
+            }
+            break;
+          }
+          case START_DUPLICATES: {
+            if (myParameters != null) getDuplicationReporter().startDuplicates();
+            break;
+          }
+          case DUPLICATE: {
+            final DuplicationResult duplicate = new DuplicationResult(readInt(), readInt());
+            duplicate.setHash(readInt());
+            final int fragments = readInt();
+            for (int i = 0; i < fragments; ++i) {
+              final String path = readString();
+              if (path == null) throw corrupted();
+              final DuplicatingFragment fragment = new DuplicatingFragment(path, readInt());
+              fragment.setHash(readInt());
+              duplicate.addFragment(fragment);
+            }
+            if (myParameters != null) getDuplicationReporter().reportDuplicate(duplicate);
+            break;
+          }
+          case FINISH_DUPLICATES: {
+            if (myParameters != null) getDuplicationReporter().finishDuplicates();
+            break;
+          }
+          case OPEN_TEST_SUITE: {
+            final String name = readNotNullString();
+            if (myParameters != null) getTestReporter().openTestSuite(name);
+            break;
+          }
+          case OPEN_TEST: {
+            final String name = readNotNullString();
+            if (myParameters != null) getTestReporter().openTest(name);
+            break;
+          }
+          case TEST_STD_OUTPUT: {
+            final String text = readNotNullString();
+            if (myParameters != null) getTestReporter().testStdOutput(text);
+            break;
+          }
+          case TEST_ERR_OUTPUT: {
+            final String text = readNotNullString();
+            if (myParameters != null) getTestReporter().testErrOutput(text);
+            break;
+          }
+          case TEST_FAIL: {
+            final String error = readString();
+            final String stacktrace = readString();
+            if (myParameters != null) getTestReporter().testFail(error, stacktrace);
+            break;
+          }
+          case TEST_IGNORED: {
+            final String message = readNotNullString();
+            if (myParameters != null) getTestReporter().testIgnored(message);
+            break;
+          }
+          case CLOSE_TEST: {
+            final long duration = readLong();
+            if (myParameters != null) getTestReporter().closeTest(duration);
+            break;
+          }
+          case CLOSE_TEST_SUITE: {
+            if (myParameters != null) getTestReporter().closeTestSuite();
+            break;
+          }
+          case INFO:
+          case WARNING:
+          case ERROR:
+          case FAILURE: {
+            final String message = readNotNullString();
+            final int reporter = readInt();
+            if (reporter < INSPECTION_REPORTER || reporter > TEST_REPORTER) throw corrupted();
+            if (myParameters != null) logMessage(getMessageLogger(reporter), event, message);
+            break;
+          }
+          default:
+            throw corrupted();
+        }
+      }
+      return readResult(emptyResult);
+    }
+
+    @NotNull
+    private ParsingResult readResult(@NotNull ParsingResult emptyResult) throws IOException {
+      switch (readInt()) {
+        case INSPECTION_RESULT: {
+          final InspectionParsingResult result = new InspectionParsingResult(readInt(), readInt(), readInt());
+          if (!(emptyResult instanceof InspectionParsingResult)) throw corrupted();
+          if (myParameters != null) emptyResult.accumulate(result);
+          return emptyResult;
+        }
+        case TEST_RESULT: {
+          final TestParsingResult result = new TestParsingResult(readInt(), readInt());
+          if (!(emptyResult instanceof TestParsingResult)) throw corrupted();
+          if (myParameters != null) emptyResult.accumulate(result);
+          return emptyResult;
+        }
+        case DUPLICATION_RESULT: {
+          final int duplicates = readInt();
+          if (!(emptyResult instanceof DuplicationParsingResult)) throw corrupted();
+          if (myParameters != null) ((DuplicationParsingResult)emptyResult).addDuplicates(duplicates);
+          return emptyResult;
+        }
+        case NO_RESULT:
+          return emptyResult;
+        default:
+          throw corrupted();
+      }
+    }
+
+    private static void logMessage(@NotNull MessageLogger logger, int event, @NotNull String message) {
+      switch (event) {
+        case INFO: logger.info(message); break;
+        case WARNING: logger.warning(message); break;
+        case ERROR: logger.error(message); break;
+        default: logger.failure(message);
+      }
+    }
+
+    @NotNull
+    private MessageLogger getMessageLogger(int reporter) {
+      switch (reporter) {
+        case INSPECTION_REPORTER: return getInspectionReporter();
+        case DUPLICATION_REPORTER: return getDuplicationReporter();
+        default: return getTestReporter();
+      }
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @NotNull
+    private InspectionReporter getInspectionReporter() {
+      if (myInspectionReporter == null) myInspectionReporter = myParameters.getInspectionReporter();
+      return myInspectionReporter;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @NotNull
+    private DuplicationReporter getDuplicationReporter() {
+      if (myDuplicationReporter == null) myDuplicationReporter = myParameters.getDuplicationReporter();
+      return myDuplicationReporter;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @NotNull
+    private TestReporter getTestReporter() {
+      if (myTestReporter == null) myTestReporter = myParameters.getTestReporter();
+      return myTestReporter;
+    }
+
+    @NotNull
+    private String readNotNullString() throws IOException {
+      final String s = readString();
+      if (s == null) throw corrupted();
+      return s;
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+      final int code = readInt();
+      if (code == 0) return null;
+      if (code == 1) {
+        final int length = readInt();
+        if (length < 0 || length > myIn.available()) throw corrupted();
+        final byte[] bytes = new byte[length];
+        myIn.readFully(bytes);
+        final String s = new String(bytes, UTF_8);
+        myStrings.add(s);
+        return s;
+      }
+      final int index = code - 2;
+      if (index < 0 || index >= myStrings.size()) throw corrupted();
+      return myStrings.get(index);
+    }
+
+    private int readInt() throws IOException {
+      final long value = readLong();
+      if (value != (int)value) throw corrupted();
+      return (int)value;
+    }
+
+    private long readLong() throws IOException {
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final int b = myIn.readUnsignedByte();
+        v |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return (v >>> 1) ^ -(v & 1);
+      }
+      throw corrupted();
+    }
+
+    @NotNull
+    private static IOException corrupted() {
+      return new IOException("Corrupted report events record");
+    }
+  }
+
+  private final class RecordingParseParameters implements ParseParameters {
+    @NotNull
+    private final ParseParameters myDelegate;
+
+    private RecordingParseParameters(@NotNull ParseParameters delegate) {
+      myDelegate = delegate;
+    }
+
+    public boolean isVerbose() {
+      return myDelegate.isVerbose();
+    }
+
+    @NotNull
+    public BuildProgressLogger getThreadLogger() {
+      return myDelegate.getThreadLogger();
+    }
+
+    @NotNull
+    public InspectionReporter getInspectionReporter() {
+      return new RecordingInspectionReporter(myDelegate.getInspectionReporter());
+    }
+
+    @NotNull
+    public DuplicationReporter getDuplicationReporter() {
+      return new RecordingDuplicationReporter(myDelegate.getDuplicationReporter());
+    }
+
+    @NotNull
+    public TestReporter getTestReporter() {
+      return new RecordingTestReporter(myDelegate.getTestReporter());
+    }
+
+    @NotNull
+    public Map<String, String> getParameters() {
+      return myDelegate.getParameters();
+    }
+
+    @NotNull
+    public String getType() {
+      return myDelegate.getType();
+    }
+
+    @NotNull
+    public File getCheckoutDir() {
+      return myDelegate.getCheckoutDir();
+    }
+  }
+
+  private abstract class RecordingMessageLogger implements MessageLogger {
+    @NotNull
+    private final MessageLogger myDelegate;
+    private final int myReporter;
+
+    private RecordingMessageLogger(@NotNull MessageLogger delegate, int reporter) {
+      myDelegate = delegate;
+      myReporter = reporter;
+    }
+
+    public void info(@NotNull String message) {
+      recordMessage(INFO, myReporter, message);
+      myDelegate.info(message);
+    }
+
+    public void warning(@NotNull String message) {
+      recordMessage(WARNING, myReporter, message);
+      myDelegate.warning(message);
+    }
+
+    public void error(@NotNull String message) {
+      recordMessage(ERROR, myReporter, message);
+      myDelegate.error(message);
+    }
+
+    public void failure(@NotNull String message) {
+      recordMessage(FAILURE, myReporter, message);
+      myDelegate.failure(message);
+    }
+  }
+
+  private final class RecordingInspectionReporter extends RecordingMessageLogger implements InspectionReporter, InspectionsBuildMarker {
+    @NotNull
+    private final InspectionReporter myDelegate;
+
+    private RecordingInspectionReporter(@NotNull InspectionReporter delegate) {
+      super(delegate, INSPECTION_REPORTER);
+      myDelegate = delegate;
+    }
+
+    public void reportInspection(@NotNull InspectionResult inspection) {
+      recordInspection(inspection);
+      myDelegate.reportInspection(inspection);
+    }
+
+    public void reportInspections(@NotNull List<InspectionResult> inspections) {
+      for (InspectionResult inspection : inspections) {
+        recordInspection(inspection);
+      }
+      myDelegate.reportInspections(inspections);
+    }
+
+    public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+      recordInspectionType(inspectionType);
+      myDelegate.reportInspectionType(inspectionType);
+    }
+
+    public void markBuildAsInspectionsBuild() {
+      if (myDelegate instanceof InspectionsBuildMarker) {
+        record(MARK_INSPECTIONS_BUILD);
+        ((InspectionsBuildMarker)myDelegate).markBuildAsInspectionsBuild();
+      }
+    }
+  }
+
+  private final class RecordingDuplicationReporter extends RecordingMessageLogger implements DuplicationReporter {
+    @NotNull
+    private final DuplicationReporter myDelegate;
+
+    private RecordingDuplicationReporter(@NotNull DuplicationReporter delegate) {
+      super(delegate, DUPLICATION_REPORTER);
+      myDelegate = delegate;
+    }
+
+    public void startDuplicates() {
+      record(START_DUPLICATES);
+      myDelegate.startDuplicates();
+    }
+
+    public void reportDuplicate(@NotNull DuplicationResult duplicate) {
+      recordDuplicate(duplicate);
+      myDelegate.reportDuplicate(duplicate);
+    }
+
+    public void reportDuplicates(@NotNull List<DuplicationResult> duplicates) {
+      for (DuplicationResult duplicate : duplicates) {
+        recordDuplicate(duplicate);
+      }
+      myDelegate.reportDuplicates(duplicates);
+    }
+
+    public void finishDuplicates() {
+      record(FINISH_DUPLICATES);
+      myDelegate.finishDuplicates();
+    }
+  }
+
+  private final class RecordingTestReporter extends RecordingMessageLogger implements TestReporter {
+    @NotNull
+    private final TestReporter myDelegate;
+
+    private RecordingTestReporter(@NotNull TestReporter delegate) {
+      super(delegate, TEST_REPORTER);
+      myDelegate = delegate;
+    }
+
+    public void openTestSuite(@NotNull String name) {
+      record(OPEN_TEST_SUITE, name);
+      myDelegate.openTestSuite(name);
+    }
+
+    public void openTest(@NotNull String name) {
+      record(OPEN_TEST, name);
+      myDelegate.openTest(name);
+    }
+
+    public void testStdOutput(@NotNull String text) {
+      record(TEST_STD_OUTPUT, text);
+      myDelegate.testStdOutput(text);
+    }
+
+    public void testErrOutput(@NotNull String text) {
+      record(TEST_ERR_OUTPUT, text);
+      myDelegate.testErrOutput(text);
+    }
+
+    public void testFail(@Nullable String error, @Nullable String stacktrace) {
+      recordTestFail(error, stacktrace);
+      myDelegate.testFail(error, stacktrace);
+    }
+
+    public void testIgnored(@NotNull String message) {
+      record(TEST_IGNORED, message);
+      myDelegate.testIgnored(message);
+    }
+
+    public void closeTest(long duration) {
+      recordCloseTest(duration);
+      myDelegate.closeTest(duration);
+    }
+
+    public void closeTestSuite() {
+      record(CLOSE_TEST_SUITE);
+      myDelegate.closeTestSuite();
+    }
+  }
+}
@@ -0,0 +1,269 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessage;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects per build timings of report processing: discovery latency (report modification to detection),
+ * time spent in the parsing queue, parse time, bytes read and reported items, per report type and per report.
+ */
+public class ReportParsingMetrics {
+  static final String STATISTIC_PREFIX = "xmlReport.";
+  private static final long MS = 1000000L;
+
+  @NotNull
+  private final Map<String, TypeMetrics> myTypes = new TreeMap<String, TypeMetrics>();
+  @NotNull
+  private final Map<File, ReportMetrics> myReports = new LinkedHashMap<File, ReportMetrics>();
+
+  private int myQueueDepth;
+  private int myMaxQueueDepth;
+  private long myFinishWaitNanos;
+
+  public long reportQueued() {
+    return reportQueued(System.nanoTime());
+  }
+
+  public long reportStarted() {
+    return reportStarted(System.nanoTime());
+  }
+
+  synchronized long reportQueued(long nowNanos) {
+    if (++myQueueDepth > myMaxQueueDepth) myMaxQueueDepth = myQueueDepth;
+    return nowNanos;
+  }
+
+  synchronized long reportStarted(long nowNanos) {
+    --myQueueDepth;
+    return nowNanos;
+  }
+
+  /**
+   * Records one parse of the report
+   * @param discoveryLatencyMillis time between the report modification and its detection
+   * @param bytes number of bytes read, excluding the part skipped when parsing is resumed from a checkpoint
+   * @param items number of tests, inspections or duplicates reported by this parse
+   */
+  public synchronized void reportParsed(@NotNull String type,
+                                        @NotNull File report,
+                                        long discoveryLatencyMillis,
+                                        long queueNanos,
+                                        long parseNanos,
+                                        long bytes,
+                                        int items) {
+    TypeMetrics typeMetrics = myTypes.get(type);
+    if (typeMetrics == null) {
+      typeMetrics = new TypeMetrics();
+      myTypes.put(type, typeMetrics);
+    }
+    ReportMetrics reportMetrics = myReports.get(report);
+    if (reportMetrics == null) {
+      reportMetrics = new ReportMetrics(type);
+      myReports.put(report, reportMetrics);
+      ++typeMetrics.reports;
+    }
+
+    final long latency = Math.max(0, discoveryLatencyMillis);
+    typeMetrics.add(latency, queueNanos, parseNanos, bytes, items);
+    reportMetrics.add(latency, queueNanos, parseNanos, bytes, items);
+  }
+
+  /**
+   * Records time the build waited for reports to be parsed when a build step or the build finished
+   */
+  public synchronized void finishWaited(long nanos) {
+    myFinishWaitNanos += nanos;
+  }
+
+  public synchronized int getReportCount() {
+    return myReports.size();
+  }
+
+  public synchronized int getMaxQueueDepth() {
+    return myMaxQueueDepth;
+  }
+
+  public synchronized long getMaxQueueMillis() {
+    long max = 0;
+    for (TypeMetrics metrics : myTypes.values()) {
+      max = Math.max(max, metrics.maxQueueNanos);
+    }
+    return max / MS;
+  }
+
+  public synchronized long getFinishWaitMillis() {
+    return myFinishWaitNanos / MS;
+  }
+
+  /**
+   * @return statistic values by key, per type values are prefixed with the report type
+   */
+  @NotNull
+  public synchronized Map<String, Long> getStatistics() {
+    final Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+    long parseNanos = 0;
+    for (Map.Entry<String, TypeMetrics> entry : myTypes.entrySet()) {
+      final TypeMetrics metrics = entry.getValue();
+      final String prefix = STATISTIC_PREFIX + entry.getKey() + ".";
+      statistics.put(prefix + "reports", (long)metrics.reports);
+      statistics.put(prefix + "reparses", (long)(metrics.parses - metrics.reports));
+      statistics.put(prefix + "bytes", metrics.bytes);
+      statistics.put(prefix + "items", metrics.items);
+      statistics.put(prefix + "parseTimeMs", metrics.parseNanos / MS);
+      statistics.put(prefix + "queueTimeMs", metrics.queueNanos / MS);
+      statistics.put(prefix + "maxQueueTimeMs", metrics.maxQueueNanos / MS);
+      statistics.put(prefix + "maxDiscoveryLatencyMs", metrics.maxDiscoveryLatencyMillis);
+      parseNanos += metrics.parseNanos;
+    }
+    statistics.put(STATISTIC_PREFIX + "parseTimeMs", parseNanos / MS);
+    statistics.put(STATISTIC_PREFIX + "maxQueueDepth", (long)myMaxQueueDepth);
+    statistics.put(STATISTIC_PREFIX + "finishWaitMs", myFinishWaitNanos / MS);
+    return statistics;
+  }
+
+  public void publishStatistics(@NotNull BuildProgressLogger logger) {
+    for (Map.Entry<String, Long> entry : getStatistics().entrySet()) {
+      final Map<String, String> attributes = new LinkedHashMap<String, String>();
+      attributes.put("key", entry.getKey());
+      attributes.put("value", String.valueOf(entry.getValue()));
+      logger.message(ServiceMessage.asString("buildStatisticValue", attributes));
+    }
+  }
+
+  @NotNull
+  public synchronized String toJson() {
+    final StringBuilder json = new StringBuilder("{\n");
+    json.append("  \"maxQueueDepth\": ").append(myMaxQueueDepth).append(",\n");
+    json.append("  \"finishWaitMs\": ").append(myFinishWaitNanos / MS).append(",\n");
+
+    json.append("  \"types\": {");
+    boolean first = true;
+    for (Map.Entry<String, TypeMetrics> entry : myTypes.entrySet()) {
+      json.append(first ? "\n" : ",\n");
+      first = false;
+      final TypeMetrics metrics = entry.getValue();
+      json.append("    ").append(quote(entry.getKey())).append(": {\"reports\": ").append(metrics.reports);
+      metrics.appendJson(json);
+      json.append("}");
+    }
+    json.append(first ? "},\n" : "\n  },\n");
+
+    json.append("  \"reports\": [");
+    first = true;
+    for (Map.Entry<File, ReportMetrics> entry : myReports.entrySet()) {
+      json.append(first ? "\n" : ",\n");
+      first = false;
+      final ReportMetrics metrics = entry.getValue();
+      json.append("    {\"path\": ").append(quote(entry.getKey().getAbsolutePath()))
+          .append(", \"type\": ").append(quote(metrics.type))
+          .append(", \"lastDiscoveryLatencyMs\": ").append(metrics.lastDiscoveryLatencyMillis);
+      metrics.appendJson(json);
+      json.append("}");
+    }
+    json.append(first ? "]\n" : "\n  ]\n");
+    return json.append("}\n").toString();
+  }
+
+  public void writeJson(@NotNull File file) throws IOException {
+    FileUtil.createParentDirs(file);
+    FileUtil.writeFile(file, toJson(), "UTF-8");
+  }
+
+  /**
+   * @return number of tests, inspections or duplicates reported by the parse which produced the result
+   */
+  static int getReportedItems(@NotNull ParsingResult result, @Nullable ParsingResult prevResult) {
+    return Math.max(0, countItems(result) - (prevResult == null ? 0 : countItems(prevResult)));
+  }
+
+  private static int countItems(@NotNull ParsingResult result) {
+    if (result instanceof TestParsingResult) {
+      return ((TestParsingResult)result).getTests();
+    }
+    if (result instanceof InspectionParsingResult) {
+      final InspectionParsingResult inspections = (InspectionParsingResult)result;
+      return inspections.getErrors() + inspections.getWarnings() + inspections.getInfos();
+    }
+    if (result instanceof DuplicationParsingResult) {
+      return ((DuplicationParsingResult)result).getDuplicates();
+    }
+    return 0;
+  }
+
+  @NotNull
+  private static String quote(@NotNull String s) {
+    final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      final char c = s.charAt(i);
+      switch (c) {
+        case '"': sb.append("\\\""); break;
+        case '\\': sb.append("\\\\"); break;
+        case '\n': sb.append("\\n"); break;
+        case '\r': sb.append("\\r"); break;
+        case '\t': sb.append("\\t"); break;
+        default:
+          if (c < 0x20) sb.append(String.format("\\u%04x", (int)c));
+          else sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  private static class ParseMetrics {
+    int parses;
+    long queueNanos;
+    long maxQueueNanos;
+    long parseNanos;
+    long bytes;
+    long items;
+    long maxDiscoveryLatencyMillis;
+
+    void add(long discoveryLatencyMillis, long queueNanos, long parseNanos, long bytes, int items) {
+      ++parses;
+      this.queueNanos += queueNanos;
+      this.maxQueueNanos = Math.max(this.maxQueueNanos, queueNanos);
+      this.parseNanos += parseNanos;
+      this.bytes += bytes;
+      this.items += items;
+      this.maxDiscoveryLatencyMillis = Math.max(this.maxDiscoveryLatencyMillis, discoveryLatencyMillis);
+    }
+
+    void appendJson(@NotNull StringBuilder json) {
+      json.append(", \"parses\": ").append(parses)
+          .append(", \"maxDiscoveryLatencyMs\": ").append(maxDiscoveryLatencyMillis)
+          .append(", \"queueTimeMs\": ").append(queueNanos / MS)
+          .append(", \"maxQueueTimeMs\": ").append(maxQueueNanos / MS)
+          .append(", \"parseTimeMs\": ").append(parseNanos / MS)
+          .append(", \"bytes\": ").append(bytes)
+          .append(", \"items\": ").append(items);
+    }
+  }
+
+  private static final class TypeMetrics extends ParseMetrics {
+    int reports;
+  }
+
+  private static final class ReportMetrics extends ParseMetrics {
+    @NotNull final String type;
+    long lastDiscoveryLatencyMillis;
+
+    ReportMetrics(@NotNull String type) {
+      this.type = type;
+    }
+
+    @Override
+    void add(long discoveryLatencyMillis, long queueNanos, long parseNanos, long bytes, int items) {
+      super.add(discoveryLatencyMillis, queueNanos, parseNanos, bytes, items);
+      lastDiscoveryLatencyMillis = discoveryLatencyMillis;
+    }
+  }
+}
@@ -31,5 +31,16 @@ public interface ReportStateHolder {
   @NotNull ReportState getReportState(@NotNull File report);
   @Nullable Long getLastModified(@NotNull File report);
   @Nullable Long getLength(@NotNull File report);
+
+  /**
+   * @return offset parsing of a partially processed report will be resumed from or null if it will be parsed from the beginning
+   */
+  @Nullable Long getCheckpointOffset(@NotNull File report);
   void setReportState(@NotNull File report, @NotNull ReportState state, long lastModified, long length);
+
+  /**
+   * Atomically sets the report state if its current state is the expected one
+   * @return true if the state was set
+   */
+  boolean compareAndSetReportState(@NotNull File report, @NotNull ReportState expected, @NotNull ReportState state, long lastModified, long length);
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches report directories for changes using {@link WatchService}.
+ * Each {@link Subscription} receives paths created or modified under its roots
+ * and falls back to a full rescan when events can't be trusted (overflow, new directories, registration problems).
+ */
+public class ReportWatcher {
+  // events usually come in bursts while a report is written, give them a chance to coalesce
+  private static final long EVENTS_COALESCE_MILLIS = 20L;
+  // safety net for file systems which lose events
+  private static final long FULL_RESCAN_INTERVAL_MILLIS = 60 * 1000L;
+
+  @NotNull
+  private final WatchService myWatchService;
+  @NotNull
+  private final Map<WatchKey, Path> myKeys = new ConcurrentHashMap<WatchKey, Path>();
+  @NotNull
+  private final List<Subscription> mySubscriptions = new CopyOnWriteArrayList<Subscription>();
+
+  private volatile boolean myClosed;
+
+  private ReportWatcher(@NotNull WatchService watchService) {
+    myWatchService = watchService;
+  }
+
+  @Nullable
+  public static ReportWatcher create() {
+    try {
+      return new ReportWatcher(FileSystems.getDefault().newWatchService());
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to create report watch service, reports will be discovered by rescanning: " + e.getMessage());
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  @NotNull
+  public Subscription subscribe(@NotNull Collection<File> roots) {
+    final Subscription subscription = new Subscription(roots);
+    mySubscriptions.add(subscription);
+    subscription.registerPendingRoots();
+    return subscription;
+  }
+
+  /**
+   * Waits for file system events and dispatches them to subscriptions
+   * @param timeoutMillis maximum time to wait
+   * @return true if any event was received
+   */
+  public boolean awaitChanges(long timeoutMillis) throws InterruptedException {
+    if (myClosed) {
+      Thread.sleep(timeoutMillis);
+      return false;
+    }
+    WatchKey key;
+    InterruptedException interrupted = null;
+    try {
+      key = myWatchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      if (key == null) return false;
+
+      // a polled key isn't queued again until it's reset, so it's processed even if the wait is interrupted
+      try {
+        Thread.sleep(EVENTS_COALESCE_MILLIS);
+      } catch (InterruptedException e) {
+        interrupted = e;
+      }
+      while (key != null) {
+        processKey(key);
+        key = myWatchService.poll();
+      }
+    } catch (ClosedWatchServiceException e) {
+      return false;
+    }
+    if (interrupted != null) throw interrupted;
+    return true;
+  }
+
+  public void close() {
+    myClosed = true;
+    mySubscriptions.clear();
+    myKeys.clear();
+    try {
+      myWatchService.close();
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to close report watch service", e);
+    }
+  }
+
+  private void processKey(@NotNull WatchKey key) {
+    final Path dir = myKeys.get(key);
+    try {
+      if (dir == null) return;
+      for (WatchEvent<?> event : key.pollEvents()) {
+        final WatchEvent.Kind<?> kind = event.kind();
+        if (kind == OVERFLOW) {
+          requestRescan(null);
+          continue;
+        }
+        final Path path = dir.resolve((Path)event.context());
+        if (kind == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+          // files may have appeared before the directory got registered
+          register(path);
+          requestRescan(path.toFile());
+        } else if (kind == ENTRY_CREATE || kind == ENTRY_MODIFY) {
+          fileChanged(path.toFile());
+        }
+      }
+    } finally {
+      if (!key.reset()) {
+        myKeys.remove(key);
+      }
+    }
+  }
+
+  private void fileChanged(@NotNull File file) {
+    for (Subscription subscription : mySubscriptions) {
+      if (subscription.isUnderRoots(file)) subscription.addChange(file);
+    }
+  }
+
+  private void requestRescan(@Nullable File dir) {
+    for (Subscription subscription : mySubscriptions) {
+      if (dir == null || subscription.isUnderRoots(dir)) subscription.requestRescan();
+    }
+  }
+
+  private boolean register(@NotNull Path root) {
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+          myKeys.put(dir.register(myWatchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      return true;
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to watch " + root + " for reports, falling back to rescanning: " + e.getMessage());
+      return false;
+    } catch (ClosedWatchServiceException e) {
+      return false;
+    }
+  }
+
+  public final class Subscription {
+    @NotNull
+    private final Collection<File> myRoots;
+    @NotNull
+    private final List<File> myPendingRoots;
+    @NotNull
+    private final Set<File> myChanges = new LinkedHashSet<File>();
+    private boolean myRescanRequired = true;
+    private boolean myBroken = false;
+    private long myLastRescan;
+
+    private Subscription(@NotNull Collection<File> roots) {
+      myRoots = roots;
+      myPendingRoots = new ArrayList<File>(roots);
+    }
+
+    /**
+     * Returns files changed since the previous call or null if a full rescan is required
+     */
+    @Nullable
+    public synchronized Collection<File> drainChanges() {
+      if (!myPendingRoots.isEmpty()) registerPendingRoots();
+
+      final long now = System.currentTimeMillis();
+      if (myBroken || myRescanRequired || now - myLastRescan > FULL_RESCAN_INTERVAL_MILLIS) {
+        myRescanRequired = false;
+        myLastRescan = now;
+        myChanges.clear();
+        return null;
+      }
+      if (myChanges.isEmpty()) return Collections.emptyList();
+
+      final List<File> changes = new ArrayList<File>(myChanges);
+      myChanges.clear();
+      return changes;
+    }
+
+    private synchronized void registerPendingRoots() {
+      for (Iterator<File> it = myPendingRoots.iterator(); it.hasNext(); ) {
+        final File root = it.next();
+        if (!root.isDirectory()) continue;
+        it.remove();
+        if (!register(root.toPath())) myBroken = true;
+        myRescanRequired = true;
+      }
+    }
+
+    private synchronized void addChange(@NotNull File file) {
+      myChanges.add(file);
+    }
+
+    private synchronized void requestRescan() {
+      myRescanRequired = true;
+    }
+
+    private boolean isUnderRoots(@NotNull File file) {
+      for (File root : myRoots) {
+        if (FileUtil.isAncestor(root, file, false)) return true;
+      }
+      return false;
+    }
+  }
+}
@@ -3,8 +3,11 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -15,4 +18,21 @@ public interface Rules {
   @NotNull Collection<String> getBody();
   @NotNull Collection<File> getPaths();
   @NotNull Collection<File> collectFiles();
+
+  /**
+   * Collects the regular files among {@link #collectFiles()} along with their attributes,
+   * may reuse directory listings which haven't changed since the previous call
+   */
+  @NotNull Map<File, BasicFileAttributes> scanFiles();
+
+  /**
+   * @return directories containing all the files matched by these rules
+   * or null if the rules can't be checked against a single file and must be scanned
+   */
+  @Nullable Collection<File> getWatchRoots();
+
+  /**
+   * Checks a single file, is only called when {@link #getWatchRoots()} is not null
+   */
+  boolean matches(@NotNull File file);
 }
\ No newline at end of file
@@ -8,7 +8,6 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -42,8 +41,8 @@ public class RulesContext {
     }
   }
 
-  public void addParseTask(@NotNull final ExecutorService executor, @NotNull final ParseReportCommand command) {
-    final ExecuteTask task = new CommandTask(executor, command);
+  public void addParseTask(@NotNull final ParseTaskScheduler scheduler, @NotNull final ParseReportCommand command) {
+    final ExecuteTask task = new CommandTask(scheduler, command);
     final ParserFactory.ParsingStage stage = command.getParsingStage();
     switch (stage) {
       case RUNTIME:
@@ -55,14 +54,23 @@ public class RulesContext {
     myExecutedTasks.get(stage).add(task);
   }
 
-  public void addParseFactory(@NotNull final ParserFactory factory) {
-    myExecutedTasks.get(factory.getParsingStage()).add(new FactoryTask(factory, getRulesData(), getRulesState()));
+  public void addParseFactory(@NotNull final ParserFactory factory,
+                              @NotNull final ParseTaskScheduler scheduler,
+                              @NotNull final ParsingServices services) {
+    myExecutedTasks.get(factory.getParsingStage()).add(new FactoryTask(factory, scheduler, getRulesData(), getRulesState(), services));
   }
 
-  public void finish() throws ExecutionException, InterruptedException {
+  /**
+   * Submits parsing of reports processed before build finish, so reports of several rules are parsed at once
+   */
+  public void startBeforeFinishParsing() {
     for (ExecuteTask task : myExecutedTasks.get(BEFORE_FINISH)) {
       task.start();
     }
+  }
+
+  public void finish() throws ExecutionException, InterruptedException {
+    startBeforeFinishParsing();
     for (List<ExecuteTask> tasks : myExecutedTasks.values()) {
       for (ExecuteTask task : tasks) {
         task.join();
@@ -110,44 +118,64 @@ public class RulesContext {
     @NotNull
     private final ParserFactory myFactory;
     @NotNull
+    private final ParseTaskScheduler myScheduler;
+    @NotNull
     private final XmlReportPlugin.RulesData myRulesData;
     @NotNull
     private final RulesState myRulesState;
-
-    public FactoryTask(@NotNull final ParserFactory factory, @NotNull final XmlReportPlugin.RulesData rulesData, @NotNull final RulesState rulesState) {
+    @NotNull
+    private final ParsingServices myServices;
+    @Nullable
+    private List<Future<?>> myParseTasks;
+
+    public FactoryTask(@NotNull final ParserFactory factory,
+                       @NotNull final ParseTaskScheduler scheduler,
+                       @NotNull final XmlReportPlugin.RulesData rulesData,
+                       @NotNull final RulesState rulesState,
+                       @NotNull final ParsingServices services) {
       myFactory = factory;
+      myScheduler = scheduler;
       myRulesData = rulesData;
       myRulesState = rulesState;
+      myServices = services;
     }
 
     @Override
-    public void start() {
+    public synchronized void start() {
+      if (myParseTasks != null) return;
+      final List<ParseReportCommand> commands = new ArrayList<ParseReportCommand>();
       for (File file : myRulesData.getMonitorRulesParameters().getRules().collectFiles()) {
-        final ParseReportCommand command = new ParseReportCommand(file, myRulesData.getParseReportParameters(), myRulesState, myFactory);
-        command.run();
+        commands.add(new ParseReportCommand(file, myRulesData.getParseReportParameters(), myRulesState, myFactory, myServices));
       }
+      myParseTasks = myScheduler.submitAll(commands);
     }
 
     @Override
-    public void join() {
+    public void join() throws ExecutionException, InterruptedException {
+      final List<Future<?>> parseTasks;
+      synchronized (this) {
+        parseTasks = myParseTasks;
+      }
+      if (parseTasks == null) return;
+      for (Future<?> parseTask : parseTasks) {
+        parseTask.get();
+      }
     }
   }
 
   private static class CommandTask implements ExecuteTask {
     @NotNull private final ParseReportCommand myCommand;
-    @NotNull private final ExecutorService myExecutor;
+    @NotNull private final ParseTaskScheduler myScheduler;
     @Nullable private Future<?> myParseTask;
 
-    public CommandTask(@NotNull final ExecutorService executor, @NotNull final ParseReportCommand command) {
+    public CommandTask(@NotNull final ParseTaskScheduler scheduler, @NotNull final ParseReportCommand command) {
       myCommand = command;
-      myExecutor = executor;
+      myScheduler = scheduler;
     }
 
     @Override
     public void start() {
-      synchronized (myExecutor) {
-        myParseTask = myExecutor.submit(myCommand);
-      }
+      myParseTask = myScheduler.submit(myCommand);
     }
 
     @Override
@@ -3,123 +3,176 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * User: vbedrosova
- * Date: 20.01.11
- * Time: 16:52
+ * Report states are immutable snapshots replaced atomically per report, so the monitor thread
+ * and parsing threads don't contend on a single lock. Reports are also indexed by state,
+ * which makes the statistics independent of the total number of reports.
  */
 public class RulesState implements ReportStateHolder {
   @NotNull
-  private final Map<File, FileState> myParsingResults = new HashMap<>();
+  private final ConcurrentMap<File, FileState> myParsingResults = new ConcurrentHashMap<>();
+  @NotNull
+  private final Map<ReportState, Set<File>> myStateIndex = new EnumMap<>(ReportState.class);
+
+  public RulesState() {
+    for (ReportState state : ReportState.values()) {
+      myStateIndex.put(state, ConcurrentHashMap.<File>newKeySet());
+    }
+  }
 
   @NotNull
   @Override
-  public synchronized ReportState getReportState(@NotNull final File report) {
+  public ReportState getReportState(@NotNull final File report) {
     FileState store = myParsingResults.get(report);
     return store != null ? store.reportState : ReportState.UNKNOWN;
   }
 
   @Nullable
   @Override
-  public synchronized Long getLastModified(@NotNull final File report) {
+  public Long getLastModified(@NotNull final File report) {
     FileState store = myParsingResults.get(report);
     return store != null ? store.lastModified : null;
   }
 
   @Nullable
   @Override
-  public synchronized Long getLength(@NotNull final File report) {
+  public Long getLength(@NotNull final File report) {
     FileState store = myParsingResults.get(report);
     return store != null ? store.length : null;
   }
 
-  public synchronized void setReportState(@NotNull final File report, @NotNull final ReportState state, @Nullable ParsingResult parsingResult) {
-    FileState fileState = myParsingResults.get(report);
-    if (fileState == null) {
-      fileState = new FileState(report.lastModified(), report.length());
-        myParsingResults.put(report, fileState);
-    }
-    fileState.reportState = state;
-    fileState.parsingResult = parsingResult;
+  @Nullable
+  @Override
+  public Long getCheckpointOffset(@NotNull final File report) {
+    FileState store = myParsingResults.get(report);
+    if (store == null || !(store.parsingResult instanceof TestParsingResult)) return null;
+    final ReportCheckpoint checkpoint = ((TestParsingResult)store.parsingResult).getCheckpoint();
+    return checkpoint == null ? null : checkpoint.getOffset();
+  }
+
+  public void setReportState(@NotNull final File report, @NotNull final ReportState state, @Nullable final ParsingResult parsingResult) {
+    // read before locking the map, only used if the report is new
+    final long lastModified = report.lastModified();
+    final long length = report.length();
+    myParsingResults.compute(report, new BiFunction<File, FileState, FileState>() {
+      public FileState apply(@NotNull File file, @Nullable FileState fileState) {
+        final FileState newState = fileState == null
+                                   ? new FileState(state, lastModified, length, parsingResult)
+                                   : new FileState(state, fileState.lastModified, fileState.length, parsingResult);
+        updateIndex(file, fileState, newState);
+        return newState;
+      }
+    });
   }
 
   @Override
-  public synchronized void setReportState(@NotNull final File report, @NotNull final ReportState state, final long lastModified, final long length) {
-    FileState fileState = myParsingResults.get(report);
-    if (fileState == null) {
-      fileState = new FileState(lastModified, length);
-      myParsingResults.put(report, fileState);
-    }
-    fileState.reportState = state;
-    fileState.lastModified = lastModified;
-    fileState.length = length;
+  public void setReportState(@NotNull final File report, @NotNull final ReportState state, final long lastModified, final long length) {
+    myParsingResults.compute(report, new BiFunction<File, FileState, FileState>() {
+      public FileState apply(@NotNull File file, @Nullable FileState fileState) {
+        final FileState newState = new FileState(state, lastModified, length, fileState == null ? null : fileState.parsingResult);
+        updateIndex(file, fileState, newState);
+        return newState;
+      }
+    });
   }
 
+  @Override
+  public boolean compareAndSetReportState(@NotNull final File report,
+                                          @NotNull final ReportState expected,
+                                          @NotNull final ReportState state,
+                                          final long lastModified,
+                                          final long length) {
+    final boolean[] set = {false};
+    myParsingResults.compute(report, new BiFunction<File, FileState, FileState>() {
+      public FileState apply(@NotNull File file, @Nullable FileState fileState) {
+        final ReportState current = fileState == null ? ReportState.UNKNOWN : fileState.reportState;
+        if (current != expected) return fileState;
+
+        final FileState newState = new FileState(state, lastModified, length, fileState == null ? null : fileState.parsingResult);
+        updateIndex(file, fileState, newState);
+        set[0] = true;
+        return newState;
+      }
+    });
+    return set[0];
+  }
+
+  // called under the map lock of the report, so the index follows its state transitions
+  private void updateIndex(@NotNull File report, @Nullable FileState oldState, @NotNull FileState newState) {
+    if (oldState != null) {
+      if (oldState.reportState == newState.reportState) return;
+      myStateIndex.get(oldState.reportState).remove(report);
+    }
+    myStateIndex.get(newState.reportState).add(report);
+  }
 
   @Nullable
-  public synchronized ParsingResult getParsingResult(@NotNull File report) {
+  public ParsingResult getParsingResult(@NotNull File report) {
     final FileState state = myParsingResults.get(report);
     return state == null ? null : state.parsingResult;
   }
 
-  @NotNull
-  public synchronized Map<File, ParsingResult> getProcessedFiles() {
-    final Map<File, ParsingResult> res = new HashMap<>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
+  /**
+   * @return number of reports in the specified state
+   */
+  public int getReportCount(@NotNull ReportState state) {
+    return myStateIndex.get(state).size();
+  }
 
-      if (value.reportState == ReportState.PROCESSED) {
-        res.put(key, value.parsingResult);
-      }
-    }
-    return res;
+  @NotNull
+  public Map<File, ParsingResult> getProcessedFiles() {
+    return getFilesWithResults(ReportState.PROCESSED);
   }
 
   @NotNull
-  public synchronized Map<File, ParsingResult> getFailedToProcessFiles() {
-    final Map<File, ParsingResult> res = new HashMap<>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
+  public Map<File, ParsingResult> getFailedToProcessFiles() {
+    return getFilesWithResults(ReportState.ERROR);
+  }
 
-      if (value.reportState == ReportState.ERROR) {
-        res.put(key, value.parsingResult);
+  @NotNull
+  public List<File> getOutOfDateFiles() {
+    final List<File> res = new ArrayList<>();
+    for (File file : myStateIndex.get(ReportState.OUT_OF_DATE)) {
+      final FileState value = myParsingResults.get(file);
+      if (value != null && value.reportState == ReportState.OUT_OF_DATE) {
+        res.add(file);
       }
     }
     return res;
   }
 
   @NotNull
-  public synchronized List<File> getOutOfDateFiles() {
-    final List<File> res = new ArrayList<>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
-
-      if (value.reportState == ReportState.OUT_OF_DATE) {
-        res.add(key);
+  private Map<File, ParsingResult> getFilesWithResults(@NotNull ReportState state) {
+    final Map<File, ParsingResult> res = new HashMap<>();
+    for (File file : myStateIndex.get(state)) {
+      final FileState value = myParsingResults.get(file);
+      if (value != null && value.reportState == state) {
+        res.put(file, value.parsingResult);
       }
     }
     return res;
   }
 
   private static final class FileState {
-    @Nullable private Long lastModified;
-    @Nullable private Long length;
-    @Nullable private ParsingResult parsingResult;
-    private ReportState reportState = ReportState.UNKNOWN;
+    @NotNull private final ReportState reportState;
+    private final long lastModified;
+    private final long length;
+    @Nullable private final ParsingResult parsingResult;
 
-    private FileState(long lastModified, long length) {
+    private FileState(@NotNull ReportState reportState, long lastModified, long length, @Nullable ParsingResult parsingResult) {
+      this.reportState = reportState;
       this.lastModified = lastModified;
       this.length = length;
+      this.parsingResult = parsingResult;
     }
   }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -13,6 +14,8 @@ import jetbrains.buildServer.ExtensionsProvider;
 import jetbrains.buildServer.agent.*;
 import jetbrains.buildServer.agent.duplicates.DuplicatesReporter;
 import jetbrains.buildServer.agent.impl.MessageTweakingSupport;
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessage;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.util.*;
 import jetbrains.buildServer.util.executors.ExecutorsFactory;
 import jetbrains.buildServer.util.impl.Lazy;
@@ -21,7 +24,9 @@ import jetbrains.buildServer.util.positioning.PositionConstraint;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.TeamCityDuplicationReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeRegistry;
 import jetbrains.buildServer.xmlReportPlugin.inspections.TeamCityInspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.LimitingTestReporter;
 import jetbrains.buildServer.xmlReportPlugin.tests.TeamCityTestReporter;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
@@ -34,6 +39,14 @@ import static jetbrains.buildServer.xmlReportPlugin.XmlReportPluginUtil.*;
 
 public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProcessor, PositionAware {
   private static final Pattern SPLIT_RULES = Pattern.compile(XmlReportPluginConstants.SPLIT_REGEX);
+  public static final String TEAMCITY_PROPERTY_PARSING_THREADS = "teamcity.xmlReport.parsingThreads";
+  public static final String TEAMCITY_PROPERTY_WATCH_REPORTS = "teamcity.xmlReport.watchReports";
+  public static final String TEAMCITY_PROPERTY_PUBLISH_METRICS = "teamcity.xmlReport.metrics.publishStatistics";
+  public static final String TEAMCITY_PROPERTY_METRICS_FILE = "teamcity.xmlReport.metrics.writeToAgentLogs";
+
+  private static final String TEST_OUTPUT_DIRECTORY = "xmlReportPlugin/testOutput";
+  private static final String TEST_OUTPUT_ARTIFACTS_PATH = ".teamcity/xmlReportPlugin/testOutput";
+
   @NotNull
   private final jetbrains.buildServer.agent.inspections.InspectionReporter myInspectionReporter;
   @NotNull
@@ -45,6 +58,22 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
   @NotNull
   private final ExecutorService myParseExecutor;
+  @NotNull
+  private final ParseTaskScheduler myParseScheduler;
+  private final int myParseThreads;
+  @NotNull
+  private volatile ParallelParsingStatistics myParsingStatistics = new ParallelParsingStatistics();
+  @NotNull
+  private volatile ReportParsingMetrics myParsingMetrics = new ReportParsingMetrics();
+  @Nullable
+  private volatile ReportContentRegistry myContentRegistry;
+  @NotNull
+  private volatile InspectionTypeRegistry myInspectionTypeRegistry = new InspectionTypeRegistry();
+  @Nullable
+  private final ParseResultCache myResultCache;
+  // services of the current build passed to parse commands
+  @NotNull
+  private volatile ParsingServices myParsingServices;
 
   @NotNull
   private final Lazy<Map<String, ParserFactory>> myParserFactoryMap = new Lazy<Map<String, ParserFactory>>() {
@@ -82,12 +111,21 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     myInspectionReporter = inspectionReporter;
     myDuplicatesReporter = duplicatesReporter;
 
-    myParseExecutor = createExecutor();
+    myParseThreads = getParseThreadCount();
+    myParseExecutor = createExecutor(myParseThreads);
+    myParseScheduler = new ParseTaskScheduler(myParseExecutor, ParseTaskScheduler.Order.fromProperty());
+    myResultCache = ParseResultCache.create(configuration.getCacheDirectory("xml-report-plugin"));
+    myParsingServices = new ParsingServices(myParsingStatistics, myParsingMetrics, null, myResultCache);
   }
 
   @Override
   public void buildStarted(@NotNull AgentRunningBuild runningBuild) {
     myBuild = runningBuild;
+    myParsingStatistics = new ParallelParsingStatistics();
+    myParsingMetrics = new ReportParsingMetrics();
+    myContentRegistry = ReportContentRegistry.isEnabled() ? new ReportContentRegistry() : null;
+    myParsingServices = new ParsingServices(myParsingStatistics, myParsingMetrics, myContentRegistry, myResultCache);
+    myInspectionTypeRegistry = new InspectionTypeRegistry();
     initBuildProcessingContext(runningBuild);
   }
 
@@ -100,7 +138,8 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     for (AgentBuildFeature feature : features) {
       final Map<String, String> params = feature.getParameters();
       params.putAll(runningBuild.getSharedConfigParameters());
-      getBuildProcessingContext().rulesContexts.add(createRulesContext(new RulesData(getRules(params), params, getBuildProcessingContext().startTime)));
+      getBuildProcessingContext().rulesContexts.add(createRulesContext(new RulesData(getRules(params), params, getBuildProcessingContext().startTime),
+                                                                       getBuildProcessingContext().watcher));
     }
   }
 
@@ -146,7 +185,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
     final RulesData rulesData = new RulesData(getRules(rulesFile, params), params, stepContext.startTime);
 
-    stepContext.rulesContexts.add(createRulesContext(rulesData));
+    stepContext.rulesContexts.add(createRulesContext(rulesData, stepContext.watcher));
 
     startProcessing(stepContext);
   }
@@ -156,9 +195,11 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     final ProcessingContext stepContext = getStepProcessingContext();
     if (stepContext == null) return; // if beforeRunnerStart was not called
 
+    final long finishStarted = System.nanoTime();
     finishProcessing(stepContext, true);
 
     finishProcessing(getBuildProcessingContext(), false);
+    myParsingMetrics.finishWaited(System.nanoTime() - finishStarted);
     startProcessing(getBuildProcessingContext());
 
     myStepProcessingContext = null;
@@ -167,7 +208,11 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   @Override
   public void beforeBuildFinish(@NotNull final AgentRunningBuild build, @NotNull final BuildFinishedStatus buildStatus) {
     if (myBuildProcessingContext == null) return;
+    final long finishStarted = System.nanoTime();
     finishProcessing(getBuildProcessingContext(), true);
+    myParsingMetrics.finishWaited(System.nanoTime() - finishStarted);
+    logParsingStatistics();
+    publishParsingMetrics();
     myBuild = null;
     myBuildProcessingContext = null;
   }
@@ -177,14 +222,14 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     shutdownExecutor(myParseExecutor);
   }
 
-  private RulesContext createRulesContext(@NotNull final RulesData rulesData) {
+  private RulesContext createRulesContext(@NotNull final RulesData rulesData, @Nullable ReportWatcher watcher) {
     final RulesState fileStateHolder = new RulesState();
     final ParserFactory parserFactory = getParserFactory(rulesData.getType());
 
     final RulesContext rulesContext = new RulesContext(rulesData, fileStateHolder);
     switch (parserFactory.getParsingStage()) {
       case BEFORE_FINISH:
-        rulesContext.addParseFactory(parserFactory);
+        rulesContext.addParseFactory(parserFactory, myParseScheduler, myParsingServices);
         break;
       case RUNTIME:
         rulesContext.setMonitorRulesCommand(new MonitorRulesCommand(rulesData.getMonitorRulesParameters(), rulesContext.getRulesState(), myQuietMode,
@@ -193,7 +238,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
                                                                       public void modificationDetected(@NotNull File file) {
                                                                         submitParsing(file, rulesContext, parserFactory);
                                                                       }
-                                                                    }));
+                                                                    }, watcher));
         break;
     }
     return rulesContext;
@@ -207,14 +252,13 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     processingContext.finished = false;
     monitor = new Thread(new Runnable() {
       public void run() {
+        final MonitorScheduler scheduler = processingContext.scheduler;
         while (!processingContext.finished) {
-          processAllRules(processingContext);
+          final long scanStarted = MonitorScheduler.currentThreadTime();
+          final boolean changed = processAllRules(processingContext);
+          final long delay = scheduler.scanFinished(changed, MonitorScheduler.currentThreadTime() - scanStarted);
 
-          try {
-            Thread.sleep(500L);
-          } catch (InterruptedException e) {
-            getBuild().getBuildLogger().exception(e);
-          }
+          if (!processingContext.finished) scheduler.await(delay, processingContext.watcher);
         }
       }
     });
@@ -230,22 +274,34 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     return monitor != null;
   }
 
-  private void processAllRules(final @NotNull ProcessingContext processingContext) {
-    for (RulesContext rulesContext : processingContext.rulesContexts) {
-      final MonitorRulesCommand monitorRules = rulesContext.getMonitorRulesCommand();
-      if (monitorRules != null) monitorRules.run();
+  private boolean processAllRules(final @NotNull ProcessingContext processingContext) {
+    boolean changed = false;
+    // reports found by one scan are queued together, so they start in the scheduler order
+    myParseScheduler.hold();
+    try {
+      for (RulesContext rulesContext : processingContext.rulesContexts) {
+        final MonitorRulesCommand monitorRules = rulesContext.getMonitorRulesCommand();
+        if (monitorRules != null && monitorRules.run()) changed = true;
+      }
+    } finally {
+      myParseScheduler.release();
     }
+    return changed;
   }
 
   private void finishProcessing(@NotNull final ProcessingContext processingContext, boolean fullFinish) {
     Thread monitor = processingContext.monitorThread;
-    if (!isStarted(monitor) && isRulesEmpty(processingContext)) return;
+    if (!isStarted(monitor) && isRulesEmpty(processingContext)) {
+      if (fullFinish) closeWatcher(processingContext);
+      return;
+    }
     if (!isStarted(monitor)) {
       // process all rules even if we do not have build steps
       processAllRules(processingContext);
     }
 
     processingContext.finished = true;
+    processingContext.scheduler.wakeUp();
     try {
       monitor = processingContext.monitorThread;
       processingContext.monitorThread = null;
@@ -253,13 +309,24 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
         monitor.join();
       }
 
+      if (fullFinish) {
+        // reports of all rules parsed at finish share the parsing threads, so start them before waiting for any
+        myParseScheduler.hold();
+        try {
+          for (RulesContext rulesContext : processingContext.rulesContexts) {
+            rulesContext.startBeforeFinishParsing();
+          }
+        } finally {
+          myParseScheduler.release();
+        }
+      }
 
       for (RulesContext rulesContext : processingContext.rulesContexts) {
         rulesContext.waitRuntimeParsing();
         rulesContext.clearRuntimeParseTasks();
 
         final MonitorRulesCommand monitorRules = rulesContext.getMonitorRulesCommand();
-        if (monitorRules != null) monitorRules.run();
+        if (monitorRules != null) monitorRules.run(true);
         if (fullFinish) rulesContext.finish();
         else rulesContext.waitRuntimeParsing();
 
@@ -267,12 +334,19 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
       }
     } catch (Exception e) {
       LoggingUtils.logError("Exception occurred while finishing rules monitoring", e, getBuild().getBuildLogger(), false);
+    } finally {
+      if (fullFinish) closeWatcher(processingContext);
     }
   }
 
+  private void closeWatcher(@NotNull ProcessingContext processingContext) {
+    final ReportWatcher watcher = processingContext.watcher;
+    if (watcher != null) watcher.close();
+  }
+
   private void submitParsing(@NotNull File file, @NotNull final RulesContext rulesContext, @NotNull ParserFactory parserFactory) {
-    final ParseReportCommand parseReportCommand = new ParseReportCommand(file, rulesContext.getRulesData().getParseReportParameters(), rulesContext.getRulesState(), parserFactory);
-    rulesContext.addParseTask(myParseExecutor, parseReportCommand);
+    final ParseReportCommand parseReportCommand = new ParseReportCommand(file, rulesContext.getRulesData().getParseReportParameters(), rulesContext.getRulesState(), parserFactory, myParsingServices);
+    rulesContext.addParseTask(myParseScheduler, parseReportCommand);
   }
 
   private void shutdownExecutor(@NotNull ExecutorService executor) {
@@ -298,8 +372,51 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     }
   }
 
-  private static ExecutorService createExecutor() {
-    return ExecutorsFactory.newFixedDaemonExecutor("xml-report-plugin", 1);
+  private static ExecutorService createExecutor(int threads) {
+    return ExecutorsFactory.newFixedDaemonExecutor("xml-report-plugin", threads);
+  }
+
+  private static int getParseThreadCount() {
+    final int threads = TeamCityProperties.getInteger(TEAMCITY_PROPERTY_PARSING_THREADS, Runtime.getRuntime().availableProcessors());
+    return threads > 0 ? threads : 1;
+  }
+
+  private void logParsingStatistics() {
+    final ParallelParsingStatistics statistics = myParsingStatistics;
+    if (statistics.getTaskCount() == 0) return;
+
+    LoggingUtils.verbose(String.format("Parsed %d %s on %d %s (at most %d at once): %d ms parsing in %d ms, speedup %.2f; " +
+                                       "%s queue order, at most %d %s waiting for %d ms",
+                                       statistics.getTaskCount(), StringUtil.pluralize("report", statistics.getTaskCount()),
+                                       myParseThreads, StringUtil.pluralize("thread", myParseThreads),
+                                       statistics.getMaxRunningTasks(), statistics.getBusyMillis(), statistics.getActiveMillis(),
+                                       statistics.getSpeedup(),
+                                       myParseScheduler.getOrder() == ParseTaskScheduler.Order.FIFO ? "FIFO" : "largest first",
+                                       myParsingMetrics.getMaxQueueDepth(), StringUtil.pluralize("report", myParsingMetrics.getMaxQueueDepth()),
+                                       myParsingMetrics.getMaxQueueMillis()), getBuild().getBuildLogger());
+
+    final ReportContentRegistry contentRegistry = myContentRegistry;
+    if (contentRegistry != null && contentRegistry.getSkippedCount() > 0) {
+      LoggingUtils.verbose(String.format("Skipped %d %s with the same content as other reports", contentRegistry.getSkippedCount(),
+                                         StringUtil.pluralize("report", contentRegistry.getSkippedCount())), getBuild().getBuildLogger());
+    }
+  }
+
+  private void publishParsingMetrics() {
+    final ReportParsingMetrics metrics = myParsingMetrics;
+    if (metrics.getReportCount() == 0) return;
+
+    if (TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_PUBLISH_METRICS)) {
+      metrics.publishStatistics(getBuild().getBuildLogger());
+    }
+    if (TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_METRICS_FILE)) {
+      final File file = new File(myConfiguration.getAgentLogsDirectory(), "xml-report-plugin-metrics-" + getBuild().getBuildId() + ".json");
+      try {
+        metrics.writeJson(file);
+      } catch (IOException e) {
+        LoggingUtils.LOG.warn("Failed to write report parsing metrics to " + file, e);
+      }
+    }
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -344,15 +461,17 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   private void logStatistics(@NotNull final RulesContext rulesContext) {
     final BuildProgressLogger logger = getBuild().getBuildLogger();
 
-    final Map<File, ParsingResult> succeeded = rulesContext.getRulesState().getProcessedFiles();
-    final Map<File, ParsingResult> failedToParse = rulesContext.getRulesState().getFailedToProcessFiles();
-    final List<File> outOfDate = rulesContext.getRulesState().getOutOfDateFiles();
-
-    final int processedFileCount = succeeded.size() + failedToParse.size();
+    final RulesState rulesState = rulesContext.getRulesState();
+    final int processedFileCount = rulesState.getReportCount(ReportStateHolder.ReportState.PROCESSED) +
+                                   rulesState.getReportCount(ReportStateHolder.ReportState.ERROR);
 
     final LogAction summaryLogAction = processedFileCount == 0 ? rulesContext.getRulesData().getWhenNoDataPublished() : LogAction.INFO;
     if (summaryLogAction == LogAction.DO_NOTHING) return;
 
+    final Map<File, ParsingResult> succeeded = rulesState.getProcessedFiles();
+    final Map<File, ParsingResult> failedToParse = rulesState.getFailedToProcessFiles();
+    final List<File> outOfDate = rulesState.getOutOfDateFiles();
+
     LoggingUtils.logInTarget(LoggingUtils.getTypeDisplayName(rulesContext.getRulesData().getType()) + " report watcher",
       new Runnable() {
         public void run() {
@@ -617,7 +736,8 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
         @NotNull
         @Override
         public InspectionReporter getInspectionReporter() {
-          return new TeamCityInspectionReporter(myInspectionReporter, getBuild().getBuildLogger(), getCheckoutDir(), getBuildProblemType(getType(), "InspectFailure"));
+          return new TeamCityInspectionReporter(myInspectionReporter, getBuild().getBuildLogger(), getCheckoutDir(), getBuildProblemType(getType(), "InspectFailure"),
+                                                myInspectionTypeRegistry);
         }
 
         @NotNull
@@ -629,7 +749,18 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
         @NotNull
         @Override
         public TestReporter getTestReporter() {
-          return new TeamCityTestReporter(getInternalizingThreadLogger(), getBuildProblemType(getType(), "TestFailure"), getCheckoutDir().getAbsolutePath());
+          final TestReporter reporter = new TeamCityTestReporter(getInternalizingThreadLogger(), getBuildProblemType(getType(), "TestFailure"), getCheckoutDir().getAbsolutePath());
+          final int maxOutputLength = LimitingTestReporter.getMaxLength();
+          if (maxOutputLength <= 0) return reporter;
+          final LimitingTestReporter.OutputPublisher publisher = new LimitingTestReporter.OutputPublisher() {
+            @NotNull
+            public String publish(@NotNull File file) {
+              // the build temp directory is removed when the build finishes
+              getBuild().getBuildLogger().message(ServiceMessage.asString("publishArtifacts", file.getAbsolutePath() + " => " + TEST_OUTPUT_ARTIFACTS_PATH));
+              return "artifact " + TEST_OUTPUT_ARTIFACTS_PATH + "/" + file.getName();
+            }
+          };
+          return new LimitingTestReporter(reporter, maxOutputLength, new File(getBuild().getBuildTempDirectory(), TEST_OUTPUT_DIRECTORY), publisher);
         }
 
         @NotNull
@@ -670,9 +801,14 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     private volatile Thread monitorThread;
     @NotNull
     private final List<RulesContext> rulesContexts;
+    @Nullable
+    private final ReportWatcher watcher;
+    @NotNull
+    private final MonitorScheduler scheduler = MonitorScheduler.fromProperties();
 
     private ProcessingContext(@NotNull List<RulesContext> rulesContexts) {
       this.rulesContexts = rulesContexts;
+      watcher = TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_WATCH_REPORTS) ? ReportWatcher.create() : null;
 
       startTime = new Date().getTime()/1000*1000;
 
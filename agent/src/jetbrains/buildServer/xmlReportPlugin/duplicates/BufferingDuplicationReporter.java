@@ -0,0 +1,143 @@
+package jetbrains.buildServer.xmlReportPlugin.duplicates;
+
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Passes duplicates to the delegate in batches, each batch is sent under the lock as soon as it's full,
+ * so a report can be parsed concurrently with others while the agent-wide duplicates reporter is called by one thread at a time.
+ * The agent-wide reporter collects duplicates between start and finish, so one report at a time may have them started,
+ * others wait in {@link #startDuplicates()}.
+ */
+public class BufferingDuplicationReporter implements DuplicationReporter, Flushable {
+  public static final String TEAMCITY_PROPERTY_BATCH_SIZE = "teamcity.xmlReport.duplicates.batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private static final ReentrantLock DUPLICATES_LOCK = new ReentrantLock();
+
+  @NotNull
+  private final DuplicationReporter myDelegate;
+  private final int myBatchSize;
+  @NotNull
+  private final Object myLock;
+  @NotNull
+  private List<DuplicationResult> myBatch = new ArrayList<DuplicationResult>();
+  private boolean myStarted;
+
+  public BufferingDuplicationReporter(@NotNull DuplicationReporter delegate) {
+    this(delegate, DEFAULT_BATCH_SIZE, new Object());
+  }
+
+  /**
+   * @param batchSize max number of duplicates passed to the delegate in one call
+   * @param lock lock held while calling the delegate
+   */
+  public BufferingDuplicationReporter(@NotNull DuplicationReporter delegate, int batchSize, @NotNull Object lock) {
+    myDelegate = delegate;
+    myBatchSize = Math.max(1, batchSize);
+    myLock = lock;
+  }
+
+  public void startDuplicates() {
+    if (!myStarted) {
+      DUPLICATES_LOCK.lock();
+      myStarted = true;
+    }
+    send(new Runnable() {
+      public void run() {
+        myDelegate.startDuplicates();
+      }
+    });
+  }
+
+  public void reportDuplicate(@NotNull final DuplicationResult duplicate) {
+    myBatch.add(duplicate);
+    if (myBatch.size() >= myBatchSize) sendBatch();
+  }
+
+  public void finishDuplicates() {
+    try {
+      send(new Runnable() {
+        public void run() {
+          myDelegate.finishDuplicates();
+        }
+      });
+    } finally {
+      release();
+    }
+  }
+
+  public void info(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.info(message);
+      }
+    });
+  }
+
+  public void warning(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.warning(message);
+      }
+    });
+  }
+
+  public void error(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.error(message);
+      }
+    });
+  }
+
+  public void failure(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.failure(message);
+      }
+    });
+  }
+
+  /**
+   * Sends the duplicates reported since the last batch and lets other reports start duplicates,
+   * is called when parsing stops even if it failed before finishing duplicates
+   */
+  public void flush() {
+    try {
+      sendBatch();
+    } finally {
+      release();
+    }
+  }
+
+  private void send(@NotNull final Runnable event) {
+    synchronized (myLock) {
+      sendPending();
+      event.run();
+    }
+  }
+
+  private void sendBatch() {
+    if (myBatch.isEmpty()) return;
+    synchronized (myLock) {
+      sendPending();
+    }
+  }
+
+  private void sendPending() {
+    if (myBatch.isEmpty()) return;
+    final List<DuplicationResult> batch = myBatch;
+    myBatch = new ArrayList<DuplicationResult>();
+    myDelegate.reportDuplicates(batch);
+  }
+
+  private void release() {
+    if (!myStarted) return;
+    myStarted = false;
+    DUPLICATES_LOCK.unlock();
+  }
+}
@@ -0,0 +1,24 @@
+package jetbrains.buildServer.xmlReportPlugin.duplicates;
+
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.ProblemParsingResult;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Result of parsing duplicates reports, counts the reported duplicates
+ */
+public abstract class DuplicationParsingResult extends ProblemParsingResult {
+  private int myDuplicates;
+
+  public int getDuplicates() {
+    return myDuplicates;
+  }
+
+  public void addDuplicates(int duplicates) {
+    myDuplicates += duplicates;
+  }
+
+  public void accumulate(@NotNull ParsingResult parsingResult) {
+    addDuplicates(((DuplicationParsingResult)parsingResult).getDuplicates());
+  }
+}
@@ -2,6 +2,7 @@
 
 package jetbrains.buildServer.xmlReportPlugin.duplicates;
 
+import java.util.List;
 import jetbrains.buildServer.xmlReportPlugin.MessageLogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -23,6 +24,17 @@ public interface DuplicationReporter extends MessageLogger {
    */
   void reportDuplicate(@NotNull DuplicationResult duplicate);
 
+  /**
+   * Reports several duplicates within block, the list must not be kept after the call
+   *
+   * @param duplicates Duplicates info
+   */
+  default void reportDuplicates(@NotNull List<DuplicationResult> duplicates) {
+    for (DuplicationResult duplicate : duplicates) {
+      reportDuplicate(duplicate);
+    }
+  }
+
   /**
    * Indicates the end of a duplicates block
    */
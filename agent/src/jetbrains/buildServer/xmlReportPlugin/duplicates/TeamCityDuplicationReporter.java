@@ -2,7 +2,6 @@
 
 package jetbrains.buildServer.xmlReportPlugin.duplicates;
 
-import java.util.ArrayList;
 import java.util.List;
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.agent.duplicates.DuplicatesReporter;
@@ -32,14 +31,16 @@ public class TeamCityDuplicationReporter extends BaseMessageLogger implements Du
   }
 
   public void reportDuplicate(@NotNull DuplicationResult duplicate) {
-    final List<DuplicateInfo.Fragment> fragmentsList = new ArrayList<DuplicateInfo.Fragment>();
+    final List<DuplicatingFragment> fragments = duplicate.getFragments();
+    final DuplicateInfo.Fragment[] fragmentsArray = new DuplicateInfo.Fragment[fragments.size()];
 
-    for (DuplicatingFragment fragment : duplicate.getFragments()) {
-      fragmentsList.add(new DuplicateInfo.Fragment(fragment.getHash(), fragment.getPath(), fragment.getLine(),
-        new DuplicateInfo.LineOffset(fragment.getLine(), fragment.getLine() + duplicate.getLines())));
+    for (int i = 0; i < fragmentsArray.length; ++i) {
+      final DuplicatingFragment fragment = fragments.get(i);
+      fragmentsArray[i] = new DuplicateInfo.Fragment(fragment.getHash(), fragment.getPath(), fragment.getLine(),
+        new DuplicateInfo.LineOffset(fragment.getLine(), fragment.getLine() + duplicate.getLines()));
     }
 
-    myDuplicatesReporter.addDuplicate(new DuplicateInfo(duplicate.getHash(), duplicate.getTokens(), fragmentsList.toArray(new DuplicateInfo.Fragment[0])));
+    myDuplicatesReporter.addDuplicate(new DuplicateInfo(duplicate.getHash(), duplicate.getTokens(), fragmentsArray));
   }
 
   public void finishDuplicates() {
@@ -0,0 +1,127 @@
+package jetbrains.buildServer.xmlReportPlugin.inspections;
+
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Passes inspections to the delegate in batches, each batch is sent under the lock as soon as it's full,
+ * so a report can be parsed concurrently with others while the agent-wide inspection reporter is called by one thread at a time.
+ * Messages are sent right away after the inspections reported before them.
+ */
+public class BufferingInspectionReporter implements InspectionReporter, InspectionsBuildMarker, Flushable {
+  public static final String TEAMCITY_PROPERTY_BATCH_SIZE = "teamcity.xmlReport.inspections.batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  @NotNull
+  private final InspectionReporter myDelegate;
+  private final int myBatchSize;
+  @NotNull
+  private final Object myLock;
+  @NotNull
+  private List<InspectionResult> myBatch = new ArrayList<InspectionResult>();
+  // parsers report the type of every inspection, the delegate needs each type once
+  @NotNull
+  private final Set<String> myTypeIds = new HashSet<String>();
+
+  public BufferingInspectionReporter(@NotNull InspectionReporter delegate) {
+    this(delegate, DEFAULT_BATCH_SIZE, new Object());
+  }
+
+  /**
+   * @param batchSize max number of inspections passed to the delegate in one call
+   * @param lock lock held while calling the delegate
+   */
+  public BufferingInspectionReporter(@NotNull InspectionReporter delegate, int batchSize, @NotNull Object lock) {
+    myDelegate = delegate;
+    myBatchSize = Math.max(1, batchSize);
+    myLock = lock;
+  }
+
+  public void markBuildAsInspectionsBuild() {
+    if (myDelegate instanceof InspectionsBuildMarker) {
+      send(new Runnable() {
+        public void run() {
+          ((InspectionsBuildMarker)myDelegate).markBuildAsInspectionsBuild();
+        }
+      });
+    }
+  }
+
+  public void reportInspection(@NotNull final InspectionResult inspection) {
+    myBatch.add(inspection);
+    if (myBatch.size() >= myBatchSize) sendBatch();
+  }
+
+  public void reportInspectionType(@NotNull final InspectionTypeResult inspectionType) {
+    if (!myTypeIds.add(inspectionType.getId())) return;
+    send(new Runnable() {
+      public void run() {
+        myDelegate.reportInspectionType(inspectionType);
+      }
+    });
+  }
+
+  public void info(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.info(message);
+      }
+    });
+  }
+
+  public void warning(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.warning(message);
+      }
+    });
+  }
+
+  public void error(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.error(message);
+      }
+    });
+  }
+
+  public void failure(@NotNull final String message) {
+    send(new Runnable() {
+      public void run() {
+        myDelegate.failure(message);
+      }
+    });
+  }
+
+  /**
+   * Sends the inspections reported since the last batch
+   */
+  public void flush() {
+    sendBatch();
+  }
+
+  private void send(@NotNull final Runnable event) {
+    synchronized (myLock) {
+      sendPending();
+      event.run();
+    }
+  }
+
+  private void sendBatch() {
+    if (myBatch.isEmpty()) return;
+    synchronized (myLock) {
+      sendPending();
+    }
+  }
+
+  private void sendPending() {
+    if (myBatch.isEmpty()) return;
+    final List<InspectionResult> batch = myBatch;
+    myBatch = new ArrayList<InspectionResult>();
+    myDelegate.reportInspections(batch);
+  }
+}
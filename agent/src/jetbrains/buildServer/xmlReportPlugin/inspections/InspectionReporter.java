@@ -2,6 +2,7 @@
 
 package jetbrains.buildServer.xmlReportPlugin.inspections;
 
+import java.util.List;
 import jetbrains.buildServer.xmlReportPlugin.MessageLogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -18,6 +19,17 @@ public interface InspectionReporter extends MessageLogger {
    */
   void reportInspection(@NotNull InspectionResult inspection);
 
+  /**
+   * Report several inspection instances, the list must not be kept after the call
+   *
+   * @param inspections Inspection descriptions
+   */
+  default void reportInspections(@NotNull List<InspectionResult> inspections) {
+    for (InspectionResult inspection : inspections) {
+      reportInspection(inspection);
+    }
+  }
+
   /**
    * Report inspection description
    *
@@ -0,0 +1,33 @@
+package jetbrains.buildServer.xmlReportPlugin.inspections;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Inspection types reported during the build, shared by all reports of the build.
+ * Parsers report the type of every found inspection, while each type needs to be sent only once,
+ * so types are compared by id only. Names, descriptions and categories of sent types are interned.
+ */
+public class InspectionTypeRegistry {
+  @NotNull
+  private final ConcurrentMap<String, Boolean> myIds = new ConcurrentHashMap<String, Boolean>();
+  @NotNull
+  private final ConcurrentMap<String, String> myStrings = new ConcurrentHashMap<String, String>();
+
+  /**
+   * @return true if the type with this id is reported for the first time in the build
+   */
+  public boolean register(@NotNull String id) {
+    return myIds.putIfAbsent(id, Boolean.TRUE) == null;
+  }
+
+  /**
+   * @return the first registered string equal to the specified one
+   */
+  @NotNull
+  public String intern(@NotNull String s) {
+    final String interned = myStrings.putIfAbsent(s, s);
+    return interned == null ? s : interned;
+  }
+}
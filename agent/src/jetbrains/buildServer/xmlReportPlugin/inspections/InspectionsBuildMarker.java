@@ -0,0 +1,8 @@
+package jetbrains.buildServer.xmlReportPlugin.inspections;
+
+/**
+ * Reporter which can mark the build as an inspections build even if no inspections are reported
+ */
+public interface InspectionsBuildMarker {
+  void markBuildAsInspectionsBuild();
+}
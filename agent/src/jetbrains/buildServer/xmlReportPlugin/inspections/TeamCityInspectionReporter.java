@@ -3,7 +3,9 @@
 package jetbrains.buildServer.xmlReportPlugin.inspections;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.agent.inspections.InspectionAttributesId;
 import jetbrains.buildServer.agent.inspections.InspectionInstance;
@@ -18,16 +20,36 @@ import org.jetbrains.annotations.Nullable;
  * Date: 17.02.11
  * Time: 13:26
  */
-public class TeamCityInspectionReporter extends BaseMessageLogger implements InspectionReporter {
+public class TeamCityInspectionReporter extends BaseMessageLogger implements InspectionReporter, InspectionsBuildMarker {
+  private static final String SEVERITY_ATTRIBUTE = InspectionAttributesId.SEVERITY.toString();
+  // attribute values are shared by all reported inspections
+  private static final Collection<String> ERROR_SEVERITY = Collections.singleton(InspectionSeverityValues.ERROR.toString());
+  private static final Collection<String> WARNING_SEVERITY = Collections.singleton(InspectionSeverityValues.WARNING.toString());
+  private static final Collection<String> INFO_SEVERITY = Collections.singleton(InspectionSeverityValues.INFO.toString());
+
   @NotNull
   private final jetbrains.buildServer.agent.inspections.InspectionReporter myInspectionReporter;
+  @Nullable
+  private final InspectionTypeRegistry myTypeRegistry;
 
   public TeamCityInspectionReporter(@NotNull jetbrains.buildServer.agent.inspections.InspectionReporter inspectionReporter,
                                     @NotNull BuildProgressLogger logger,
                                     @NotNull File baseFolder,
                                     @NotNull String buildProblemType) {
+    this(inspectionReporter, logger, baseFolder, buildProblemType, null);
+  }
+
+  /**
+   * @param typeRegistry inspection types already sent in the build, each type is sent every time it's reported if null
+   */
+  public TeamCityInspectionReporter(@NotNull jetbrains.buildServer.agent.inspections.InspectionReporter inspectionReporter,
+                                    @NotNull BuildProgressLogger logger,
+                                    @NotNull File baseFolder,
+                                    @NotNull String buildProblemType,
+                                    @Nullable InspectionTypeRegistry typeRegistry) {
     super(logger, buildProblemType, baseFolder.getAbsolutePath());
     myInspectionReporter = inspectionReporter;
+    myTypeRegistry = typeRegistry;
   }
 
   public void markBuildAsInspectionsBuild() {
@@ -36,42 +58,69 @@ public class TeamCityInspectionReporter extends BaseMessageLogger implements Ins
 
   @Override
   public void reportInspection(@NotNull final InspectionResult inspection) {
+    report(inspection, PathUtils.getRelativePath(myBaseFolder, inspection.getFilePath()));
+  }
+
+  @Override
+  public void reportInspections(@NotNull final List<InspectionResult> inspections) {
+    // inspections of one file usually come together
+    String filePath = null;
+    String relativePath = null;
+    for (InspectionResult inspection : inspections) {
+      final String path = inspection.getFilePath();
+      if (relativePath == null || (path == null ? filePath != null : !path.equals(filePath))) {
+        filePath = path;
+        relativePath = PathUtils.getRelativePath(myBaseFolder, path);
+      }
+      report(inspection, relativePath);
+    }
+  }
+
+  private void report(@NotNull InspectionResult inspection, @NotNull String relativePath) {
     final InspectionInstance inspectionInstance = new InspectionInstance();
 
-    inspectionInstance.setFilePath(PathUtils.getRelativePath(myBaseFolder, inspection.getFilePath()));
+    inspectionInstance.setFilePath(relativePath);
     inspectionInstance.setLine(inspection.getLine());
     inspectionInstance.setMessage(getValueOrUnknown(inspection.getMessage()));
     inspectionInstance.setInspectionId(getValueOrUnknown(inspection.getInspectionId()));
 
-    InspectionSeverityValues level;
+    final Collection<String> severity;
     switch (inspection.getPriority()) {
       case 1:
-        level = InspectionSeverityValues.ERROR;
+        severity = ERROR_SEVERITY;
         break;
       case 2:
-        level = InspectionSeverityValues.WARNING;
+        severity = WARNING_SEVERITY;
         break;
       default:
-        level = InspectionSeverityValues.INFO;
+        severity = INFO_SEVERITY;
     }
 
-    inspectionInstance.addAttribute(InspectionAttributesId.SEVERITY.toString(), Collections.singleton(level.toString()));
+    inspectionInstance.addAttribute(SEVERITY_ATTRIBUTE, severity);
 
     myInspectionReporter.reportInspection(inspectionInstance);
   }
 
   @Override
   public void reportInspectionType(@NotNull final InspectionTypeResult inspectionType) {
+    final String id = getValueOrUnknown(inspectionType.getId());
+    if (myTypeRegistry != null && !myTypeRegistry.register(id)) return;
+
     final jetbrains.buildServer.agent.inspections.InspectionTypeInfo inspectionTypeInfo = new jetbrains.buildServer.agent.inspections.InspectionTypeInfo();
 
-    inspectionTypeInfo.setId(getValueOrUnknown(inspectionType.getId()));
-    inspectionTypeInfo.setName(getValueOrUnknown(inspectionType.getName()));
-    inspectionTypeInfo.setCategory(getValueOrUnknown(inspectionType.getCategory()));
-    inspectionTypeInfo.setDescription(getValueOrUnknown(inspectionType.getDescription()));
+    inspectionTypeInfo.setId(id);
+    inspectionTypeInfo.setName(intern(getValueOrUnknown(inspectionType.getName())));
+    inspectionTypeInfo.setCategory(intern(getValueOrUnknown(inspectionType.getCategory())));
+    inspectionTypeInfo.setDescription(intern(getValueOrUnknown(inspectionType.getDescription())));
 
     myInspectionReporter.reportInspectionType(inspectionTypeInfo);
   }
 
+  @NotNull
+  private String intern(@NotNull String val) {
+    return myTypeRegistry == null ? val : myTypeRegistry.intern(val);
+  }
+
   @NotNull
   private String getValueOrUnknown(@Nullable String val) {
     return val == null || val.trim().length() == 0 ? "<unknown>" : val;
@@ -2,10 +2,19 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.util.XmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.tests.LimitingTestReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import jetbrains.buildServer.xmlReportPlugin.utils.TextLimitingReader;
+import jetbrains.buildServer.xmlReportPlugin.utils.XmlFileReader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -13,6 +22,62 @@ import org.jetbrains.annotations.Nullable;
  * @author vbedrosova
  */
 public abstract class BaseXmlXppAbstractParser extends XmlXppAbstractParser {
+  private int myMaxTextLength;
+  @Nullable
+  private TextLimitingReader.Spill myTextSpill;
+
+  /**
+   * Makes the parser read only the head and the tail of element text longer than the test output limit of the reporter,
+   * the full text is saved the same way the reporter saves output. Text is not limited unless the reporter limits output
+   */
+  public void limitText(@NotNull TestReporter reporter) {
+    if (!(reporter instanceof LimitingTestReporter)) return;
+    final LimitingTestReporter limitingReporter = (LimitingTestReporter)reporter;
+    myMaxTextLength = limitingReporter.getLimit();
+    myTextSpill = limitingReporter.createTextSpill();
+  }
+
+  /**
+   * @return max length of element text, only the head and the tail of longer text are read, 0 if not limited
+   */
+  protected int getMaxTextLength() {
+    return myMaxTextLength;
+  }
+
+  /**
+   * Reads UTF-8 and ISO-8859-1 reports through {@link XmlFileReader}. Reports in other encodings are decoded
+   * by a stream reader if element text is limited, so the limit holds for them too, and read the usual way otherwise
+   */
+  @Override
+  public void parse(@NotNull File file) throws IOException {
+    Reader reader = XmlFileReader.open(file);
+    if (reader == null && getMaxTextLength() > 0) reader = XmlFileReader.openStream(file);
+    if (reader == null) {
+      super.parse(file);
+      return;
+    }
+    parseLimited(reader);
+  }
+
+  /**
+   * Parses the report from the checkpoint if it's specified or from the beginning otherwise
+   */
+  public void parse(@NotNull File file, @Nullable ReportCheckpoint checkpoint) throws IOException {
+    if (checkpoint == null) {
+      parse(file);
+      return;
+    }
+    parseLimited(checkpoint.openReader(file));
+  }
+
+  private void parseLimited(@NotNull Reader reader) throws IOException {
+    final int maxTextLength = getMaxTextLength();
+    try {
+      parse(maxTextLength > 0 ? new TextLimitingReader(reader, maxTextLength, myTextSpill) : reader);
+    } finally {
+      FileUtil.close(reader);
+    }
+  }
 
   protected abstract class ORHandler implements CloseableHandler, XmlHandler {
     private final List<XmlHandler> myDelegates;
@@ -5,18 +5,25 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.parsers.TestMessages;
 import jetbrains.buildServer.xmlReportPlugin.tests.DurationParser;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 class AntJUnitReportParser implements Parser {
+  private static final String TEST_ELEMENT = "testcase";
+  private static final Collection<String> TEST_PARENT_ELEMENTS = Collections.singleton("testsuite");
+  private static final Collection<String> SUITE_ELEMENTS = Collections.singleton("testsuite");
+
   public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(AntJUnitReportParser.class);
 
   @NotNull
@@ -29,6 +36,13 @@ class AntJUnitReportParser implements Parser {
 
   private int myLoggedSuites;
 
+  @Nullable
+  private ReportCheckpoint myResumedFrom;
+  @Nullable
+  private ReportCheckpoint myCheckpoint;
+  private int myPrevSuites;
+  private int myPrevTests;
+
   @Nullable
   private ParsingException myParsingException;
 
@@ -45,11 +59,16 @@ class AntJUnitReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (prevResult != null) {
-      myTestsToSkip = ((TestParsingResult) prevResult).getTests();
+    final ReportCheckpoint checkpoint = ReportCheckpoint.getValid(file, prevResult);
+    if (checkpoint != null) {
+      myResumedFrom = checkpoint;
+      myPrevSuites = ((TestParsingResult)prevResult).getSuites();
+      myPrevTests = ((TestParsingResult)prevResult).getTests();
+    } else if (prevResult != null) {
+      myTestsToSkip = ((TestParsingResult)prevResult).getTests();
     }
     try {
-      new AntJUnitXmlReportParser(new AntJUnitXmlReportParser.Callback() {
+      final AntJUnitXmlReportParser parser = new AntJUnitXmlReportParser(new AntJUnitXmlReportParser.Callback() {
 
         @Override
         public void suiteFound(@Nullable final String suiteName) {
@@ -162,7 +181,9 @@ class AntJUnitReportParser implements Parser {
         public void unexpectedFormat(@NotNull final String msg) {
           myTestReporter.error(TestMessages.getFileExpectedFormatMessage(file, msg, "Ant JUnit Task"));
         }
-      }, myDurationParser).parse(file);
+      }, myDurationParser);
+      parser.limitText(myTestReporter);
+      parser.parse(file, checkpoint);
       return true;
     } catch (IOException e) {
       myParsingException = new ParsingException(e);
@@ -173,6 +194,10 @@ class AntJUnitReportParser implements Parser {
       }
 
       LOG.debug(TestMessages.getCouldNotCompletelyParseMessage(file, e, myLoggedTests));
+
+      if (myLoggedTests >= myTestsToSkip) {
+        myCheckpoint = ReportCheckpoint.advance(file, checkpoint, TEST_ELEMENT, TEST_PARENT_ELEMENTS, myLoggedTests);
+      }
     }
 
     return false;
@@ -180,7 +205,12 @@ class AntJUnitReportParser implements Parser {
 
   @Override
   public ParsingResult getParsingResult() {
-    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException);
+    if (myResumedFrom != null) {
+      // suites open at the checkpoint are reported once again
+      final int suites = myPrevSuites + Math.max(0, myLoggedSuites - myResumedFrom.countOpen(SUITE_ELEMENTS));
+      return new TestParsingResult(suites, myPrevTests + myLoggedTests, myParsingException, myCheckpoint);
+    }
+    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException, myCheckpoint);
   }
 
 
@@ -34,7 +34,7 @@ class CheckstyleReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (!ParserUtils.isReportComplete(file, "checkstyle")) {
+    if (!ParserUtils.isReportTailComplete(file, "checkstyle")) {
       return false;
     }
 
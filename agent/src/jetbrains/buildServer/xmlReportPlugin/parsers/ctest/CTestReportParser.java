@@ -34,7 +34,9 @@ public class CTestReportParser implements Parser {
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
     try {
-      createTestXmlParser(file).parse(file);
+      final TestXmlReportParser parser = createTestXmlParser(file);
+      parser.limitText(myTestReporter);
+      parser.parse(file);
       return true;
     } catch (IOException e) {
       myParsingException = new ParsingException(e);
@@ -5,6 +5,7 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.ctest;
 import java.util.List;
 import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
 import jetbrains.buildServer.xmlReportPlugin.tests.SecondDurationParser;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -151,10 +152,8 @@ class TestXmlReportParser extends BaseXmlXppAbstractParser {
                         testData.setExitCode(value[0]);
                         break;
                       case "Exit Value":
-                        try {
-                          testData.setExitValue(Integer.parseInt(value[0]));
-                        } catch (NumberFormatException ignored) {
-                        }
+                        final long exitValue = NumberDecoder.parseInteger(value[0]);
+                        if (exitValue != NumberDecoder.INVALID) testData.setExitValue((int)exitValue);
                         break;
                       case "Pass Reason":
                       case "Fail Reason":
@@ -1,12 +1,14 @@
-
-
 package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import javax.swing.text.html.parser.DTD;
 import javax.swing.text.html.parser.Parser;
 import javax.swing.text.html.parser.TagElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -14,6 +16,8 @@ import org.jetbrains.annotations.NotNull;
  * Time: 9:30
  */
 class DetailsParser extends Parser {
+  public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(DetailsParser.class);
+
   @NotNull
   private final StringBuffer myStringBuffer = new StringBuffer();
 
@@ -21,6 +25,16 @@ class DetailsParser extends Parser {
     super(dtd);
   }
 
+  @Nullable
+  public static DetailsParser create() {
+    try {
+      return new DetailsParser(DTD.getDTD(""));
+    } catch (IOException e) {
+      LOG.warn("Failed to create empty DTD");
+      return null;
+    }
+  }
+
   @Override
   public void parse(Reader in) throws java.io.IOException {
     myStringBuffer.delete(0, myStringBuffer.length());
@@ -40,4 +54,17 @@ class DetailsParser extends Parser {
   public String getText() {
     return myStringBuffer.toString().trim();
   }
-}
\ No newline at end of file
+
+  /**
+   * Converts html description to plain text
+   */
+  @NotNull
+  public String format(@NotNull String s) {
+    try {
+      parse(new BufferedReader(new StringReader(s)));
+    } catch (IOException e) {
+      LOG.warn("Couldn't format html description to text", e);
+    }
+    return getText().replace("&nbsp", "");
+  }
+}
@@ -3,38 +3,44 @@
 package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.ZipFile;
-import jetbrains.buildServer.util.ZipSlipAwareZipFile;
-import jetbrains.buildServer.util.fileLookup.MemorizingFileLookup;
-import jetbrains.buildServer.util.fileLookup.MemorizingLookup;
-import jetbrains.buildServer.util.fileLookup.MemorizingZipFileLookup;
+import java.util.Map;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 
 class FileFinder {
+  @NotNull
+  private final FindBugsFileIndex myIndex;
   @NotNull
   private final List<Entry> myJars = new ArrayList<Entry>();
-  @Nullable
-  private MemorizingLookup<String, String, Entry> myLookup;
+  // found paths by looked up path, null values for paths not found
+  @NotNull
+  private final Map<String, String> myFound = new HashMap<String, String>();
+  private boolean myIndexed = true;
+
+  public FileFinder() {
+    this(new FindBugsFileIndex());
+  }
+
+  public FileFinder(@NotNull FindBugsFileIndex index) {
+    myIndex = index;
+  }
 
   public void addJar(@NotNull String jar) {
     jar = getDependentPath(jar);
     if (jar.endsWith(".zip") || jar.endsWith(".jar")) {
-      try {
-        myJars.add(new ArchiveEntry(new ZipSlipAwareZipFile(jar)));
-      } catch (IOException ignore) {
-        //just ignore
-      }
+      myJars.add(new ArchiveEntry(jar));
     } else if (jar.endsWith(".class")) {
       myJars.add(new ClassEntry(jar));
     } else {
       myJars.add(new DirectoryEntry(jar));
     }
+    myIndexed = false;
+    myFound.clear();
   }
 
   @Nullable
@@ -44,22 +50,38 @@ class FileFinder {
 
     filePath = getDependentPath(filePath);
 
-    if (myLookup == null) {
-      myLookup = new MemorizingLookup<String, String, Entry>(myJars) {
-        @Override
-        protected String lookupInside(@NotNull final Entry entry, @NotNull final String path) {
-          return entry.getFilePath(path);
-        }
-      };
+    if (!myIndexed) {
+      myIndexed = true;
+      index();
     }
-    return myLookup.lookup(filePath);
-  }
+    if (myFound.containsKey(filePath)) return myFound.get(filePath);
 
-  public void close() {
+    final String path = filePath.replace(File.separatorChar, '/');
+    String found = null;
     for (Entry jar : myJars) {
-      jar.close();
+      found = jar.getFilePath(filePath, path);
+      if (found != null) break;
     }
+    myFound.put(filePath, found);
+    return found;
+  }
+
+  public void close() {
     myJars.clear();
+    myFound.clear();
+  }
+
+  private void index() {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    for (final Entry jar : myJars) {
+      if (jar.isIndexed()) continue;
+      tasks.add(new Runnable() {
+        public void run() {
+          jar.index(myIndex);
+        }
+      });
+    }
+    myIndex.runInParallel(tasks);
   }
 
   @NotNull
@@ -68,50 +90,75 @@ class FileFinder {
   }
 
   private static abstract class Entry {
+    /**
+     * @param fileName path with system dependent separators
+     * @param path the same path with '/' separators
+     */
     @Nullable
-    public abstract String getFilePath(@NotNull String fileName);
+    public abstract String getFilePath(@NotNull String fileName, @NotNull String path);
+
+    public boolean isIndexed() {
+      return true;
+    }
 
-    public void close() {}
+    public void index(@NotNull FindBugsFileIndex index) {}
   }
 
   private static final class DirectoryEntry extends Entry {
     @NotNull
-    private final MemorizingFileLookup myLookup;
+    private final File myRoot;
+    @Nullable
+    private volatile FindBugsFileIndex.PathIndex myPaths;
 
     public DirectoryEntry(@NotNull String root) {
-      myLookup = new MemorizingFileLookup(new File(root));
+      myRoot = new File(root);
     }
 
     @Override
-    public String getFilePath(@NotNull String fileName) {
-      final File found = myLookup.lookup(myLookup.createFileInfo(fileName));
-      return found == null ? null : found.getPath();
+    public boolean isIndexed() {
+      return myPaths != null;
+    }
+
+    @Override
+    public void index(@NotNull FindBugsFileIndex index) {
+      myPaths = FindBugsFileIndex.PathIndex.forDirectory(myRoot);
+    }
+
+    @Override
+    public String getFilePath(@NotNull String fileName, @NotNull String path) {
+      final FindBugsFileIndex.PathIndex paths = myPaths;
+      final String found = paths == null ? null : paths.find(path);
+      return found == null ? null : new File(myRoot, found).getPath();
     }
   }
 
   private static final class ArchiveEntry extends Entry {
     @NotNull
-    private final ZipFile myArchive;
-    @NotNull
-    private final MemorizingZipFileLookup myLookup;
+    private final String myArchive;
+    private volatile boolean myIndexed;
+    @Nullable
+    private volatile FindBugsFileIndex.PathIndex myPaths;
 
-    public ArchiveEntry(@NotNull ZipFile archive) {
+    public ArchiveEntry(@NotNull String archive) {
       myArchive = archive;
-      myLookup = new MemorizingZipFileLookup(archive);
     }
 
     @Override
-    public String getFilePath(@NotNull String fileName) {
-      return myLookup.lookup(MemorizingZipFileLookup.createFileInfo(fileName));
+    public boolean isIndexed() {
+      return myIndexed;
+    }
+
+    @Override
+    public void index(@NotNull FindBugsFileIndex index) {
+      myPaths = index.getArchiveIndex(new File(myArchive));
+      myIndexed = true;
     }
 
     @Override
-    public void close() {
-      try {
-        myArchive.close();
-      } catch (IOException ignore) {
-        //TODO: log somehow
-      }
+    public String getFilePath(@NotNull String fileName, @NotNull String path) {
+      final FindBugsFileIndex.PathIndex paths = myPaths;
+      final String found = paths == null ? null : paths.find(path);
+      return found == null ? null : myArchive + ":" + found;
     }
   }
 
@@ -123,8 +170,8 @@ class FileFinder {
     }
 
     @Override
-    public String getFilePath(@NotNull String fileName) {
+    public String getFilePath(@NotNull String fileName, @NotNull String path) {
       return myFile.endsWith(fileName) ? myFile : null;
     }
   }
-}
\ No newline at end of file
+}
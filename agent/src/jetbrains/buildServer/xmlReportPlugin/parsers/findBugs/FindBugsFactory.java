@@ -2,7 +2,9 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 
+import java.io.File;
 import java.util.Map;
+import jetbrains.buildServer.agent.BuildAgentConfiguration;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.xmlReportPlugin.*;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
@@ -14,6 +16,17 @@ import org.jetbrains.annotations.NotNull;
  * Time: 20:32
  */
 public class FindBugsFactory implements ParserFactory {
+  private static final String PLUGIN_CACHE_FILE = "findBugsPlugins.bin";
+
+  @NotNull
+  private final FindBugsPluginCache myPluginCache;
+  @NotNull
+  private final FindBugsFileIndex myFileIndex = new FindBugsFileIndex();
+
+  public FindBugsFactory(@NotNull BuildAgentConfiguration agentConfiguration) {
+    myPluginCache = new FindBugsPluginCache(new File(agentConfiguration.getCacheDirectory("xml-report-plugin"), PLUGIN_CACHE_FILE));
+  }
+
   @NotNull
   @Override
   public String getType() {
@@ -33,7 +46,7 @@ public class FindBugsFactory implements ParserFactory {
   public Parser createParser(@NotNull ParseParameters parameters) {
     final Map<String,String> params = parameters.getParameters();
     return new FindBugsReportParser(parameters.getInspectionReporter(), XmlReportPluginUtil.getFindBugsHomePath(params),
-                                    parameters.getCheckoutDir(), XmlReportPluginUtil.isFindBugsLookupFiles(params));
+                                    parameters.getCheckoutDir(), XmlReportPluginUtil.isFindBugsLookupFiles(params), myPluginCache, myFileIndex);
   }
 
   @NotNull
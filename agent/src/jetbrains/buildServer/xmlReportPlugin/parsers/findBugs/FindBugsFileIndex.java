@@ -0,0 +1,247 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.ZipSlipAwareZipFile;
+import jetbrains.buildServer.util.executors.ExecutorsFactory;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Agent wide index of classes and sources referenced by FindBugs reports.
+ * Archives are read once, keyed by path, size and modification time, and closed right after indexing,
+ * least recently used indexes are dropped when the total size of indexed paths exceeds the limit.
+ * Directories may change between reports, so they are indexed per report, in parallel.
+ */
+class FindBugsFileIndex {
+  public static final String TEAMCITY_PROPERTY_MAX_SIZE = "teamcity.xmlReport.findBugs.fileIndex.maxSize";
+  // total length of indexed paths
+  private static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+  private final long myMaxSize;
+  @NotNull
+  private final LinkedHashMap<String, ArchiveIndex> myArchives = new LinkedHashMap<String, ArchiveIndex>(16, 0.75f, true);
+  private long mySize;
+  @Nullable
+  private ExecutorService myExecutor;
+
+  public FindBugsFileIndex() {
+    this(TeamCityProperties.getLong(TEAMCITY_PROPERTY_MAX_SIZE, DEFAULT_MAX_SIZE));
+  }
+
+  public FindBugsFileIndex(long maxSize) {
+    myMaxSize = maxSize;
+  }
+
+  /**
+   * @return index of the archive entries, null if the archive can't be read
+   */
+  @Nullable
+  public PathIndex getArchiveIndex(@NotNull File archive) {
+    final String path = archive.getAbsolutePath();
+    final long length = archive.length();
+    final long lastModified = archive.lastModified();
+    synchronized (this) {
+      final ArchiveIndex cached = myArchives.get(path);
+      if (cached != null && cached.myLength == length && cached.myLastModified == lastModified) return cached.myIndex;
+    }
+
+    final PathIndex index;
+    try {
+      index = PathIndex.forArchive(archive);
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to index " + path, e);
+      return null;
+    }
+
+    synchronized (this) {
+      final ArchiveIndex previous = myArchives.put(path, new ArchiveIndex(index, length, lastModified));
+      if (previous != null) mySize -= previous.myIndex.getSize();
+      mySize += index.getSize();
+      final Iterator<ArchiveIndex> it = myArchives.values().iterator();
+      // the index just built is the last one and is always kept
+      while (mySize > myMaxSize && myArchives.size() > 1) {
+        mySize -= it.next().myIndex.getSize();
+        it.remove();
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Runs the tasks in parallel and waits for them to finish, the first one is run in the calling thread
+   */
+  public void runInParallel(@NotNull List<Runnable> tasks) {
+    if (tasks.isEmpty()) return;
+    final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size() - 1);
+    if (tasks.size() > 1) {
+      final ExecutorService executor = getExecutor();
+      for (Runnable task : tasks.subList(1, tasks.size())) {
+        futures.add(executor.submit(task));
+      }
+    }
+    tasks.get(0).run();
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LoggingUtils.LOG.warn("Failed to index FindBugs report classes and sources", e.getCause());
+      }
+    }
+  }
+
+  @NotNull
+  private synchronized ExecutorService getExecutor() {
+    if (myExecutor == null) {
+      myExecutor = ExecutorsFactory.newFixedDaemonExecutor("xml-report-plugin-findbugs-index", Runtime.getRuntime().availableProcessors());
+    }
+    return myExecutor;
+  }
+
+  private static final class ArchiveIndex {
+    @NotNull
+    private final PathIndex myIndex;
+    private final long myLength;
+    private final long myLastModified;
+
+    private ArchiveIndex(@NotNull PathIndex index, long length, long lastModified) {
+      myIndex = index;
+      myLength = length;
+      myLastModified = lastModified;
+    }
+  }
+
+  /**
+   * Relative paths with '/' separators grouped by file name. Paths are kept in one string,
+   * a lookup checks only the paths with the same file name hash.
+   */
+  static final class PathIndex {
+    @NotNull
+    private final String myPaths;
+    // path i is myPaths.substring(myStarts[i], myStarts[i + 1])
+    @NotNull
+    private final int[] myStarts;
+    // first path number + 1 for a file name hash, 0 if none
+    @NotNull
+    private final int[] myBuckets;
+    // next path number + 1 with the same bucket, 0 if none
+    @NotNull
+    private final int[] myNext;
+
+    private PathIndex(@NotNull StringBuilder paths, @NotNull int[] starts, int count) {
+      myPaths = paths.toString();
+      myStarts = Arrays.copyOf(starts, count + 1);
+      myBuckets = new int[Integer.highestOneBit(Math.max(count, 1) * 2)];
+      myNext = new int[count];
+      // paths are linked in the reverse order, so a lookup returns the first of them
+      for (int i = count - 1; i >= 0; --i) {
+        final int bucket = hashName(myPaths, myStarts[i], myStarts[i + 1]) & (myBuckets.length - 1);
+        myNext[i] = myBuckets[bucket];
+        myBuckets[bucket] = i + 1;
+      }
+    }
+
+    @NotNull
+    static PathIndex forArchive(@NotNull File archive) throws IOException {
+      final Builder builder = new Builder();
+      final ZipFile zipFile = new ZipSlipAwareZipFile(archive);
+      try {
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          final ZipEntry entry = entries.nextElement();
+          if (!entry.isDirectory()) builder.add(entry.getName());
+        }
+      } finally {
+        zipFile.close();
+      }
+      return builder.build();
+    }
+
+    @NotNull
+    static PathIndex forDirectory(@NotNull File directory) {
+      final Builder builder = new Builder();
+      final Path root = directory.toPath();
+      try {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) builder.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } catch (IOException e) {
+        LoggingUtils.LOG.debug("Failed to index " + directory, e);
+      }
+      return builder.build();
+    }
+
+    /**
+     * @param path relative path with '/' separators
+     * @return the first indexed path which is the given one or ends with '/' and the given one
+     */
+    @Nullable
+    String find(@NotNull String path) {
+      int i = myBuckets[hashName(path, 0, path.length()) & (myBuckets.length - 1)] - 1;
+      for (; i >= 0; i = myNext[i] - 1) {
+        final int start = myStarts[i];
+        final int end = myStarts[i + 1];
+        final int offset = end - path.length();
+        if (offset < start || !myPaths.startsWith(path, offset)) continue;
+        if (offset == start || myPaths.charAt(offset - 1) == '/') return myPaths.substring(start, end);
+      }
+      return null;
+    }
+
+    int getSize() {
+      return myPaths.length();
+    }
+
+    private static int hashName(@NotNull String s, int start, int end) {
+      int hash = 0;
+      for (int i = Math.max(start, s.lastIndexOf('/', end - 1) + 1); i < end; ++i) {
+        hash = 31 * hash + s.charAt(i);
+      }
+      return hash ^ (hash >>> 16);
+    }
+
+    private static final class Builder {
+      @NotNull
+      private final StringBuilder myPaths = new StringBuilder();
+      @NotNull
+      private int[] myStarts = new int[64];
+      private int myCount;
+
+      private void add(@NotNull String path) {
+        if (path.isEmpty()) return;
+        // nested classes are never looked up, FindBugs reports refer to their outer classes
+        if (path.endsWith(".class") && path.indexOf('$', path.lastIndexOf('/') + 1) >= 0) return;
+        if (myCount + 1 == myStarts.length) myStarts = Arrays.copyOf(myStarts, myStarts.length * 2);
+        myPaths.append(path);
+        myStarts[++myCount] = myPaths.length();
+      }
+
+      @NotNull
+      private PathIndex build() {
+        return new PathIndex(myPaths, myStarts, myCount);
+      }
+    }
+  }
+}
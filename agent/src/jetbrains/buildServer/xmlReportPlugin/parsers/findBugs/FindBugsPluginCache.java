@@ -0,0 +1,328 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Agent wide cache of bug patterns and categories defined by FindBugs plugins.
+ * Plugins are keyed by jar path, size and modification time. The cache is kept in memory and
+ * optionally saved to a binary file, so FindBugs home is scanned once per agent rather than once per report.
+ * Plugins which couldn't be read are cached too, they are read again only when the jar changes.
+ */
+class FindBugsPluginCache {
+  public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(FindBugsPluginCache.class);
+
+  private static final int MAGIC = 0x46425043;
+  private static final int VERSION = 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Nullable
+  private final File myCacheFile;
+  @NotNull
+  private final Map<String, Plugin> myPlugins = new HashMap<String, Plugin>();
+  private boolean myLoaded;
+
+  /**
+   * @param cacheFile file to persist the cache to, if null the cache is kept in memory only
+   */
+  public FindBugsPluginCache(@Nullable File cacheFile) {
+    myCacheFile = cacheFile;
+  }
+
+  /**
+   * Returns plugins under the FindBugs home in the order FindBugs loads them, reading only new and changed ones
+   */
+  @NotNull
+  public synchronized List<Plugin> getPlugins(@NotNull File findBugsHome) {
+    if (!myLoaded) {
+      myLoaded = true;
+      load();
+    }
+
+    final List<Plugin> result = new ArrayList<Plugin>();
+    boolean changed = false;
+    for (File jar : FindBugsPluginVisitor.collectPlugins(findBugsHome)) {
+      final String path = jar.getAbsolutePath();
+      Plugin plugin = myPlugins.get(path);
+      if (plugin == null || !plugin.isUpToDate(jar)) {
+        myPlugins.remove(path);
+        plugin = read(jar);
+        myPlugins.put(path, plugin);
+        changed = true;
+      }
+      result.add(plugin);
+    }
+    if (changed) save();
+    return result;
+  }
+
+  /**
+   * @return plugin definitions, no definitions if the plugin has no messages
+   */
+  @NotNull
+  private static Plugin read(@NotNull File jar) {
+    final long length = jar.length();
+    final long lastModified = jar.lastModified();
+    final Plugin[] result = new Plugin[1];
+
+    new FindBugsPluginVisitor(new FindBugsPluginVisitor.Callback() {
+      public void pluginFound(@NotNull File plugin, @NotNull byte[] messages) {
+        final Map<String, Definition> patterns = new LinkedHashMap<String, Definition>();
+        final Map<String, Definition> categories = new LinkedHashMap<String, Definition>();
+        final DetailsParser detailsParser = DetailsParser.create();
+        try {
+          new PatternXmlParser(new PatternXmlParser.Callback() {
+            public void patternFound(@NotNull final String type) {
+              getOrCreate(patterns, type);
+            }
+
+            public void patternShortDescriptionFound(@NotNull final String type, @NotNull final String description) {
+              getOrCreate(patterns, type).myName = description;
+            }
+
+            public void patternDetailsFound(@NotNull final String type, @NotNull final String details) {
+              getOrCreate(patterns, type).myDescription = detailsParser == null ? details : detailsParser.format(details);
+            }
+          }).parse(openMessages(messages));
+
+          new CategoryXmlParser(new CategoryXmlParser.Callback() {
+            public void categoryFound(@NotNull final String category) {
+              getOrCreate(categories, category);
+            }
+
+            public void categoryDescriptionFound(@NotNull final String category, @NotNull final String description) {
+              getOrCreate(categories, category).myName = description;
+            }
+
+            public void categoryDetailsFound(@NotNull final String category, @NotNull final String details) {
+              final String text = detailsParser == null ? details : detailsParser.format(details);
+              getOrCreate(categories, category).myDescription = text.substring(0, 1).toUpperCase() + text.substring(1);
+            }
+          }).parse(openMessages(messages));
+
+          result[0] = new Plugin(length, lastModified, false, new ArrayList<Definition>(patterns.values()), new ArrayList<Definition>(categories.values()));
+        } catch (IOException e) {
+          LOG.warn("Couldn't parse messages.xml from plugin " + plugin, e);
+          result[0] = new Plugin(length, lastModified, true, Collections.<Definition>emptyList(), Collections.<Definition>emptyList());
+        }
+      }
+    }).load(jar);
+
+    return result[0] == null ? new Plugin(length, lastModified, false, Collections.<Definition>emptyList(), Collections.<Definition>emptyList()) : result[0];
+  }
+
+  /**
+   * Opens messages in the encoding the XML parser detects from the byte order mark or the XML declaration
+   */
+  @NotNull
+  private static Reader openMessages(@NotNull byte[] messages) throws IOException {
+    String encoding;
+    try {
+      final XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      // only the declaration is read when the reader is created
+      final XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(messages));
+      encoding = reader.getEncoding();
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Couldn't detect messages.xml encoding", e);
+    }
+
+    final PushbackReader reader = new PushbackReader(new InputStreamReader(new ByteArrayInputStream(messages), encoding == null ? "UTF-8" : encoding));
+    final int first = reader.read();
+    // the decoder keeps the UTF-8 byte order mark
+    if (first != -1 && first != '\uFEFF') reader.unread(first);
+    return reader;
+  }
+
+  @NotNull
+  private static Definition getOrCreate(@NotNull Map<String, Definition> definitions, @NotNull String id) {
+    Definition definition = definitions.get(id);
+    if (definition == null) {
+      definition = new Definition(id, null, null);
+      definitions.put(id, definition);
+    }
+    return definition;
+  }
+
+  private void load() {
+    if (myCacheFile == null || !myCacheFile.isFile()) return;
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.info("Ignoring FindBugs plugins cache of unsupported format " + myCacheFile);
+        return;
+      }
+      final Map<String, Plugin> plugins = new HashMap<String, Plugin>();
+      final int count = in.readInt();
+      for (int i = 0; i < count; ++i) {
+        final String path = readString(in);
+        final long length = in.readLong();
+        final long lastModified = in.readLong();
+        final boolean failed = in.readBoolean();
+        final List<Definition> patterns = readDefinitions(in);
+        final List<Definition> categories = readDefinitions(in);
+        plugins.put(path, new Plugin(length, lastModified, failed, patterns, categories));
+      }
+      myPlugins.putAll(plugins);
+    } catch (IOException e) {
+      LOG.warn("Failed to load FindBugs plugins cache from " + myCacheFile + ", plugins will be read again", e);
+    } finally {
+      FileUtil.close(in);
+    }
+  }
+
+  private void save() {
+    if (myCacheFile == null) return;
+
+    final File tempFile = new File(myCacheFile.getParentFile(), myCacheFile.getName() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      FileUtil.createParentDirs(tempFile);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(myPlugins.size());
+      for (Map.Entry<String, Plugin> entry : myPlugins.entrySet()) {
+        final Plugin plugin = entry.getValue();
+        writeString(out, entry.getKey());
+        out.writeLong(plugin.myLength);
+        out.writeLong(plugin.myLastModified);
+        out.writeBoolean(plugin.myFailed);
+        writeDefinitions(out, plugin.myPatterns);
+        writeDefinitions(out, plugin.myCategories);
+      }
+      out.close();
+      out = null;
+      Files.move(tempFile.toPath(), myCacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Failed to save FindBugs plugins cache to " + myCacheFile, e);
+      FileUtil.close(out);
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  @NotNull
+  private static List<Definition> readDefinitions(@NotNull DataInputStream in) throws IOException {
+    final int count = in.readInt();
+    final List<Definition> definitions = new ArrayList<Definition>(count);
+    for (int i = 0; i < count; ++i) {
+      final String id = readString(in);
+      if (id == null) throw new IOException("Corrupted FindBugs plugins cache");
+      definitions.add(new Definition(id, readString(in), readString(in)));
+    }
+    return definitions;
+  }
+
+  private static void writeDefinitions(@NotNull DataOutputStream out, @NotNull List<Definition> definitions) throws IOException {
+    out.writeInt(definitions.size());
+    for (Definition definition : definitions) {
+      writeString(out, definition.myId);
+      writeString(out, definition.myName);
+      writeString(out, definition.myDescription);
+    }
+  }
+
+  // DataOutput.writeUTF is limited to 64K which pattern details may exceed
+  @Nullable
+  private static String readString(@NotNull DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) return null;
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @Nullable String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = s.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public static final class Plugin {
+    private final long myLength;
+    private final long myLastModified;
+    private final boolean myFailed;
+    @NotNull
+    private final List<Definition> myPatterns;
+    @NotNull
+    private final List<Definition> myCategories;
+
+    private Plugin(long length, long lastModified, boolean failed, @NotNull List<Definition> patterns, @NotNull List<Definition> categories) {
+      myLength = length;
+      myLastModified = lastModified;
+      myFailed = failed;
+      myPatterns = patterns;
+      myCategories = categories;
+    }
+
+    private boolean isUpToDate(@NotNull File jar) {
+      return jar.length() == myLength && jar.lastModified() == myLastModified;
+    }
+
+    /**
+     * @return true if plugin messages couldn't be parsed
+     */
+    public boolean isFailed() {
+      return myFailed;
+    }
+
+    @NotNull
+    public List<Definition> getPatterns() {
+      return myPatterns;
+    }
+
+    @NotNull
+    public List<Definition> getCategories() {
+      return myCategories;
+    }
+  }
+
+  /**
+   * Bug pattern or category, name and description are null if not defined by the plugin
+   */
+  public static final class Definition {
+    @NotNull
+    private final String myId;
+    @Nullable
+    private String myName;
+    @Nullable
+    private String myDescription;
+
+    private Definition(@NotNull String id, @Nullable String name, @Nullable String description) {
+      myId = id;
+      myName = name;
+      myDescription = description;
+    }
+
+    @NotNull
+    public String getId() {
+      return myId;
+    }
+
+    @Nullable
+    public String getName() {
+      return myName;
+    }
+
+    @Nullable
+    public String getDescription() {
+      return myDescription;
+    }
+  }
+}
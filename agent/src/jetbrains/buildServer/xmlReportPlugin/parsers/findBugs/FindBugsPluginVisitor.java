@@ -3,7 +3,8 @@
 package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import jetbrains.buildServer.util.FileUtil;
@@ -26,27 +27,39 @@ class FindBugsPluginVisitor {
   }
 
   public void visit(@NotNull final File findBugsHome) {
+    for (File plugin : collectPlugins(findBugsHome)) {
+      load(plugin);
+    }
+  }
+
+  /**
+   * Lists the core plugin and additional plugins in the order FindBugs loads them
+   */
+  @NotNull
+  public static List<File> collectPlugins(@NotNull final File findBugsHome) {
     LOG.info("Visiting FindBugs plugins under " + findBugsHome);
 
+    final List<File> result = new ArrayList<File>();
     final File corePlugin = new File(findBugsHome, "lib/findbugs.jar");
     if (!corePlugin.isFile()) {
       LOG.info("Couldn't find core plugin " + corePlugin + ". Ensure specified FindBugs home path is correct");
     } else {
-      load(corePlugin);
+      result.add(corePlugin);
     }
     final File pluginFolder = new File(findBugsHome, "plugin");
     final File[] plugins = pluginFolder.listFiles();
     if (plugins == null) {
-      return;
+      return result;
     }
-      for (File p : plugins) {
-        if (p.getAbsolutePath().endsWith(".jar")) {
-        load(p);
+    for (File p : plugins) {
+      if (p.getAbsolutePath().endsWith(".jar")) {
+        result.add(p);
       }
     }
+    return result;
   }
 
-  private void load(@NotNull File file) {
+  public void load(@NotNull File file) {
     JarFile jar = null;
     try {
       jar = new JarFile(file);
@@ -58,24 +71,18 @@ class FindBugsPluginVisitor {
         return;
       }
 
-      final File tempFile = FileUtil.createTempFile("", "");
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
       InputStream jarFileStream = null;
-      OutputStream tempFileStream = null;
       try {
         jarFileStream = jar.getInputStream(messages);
-        tempFileStream = Files.newOutputStream(tempFile.toPath());
-
-        FileUtil.copy(jarFileStream, tempFileStream);
+        FileUtil.copy(jarFileStream, content);
       } finally {
         FileUtil.close(jarFileStream);
-        FileUtil.close(tempFileStream);
       }
 
-      myCallback.pluginFound(tempFile);
-
-      FileUtil.delete(tempFile);
+      myCallback.pluginFound(file, content.toByteArray());
     } catch (Exception e) {
-      LOG.warn("Couldn't copy out messages.xml from plugin " + file, e);
+      LOG.warn("Couldn't read messages.xml from plugin " + file, e);
     } finally {
       try {
         if (jar != null) {
@@ -88,6 +95,6 @@ class FindBugsPluginVisitor {
   }
 
   public interface Callback {
-    void pluginFound(@NotNull File messages);
+    void pluginFound(@NotNull File plugin, @NotNull byte[] messages);
   }
 }
\ No newline at end of file
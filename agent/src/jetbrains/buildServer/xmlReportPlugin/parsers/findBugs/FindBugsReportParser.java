@@ -2,13 +2,14 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
-import javax.swing.text.html.parser.DTD;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
@@ -25,6 +26,9 @@ import org.jetbrains.annotations.Nullable;
 class FindBugsReportParser implements Parser {
   public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(FindBugsReportParser.class);
 
+  static final String TEAMCITY_PROPERTY_MAX_DEFERRED_BUGS = "teamcity.xmlReport.findBugs.maxDeferredBugs";
+  private static final int DEFAULT_MAX_DEFERRED_BUGS = 10000;
+
   @NotNull
   private final InspectionReporter myInspectionReporter;
 
@@ -39,14 +43,19 @@ class FindBugsReportParser implements Parser {
   private int myInfos;
 
   @NotNull
-  private final PatternXmlParser myPatternXmlParser;
+  private final FindBugsPluginCache myPluginCache;
   @NotNull
   private final Map<String, NameAndDescritionInfo> myPatterns = new HashMap<String, NameAndDescritionInfo>();
   @NotNull
-  private final CategoryXmlParser myCategoryXmlParser;
-  @NotNull
   private final Map<String, NameAndDescritionInfo> myCategories = new HashMap<String, NameAndDescritionInfo>();
 
+  // bug instances are reported after the definitions found in the report, kept in the report order
+  @NotNull
+  private final Deque<BugInstance> myDeferredBugs = new ArrayDeque<BugInstance>();
+  private final int myMaxDeferredBugs;
+  // too many bug instances to keep, they are reported in the second pass
+  private boolean mySecondPassNeeded;
+
   @NotNull
   private final FileFinder myFileFinder;
 
@@ -63,40 +72,46 @@ class FindBugsReportParser implements Parser {
                               @Nullable final String findBugsHome,
                               @NotNull final File baseFolder,
                               boolean lookForFiles) {
-    myInspectionReporter = inspectionReporter;
-    myBaseFolder = baseFolder;
-    myFindBugsHome = findBugsHome == null ? null : new File(findBugsHome);
-
-    myPatternXmlParser = new PatternXmlParser(new PatternXmlParser.Callback() {
-      public void patternFound(@NotNull final String type) {
-        if (!myPatterns.containsKey(type)) myPatterns.put(type, new NameAndDescritionInfo());
-      }
-
-      public void patternShortDescriptionFound(@NotNull final String type, @NotNull final String description) {
-        myPatterns.get(type).setName(description);
-      }
+    this(inspectionReporter, findBugsHome, baseFolder, lookForFiles, new FindBugsPluginCache(null));
+  }
 
-      public void patternDetailsFound(@NotNull final String type, @NotNull final String details) {
-        myPatterns.get(type).setDescription(formatText(details));
-      }
-    });
+  public FindBugsReportParser(@NotNull final InspectionReporter inspectionReporter,
+                              @Nullable final String findBugsHome,
+                              @NotNull final File baseFolder,
+                              boolean lookForFiles,
+                              @NotNull final FindBugsPluginCache pluginCache) {
+    this(inspectionReporter, findBugsHome, baseFolder, lookForFiles, pluginCache, new FindBugsFileIndex());
+  }
 
-    myCategoryXmlParser = new CategoryXmlParser(new CategoryXmlParser.Callback() {
-      public void categoryFound(@NotNull final String category) {
-        if (!myCategories.containsKey(category)) myCategories.put(category, new NameAndDescritionInfo());
-      }
+  public FindBugsReportParser(@NotNull final InspectionReporter inspectionReporter,
+                              @Nullable final String findBugsHome,
+                              @NotNull final File baseFolder,
+                              boolean lookForFiles,
+                              @NotNull final FindBugsPluginCache pluginCache,
+                              @NotNull final FindBugsFileIndex fileIndex) {
+    this(inspectionReporter, findBugsHome, baseFolder, lookForFiles, pluginCache, fileIndex,
+         TeamCityProperties.getInteger(TEAMCITY_PROPERTY_MAX_DEFERRED_BUGS, DEFAULT_MAX_DEFERRED_BUGS));
+  }
 
-      public void categoryDescriptionFound(@NotNull final String category, @NotNull final String description) {
-        myCategories.get(category).setName(description);
-      }
+  /**
+   * @param maxDeferredBugs max number of bug instances kept until the report definitions are read,
+   *                        the report is read twice if there are more
+   */
+  FindBugsReportParser(@NotNull final InspectionReporter inspectionReporter,
+                       @Nullable final String findBugsHome,
+                       @NotNull final File baseFolder,
+                       boolean lookForFiles,
+                       @NotNull final FindBugsPluginCache pluginCache,
+                       @NotNull final FindBugsFileIndex fileIndex,
+                       int maxDeferredBugs) {
+    myMaxDeferredBugs = maxDeferredBugs;
+    myInspectionReporter = inspectionReporter;
+    myBaseFolder = baseFolder;
+    myFindBugsHome = findBugsHome == null ? null : new File(findBugsHome);
 
-      public void categoryDetailsFound(@NotNull final String category, @NotNull final String details) {
-        final String text = formatText(details);
-        myCategories.get(category).setDescription(text.substring(0, 1).toUpperCase() + text.substring(1));
-      }
-    });
+    myPluginCache = pluginCache;
 
-    myFileFinder = lookForFiles ? new FileFinder() : new FileFinder() {
+    myFileFinder = lookForFiles ? new FileFinder(fileIndex) : new FileFinder(fileIndex) {
       @Override
       public void addJar(@NotNull final String jar) {}
       @Override
@@ -105,36 +120,28 @@ class FindBugsReportParser implements Parser {
       public void close() {}
     };
 
-    try {
-      myDetailsParser = new DetailsParser(DTD.getDTD(""));
-    } catch (IOException e) {
-      LOG.warn("Failed to create empty DTD");
-    }
+    myDetailsParser = DetailsParser.create();
   }
 
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (!ParserUtils.isReportComplete(file, "BugCollection")) {
+    if (!ParserUtils.isReportTailComplete(file, "BugCollection")) {
       return false;
     }
 
     if (myFindBugsHome != null) {
-      new FindBugsPluginVisitor(new FindBugsPluginVisitor.Callback() {
-        @Override
-        public void pluginFound(@NotNull File messages) {
-          try {
-            myPatternXmlParser.parse(messages);
-            myCategoryXmlParser.parse(messages);
-          } catch (IOException e) {
-            myInspectionReporter.error("Error occurred while loading bug patterns from " + myFindBugsHome);
-          }
+      for (FindBugsPluginCache.Plugin plugin : myPluginCache.getPlugins(myFindBugsHome)) {
+        if (plugin.isFailed()) {
+          myInspectionReporter.error("Error occurred while loading bug patterns from " + myFindBugsHome);
+          continue;
         }
-      }).visit(myFindBugsHome);
+        addDefinitions(myPatterns, plugin.getPatterns());
+        addDefinitions(myCategories, plugin.getCategories());
+      }
     }
 
     try {
-      myPatternXmlParser.parse(file);
-      myCategoryXmlParser.parse(file);
-
+      // bug patterns and categories are read in the same pass, usually they follow the bug instances
+      // and take precedence over the plugin definitions, so the bug instances are reported at the end
       new FindBugsReportXmlParser(new FindBugsReportXmlParser.Callback() {
         public void jarFound(@NotNull final String jar) {
           myFileFinder.addJar(FileUtil.resolvePath(myBaseFolder, jar).getAbsolutePath());
@@ -148,23 +155,25 @@ class FindBugsReportParser implements Parser {
                                      @Nullable final String message,
                                      @Nullable final String details,
                                      final int priority) {
-          switch (priority) {
-            case 1:
-              ++myErrors;
-              break;
-            case 2:
-              ++myWarnings;
-              break;
-            default:
-              ++myInfos;
+          if (mySecondPassNeeded) return;
+          if (myDeferredBugs.size() >= myMaxDeferredBugs) {
+            myDeferredBugs.clear();
+            mySecondPassNeeded = true;
+            return;
           }
-          final String cName = myCategories.containsKey(category) ? myCategories.get(category).getName() : category;
-          final String descr = myCategories.containsKey(category) ? myCategories.get(category).getDescription() : null;
-          final String mess = getFullMessage(message, myPatterns.containsKey(type) ? myPatterns.get(type).getDescription() : null, details);
-          final String pName = myPatterns.containsKey(type) ? myPatterns.get(type).getName() : type;
+          myDeferredBugs.add(new BugInstance(file, clazz, line, type, category, message, details, priority));
+        }
+
+        public void patternFound(@NotNull final String type, @Nullable final String shortDescription, @Nullable final String details) {
+          if (!myPatterns.containsKey(type)) myPatterns.put(type, new NameAndDescritionInfo());
+          if (shortDescription != null) setPatternName(type, shortDescription);
+          if (details != null) setPatternDescription(type, details);
+        }
 
-          myInspectionReporter.reportInspectionType(new InspectionTypeResult(type, pName, descr, cName));
-          myInspectionReporter.reportInspection(new InspectionResult(findFile(file, clazz), type, mess, line, priority));
+        public void categoryFound(@NotNull final String category, @Nullable final String description, @Nullable final String details) {
+          if (!myCategories.containsKey(category)) myCategories.put(category, new NameAndDescritionInfo());
+          if (description != null) setCategoryName(category, description);
+          if (details != null) setCategoryDescription(category, details);
         }
 
         @Override
@@ -172,14 +181,105 @@ class FindBugsReportParser implements Parser {
           myInspectionReporter.error(message);
         }
       }).parse(file);
+
+      if (mySecondPassNeeded) {
+        reportBugs(file);
+      } else {
+        while (!myDeferredBugs.isEmpty()) reportBug(myDeferredBugs.poll());
+      }
     } catch (IOException e) {
       throw new ParsingException(e);
     } finally {
+      myDeferredBugs.clear();
       myFileFinder.close();
     }
     return true;
   }
 
+  private static void addDefinitions(@NotNull Map<String, NameAndDescritionInfo> target,
+                                     @NotNull Collection<FindBugsPluginCache.Definition> definitions) {
+    for (FindBugsPluginCache.Definition definition : definitions) {
+      NameAndDescritionInfo info = target.get(definition.getId());
+      if (info == null) {
+        info = new NameAndDescritionInfo();
+        target.put(definition.getId(), info);
+      }
+      if (definition.getName() != null) info.setName(definition.getName());
+      if (definition.getDescription() != null) info.setDescription(definition.getDescription());
+    }
+  }
+
+  /**
+   * Reports bug instances right away, all the definitions and jars are already known
+   */
+  private void reportBugs(@NotNull File file) throws IOException {
+    new FindBugsReportXmlParser(new FindBugsReportXmlParser.Callback() {
+      public void jarFound(@NotNull final String jar) {
+      }
+
+      public void bugInstanceFound(@Nullable final String file,
+                                   @Nullable final String clazz,
+                                   final int line,
+                                   @Nullable final String type,
+                                   @Nullable final String category,
+                                   @Nullable final String message,
+                                   @Nullable final String details,
+                                   final int priority) {
+        reportBug(new BugInstance(file, clazz, line, type, category, message, details, priority));
+      }
+
+      public void patternFound(@NotNull final String type, @Nullable final String shortDescription, @Nullable final String details) {
+      }
+
+      public void categoryFound(@NotNull final String category, @Nullable final String description, @Nullable final String details) {
+      }
+
+      @Override
+      public void error(@NotNull final String message) {
+        // reported in the first pass
+      }
+    }).parse(file);
+  }
+
+  private void reportBug(@NotNull BugInstance bug) {
+    final String type = bug.type;
+    final String category = bug.category;
+    switch (bug.priority) {
+      case 1:
+        ++myErrors;
+        break;
+      case 2:
+        ++myWarnings;
+        break;
+      default:
+        ++myInfos;
+    }
+    final String cName = myCategories.containsKey(category) ? myCategories.get(category).getName() : category;
+    final String descr = myCategories.containsKey(category) ? myCategories.get(category).getDescription() : null;
+    final String mess = getFullMessage(bug.message, myPatterns.containsKey(type) ? myPatterns.get(type).getDescription() : null, bug.details);
+    final String pName = myPatterns.containsKey(type) ? myPatterns.get(type).getName() : type;
+
+    myInspectionReporter.reportInspectionType(new InspectionTypeResult(type, pName, descr, cName));
+    myInspectionReporter.reportInspection(new InspectionResult(findFile(bug.file, bug.clazz), type, mess, bug.line, bug.priority));
+  }
+
+  private void setPatternName(@NotNull String type, @NotNull String name) {
+    myPatterns.get(type).setName(name);
+  }
+
+  private void setPatternDescription(@NotNull String type, @NotNull String details) {
+    myPatterns.get(type).setDescription(formatText(details));
+  }
+
+  private void setCategoryName(@NotNull String category, @NotNull String name) {
+    myCategories.get(category).setName(name);
+  }
+
+  private void setCategoryDescription(@NotNull String category, @NotNull String details) {
+    final String text = formatText(details);
+    myCategories.get(category).setDescription(text.substring(0, 1).toUpperCase() + text.substring(1));
+  }
+
   @Nullable
   private static String getFullMessage(@Nullable String message, @Nullable String defaultMessage, @Nullable String details) {
     if (StringUtil.isEmpty(message)) message = defaultMessage;
@@ -213,18 +313,35 @@ class FindBugsReportParser implements Parser {
     return clazz;
   }
 
-  @SuppressWarnings({"ConstantConditions"})
+  @NotNull
   private String formatText(@NotNull String s) {
-    if (myDetailsParser == null) return s;
-    try {
-      myDetailsParser.parse(new BufferedReader(new StringReader(s)));
-    } catch (IOException e) {
-      LOG.warn("Couldn't format html description to text", e);
-    }
-    return myDetailsParser.getText().replace("&nbsp", "");
+    return myDetailsParser == null ? s : myDetailsParser.format(s);
   }
 
 
+  private static final class BugInstance {
+    @Nullable private final String file;
+    @Nullable private final String clazz;
+    private final int line;
+    @Nullable private final String type;
+    @Nullable private final String category;
+    @Nullable private final String message;
+    @Nullable private final String details;
+    private final int priority;
+
+    private BugInstance(@Nullable String file, @Nullable String clazz, int line,
+                        @Nullable String type, @Nullable String category, @Nullable String message, @Nullable String details, int priority) {
+      this.file = file;
+      this.clazz = clazz;
+      this.line = line;
+      this.type = type;
+      this.category = category;
+      this.message = message;
+      this.details = details;
+      this.priority = priority;
+    }
+  }
+
   private static final class NameAndDescritionInfo {
     @NotNull
     private String myName = "";
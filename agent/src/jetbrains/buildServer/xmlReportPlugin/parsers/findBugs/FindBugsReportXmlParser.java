@@ -5,6 +5,7 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
 import java.util.List;
 import jetbrains.buildServer.util.XmlXppAbstractParser;
 import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import jetbrains.buildServer.xmlReportPlugin.utils.ParserUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -105,7 +106,61 @@ class FindBugsReportXmlParser extends BaseXmlXppAbstractParser {
                 }
               });
             }
-          }, "BugInstance")
+          }, "BugInstance"),
+
+          elementsPath(new XmlXppAbstractParser.Handler() {
+            public XmlXppAbstractParser.XmlReturn processElement(@NotNull final XmlXppAbstractParser.XmlElementInfo reader) {
+              final String type = reader.getAttribute("type");
+              if (type == null) return reader.noDeep();
+
+              final String[] shortDescription = new String[1];
+              final String[] details = new String[1];
+              return reader.visitChildren(
+                elementsPath(new TextHandler() {
+                  public void setText(@NotNull final String text) {
+                    shortDescription[0] = ParserUtils.formatText(text);
+                  }
+                }, "ShortDescription"),
+
+                elementsPath(new TextHandler() {
+                  public void setText(@NotNull final String text) {
+                    details[0] = ParserUtils.formatText(text);
+                  }
+                }, "Details")
+              ).than(new XmlAction() {
+                public void apply() {
+                  myCallback.patternFound(type, shortDescription[0], details[0]);
+                }
+              });
+            }
+          }, "BugPattern"),
+
+          elementsPath(new XmlXppAbstractParser.Handler() {
+            public XmlXppAbstractParser.XmlReturn processElement(@NotNull final XmlXppAbstractParser.XmlElementInfo reader) {
+              final String category = reader.getAttribute("category");
+              if (category == null) return reader.noDeep();
+
+              final String[] description = new String[1];
+              final String[] details = new String[1];
+              return reader.visitChildren(
+                elementsPath(new TextHandler() {
+                  public void setText(@NotNull final String text) {
+                    description[0] = ParserUtils.formatText(text);
+                  }
+                }, "Description"),
+
+                elementsPath(new TextHandler() {
+                  public void setText(@NotNull final String text) {
+                    details[0] = ParserUtils.formatText(text);
+                  }
+                }, "Details")
+              ).than(new XmlAction() {
+                public void apply() {
+                  myCallback.categoryFound(category, description[0], details[0]);
+                }
+              });
+            }
+          }, "BugCategory")
         );
       }
     }, "BugCollection")) {
@@ -117,17 +172,15 @@ class FindBugsReportXmlParser extends BaseXmlXppAbstractParser {
   }
 
   private static int getInt(@Nullable String val) {
-    try {
-      return val == null ? 0 : Integer.parseInt(val);
-    } catch (NumberFormatException e) {
-      return 0;
-    }
+    return NumberDecoder.parseInt(val, 0);
   }
 
   public interface Callback {
     void jarFound(@NotNull String jar);
     void bugInstanceFound(@Nullable String file, @Nullable String clazz, int line,
                           @Nullable String type, @Nullable String category, @Nullable String message, @Nullable String details, int priority);
+    void patternFound(@NotNull String type, @Nullable String shortDescription, @Nullable String details);
+    void categoryFound(@NotNull String category, @Nullable String description, @Nullable String details);
     void error(@NotNull String message);
   }
 
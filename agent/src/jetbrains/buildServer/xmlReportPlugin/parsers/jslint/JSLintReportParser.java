@@ -29,7 +29,7 @@ class JSLintReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (!ParserUtils.isReportComplete(file, "jslint")) {
+    if (!ParserUtils.isReportTailComplete(file, "jslint")) {
       return false;
     }
 
@@ -37,8 +37,8 @@ class JSLintReportParser implements Parser {
       new JSLintXmlReportParser(new JSLintXmlReportParser.Callback() {
         @Override
         public void markBuildAsInspectionsBuild() {
-          if (myInspectionReporter instanceof TeamCityInspectionReporter) {
-            ((TeamCityInspectionReporter)myInspectionReporter).markBuildAsInspectionsBuild();
+          if (myInspectionReporter instanceof InspectionsBuildMarker) {
+            ((InspectionsBuildMarker)myInspectionReporter).markBuildAsInspectionsBuild();
           }
         }
 
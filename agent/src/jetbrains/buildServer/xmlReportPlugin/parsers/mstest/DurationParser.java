@@ -1,13 +1,8 @@
-
-
 package jetbrains.buildServer.xmlReportPlugin.parsers.mstest;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Eugene Petrenko
@@ -17,41 +12,20 @@ class DurationParser {
   private static final Logger LOG = Logger.getLogger(DurationParser.class.getName());
 
   public long parseTestDuration(@NotNull final String duration) {
-    try {
-      String[] durations = duration.split(":");
-      if (durations.length != 3) {
-        LOG.warn("Failed to parse duration string: " + duration + ". Format unexpected.");
-        return -1;
-      }
-      final double seconds = Double.parseDouble(durations[2]);
-      final double minutes = Double.parseDouble(durations[1]);
-      final double hours = Double.parseDouble(durations[0]);
-
-      return (long)(Math.ceil(1000 * seconds) + 1000 * (60 * (minutes + 60 * hours)));
-    } catch (NumberFormatException e) {
-      LOG.warn("Failed to parse duration string: " + duration + ". " + e.getMessage(), e);
+    final long millis = NumberDecoder.parseTimeSpanMillis(duration);
+    if (millis == NumberDecoder.INVALID) {
+      LOG.warn("Failed to parse duration string: " + duration + ". Format unexpected.");
+      return -1;
     }
-    return -1;
+    return millis;
   }
 
   public long parseTestDuration(@NotNull final String startTime, @NotNull final String endTime) {
-    Long start = parseDotNetTime(startTime);
-    Long finish = parseDotNetTime(endTime);
-
-    if (start == null || finish == null) return -1;
-    return finish - start;
-  }
-
-  @Nullable
-  private Long parseDotNetTime(@NotNull String time) {
     //NOTE: We ommit timezone because we need only a duration. Incoming format is like: 2010-02-12T14:44:45.9393792+00:00
-    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    final long start = NumberDecoder.parseDateTimeSeconds(startTime);
+    final long finish = NumberDecoder.parseDateTimeSeconds(endTime);
 
-    try {
-      final Date date = sdf.parse(time);
-      return date != null ? date.getTime() : null;
-    } catch (ParseException e) {
-      return null;
-    }
+    if (start == NumberDecoder.INVALID || finish == NumberDecoder.INVALID) return -1;
+    return 1000 * (finish - start);
   }
-}
\ No newline at end of file
+}
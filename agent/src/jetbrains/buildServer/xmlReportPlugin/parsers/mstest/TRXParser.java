@@ -4,13 +4,18 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.mstest;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import jetbrains.buildServer.xmlReportPlugin.utils.ParserUtils;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -22,8 +27,16 @@ import org.jetbrains.annotations.Nullable;
 class TRXParser implements Parser {
   private static final Logger LOG = Logger.getLogger(TRXParser.class);
 
+  static final String TEAMCITY_PROPERTY_SINGLE_PASS = "teamcity.xmlReport.trx.singlePass";
+  static final String TEAMCITY_PROPERTY_MAX_DEFERRED_RESULTS = "teamcity.xmlReport.trx.maxDeferredResults";
+  private static final int DEFAULT_MAX_DEFERRED_RESULTS = 1000;
+  // root element of VS 2005 reports which keep test definitions apart from TestRun
+  private static final String VS2005_ROOT_ELEMENT = "Tests";
+
   private final TestNamesTableParser myNamesParser;
   private final TestResultsTableParser myResultsParser;
+  private final TestResultsTableParser mySinglePassParser;
+  private final TestResultsTableParser.Callback myResultsCallback;
 
   private final Map<String,String> myTestIdToName = new HashMap<String,String>();
 
@@ -35,16 +48,39 @@ class TRXParser implements Parser {
 
   @SuppressWarnings("FieldMayBeFinal") private int myReportedTestsCount = 0;
 
+  private final boolean mySinglePass;
+  private final int myMaxDeferredResults;
+  private int myPassCount;
+
+  // single pass state: results and messages which come before test definitions are deferred
+  // until the definitions are read, VS 2008 and later write definitions before results
+  @NotNull
+  private final List<Runnable> myDeferredMessages = new ArrayList<Runnable>();
+  @NotNull
+  private final List<Runnable> myDeferredResults = new ArrayList<Runnable>();
+  private int myDeferredTestsCount;
+  private boolean myDefinitionsRead;
+  private boolean myResultsDropped;
+  private boolean myMessagesReported;
+
   public TRXParser(@NotNull final TestReporter logger, @NotNull final String defaultSuiteName) {
+    this(logger, defaultSuiteName,
+         TeamCityProperties.getBooleanOrTrue(TEAMCITY_PROPERTY_SINGLE_PASS),
+         TeamCityProperties.getInteger(TEAMCITY_PROPERTY_MAX_DEFERRED_RESULTS, DEFAULT_MAX_DEFERRED_RESULTS));
+  }
+
+  public TRXParser(@NotNull final TestReporter logger, @NotNull final String defaultSuiteName, boolean singlePass, int maxDeferredResults) {
     myLogger = logger;
     myDefaultSuiteName = defaultSuiteName;
+    mySinglePass = singlePass;
+    myMaxDeferredResults = maxDeferredResults;
     myNamesParser = new TestNamesTableParser(new TestNamesTableParser.Callback() {
       public void testMethodFound(@NotNull final String id, @NotNull final String testName) {
         myTestIdToName.put(id, testName);
       }
     });
 
-    myResultsParser = new TestResultsTableParser(new TestResultsTableParser.Callback() {
+    myResultsCallback = new TestResultsTableParser.Callback() {
       private TestName myTestName;
 
       private String testName() {
@@ -107,6 +143,7 @@ class TRXParser implements Parser {
       }
 
       public void warning(@Nullable final String message, @Nullable final String exception) {
+        if (myMessagesReported) return;
         logger.error("Runner error: " + message + "\r\n" + exception);
       }
 
@@ -120,9 +157,25 @@ class TRXParser implements Parser {
 
       @Override
       public void error(@NotNull final String message) {
+        if (myMessagesReported) return;
         myLogger.error(message);
       }
-    });
+    };
+    myResultsParser = new TestResultsTableParser(myResultsCallback);
+
+    mySinglePassParser = new TestResultsTableParser(new DeferringCallback()) {
+      @NotNull
+      @Override
+      protected XmlHandler getTestDefinitionsHandler() {
+        return myNamesParser.getTestDefinitionsHandler(new XmlAction() {
+          public void apply() {
+            definitionsRead();
+          }
+        });
+      }
+    };
+    myResultsParser.limitText(logger);
+    mySinglePassParser.limitText(logger);
   }
 
   @Override
@@ -134,18 +187,22 @@ class TRXParser implements Parser {
     }
 
     myTestIdToName.clear();
+    myPassCount = 0;
     try {
-      myNamesParser.parse(file);
-
-      if (myTestIdToName.size() == 0) {
-        myLogger.error("There were no test definitions found. Wrong or broken .trx file?");
+      // definitions of VS 2005 reports are never read along with results, so reading them first
+      // takes two passes while deferring the results could take three
+      if (mySinglePass && !VS2005_ROOT_ELEMENT.equals(ParserUtils.getRootElement(file))) {
+        parseSinglePass(file);
       } else {
-        myLogger.info("Found " + myTestIdToName.size() + " test definitions.");
+        read(myNamesParser, file);
+        logDefinitions();
+        read(myResultsParser, file);
       }
-
-      myResultsParser.parse(file);
     } catch (IOException e) {
       throw new ParsingException(e);
+    } finally {
+      myDeferredMessages.clear();
+      myDeferredResults.clear();
     }
 
     if (myReportedTestsCount == 0) {
@@ -159,7 +216,157 @@ class TRXParser implements Parser {
     return true;
   }
 
+  private void parseSinglePass(@NotNull File file) throws IOException {
+    myDeferredTestsCount = 0;
+    myDefinitionsRead = false;
+    myResultsDropped = false;
+    myMessagesReported = false;
+
+    read(mySinglePassParser, file);
+
+    if (!myDefinitionsRead) {
+      // no definitions inside TestRun, e.g. VS 2005 report which root element is beyond the probed prolog
+      read(myNamesParser, file);
+      definitionsRead();
+    }
+
+    if (myResultsDropped) {
+      // the rest of the first pass read only the definitions, so the report is read twice like in the two pass mode
+      LOG.debug("Too many test results precede test definitions in " + file + ", reading results again");
+      myMessagesReported = true;
+      read(myResultsParser, file);
+    }
+  }
+
+  private void read(@NotNull BaseXmlXppAbstractParser parser, @NotNull File file) throws IOException {
+    ++myPassCount;
+    parser.parse(file);
+  }
+
+  /**
+   * @return number of times the last parsed report was read
+   */
+  int getPassCount() {
+    return myPassCount;
+  }
+
+  private void definitionsRead() {
+    if (myDefinitionsRead) return;
+    myDefinitionsRead = true;
+
+    logDefinitions();
+    for (Runnable message : myDeferredMessages) {
+      message.run();
+    }
+    myDeferredMessages.clear();
+    for (Runnable result : myDeferredResults) {
+      result.run();
+    }
+    myDeferredResults.clear();
+  }
+
+  private void logDefinitions() {
+    if (myTestIdToName.size() == 0) {
+      myLogger.error("There were no test definitions found. Wrong or broken .trx file?");
+    } else {
+      myLogger.info("Found " + myTestIdToName.size() + " test definitions.");
+    }
+  }
+
   public ParsingResult getParsingResult() {
     return new TestParsingResult(1, myReportedTestsCount);
   }
-}
\ No newline at end of file
+
+  /**
+   * Reports results right away once test definitions are read and defers them otherwise.
+   * Deferred results are bounded, if there are more of them, results are read in another pass.
+   */
+  private final class DeferringCallback implements TestResultsTableParser.Callback {
+    public void testFound(@NotNull final TestName testId) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testFound(testId);
+        }
+      });
+      if (!myDefinitionsRead && !myResultsDropped && ++myDeferredTestsCount > myMaxDeferredResults) {
+        myResultsDropped = true;
+        myDeferredResults.clear();
+      }
+    }
+
+    public void testOutput(@NotNull final TestName testId, @NotNull final String text) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testOutput(testId, text);
+        }
+      });
+    }
+
+    public void testError(@NotNull final TestName testId, @NotNull final String text) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testError(testId, text);
+        }
+      });
+    }
+
+    public void testException(@NotNull final TestName testId, @Nullable final String message, @Nullable final String error) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testException(testId, message, error);
+        }
+      });
+    }
+
+    public void testFinished(@NotNull final TestName testId, @NotNull final TestOutcome outcome, final long duration) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testFinished(testId, outcome, duration);
+        }
+      });
+    }
+
+    public void testIgnored(@NotNull final TestName testId, @Nullable final String message, @Nullable final String error) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.testIgnored(testId, message, error);
+        }
+      });
+    }
+
+    public void warning(@Nullable final TestName testId, @NotNull final String message) {
+      result(new Runnable() {
+        public void run() {
+          myResultsCallback.warning(testId, message);
+        }
+      });
+    }
+
+    public void warning(@Nullable final String message, @Nullable final String exception) {
+      message(new Runnable() {
+        public void run() {
+          myResultsCallback.warning(message, exception);
+        }
+      });
+    }
+
+    public void error(@NotNull final String message) {
+      message(new Runnable() {
+        public void run() {
+          myResultsCallback.error(message);
+        }
+      });
+    }
+
+    private void result(@NotNull Runnable event) {
+      if (myResultsDropped) return;
+      if (myDefinitionsRead) event.run();
+      else myDeferredResults.add(event);
+    }
+
+    private void message(@NotNull Runnable event) {
+      if (myDefinitionsRead) event.run();
+      else myDeferredMessages.add(event);
+    }
+  }
+}
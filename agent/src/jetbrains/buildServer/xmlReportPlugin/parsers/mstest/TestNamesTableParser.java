@@ -3,7 +3,7 @@
 package jetbrains.buildServer.xmlReportPlugin.parsers.mstest;
 
 import jetbrains.buildServer.util.StringUtil;
-import jetbrains.buildServer.util.XmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -14,7 +14,7 @@ import java.util.List;
  * @author Eugene Petrenko
  *         Created: 24.10.2008 14:21:37
  */
-class TestNamesTableParser extends XmlXppAbstractParser {
+class TestNamesTableParser extends BaseXmlXppAbstractParser {
   private final Callback myParserCallback;
 
   TestNamesTableParser(@NotNull final Callback parserCallback) {
@@ -71,16 +71,36 @@ class TestNamesTableParser extends XmlXppAbstractParser {
     return elementsPath(
       new Handler() {
         public XmlReturn processElement(@NotNull final XmlElementInfo reader) {
-          return reader.visitChildren(
-              getUnitTest2008Handler(),
-              getLoadTest2008Handler(),
-              getUnknownTest2008Handler(".*Test")
-            );
+          return reader.visitChildren(getTestDefinitionHandlers());
         }
       }
       , "TestRun", "TestDefinitions");
   }
 
+  /**
+   * Handler of the TestDefinitions child of TestRun, allows to read test names while results are parsed
+   * @param finished action to perform when all test definitions are read
+   */
+  @NotNull
+  XmlHandler getTestDefinitionsHandler(@NotNull final XmlAction finished) {
+    return elementsPath(
+      new Handler() {
+        public XmlReturn processElement(@NotNull final XmlElementInfo reader) {
+          return reader.visitChildren(getTestDefinitionHandlers()).than(finished);
+        }
+      }
+      , "TestDefinitions");
+  }
+
+  @NotNull
+  private XmlHandler[] getTestDefinitionHandlers() {
+    return new XmlHandler[]{
+      getUnitTest2008Handler(),
+      getLoadTest2008Handler(),
+      getUnknownTest2008Handler(".*Test")
+    };
+  }
+
   private XmlHandler getUnitTest2008Handler() {
     return elementsPath(
       new Handler() {
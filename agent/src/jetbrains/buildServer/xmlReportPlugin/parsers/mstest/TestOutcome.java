@@ -2,6 +2,7 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.mstest;
 
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -69,19 +70,15 @@ enum TestOutcome {
 
   @NotNull
   public static TestOutcome parse8(final String value) {
-    if (value == null) {
+    final long val = NumberDecoder.parseInteger(value);
+    if (val == NumberDecoder.INVALID) {
       return UNKNOWN;
     }
 
-    try {
-      int val = Integer.parseInt(value);
-      for (TestOutcome outcome : values()) {
-        if (outcome.myValue8 != null && val == outcome.myValue8) {
-          return outcome;
-        }
+    for (TestOutcome outcome : values()) {
+      if (outcome.myValue8 != null && val == outcome.myValue8) {
+        return outcome;
       }
-    } catch (NumberFormatException e) {
-      return UNKNOWN;
     }
     return UNKNOWN;
   }
@@ -206,11 +206,25 @@ class TestResultsTableParser extends BaseXmlXppAbstractParser {
                 public XmlReturn processElement(@NotNull final XmlElementInfo reader) {
                   return reader.visitChildren(getUnknown2008RecursiveResult(".*Result"));
                 }
-              }, "Results")
+              }, "Results"),
+              getTestDefinitionsHandler()
             );
         }
       }, "TestRun");
   }
+
+  /**
+   * Allows to process test definitions in the same pass with results, skips them by default
+   */
+  @NotNull
+  protected XmlHandler getTestDefinitionsHandler() {
+    return elementsPath(new Handler() {
+      public XmlReturn processElement(@NotNull final XmlElementInfo reader) {
+        return reader.noDeep();
+      }
+    }, "TestDefinitions");
+  }
+
   private XmlHandler[] getUnknown2008RecursiveResult(final String pattern) {
     return new XmlHandler[]{
       getUnknown2008Result(pattern),
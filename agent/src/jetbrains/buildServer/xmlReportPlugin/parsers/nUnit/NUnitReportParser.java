@@ -5,11 +5,15 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.nUnit;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
@@ -17,6 +21,10 @@ import org.jetbrains.annotations.Nullable;
 
 
 class NUnitReportParser implements Parser {
+  private static final String TEST_ELEMENT = "test-case";
+  private static final Collection<String> TEST_PARENT_ELEMENTS = Arrays.asList("results", "test-suite");
+  private static final Collection<String> SUITE_ELEMENTS = Collections.singleton("test-suite");
+
   public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(NUnitReportParser.class);
 
   @NotNull
@@ -27,6 +35,13 @@ class NUnitReportParser implements Parser {
 
   private int myLoggedSuites;
 
+  @Nullable
+  private ReportCheckpoint myResumedFrom;
+  @Nullable
+  private ReportCheckpoint myCheckpoint;
+  private int myPrevSuites;
+  private int myPrevTests;
+
   @Nullable
   private ParsingException myParsingException;
 
@@ -39,11 +54,16 @@ class NUnitReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (prevResult != null) {
-      myTestsToSkip = ((TestParsingResult) prevResult).getTests();
+    final ReportCheckpoint checkpoint = ReportCheckpoint.getValid(file, prevResult);
+    if (checkpoint != null) {
+      myResumedFrom = checkpoint;
+      myPrevSuites = ((TestParsingResult)prevResult).getSuites();
+      myPrevTests = ((TestParsingResult)prevResult).getTests();
+    } else if (prevResult != null) {
+      myTestsToSkip = ((TestParsingResult)prevResult).getTests();
     }
     try {
-      new NUnitXmlReportParser(new NUnitXmlReportParser.Callback() {
+      final NUnitXmlReportParser parser = new NUnitXmlReportParser(new NUnitXmlReportParser.Callback() {
         public void suiteFound(@Nullable final String suiteName) {
           if (suiteName == null) {
             myTestReporter.warning("File " + file + " contains unnamed suite");
@@ -117,7 +137,9 @@ class NUnitReportParser implements Parser {
         public void message(@NotNull final String msg) {
           myTestReporter.info(file + ": " + msg);
         }
-      }).parse(file);
+      });
+      parser.limitText(myTestReporter);
+      parser.parse(file, checkpoint);
       return true;
     } catch (IOException e) {
       myParsingException = new ParsingException(e);
@@ -129,13 +151,22 @@ class NUnitReportParser implements Parser {
 
       LOG.debug("Couldn't completely parse " + file
                 + " report, exception occurred: " + e + ", " + myLoggedTests + " tests logged");
+
+      if (myLoggedTests >= myTestsToSkip) {
+        myCheckpoint = ReportCheckpoint.advance(file, checkpoint, TEST_ELEMENT, TEST_PARENT_ELEMENTS, myLoggedTests);
+      }
     }
 
     return false;
   }
 
   public ParsingResult getParsingResult() {
-    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException);
+    if (myResumedFrom != null) {
+      // suites open at the checkpoint are reported once again
+      final int suites = myPrevSuites + Math.max(0, myLoggedSuites - myResumedFrom.countOpen(SUITE_ELEMENTS));
+      return new TestParsingResult(suites, myPrevTests + myLoggedTests, myParsingException, myCheckpoint);
+    }
+    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException, myCheckpoint);
   }
 
   private boolean testSkipped() {
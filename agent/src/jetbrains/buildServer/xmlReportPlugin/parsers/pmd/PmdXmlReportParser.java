@@ -6,6 +6,7 @@ import java.util.List;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
 import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -60,11 +61,7 @@ class PmdXmlReportParser extends BaseXmlXppAbstractParser {
   }
 
   private static int getInt(@Nullable String val) {
-    try {
-      return val == null ? 0 : Integer.parseInt(val);
-    } catch (NumberFormatException e) {
-      return 0;
-    }
+    return NumberDecoder.parseInt(val, 0);
   }
 
   public interface Callback {
@@ -0,0 +1,402 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
+
+import java.io.IOException;
+import java.io.Reader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Passes PMD CPD report through, replacing the text of each codefragment element with its hash,
+ * so the parser never builds strings of duplicated code. The hash equals <code>text.trim().hashCode()</code>
+ * of the text the XML parser would read: CDATA sections and character references are decoded,
+ * line ends are normalized, comments and nested elements are skipped.
+ */
+class CodeFragmentHashingReader extends Reader {
+  private static final char[] NAME = "codefragment".toCharArray();
+  private static final int MAX_REFERENCE_LENGTH = 10;
+
+  // outside of codefragment text, all characters are passed through
+  private static final int TEXT = 0;
+  private static final int LT = 1;
+  private static final int TAG = 2;
+  private static final int NAME_MATCH = 3;
+  private static final int START_TAG = 4;
+  private static final int BANG = 5;
+  private static final int COMMENT = 6;
+  private static final int CDATA = 7;
+  // inside of codefragment text, characters are hashed
+  private static final int CONTENT = 10;
+  private static final int CONTENT_LT = 11;
+  private static final int CONTENT_TAG = 12;
+  private static final int CONTENT_BANG = 13;
+  private static final int CONTENT_COMMENT = 14;
+  private static final int CONTENT_CDATA_START = 15;
+  private static final int CONTENT_CDATA = 16;
+  private static final int CONTENT_REFERENCE = 17;
+
+  @NotNull
+  private final Reader myDelegate;
+  @NotNull
+  private final char[] myBuffer = new char[8 * 1024];
+  private int myPosition;
+  private int myLimit;
+  // hash text and end tag start to pass before the rest of the input
+  @NotNull
+  private final StringBuilder myPending = new StringBuilder();
+  private int myPendingPosition;
+
+  private int myState = TEXT;
+  // matched characters of the element name, dashes or brackets before the end of comment or CDATA
+  private int myCount;
+  private char myQuote;
+  private boolean mySlash;
+  private int myDepth;
+  private boolean myCarriageReturn;
+  @NotNull
+  private final StringBuilder myReference = new StringBuilder();
+
+  private boolean myStarted;
+  private int myHash;
+  // hash of the whitespace after the last hashed character, it's not hashed if nothing follows
+  private int myTrailingHash;
+  private int myTrailingMultiplier;
+
+  CodeFragmentHashingReader(@NotNull Reader delegate) {
+    myDelegate = delegate;
+  }
+
+  /**
+   * @return hash of the codefragment text read by the parser
+   */
+  static int getHash(@NotNull String text) {
+    try {
+      return Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      // the element was not recognized by the reader
+      return text.trim().hashCode();
+    }
+  }
+
+  @Override
+  public int read(@NotNull char[] cbuf, int off, int len) throws IOException {
+    int read = 0;
+    while (read < len) {
+      if (myPendingPosition < myPending.length()) {
+        cbuf[off + read++] = myPending.charAt(myPendingPosition++);
+        continue;
+      }
+      if (myPosition == myLimit) {
+        if (read > 0) break;
+        myLimit = myDelegate.read(myBuffer, 0, myBuffer.length);
+        myPosition = 0;
+        if (myLimit < 0) {
+          myLimit = 0;
+          return -1;
+        }
+        continue;
+      }
+      if (myState == CONTENT_CDATA && myCount == 0 && !myCarriageReturn) {
+        myPosition = hashCData(myPosition, myLimit);
+        if (myPosition == myLimit) continue;
+      }
+      final char c = myBuffer[myPosition++];
+      if (accept(c)) cbuf[off + read++] = c;
+    }
+    return read;
+  }
+
+  /**
+   * Hashes CDATA characters up to the first one needing special handling
+   * @return position of that character
+   */
+  private int hashCData(int position, int limit) {
+    final char[] buffer = myBuffer;
+    int hash = myHash;
+    int trailingHash = myTrailingHash;
+    int trailingMultiplier = myTrailingMultiplier;
+    boolean started = myStarted;
+    for (; position < limit; ++position) {
+      final char c = buffer[position];
+      if (c > ' ') {
+        if (c == ']') break;
+        hash = 31 * (hash * trailingMultiplier + trailingHash) + c;
+        trailingHash = 0;
+        trailingMultiplier = 1;
+        started = true;
+      } else {
+        if (c == '\r') break;
+        if (started) {
+          trailingHash = 31 * trailingHash + c;
+          trailingMultiplier *= 31;
+        }
+      }
+    }
+    myHash = hash;
+    myTrailingHash = trailingHash;
+    myTrailingMultiplier = trailingMultiplier;
+    myStarted = started;
+    return position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    myDelegate.close();
+  }
+
+  /**
+   * @return true if the character is passed to the parser
+   */
+  private boolean accept(char c) {
+    switch (myState) {
+      case TEXT:
+        if (c == '<') myState = LT;
+        return true;
+      case LT:
+        if (c == '!') {
+          myState = BANG;
+        } else if (c == NAME[0]) {
+          myState = NAME_MATCH;
+          myCount = 1;
+        } else {
+          myState = c == '>' ? TEXT : TAG;
+        }
+        return true;
+      case TAG:
+        if (c == '>') myState = TEXT;
+        return true;
+      case NAME_MATCH:
+        if (myCount < NAME.length && c == NAME[myCount]) {
+          ++myCount;
+        } else if (myCount == NAME.length && (c == '>' || c == '/' || isWhitespace(c))) {
+          myState = START_TAG;
+          myQuote = 0;
+          mySlash = false;
+          return accept(c);
+        } else {
+          myState = c == '>' ? TEXT : TAG;
+        }
+        return true;
+      case START_TAG:
+        if (myQuote != 0) {
+          if (c == myQuote) myQuote = 0;
+        } else if (c == '"' || c == '\'') {
+          myQuote = c;
+        } else if (c == '>') {
+          if (mySlash) {
+            myState = TEXT;
+          } else {
+            startContent();
+          }
+        } else {
+          mySlash = c == '/';
+        }
+        return true;
+      case BANG:
+        if (c == '-') {
+          myState = COMMENT;
+        } else if (c == '[') {
+          myState = CDATA;
+        } else {
+          myState = c == '>' ? TEXT : TAG;
+        }
+        myCount = 0;
+        return true;
+      case COMMENT:
+        if (c == '-') {
+          ++myCount;
+        } else {
+          if (c == '>' && myCount >= 2) myState = TEXT;
+          myCount = 0;
+        }
+        return true;
+      case CDATA:
+        if (c == ']') {
+          ++myCount;
+        } else {
+          if (c == '>' && myCount >= 2) myState = TEXT;
+          myCount = 0;
+        }
+        return true;
+      default:
+        acceptContent(c);
+        return false;
+    }
+  }
+
+  private void acceptContent(char c) {
+    switch (myState) {
+      case CONTENT:
+        if (c == '<') {
+          // line end is normalized only if its characters are adjacent
+          myCarriageReturn = false;
+          myState = CONTENT_LT;
+        } else if (c == '&') {
+          myState = CONTENT_REFERENCE;
+          myReference.setLength(0);
+        } else {
+          hashNormalized(c);
+        }
+        return;
+      case CONTENT_LT:
+        if (c == '!') {
+          myState = CONTENT_BANG;
+        } else if (c == '/' && myDepth == 0) {
+          finishContent();
+        } else {
+          if (c == '/') {
+            --myDepth;
+          } else {
+            ++myDepth;
+          }
+          myState = CONTENT_TAG;
+          mySlash = false;
+        }
+        return;
+      case CONTENT_TAG:
+        // nested elements are not expected, only their text is hashed
+        if (c == '>') {
+          if (mySlash) --myDepth;
+          myState = CONTENT;
+        } else {
+          mySlash = c == '/';
+        }
+        return;
+      case CONTENT_BANG:
+        myState = c == '[' ? CONTENT_CDATA_START : CONTENT_COMMENT;
+        myCount = 0;
+        return;
+      case CONTENT_COMMENT:
+        if (c == '-') {
+          ++myCount;
+        } else {
+          if (c == '>' && myCount >= 2) myState = CONTENT;
+          myCount = 0;
+        }
+        return;
+      case CONTENT_CDATA_START:
+        if (c == '[') myState = CONTENT_CDATA;
+        return;
+      case CONTENT_CDATA:
+        if (c == ']') {
+          ++myCount;
+          return;
+        }
+        if (c == '>' && myCount >= 2) {
+          hashBrackets(myCount - 2);
+          myCarriageReturn = false;
+          myState = CONTENT;
+        } else {
+          hashBrackets(myCount);
+          hashNormalized(c);
+        }
+        myCount = 0;
+        return;
+      case CONTENT_REFERENCE:
+        if (c == ';') {
+          hashReference(myReference);
+          myState = CONTENT;
+        } else if (myReference.length() < MAX_REFERENCE_LENGTH) {
+          myReference.append(c);
+        } else {
+          // not a reference
+          hash('&');
+          hashChars(myReference);
+          myState = CONTENT;
+          acceptContent(c);
+        }
+    }
+  }
+
+  private void startContent() {
+    myState = CONTENT;
+    myDepth = 0;
+    myCarriageReturn = false;
+    myStarted = false;
+    myHash = 0;
+    myTrailingHash = 0;
+    myTrailingMultiplier = 1;
+  }
+
+  private void finishContent() {
+    myPending.setLength(0);
+    myPending.append(myHash).append("</");
+    myPendingPosition = 0;
+    myState = TAG;
+  }
+
+  private void hashBrackets(int count) {
+    for (int i = 0; i < count; ++i) {
+      hashNormalized(']');
+    }
+  }
+
+  /**
+   * Hashes the character with line ends normalized the way the XML parser does
+   */
+  private void hashNormalized(char c) {
+    if (c == '\r') {
+      myCarriageReturn = true;
+      hash('\n');
+      return;
+    }
+    final boolean afterCarriageReturn = myCarriageReturn;
+    myCarriageReturn = false;
+    if (c == '\n' && afterCarriageReturn) return;
+    hash(c);
+  }
+
+  private void hashReference(@NotNull CharSequence reference) {
+    final String replacement = decodeReference(reference);
+    if (replacement == null) {
+      hash('&');
+      hashChars(reference);
+      hash(';');
+      return;
+    }
+    myCarriageReturn = false;
+    hashChars(replacement);
+  }
+
+  private void hashChars(@NotNull CharSequence chars) {
+    for (int i = 0; i < chars.length(); ++i) {
+      hash(chars.charAt(i));
+    }
+  }
+
+  /**
+   * Computes <code>String.hashCode()</code> of the trimmed text incrementally
+   */
+  private void hash(char c) {
+    if (c <= ' ') {
+      if (!myStarted) return;
+      myTrailingHash = 31 * myTrailingHash + c;
+      myTrailingMultiplier *= 31;
+      return;
+    }
+    myStarted = true;
+    myHash = 31 * (myHash * myTrailingMultiplier + myTrailingHash) + c;
+    myTrailingHash = 0;
+    myTrailingMultiplier = 1;
+  }
+
+  @Nullable
+  private static String decodeReference(@NotNull CharSequence reference) {
+    final String name = reference.toString();
+    if ("lt".equals(name)) return "<";
+    if ("gt".equals(name)) return ">";
+    if ("amp".equals(name)) return "&";
+    if ("quot".equals(name)) return "\"";
+    if ("apos".equals(name)) return "'";
+    if (name.length() < 2 || name.charAt(0) != '#') return null;
+    try {
+      final int codePoint = name.charAt(1) == 'x' ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name.substring(1));
+      return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+}
@@ -4,8 +4,7 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
 
 import java.io.File;
 import jetbrains.buildServer.xmlReportPlugin.ParseParameters;
-import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
-import jetbrains.buildServer.xmlReportPlugin.ProblemParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -14,8 +13,12 @@ import org.jetbrains.annotations.NotNull;
  * Date: 01.02.11
  * Time: 20:01
  */
-class PmdCpdParsingResult extends ProblemParsingResult {
-  public void accumulate(@NotNull ParsingResult parsingResult) {
+class PmdCpdParsingResult extends DuplicationParsingResult {
+  public PmdCpdParsingResult() {
+  }
+
+  public PmdCpdParsingResult(int duplicates) {
+    addDuplicates(duplicates);
   }
 
   @Override
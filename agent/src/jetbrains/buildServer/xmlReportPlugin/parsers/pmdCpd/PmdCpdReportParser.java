@@ -22,6 +22,7 @@ class PmdCpdReportParser implements Parser {
   @NotNull
   private final DuplicationReporter myDuplicationReporter;
   private final File myCheckoutDirectory;
+  private int myDuplicates;
 
   public PmdCpdReportParser(@NotNull DuplicationReporter duplicationReporter, final File checkoutDirectory) {
     myDuplicationReporter = duplicationReporter;
@@ -30,7 +31,7 @@ class PmdCpdReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) throws ParsingException {
-    if (!ParserUtils.isReportComplete(file, "pmd-cpd")) {
+    if (!ParserUtils.isReportTailComplete(file, "pmd-cpd")) {
       return false;
     }
 
@@ -46,6 +47,7 @@ class PmdCpdReportParser implements Parser {
 
         public void reportDuplicate(@NotNull DuplicationResult duplicate) {
           myDuplicationReporter.reportDuplicate(duplicate);
+          ++myDuplicates;
         }
 
         @Override
@@ -60,6 +62,6 @@ class PmdCpdReportParser implements Parser {
   }
 
   public ParsingResult getParsingResult() {
-    return new PmdCpdParsingResult();
+    return new PmdCpdParsingResult(myDuplicates);
   }
 }
\ No newline at end of file
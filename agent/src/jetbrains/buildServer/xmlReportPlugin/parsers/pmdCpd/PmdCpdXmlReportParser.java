@@ -2,11 +2,18 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicatingFragment;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
 import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import jetbrains.buildServer.xmlReportPlugin.utils.PathUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.XmlFileReader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -16,15 +23,39 @@ import org.jetbrains.annotations.Nullable;
  * Time: 19:04
  */
 class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
+  static final String TEAMCITY_PROPERTY_STREAMING_HASH = "teamcity.xmlReport.pmdCpd.streamingHash.enabled";
+
   @NotNull
   private final Callback myCallback;
   private final String myRootPath;
+  // codefragment text is replaced with its hash while the report is read
+  private boolean myStreamingHash;
 
   public PmdCpdXmlReportParser(@NotNull Callback callback, @NotNull String rootPath) {
     myCallback = callback;
     myRootPath = rootPath;
   }
 
+  @Override
+  public void parse(@NotNull File file) throws IOException {
+    Reader reader = null;
+    if (TeamCityProperties.getBooleanOrTrue(TEAMCITY_PROPERTY_STREAMING_HASH)) {
+      reader = XmlFileReader.open(file);
+      if (reader == null) reader = XmlFileReader.openStream(file);
+    }
+    if (reader == null) {
+      myStreamingHash = false;
+      super.parse(file);
+      return;
+    }
+    myStreamingHash = true;
+    try {
+      parse(new CodeFragmentHashingReader(reader));
+    } finally {
+      FileUtil.close(reader);
+    }
+  }
+
   @Override
   protected List<XmlHandler> getRootHandlers() {
     return new ORHandler(elementsPath(
@@ -41,7 +72,7 @@ class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
                 return reader.visitChildren(
                   elementsPath(new TextHandler() {
                     public void setText(@NotNull String s) {
-                      duplicationResult.setHash(s.trim().hashCode());
+                      duplicationResult.setHash(myStreamingHash ? CodeFragmentHashingReader.getHash(s) : s.trim().hashCode());
                     }
                   }, "codefragment"),
 
@@ -90,10 +121,6 @@ class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
   }
 
   private static int getInt(@Nullable String val) {
-    try {
-      return val == null ? 0 : Integer.parseInt(val);
-    } catch (NumberFormatException e) {
-      return 0;
-    }
+    return NumberDecoder.parseInt(val, 0);
   }
 }
\ No newline at end of file
@@ -6,7 +6,7 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.testng;
 import java.util.ArrayList;
 import java.util.List;
 import jetbrains.buildServer.util.StringUtil;
-import jetbrains.buildServer.xmlReportPlugin.utils.ParserUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -104,18 +104,14 @@ final class TestData {
 
   public void addParam(@Nullable final String index, @Nullable final String value) {
     String trimValue = value == null ? "" : '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
-    if (!ParserUtils.isNumber(index)) {
+    final long idx = NumberDecoder.parseInteger(index);
+    if (idx == NumberDecoder.INVALID) {
       myParamsWithoutIndex.add(trimValue);
     } else {
-      try {
-        int idx = Integer.parseInt(index);
-        while (myParams.size() <= idx) {
-          myParams.add(EMPTY_PARAM);
-        }
-        myParams.set(idx, trimValue);
-      } catch (NumberFormatException e) {
-        myParamsWithoutIndex.add(trimValue);
+      while (myParams.size() <= idx) {
+        myParams.add(EMPTY_PARAM);
       }
+      myParams.set((int)idx, trimValue);
     }
   }
 
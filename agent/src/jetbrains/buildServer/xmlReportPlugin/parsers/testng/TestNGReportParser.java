@@ -5,6 +5,9 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.testng;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
@@ -12,12 +15,17 @@ import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.parsers.TestMessages;
 import jetbrains.buildServer.xmlReportPlugin.tests.DurationParser;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class TestNGReportParser implements Parser {
+  private static final String TEST_ELEMENT = "test-method";
+  private static final Collection<String> TEST_PARENT_ELEMENTS = Collections.singleton("class");
+  private static final Collection<String> SUITE_ELEMENTS = Arrays.asList("suite", "test", "class");
+
   public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(TestNGReportParser.class);
 
   @NotNull
@@ -29,6 +37,13 @@ public class TestNGReportParser implements Parser {
   private int myTestsToSkip;
   private int myLoggedTests;
   private int myLoggedSuites;
+
+  @Nullable
+  private ReportCheckpoint myResumedFrom;
+  @Nullable
+  private ReportCheckpoint myCheckpoint;
+  private int myPrevSuites;
+  private int myPrevTests;
   @Nullable
   private ParsingException myParsingException;
 
@@ -40,12 +55,17 @@ public class TestNGReportParser implements Parser {
 
   @Override
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
-    if (prevResult != null) {
+    final ReportCheckpoint checkpoint = ReportCheckpoint.getValid(file, prevResult);
+    if (checkpoint != null) {
+      myResumedFrom = checkpoint;
+      myPrevSuites = ((TestParsingResult)prevResult).getSuites();
+      myPrevTests = ((TestParsingResult)prevResult).getTests();
+    } else if (prevResult != null) {
       myTestsToSkip = ((TestParsingResult)prevResult).getTests();
     }
 
     try {
-      new TestNGXmlReportParser(new TestNGXmlReportParser.Callback() {
+      final TestNGXmlReportParser parser = new TestNGXmlReportParser(new TestNGXmlReportParser.Callback() {
 
         @Override
         public void suiteFound(@Nullable final String suiteName) {
@@ -122,7 +142,9 @@ public class TestNGReportParser implements Parser {
         public void unexpectedFormat(@NotNull final String msg) {
           myTestReporter.error(TestMessages.getFileExpectedFormatMessage(file, msg, "Ant TestNG Task"));
         }
-      }, myDurationParser).parse(file);
+      }, myDurationParser);
+      parser.limitText(myTestReporter);
+      parser.parse(file, checkpoint);
       return true;
     } catch (IOException e) {
       myParsingException = new ParsingException(e);
@@ -133,6 +155,10 @@ public class TestNGReportParser implements Parser {
       }
 
       LOG.debug(TestMessages.getCouldNotCompletelyParseMessage(file, e, myLoggedTests));
+
+      if (myLoggedTests >= myTestsToSkip) {
+        myCheckpoint = ReportCheckpoint.advance(file, checkpoint, TEST_ELEMENT, TEST_PARENT_ELEMENTS, myLoggedTests);
+      }
     }
     return false;
   }
@@ -140,7 +166,12 @@ public class TestNGReportParser implements Parser {
   @Nullable
   @Override
   public ParsingResult getParsingResult() {
-    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException);
+    if (myResumedFrom != null) {
+      // suites open at the checkpoint are reported once again
+      final int suites = myPrevSuites + Math.max(0, myLoggedSuites - myResumedFrom.countOpen(SUITE_ELEMENTS));
+      return new TestParsingResult(suites, myPrevTests + myLoggedTests, myParsingException, myCheckpoint);
+    }
+    return new TestParsingResult(myLoggedSuites, (myLoggedTests > myTestsToSkip) ? myLoggedTests : myTestsToSkip, myParsingException, myCheckpoint);
   }
 
   private boolean testSkipped() {
@@ -0,0 +1,247 @@
+package jetbrains.buildServer.xmlReportPlugin.tests;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.TextLimitingReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps output and stack trace of each test within the limit. Only the head and the tail of longer text are reported,
+ * the full text is saved to a file. Output is passed to the delegate in chunks, so it's never buffered and
+ * escaped as one huge message.
+ * Output is not limited by default. When the limit is set, test report parsers also read only the head and the tail
+ * of longer element text, the full element text is saved to a file through {@link #createTextSpill()}.
+ */
+public class LimitingTestReporter implements TestReporter {
+  public static final String TEAMCITY_PROPERTY_MAX_LENGTH = "teamcity.xmlReport.testOutput.maxLength";
+  public static final int DEFAULT_MAX_LENGTH = 0;
+
+  static final int CHUNK_LENGTH = 64 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MAX_FILE_PREFIX_LENGTH = 64;
+
+  @NotNull
+  private final TestReporter myDelegate;
+  private final int myMaxLength;
+  @Nullable
+  private final File mySpillDirectory;
+  @Nullable
+  private final OutputPublisher myPublisher;
+  @Nullable
+  private String myTestName;
+  // output length reported for the current test
+  private long myOutputLength;
+
+  /**
+   * @param maxLength max length of output and of stack trace reported for one test
+   * @param spillDirectory directory to save text exceeding the limit to, text is dropped if null
+   */
+  public LimitingTestReporter(@NotNull TestReporter delegate, int maxLength, @Nullable File spillDirectory) {
+    this(delegate, maxLength, spillDirectory, null);
+  }
+
+  /**
+   * @param publisher publisher of the saved text, the text is referred to by its file path if null
+   */
+  public LimitingTestReporter(@NotNull TestReporter delegate, int maxLength, @Nullable File spillDirectory, @Nullable OutputPublisher publisher) {
+    myDelegate = delegate;
+    myMaxLength = maxLength;
+    mySpillDirectory = spillDirectory;
+    myPublisher = publisher;
+  }
+
+  /**
+   * @return max length of output and of stack trace reported for one test, 0 if not limited
+   */
+  public static int getMaxLength() {
+    return TeamCityProperties.getInteger(TEAMCITY_PROPERTY_MAX_LENGTH, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * @return max length of output and of stack trace reported for one test by this reporter
+   */
+  public int getLimit() {
+    return myMaxLength;
+  }
+
+  /**
+   * @return spill which saves element text skipped by a report parser the same way as text skipped by the reporter,
+   * null if skipped text is dropped
+   */
+  @Nullable
+  public TextLimitingReader.Spill createTextSpill() {
+    final File directory = mySpillDirectory;
+    if (directory == null) return null;
+    return new TextLimitingReader.Spill() {
+      @Nullable
+      private File myFile;
+
+      @NotNull
+      public Writer open() throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        // the parser reads ahead, so the text can't be attributed to a test
+        myFile = File.createTempFile("report-text-", ".txt", directory);
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(myFile), UTF_8));
+      }
+
+      @NotNull
+      public String close(@NotNull Writer writer) throws IOException {
+        writer.close();
+        final File file = myFile;
+        assert file != null;
+        myFile = null;
+        return myPublisher == null ? file.getAbsolutePath() : myPublisher.publish(file);
+      }
+    };
+  }
+
+  public void openTestSuite(@NotNull String name) {
+    myDelegate.openTestSuite(name);
+  }
+
+  public void openTest(@NotNull String name) {
+    myTestName = name;
+    myOutputLength = 0;
+    myDelegate.openTest(name);
+  }
+
+  public void testStdOutput(@NotNull String text) {
+    output(text, "stdout", false);
+  }
+
+  public void testErrOutput(@NotNull String text) {
+    output(text, "stderr", true);
+  }
+
+  public void testFail(@Nullable String error, @Nullable String stacktrace) {
+    myDelegate.testFail(error, stacktrace == null ? null : limit(stacktrace, myMaxLength, "stacktrace"));
+  }
+
+  public void testIgnored(@NotNull String message) {
+    myDelegate.testIgnored(message);
+  }
+
+  public void closeTest(long duration) {
+    myTestName = null;
+    myDelegate.closeTest(duration);
+  }
+
+  public void closeTestSuite() {
+    myDelegate.closeTestSuite();
+  }
+
+  public void info(@NotNull String message) {
+    myDelegate.info(message);
+  }
+
+  public void warning(@NotNull String message) {
+    myDelegate.warning(message);
+  }
+
+  public void error(@NotNull String message) {
+    myDelegate.error(message);
+  }
+
+  public void failure(@NotNull String message) {
+    myDelegate.failure(message);
+  }
+
+  private void output(@NotNull String text, @NotNull String kind, boolean err) {
+    final String limited = limit(text, Math.max(0, myMaxLength - myOutputLength), kind);
+    myOutputLength += limited.length();
+    if (limited.length() <= CHUNK_LENGTH) {
+      report(limited, err);
+      return;
+    }
+    int start = 0;
+    while (start < limited.length()) {
+      int end = Math.min(limited.length(), start + CHUNK_LENGTH);
+      // keep surrogate pairs in one chunk
+      if (end < limited.length() && Character.isHighSurrogate(limited.charAt(end - 1))) --end;
+      report(limited.substring(start, end), err);
+      start = end;
+    }
+  }
+
+  private void report(@NotNull String text, boolean err) {
+    if (err) {
+      myDelegate.testErrOutput(text);
+    } else {
+      myDelegate.testStdOutput(text);
+    }
+  }
+
+  /**
+   * @return the text if it fits the limit or its head and tail otherwise
+   */
+  @NotNull
+  private String limit(@NotNull String text, long maxLength, @NotNull String kind) {
+    if (text.length() <= maxLength) return text;
+
+    final File file = spill(text, kind);
+    int head = (int)(maxLength / 2);
+    int tail = (int)(maxLength - head);
+    if (head > 0 && Character.isHighSurrogate(text.charAt(head - 1))) --head;
+    if (tail > 0 && Character.isLowSurrogate(text.charAt(text.length() - tail))) --tail;
+
+    final String skipped = "[" + (text.length() - head - tail) + " characters of " + kind + " skipped" +
+                           (file == null ? "" : ", full " + kind + " is saved to " + (myPublisher == null ? file.getAbsolutePath() : myPublisher.publish(file))) + "]";
+    return new StringBuilder(head + tail + skipped.length() + 8)
+      .append(text, 0, head)
+      .append("\n...").append(skipped).append("...\n")
+      .append(text, text.length() - tail, text.length())
+      .toString();
+  }
+
+  @Nullable
+  private File spill(@NotNull String text, @NotNull String kind) {
+    if (mySpillDirectory == null) return null;
+
+    File file = null;
+    Writer writer = null;
+    try {
+      //noinspection ResultOfMethodCallIgnored
+      mySpillDirectory.mkdirs();
+      file = File.createTempFile(getFilePrefix(kind), ".txt", mySpillDirectory);
+      // the writer encodes the text in small chunks instead of one huge byte array
+      writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+      writer.write(text);
+      writer.close();
+      writer = null;
+      return file;
+    } catch (IOException e) {
+      LoggingUtils.LOG.warn("Failed to save " + kind + " of test " + myTestName + " to " + (file == null ? mySpillDirectory : file), e);
+      FileUtil.close(writer);
+      if (file != null) FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  @NotNull
+  private String getFilePrefix(@NotNull String kind) {
+    final StringBuilder prefix = new StringBuilder();
+    final String testName = myTestName == null ? "test" : myTestName;
+    for (int i = 0; i < testName.length() && prefix.length() < MAX_FILE_PREFIX_LENGTH; ++i) {
+      final char c = testName.charAt(i);
+      prefix.append(c < 128 && Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+    }
+    return prefix.append('-').append(kind).append('-').toString();
+  }
+
+  /**
+   * Makes saved text available after the build, the spill directory may be removed when the build finishes
+   */
+  public interface OutputPublisher {
+    /**
+     * @return location the file is available at
+     */
+    @NotNull
+    String publish(@NotNull File file);
+  }
+}
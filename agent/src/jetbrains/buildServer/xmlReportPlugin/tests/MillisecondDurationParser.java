@@ -2,7 +2,7 @@
 
 package jetbrains.buildServer.xmlReportPlugin.tests;
 
-import jetbrains.buildServer.xmlReportPlugin.utils.ParserUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.NumberDecoder;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -14,15 +14,11 @@ public class MillisecondDurationParser implements DurationParser {
   public static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(MillisecondDurationParser.class);
 
   public long parseTestDuration(@Nullable String duration) {
-    if (!ParserUtils.isNumber(duration)) {
+    final long millis = NumberDecoder.parseLong(duration);
+    if (millis == NumberDecoder.INVALID) {
       LOG.warn("Unable to parse execution time string " + duration);
       return 0L;
     }
-    try {
-      return Long.parseLong(duration);
-    } catch (NumberFormatException e) {
-      LOG.warn("Unable to parse execution time string " + duration, e);
-      return 0L;
-    }
+    return millis;
   }
 }
\ No newline at end of file
@@ -0,0 +1,363 @@
+package jetbrains.buildServer.xmlReportPlugin.tests;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Position in a growing test report right after the last completely reported test.
+ * Keeps the prolog of the report and start tags of the elements open at this position, so parsing can be resumed
+ * from the offset instead of re-reading the report from the beginning. The prolog brings the document type
+ * declaration along, so entities declared in its internal subset are still resolved.
+ */
+public final class ReportCheckpoint {
+  private static final int FINGERPRINT_LENGTH = 32;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // raw bytes are kept as ISO-8859-1 strings which maps them one to one
+  private static final Charset RAW = Charset.forName("ISO-8859-1");
+  private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+  private final long myOffset;
+  @NotNull
+  private final byte[] myFingerprint;
+  @NotNull
+  private final String myCharset;
+  @NotNull
+  private final String myProlog;
+  @NotNull
+  private final List<String> myOpenNames;
+  @NotNull
+  private final List<String> myOpenTags;
+
+  private ReportCheckpoint(long offset,
+                           @NotNull byte[] fingerprint,
+                           @NotNull String charset,
+                           @NotNull String prolog,
+                           @NotNull List<String> openNames,
+                           @NotNull List<String> openTags) {
+    myOffset = offset;
+    myFingerprint = fingerprint;
+    myCharset = charset;
+    myProlog = prolog;
+    myOpenNames = openNames;
+    myOpenTags = openTags;
+  }
+
+  public long getOffset() {
+    return myOffset;
+  }
+
+  /**
+   * @return number of open elements with one of the specified names
+   */
+  public int countOpen(@NotNull Collection<String> names) {
+    int count = 0;
+    for (String name : myOpenNames) {
+      if (names.contains(name)) ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the checkpoint of the previous result if the report still has the same content before it
+   */
+  @Nullable
+  public static ReportCheckpoint getValid(@NotNull File file, @Nullable ParsingResult prevResult) {
+    if (!(prevResult instanceof TestParsingResult)) return null;
+
+    final ReportCheckpoint checkpoint = ((TestParsingResult)prevResult).getCheckpoint();
+    if (checkpoint == null || file.length() < checkpoint.myOffset) return null;
+    try {
+      return Arrays.equals(checkpoint.myFingerprint, readFingerprint(file, checkpoint.myOffset)) ? checkpoint : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Opens the report as if it started with the prolog and the open elements directly followed by the content after the checkpoint
+   */
+  @NotNull
+  public Reader openReader(@NotNull File file) throws IOException {
+    final StringBuilder prolog = new StringBuilder(myProlog);
+    for (String tag : myOpenTags) {
+      prolog.append(tag);
+    }
+
+    final FileInputStream in = new FileInputStream(file);
+    try {
+      in.getChannel().position(myOffset);
+    } catch (IOException e) {
+      FileUtil.close(in);
+      throw e;
+    }
+    return new InputStreamReader(new SequenceInputStream(new ByteArrayInputStream(prolog.toString().getBytes(RAW)), new BufferedInputStream(in, BUFFER_SIZE)),
+                                 myCharset);
+  }
+
+  /**
+   * Scans the report from the checkpoint or from the beginning past the specified number of test elements
+   * @param testElement name of the element each reported test corresponds to
+   * @param testParents names of the elements test elements are reported inside
+   * @return checkpoint right after the last of these test elements or null if the report can't be resumed
+   */
+  @Nullable
+  public static ReportCheckpoint advance(@NotNull File file,
+                                         @Nullable ReportCheckpoint from,
+                                         @NotNull String testElement,
+                                         @NotNull Collection<String> testParents,
+                                         int tests) {
+    if (tests <= 0) return from;
+
+    InputStream in = null;
+    try {
+      final FileInputStream fileStream = new FileInputStream(file);
+      in = fileStream;
+      if (from != null) fileStream.getChannel().position(from.myOffset);
+
+      final Scanner scanner = new Scanner(fileStream, from == null ? 0 : from.myOffset);
+      final Deque<String> names = new ArrayDeque<String>();
+      final Deque<String> tags = new ArrayDeque<String>();
+      String charset = "UTF-8";
+      String prolog = null;
+      long prologStart = 0;
+      if (from != null) {
+        names.addAll(from.myOpenNames);
+        tags.addAll(from.myOpenTags);
+        charset = from.myCharset;
+        prolog = from.myProlog;
+      } else {
+        final int first = scanner.peek();
+        // the scanner relies on ASCII-compatible encodings
+        if (first == 0xFE || first == 0xFF || first == 0) return null;
+        if (first == 0xEF) {
+          // UTF-8 byte order mark is not a part of the prolog
+          for (int i = 0; i < 3; ++i) scanner.read();
+          prologStart = 3;
+        }
+      }
+
+      int found = 0;
+      int b;
+      while ((b = scanner.read()) != -1) {
+        if (b != '<') continue;
+        final long tagStart = scanner.position() - 1;
+
+        b = scanner.read();
+        if (b == '!') {
+          if (!scanner.skipMarkup()) return null;
+        } else if (b == '?') {
+          final String instruction = scanner.readUntil("?>");
+          if (instruction == null) return null;
+          if (from == null && names.isEmpty() && instruction.startsWith("xml")) {
+            final Matcher matcher = ENCODING.matcher(instruction);
+            if (matcher.find()) charset = matcher.group(1);
+            if (!Charset.isSupported(charset)) return null;
+          }
+        } else if (b == '/') {
+          final String tag = scanner.readUntil(">");
+          if (tag == null || names.isEmpty() || !names.peekLast().equals(localName(tag.trim()))) return null;
+          names.removeLast();
+          tags.removeLast();
+          if (isTest(tag.trim(), names, testElement, testParents) && ++found == tests) {
+            return create(file, scanner.position(), charset, prolog, names, tags);
+          }
+        } else if (b != -1) {
+          final String tag = scanner.readTag(b);
+          if (tag == null) return null;
+          final String name = localName(tag.substring(1, nameEnd(tag)));
+          if (prolog == null) {
+            prolog = new String(readBytes(file, prologStart, (int)(tagStart - prologStart)), RAW);
+          }
+          if (tag.endsWith("/>")) {
+            if (isTest(name, names, testElement, testParents) && ++found == tests) {
+              return create(file, scanner.position(), charset, prolog, names, tags);
+            }
+          } else {
+            names.addLast(name);
+            tags.addLast(tag);
+          }
+        }
+      }
+      return null;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      FileUtil.close(in);
+    }
+  }
+
+  private static boolean isTest(@NotNull String name, @NotNull Deque<String> parents, @NotNull String testElement, @NotNull Collection<String> testParents) {
+    return testElement.equals(localName(name)) && !parents.isEmpty() && testParents.contains(parents.peekLast());
+  }
+
+  @NotNull
+  private static ReportCheckpoint create(@NotNull File file, long offset, @NotNull String charset, @Nullable String prolog,
+                                         @NotNull Deque<String> names, @NotNull Deque<String> tags) throws IOException {
+    return new ReportCheckpoint(offset, readFingerprint(file, offset), charset, prolog == null ? "" : prolog,
+                                new ArrayList<String>(names), new ArrayList<String>(tags));
+  }
+
+  @NotNull
+  private static byte[] readFingerprint(@NotNull File file, long offset) throws IOException {
+    final int length = (int)Math.min(offset, FINGERPRINT_LENGTH);
+    return readBytes(file, offset - length, length);
+  }
+
+  @NotNull
+  private static byte[] readBytes(@NotNull File file, long offset, int length) throws IOException {
+    final byte[] bytes = new byte[length];
+    final RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(offset);
+      raf.readFully(bytes);
+    } finally {
+      FileUtil.close(raf);
+    }
+    return bytes;
+  }
+
+  @NotNull
+  private static String localName(@NotNull String name) {
+    return name.substring(name.indexOf(':') + 1);
+  }
+
+  private static int nameEnd(@NotNull String tag) {
+    int i = 1;
+    while (i < tag.length()) {
+      final char c = tag.charAt(i);
+      if (Character.isWhitespace(c) || c == '/' || c == '>') break;
+      ++i;
+    }
+    return i;
+  }
+
+  private static final class Scanner {
+    @NotNull
+    private final InputStream myStream;
+    @NotNull
+    private final byte[] myBuffer = new byte[BUFFER_SIZE];
+    private int myBufferPosition;
+    private int myBufferLength;
+    private long myPosition;
+
+    private Scanner(@NotNull InputStream stream, long position) {
+      myStream = stream;
+      myPosition = position;
+    }
+
+    private long position() {
+      return myPosition;
+    }
+
+    private int peek() throws IOException {
+      if (myBufferPosition == myBufferLength) {
+        myBufferLength = myStream.read(myBuffer);
+        myBufferPosition = 0;
+        if (myBufferLength <= 0) {
+          myBufferLength = 0;
+          return -1;
+        }
+      }
+      return myBuffer[myBufferPosition] & 0xFF;
+    }
+
+    private int read() throws IOException {
+      final int b = peek();
+      if (b != -1) {
+        ++myBufferPosition;
+        ++myPosition;
+      }
+      return b;
+    }
+
+    /**
+     * Reads up to and including the terminator, returns the text before it or null if the stream ended
+     */
+    @Nullable
+    private String readUntil(@NotNull String terminator) throws IOException {
+      final StringBuilder sb = new StringBuilder();
+      int b;
+      while ((b = read()) != -1) {
+        sb.append((char)b);
+        if (endsWith(sb, terminator)) {
+          sb.setLength(sb.length() - terminator.length());
+          return sb.toString();
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Skips up to and including the terminator without keeping the content
+     */
+    private boolean skipUntil(@NotNull String terminator) throws IOException {
+      final int last = terminator.length() - 1;
+      int matched = 0;
+      int b;
+      while ((b = read()) != -1) {
+        if (b == terminator.charAt(matched)) {
+          if (matched == last) return true;
+          ++matched;
+        } else {
+          // terminators used here have no repeated prefix except runs of their first char
+          matched = b == terminator.charAt(0) ? (matched > 0 && terminator.charAt(matched - 1) == b ? matched : 1) : 0;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Reads a start tag which first character after '<' is already read, returns the whole raw tag or null if the stream ended
+     */
+    @Nullable
+    private String readTag(int first) throws IOException {
+      final StringBuilder sb = new StringBuilder().append('<');
+      int quote = 0;
+      int b = first;
+      while (b != -1) {
+        sb.append((char)b);
+        if (quote != 0) {
+          if (b == quote) quote = 0;
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        } else if (b == '>') {
+          return sb.toString();
+        }
+        b = read();
+      }
+      return null;
+    }
+
+    /**
+     * Skips a comment, CDATA section or declaration which "<!" is already read
+     */
+    private boolean skipMarkup() throws IOException {
+      if (peek() == '-') return skipUntil("-->");
+      if (peek() == '[') return skipUntil("]]>");
+      int depth = 0;
+      int b;
+      while ((b = read()) != -1) {
+        if (b == '[') ++depth;
+        else if (b == ']') --depth;
+        else if (b == '>' && depth <= 0) return true;
+      }
+      return false;
+    }
+
+    private static boolean endsWith(@NotNull StringBuilder sb, @NotNull String suffix) {
+      final int start = sb.length() - suffix.length();
+      if (start < 0) return false;
+      for (int i = 0; i < suffix.length(); ++i) {
+        if (sb.charAt(start + i) != suffix.charAt(i)) return false;
+      }
+      return true;
+    }
+  }
+}
@@ -19,15 +19,22 @@ import org.jetbrains.annotations.Nullable;
 public class TestParsingResult extends ProblemParsingResult {
   private int mySuites;
   private int myTests;
+  @Nullable
+  private final ReportCheckpoint myCheckpoint;
 
   public TestParsingResult(int suites, int tests) {
     this(suites, tests, null);
   }
 
   public TestParsingResult(int suites, int tests, @Nullable Throwable problem) {
+    this(suites, tests, problem, null);
+  }
+
+  public TestParsingResult(int suites, int tests, @Nullable Throwable problem, @Nullable ReportCheckpoint checkpoint) {
     super(problem);
     mySuites = suites;
     myTests = tests;
+    myCheckpoint = checkpoint;
   }
 
   public int getSuites() {
@@ -38,6 +45,14 @@ public class TestParsingResult extends ProblemParsingResult {
     return myTests;
   }
 
+  /**
+   * @return position to resume parsing of a partially written report from, null if the report should be parsed from the beginning
+   */
+  @Nullable
+  public ReportCheckpoint getCheckpoint() {
+    return myCheckpoint;
+  }
+
   public void accumulate(@NotNull ParsingResult parsingResult) {
     final TestParsingResult testParsingResult = (TestParsingResult) parsingResult;
     mySuites += testParsingResult.getSuites();
@@ -0,0 +1,243 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decodes integers, durations and timestamps found in reports right from the text,
+ * without intermediate strings and without exceptions for malformed values.
+ */
+public final class NumberDecoder {
+  /**
+   * Returned for malformed and out of range values
+   */
+  public static final long INVALID = Long.MIN_VALUE;
+
+  private static final char COMMA = ',';
+  private static final char DOT = '.';
+  private static final char MARK = '\'';
+  private static final char NBSP = '\u00A0';
+  // exponent, hexadecimal, type suffix, NaN and Infinity forms are left to Double.parseDouble
+  private static final String RARE_DOUBLE_CHARS = "eEpPxXaAbBcCdDfFINnity";
+  private static final String DATE_TIME_SEPARATORS = "--T::";
+
+  // a decimal with at most this mantissa and 10^22 divisor is converted exactly by a single division
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = new double[23];
+  private static final long MAX_DATE_TIME_FIELD = 1000 * 1000 * 1000;
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; ++i) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private NumberDecoder() {
+  }
+
+  /**
+   * @return the value like <code>Integer.parseInt</code> does or the default value if it fails
+   */
+  public static int parseInt(@Nullable CharSequence s, int defaultValue) {
+    final long value = parseInteger(s);
+    return value == INVALID ? defaultValue : (int)value;
+  }
+
+  /**
+   * @return the value like <code>Integer.parseInt</code> does or {@link #INVALID}
+   */
+  public static long parseInteger(@Nullable CharSequence s) {
+    return s == null ? INVALID : parseInteger(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return the value like <code>Long.parseLong</code> does or {@link #INVALID}, which is also returned for <code>Long.MIN_VALUE</code>
+   */
+  public static long parseLong(@Nullable CharSequence s) {
+    return s == null ? INVALID : parseInteger(s, Long.MIN_VALUE + 1, Long.MAX_VALUE);
+  }
+
+  /**
+   * Decodes seconds written in any locale. The last of comma and dot is the decimal separator,
+   * the other one, apostrophes and non-breaking spaces are grouping separators and are skipped,
+   * so <code>1,234.5</code>, <code>1.234,5</code>, <code>1'234.5</code> and <code>1&nbsp;234,5</code> are the same.
+   * @return milliseconds or {@link #INVALID}
+   */
+  public static long parseSecondsAsMillis(@Nullable CharSequence s) {
+    if (s == null) return INVALID;
+    final char decimalSeparator = lastIndexOf(s, COMMA, s.length()) > lastIndexOf(s, DOT, s.length()) ? COMMA : DOT;
+    final double seconds = parseDecimal(s, 0, s.length(), decimalSeparator, true);
+    return Double.isNaN(seconds) ? INVALID : Math.round(seconds * 1000.0);
+  }
+
+  /**
+   * Decodes .NET time span like <code>01:02:03.4567890</code>
+   * @return milliseconds with fraction rounded up or {@link #INVALID}
+   */
+  public static long parseTimeSpanMillis(@Nullable CharSequence s) {
+    if (s == null) return INVALID;
+    int end = s.length();
+    // trailing empty parts are ignored like String.split does
+    while (end > 0 && s.charAt(end - 1) == ':') --end;
+    final int secondsStart = lastIndexOf(s, ':', end) + 1;
+    if (secondsStart == 0) return INVALID;
+    final int minutesStart = lastIndexOf(s, ':', secondsStart - 1) + 1;
+    if (minutesStart == 0 || lastIndexOf(s, ':', minutesStart - 1) >= 0) return INVALID;
+
+    final double hours = parseDecimal(s, 0, minutesStart - 1, DOT, false);
+    final double minutes = parseDecimal(s, minutesStart, secondsStart - 1, DOT, false);
+    final double seconds = parseDecimal(s, secondsStart, end, DOT, false);
+    if (Double.isNaN(hours) || Double.isNaN(minutes) || Double.isNaN(seconds)) return INVALID;
+    return (long)(Math.ceil(1000 * seconds) + 1000 * (60 * (minutes + 60 * hours)));
+  }
+
+  /**
+   * Decodes date and time like <code>2010-02-12T14:44:45</code>, fraction of second and time zone offset after it are ignored.
+   * Out of range fields are rolled over like lenient date formats do.
+   * @return seconds since <code>1970-01-01T00:00:00</code> of the same time zone or {@link #INVALID}
+   */
+  public static long parseDateTimeSeconds(@Nullable CharSequence s) {
+    if (s == null) return INVALID;
+    final int length = s.length();
+    long year = 0;
+    long month = 0;
+    long day = 0;
+    long hour = 0;
+    long minute = 0;
+    long value = 0;
+    boolean digits = false;
+    int field = 0;
+    for (int i = 0; i <= length; ++i) {
+      final char c = i < length ? s.charAt(i) : 0;
+      if (c >= '0' && c <= '9') {
+        if (value > MAX_DATE_TIME_FIELD) return INVALID;
+        value = 10 * value + c - '0';
+        digits = true;
+        continue;
+      }
+      if (!digits) return INVALID;
+      switch (field) {
+        case 0: year = value; break;
+        case 1: month = value; break;
+        case 2: day = value; break;
+        case 3: hour = value; break;
+        case 4: minute = value; break;
+        default:
+          final long days = daysFromCivil(year + Math.floorDiv(month - 1, 12), Math.floorMod(month - 1, 12) + 1) + day - 1;
+          return 24 * 60 * 60 * days + 60 * 60 * hour + 60 * minute + value;
+      }
+      if (c != DATE_TIME_SEPARATORS.charAt(field)) return INVALID;
+      ++field;
+      value = 0;
+      digits = false;
+    }
+    return INVALID;
+  }
+
+  private static long parseInteger(@NotNull CharSequence s, long min, long max) {
+    final int length = s.length();
+    if (length == 0) return INVALID;
+    int i = 0;
+    final char first = s.charAt(0);
+    final boolean negative = first == '-';
+    if (negative || first == '+') {
+      if (length == 1) return INVALID;
+      ++i;
+    }
+    // accumulated negatively like Integer.parseInt does, so the minimum fits
+    final long limit = negative ? min : -max;
+    long result = 0;
+    for (; i < length; ++i) {
+      final int digit = Character.digit(s.charAt(i), 10);
+      if (digit < 0 || result < limit / 10) return INVALID;
+      result *= 10;
+      if (result < limit + digit) return INVALID;
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Decodes the decimal like <code>Double.parseDouble</code> does
+   * @param localized skip grouping separators, apostrophes and non-breaking spaces
+   * @return the value or NaN if it's malformed
+   */
+  private static double parseDecimal(@NotNull CharSequence s, int start, int end, char decimalSeparator, boolean localized) {
+    final char groupingSeparator = decimalSeparator == COMMA ? DOT : COMMA;
+    boolean started = false;
+    boolean trailing = false;
+    boolean negative = false;
+    boolean digits = false;
+    boolean fraction = false;
+    long mantissa = 0;
+    int scale = 0;
+    boolean exact = true;
+    for (int i = start; i < end; ++i) {
+      final char c = s.charAt(i);
+      if (localized && (c == groupingSeparator || c == MARK || c == NBSP)) continue;
+      if (c <= ' ') {
+        trailing = started;
+        continue;
+      }
+      if (trailing) return Double.NaN;
+      if (c >= '0' && c <= '9') {
+        digits = true;
+        if (mantissa <= (MAX_EXACT_MANTISSA - 9) / 10) {
+          mantissa = 10 * mantissa + c - '0';
+          if (fraction) ++scale;
+        } else {
+          exact = false;
+        }
+      } else if (c == decimalSeparator) {
+        if (fraction) return Double.NaN;
+        fraction = true;
+      } else if ((c == '-' || c == '+') && !started) {
+        negative = c == '-';
+      } else if (RARE_DOUBLE_CHARS.indexOf(c) >= 0) {
+        return parseDouble(s, start, end, decimalSeparator, localized);
+      } else {
+        return Double.NaN;
+      }
+      started = true;
+    }
+    if (!digits) return Double.NaN;
+    if (!exact || scale >= POWERS_OF_TEN.length) return parseDouble(s, start, end, decimalSeparator, localized);
+    final double value = mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  private static double parseDouble(@NotNull CharSequence s, int start, int end, char decimalSeparator, boolean localized) {
+    final char groupingSeparator = decimalSeparator == COMMA ? DOT : COMMA;
+    final StringBuilder sb = new StringBuilder(end - start);
+    for (int i = start; i < end; ++i) {
+      final char c = s.charAt(i);
+      if (localized && (c == groupingSeparator || c == MARK || c == NBSP)) continue;
+      sb.append(c == decimalSeparator ? DOT : c);
+    }
+    try {
+      return Double.parseDouble(sb.toString());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private static int lastIndexOf(@NotNull CharSequence s, char c, int end) {
+    for (int i = end - 1; i >= 0; --i) {
+      if (s.charAt(i) == c) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return number of days from 1970-01-01 to the first day of the month in the proleptic Gregorian calendar
+   */
+  private static long daysFromCivil(long year, long month) {
+    if (month <= 2) --year;
+    final long era = Math.floorDiv(year, 400);
+    final long yearOfEra = year - era * 400;
+    final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+    final long dayOfEra = 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return 146097 * era + dayOfEra - 719468;
+  }
+}
@@ -3,8 +3,14 @@
 package jetbrains.buildServer.xmlReportPlugin.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.XmlUtil;
 import org.jetbrains.annotations.Contract;
@@ -20,11 +26,10 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class ParserUtils {
 
-  private static final Pattern HTML_SPACE = Pattern.compile("&nbsp;", Pattern.LITERAL);
-  private static final Pattern CARRIAGE_RETURN = Pattern.compile("\r", Pattern.LITERAL);
-  private static final Pattern NEW_LINE = Pattern.compile("\n", Pattern.LITERAL);
-  private static final Pattern SPACES = Pattern.compile("\\s+");
-  private static final Pattern HTML_TAGS = Pattern.compile("<[a-z]>|</[a-z]>");
+  private static final int PROBE_SIZE = 4096;
+  private static final Charset RAW = Charset.forName("ISO-8859-1");
+  private static final Pattern ROOT_START = Pattern.compile("<([^\\s<>/?!]+)");
+  private static final Pattern ROOT_END = Pattern.compile("</([^\\s<>]+)\\s*>$");
 
   @NotNull
   public static XMLReader createXmlReader(@NotNull ContentHandler contentHandler,
@@ -37,34 +42,12 @@ public class ParserUtils {
     return xmlReader;
   }
 
+  /**
+   * @see TextNormalizer#formatText(String)
+   */
   @NotNull
   public static String formatText(@NotNull String s) {
-    s = replaceHtmlSpace(s);
-    s = removeCarriageReturn(s);
-    s = replaceNewLine(s);
-    s = trimSpaces(s);
-    s = removeHtmlTags(s);
-    return s.trim();
-  }
-
-  private static String replaceHtmlSpace(@NotNull String s) {
-    return HTML_SPACE.matcher(s).replaceAll(Matcher.quoteReplacement(" "));
-  }
-
-  private static String removeCarriageReturn(@NotNull String s) {
-    return CARRIAGE_RETURN.matcher(s).replaceAll(Matcher.quoteReplacement(""));
-  }
-
-  private static String replaceNewLine(@NotNull String s) {
-    return NEW_LINE.matcher(s).replaceAll(Matcher.quoteReplacement(" "));
-  }
-
-  private static String trimSpaces(@NotNull String s) {
-    return SPACES.matcher(s).replaceAll(" ");
-  }
-
-  private static String removeHtmlTags(@NotNull String s) {
-    return HTML_TAGS.matcher(s).replaceAll("");
+    return TextNormalizer.formatText(s);
   }
 
   public static boolean isReportComplete(@NotNull final File report, @Nullable String rootTag) {
@@ -81,6 +64,119 @@ public class ParserUtils {
     }
   }
 
+  /**
+   * Cheap alternative to {@link #isReportComplete(File, String)} which reads only the prolog and a bounded window
+   * at the end of the report: the report is complete if its root element is the expected one and is closed.
+   * Falls back to the full check when the windows don't give a definite answer: reports with a DTD,
+   * in encodings which are not ASCII-compatible, with an empty root element or ending inside a comment or CDATA.
+   */
+  public static boolean isReportTailComplete(@NotNull final File report, @NotNull String rootTag) {
+    final String head;
+    final String tail;
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(report.toPath(), StandardOpenOption.READ);
+      final long size = channel.size();
+      head = readProbe(channel, 0, size);
+      tail = size <= PROBE_SIZE ? head : readProbe(channel, size - PROBE_SIZE, size);
+    } catch (IOException e) {
+      return false;
+    } finally {
+      FileUtil.close(channel);
+    }
+    if (head.isEmpty()) return false;
+
+    final char first = head.charAt(0);
+    if (first == 0 || first == 0xFE || first == 0xFF || head.contains("<!DOCTYPE")) {
+      return isReportComplete(report, rootTag);
+    }
+
+    final String root = getRootTag(head);
+    if (root == null) return isReportComplete(report, rootTag);
+    if (!rootTag.equals(root.substring(root.indexOf(':') + 1))) return false;
+
+    final String trimmed = trimTrailingMisc(tail);
+    if (trimmed.endsWith("/>") ||
+        trimmed.lastIndexOf("<![CDATA[") > trimmed.lastIndexOf("]]>") ||
+        trimmed.lastIndexOf("<!--") > trimmed.lastIndexOf("-->")) {
+      return isReportComplete(report, rootTag);
+    }
+    return rootTag.equals(getClosingTag(trimmed));
+  }
+
+  /**
+   * Reads only the prolog window of the report
+   * @return local name of the root element or null if it's not found in the window or the report is not in an ASCII-compatible encoding
+   */
+  @Nullable
+  public static String getRootElement(@NotNull final File report) {
+    String head;
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(report.toPath(), StandardOpenOption.READ);
+      head = readProbe(channel, 0, channel.size());
+    } catch (IOException e) {
+      return null;
+    } finally {
+      FileUtil.close(channel);
+    }
+    // UTF-8 byte order mark
+    if (head.startsWith("\u00EF\u00BB\u00BF")) head = head.substring(3);
+
+    final String root = getRootTag(head);
+    return root == null ? null : root.substring(root.indexOf(':') + 1);
+  }
+
+  // name of the first element after the XML declaration, comments and processing instructions, null if it's not in the prolog window
+  @Nullable
+  private static String getRootTag(@NotNull String head) {
+    int i = 0;
+    while (true) {
+      while (i < head.length() && Character.isWhitespace(head.charAt(i))) ++i;
+      if (head.startsWith("<?", i)) {
+        i = head.indexOf("?>", i);
+        if (i < 0) return null;
+        i += 2;
+      } else if (head.startsWith("<!--", i)) {
+        i = head.indexOf("-->", i);
+        if (i < 0) return null;
+        i += 3;
+      } else {
+        break;
+      }
+    }
+    final Matcher matcher = ROOT_START.matcher(head).region(i, head.length());
+    return matcher.lookingAt() ? matcher.group(1) : null;
+  }
+
+  @NotNull
+  private static String getClosingTag(@NotNull String tail) {
+    final Matcher matcher = ROOT_END.matcher(tail);
+    if (!matcher.find()) return "";
+    final String name = matcher.group(1);
+    return name.substring(name.indexOf(':') + 1);
+  }
+
+  // drops trailing whitespace, comments and processing instructions
+  @NotNull
+  private static String trimTrailingMisc(@NotNull String text) {
+    while (true) {
+      text = text.trim();
+      if (text.endsWith("-->") && text.contains("<!--")) text = text.substring(0, text.lastIndexOf("<!--"));
+      else if (text.endsWith("?>") && text.contains("<?")) text = text.substring(0, text.lastIndexOf("<?"));
+      else return text;
+    }
+  }
+
+  @NotNull
+  private static String readProbe(@NotNull FileChannel channel, long offset, long size) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(PROBE_SIZE, size - offset));
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) break;
+    }
+    return new String(buffer.array(), 0, buffer.position(), RAW);
+  }
+
   @Contract("null -> false")
   public static boolean isNumber(@Nullable final String str) {
     if(StringUtil.isEmptyOrSpaces(str)) return false;
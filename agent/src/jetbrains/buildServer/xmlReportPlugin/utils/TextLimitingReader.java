@@ -0,0 +1,377 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Passes an XML document through, keeping only the head and the tail of character data and CDATA sections
+ * longer than the limit, so a parser never builds a huge element text such as test output.
+ * Markup, comments and attribute values are passed as is, entity references and surrogate pairs are never split.
+ * The full text of a cut run is saved through the {@link Spill} if it's set, references to predefined entities
+ * and characters are resolved in the saved text.
+ */
+public final class TextLimitingReader extends Reader {
+  // room for the message about skipped characters
+  private static final int MARKER_RESERVE = 64;
+  private static final int MAX_ENTITY_LENGTH = 32;
+  private static final String CDATA_START = "![CDATA[";
+  private static final String COMMENT_START = "!--";
+
+  private enum State { TEXT, TAG, COMMENT, CDATA }
+
+  @NotNull
+  private final Reader myDelegate;
+  private final int myHeadLength;
+  @NotNull
+  private final char[] myInput = new char[8 * 1024];
+  private int myInputPos;
+  private int myInputEnd;
+  @NotNull
+  private final StringBuilder myOutput = new StringBuilder();
+  private int myOutputPos;
+  private boolean myEof;
+
+  @NotNull
+  private State myState = State.TEXT;
+  // characters of the current tag after '<' while they may start a comment or a CDATA section
+  @NotNull
+  private final StringBuilder myTagStart = new StringBuilder();
+  private char myQuote;
+  // '-' before the end of a comment or ']' before the end of a CDATA section
+  private int myEndChars;
+
+  // current text run
+  private int myHeadCount;
+  private boolean mySkipping;
+  private long myAfterHead;
+  private boolean myInEntity;
+  private char myLastHeadChar;
+  @NotNull
+  private final char[] myTail;
+  private int myTailStart;
+  private int myTailCount;
+
+  @Nullable
+  private final Spill mySpill;
+  // head of the current run kept while the run may need to be saved
+  @Nullable
+  private final StringBuilder myHead;
+  @Nullable
+  private Writer mySpillWriter;
+  // unresolved entity reference of the saved text
+  @NotNull
+  private final StringBuilder mySpillEntity = new StringBuilder();
+
+  /**
+   * @param maxTextLength max length of a text run passed through including the message about skipped characters
+   */
+  public TextLimitingReader(@NotNull Reader delegate, int maxTextLength) {
+    this(delegate, maxTextLength, null);
+  }
+
+  /**
+   * @param spill saves the full text of cut runs, the text is dropped if null.
+   *              The location of the saved text is added to the message about skipped characters, so the message may be longer
+   */
+  public TextLimitingReader(@NotNull Reader delegate, int maxTextLength, @Nullable Spill spill) {
+    myDelegate = delegate;
+    final int keep = maxTextLength > 2 * MARKER_RESERVE ? maxTextLength - MARKER_RESERVE : Math.max(2, maxTextLength / 2);
+    myHeadLength = keep / 2;
+    myTail = new char[keep - myHeadLength];
+    mySpill = spill;
+    myHead = spill == null ? null : new StringBuilder(myHeadLength + MAX_ENTITY_LENGTH + 1);
+  }
+
+  @Override
+  public int read(@NotNull char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) return 0;
+    while (myOutputPos == myOutput.length()) {
+      myOutput.setLength(0);
+      myOutputPos = 0;
+      if (myInputPos == myInputEnd) {
+        if (myEof) return -1;
+        final int read = myDelegate.read(myInput, 0, myInput.length);
+        if (read < 0) {
+          myEof = true;
+          endRun();
+          continue;
+        }
+        myInputPos = 0;
+        myInputEnd = read;
+      }
+      while (myInputPos < myInputEnd && myOutput.length() < myInput.length) {
+        process(myInput[myInputPos++]);
+      }
+    }
+    final int count = Math.min(len, myOutput.length() - myOutputPos);
+    myOutput.getChars(myOutputPos, myOutputPos + count, cbuf, off);
+    myOutputPos += count;
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mySpillWriter != null) {
+      FileUtil.close(mySpillWriter);
+      mySpillWriter = null;
+    }
+    myDelegate.close();
+  }
+
+  private void process(char c) {
+    switch (myState) {
+      case TEXT:
+        if (c == '<') {
+          endRun();
+          startTag();
+          myOutput.append(c);
+        } else {
+          runChar(c);
+        }
+        break;
+      case CDATA:
+        if (c == ']') {
+          // "]]>" is kept out of the run until it's clear whether it ends the section
+          if (++myEndChars > 2) {
+            --myEndChars;
+            runChar(']');
+          }
+        } else if (c == '>' && myEndChars == 2) {
+          endRun();
+          myOutput.append("]]>");
+          myEndChars = 0;
+          myState = State.TEXT;
+        } else {
+          for (; myEndChars > 0; --myEndChars) {
+            runChar(']');
+          }
+          runChar(c);
+        }
+        break;
+      case COMMENT:
+        myOutput.append(c);
+        if (c == '>' && myEndChars >= 2) {
+          myState = State.TEXT;
+        } else {
+          myEndChars = c == '-' ? myEndChars + 1 : 0;
+        }
+        break;
+      case TAG:
+        myOutput.append(c);
+        if (myQuote != 0) {
+          if (c == myQuote) myQuote = 0;
+        } else if (c == '>') {
+          myState = State.TEXT;
+        } else if (c == '"' || c == '\'') {
+          myQuote = c;
+        } else if (myTagStart.length() < CDATA_START.length()) {
+          myTagStart.append(c);
+          if (CDATA_START.contentEquals(myTagStart)) {
+            myState = State.CDATA;
+            myEndChars = 0;
+          } else if (COMMENT_START.contentEquals(myTagStart)) {
+            myState = State.COMMENT;
+            myEndChars = 0;
+          }
+        }
+        break;
+    }
+  }
+
+  private void startTag() {
+    myState = State.TAG;
+    myTagStart.setLength(0);
+    myQuote = 0;
+  }
+
+  private void runChar(char c) {
+    if (!mySkipping) {
+      // the head is extended to the end of an entity reference or a surrogate pair
+      if (myHeadCount < myHeadLength || myInEntity && myHeadCount < myHeadLength + MAX_ENTITY_LENGTH || Character.isHighSurrogate(myLastHeadChar)) {
+        myOutput.append(c);
+        if (myHead != null) myHead.append(c);
+        ++myHeadCount;
+        myLastHeadChar = c;
+        if (myState == State.TEXT) {
+          if (c == '&') {
+            myInEntity = true;
+          } else if (c == ';') {
+            myInEntity = false;
+          }
+        }
+        return;
+      }
+      mySkipping = true;
+      startSpill();
+    }
+    spillChar(c);
+    ++myAfterHead;
+    if (myTailCount < myTail.length) {
+      myTail[(myTailStart + myTailCount++) % myTail.length] = c;
+    } else {
+      myTail[myTailStart] = c;
+      myTailStart = (myTailStart + 1) % myTail.length;
+    }
+  }
+
+  private void endRun() {
+    int skip = 0;
+    if (myAfterHead > myTailCount) {
+      // the tail starts after a partial entity reference or surrogate pair
+      if (myState == State.TEXT) {
+        for (int i = 0; i < Math.min(myTailCount, MAX_ENTITY_LENGTH); ++i) {
+          final char c = tailChar(i);
+          if (c == '&') break;
+          if (c == ';') {
+            skip = i + 1;
+            break;
+          }
+        }
+      }
+      if (skip < myTailCount && Character.isLowSurrogate(tailChar(skip))) ++skip;
+      final String location = finishSpill();
+      myOutput.append("\n...[").append(myAfterHead - myTailCount + skip).append(" characters skipped");
+      if (location != null) appendText(", full text is saved to " + location);
+      myOutput.append("]...\n");
+    }
+    for (int i = skip; i < myTailCount; ++i) {
+      myOutput.append(tailChar(i));
+    }
+    myHeadCount = 0;
+    mySkipping = false;
+    myAfterHead = 0;
+    myInEntity = false;
+    myLastHeadChar = 0;
+    myTailStart = 0;
+    myTailCount = 0;
+    if (myHead != null) myHead.setLength(0);
+  }
+
+  private void appendText(@NotNull String text) {
+    if (myState != State.TEXT) {
+      myOutput.append(text);
+      return;
+    }
+    for (int i = 0; i < text.length(); ++i) {
+      final char c = text.charAt(i);
+      if (c == '&') {
+        myOutput.append("&amp;");
+      } else if (c == '<') {
+        myOutput.append("&lt;");
+      } else {
+        myOutput.append(c);
+      }
+    }
+  }
+
+  private void startSpill() {
+    if (mySpill == null || myHead == null) return;
+    try {
+      mySpillWriter = mySpill.open();
+      mySpillEntity.setLength(0);
+      for (int i = 0; i < myHead.length(); ++i) {
+        spillChar(myHead.charAt(i));
+      }
+    } catch (IOException e) {
+      spillFailed(e);
+    }
+  }
+
+  private void spillChar(char c) {
+    final Writer writer = mySpillWriter;
+    if (writer == null) return;
+    try {
+      if (myState != State.TEXT) {
+        writer.write(c);
+      } else if (mySpillEntity.length() > 0) {
+        mySpillEntity.append(c);
+        if (c == ';' || mySpillEntity.length() > MAX_ENTITY_LENGTH) {
+          writer.write(resolve(mySpillEntity));
+          mySpillEntity.setLength(0);
+        }
+      } else if (c == '&') {
+        mySpillEntity.append(c);
+      } else {
+        writer.write(c);
+      }
+    } catch (IOException e) {
+      spillFailed(e);
+    }
+  }
+
+  /**
+   * @return location of the saved text or null if it's not saved
+   */
+  @Nullable
+  private String finishSpill() {
+    final Writer writer = mySpillWriter;
+    if (writer == null || mySpill == null) return null;
+    mySpillWriter = null;
+    try {
+      writer.write(mySpillEntity.toString());
+      return mySpill.close(writer);
+    } catch (IOException e) {
+      FileUtil.close(writer);
+      LoggingUtils.LOG.warn("Failed to save skipped report text", e);
+      return null;
+    }
+  }
+
+  private void spillFailed(@NotNull IOException e) {
+    LoggingUtils.LOG.warn("Failed to save skipped report text", e);
+    if (mySpillWriter != null) {
+      FileUtil.close(mySpillWriter);
+      mySpillWriter = null;
+    }
+  }
+
+  /**
+   * @return the character referred to by the predefined entity or character reference, the reference itself otherwise
+   */
+  @NotNull
+  private static String resolve(@NotNull CharSequence reference) {
+    final String ref = reference.toString();
+    if ("&amp;".equals(ref)) return "&";
+    if ("&lt;".equals(ref)) return "<";
+    if ("&gt;".equals(ref)) return ">";
+    if ("&quot;".equals(ref)) return "\"";
+    if ("&apos;".equals(ref)) return "'";
+    if (ref.length() > 3 && ref.charAt(1) == '#' && ref.endsWith(";")) {
+      final boolean hex = ref.charAt(2) == 'x';
+      try {
+        final int codePoint = Integer.parseInt(ref.substring(hex ? 3 : 2, ref.length() - 1), hex ? 16 : 10);
+        if (Character.isValidCodePoint(codePoint)) return new String(Character.toChars(codePoint));
+      } catch (NumberFormatException ignore) {
+        // not a character reference
+      }
+    }
+    return ref;
+  }
+
+  private char tailChar(int i) {
+    return myTail[(myTailStart + i) % myTail.length];
+  }
+
+  /**
+   * Saves the full text of runs longer than the limit
+   */
+  public interface Spill {
+    /**
+     * Is called when a run gets longer than the limit
+     * @return writer of the full text of the run
+     */
+    @NotNull
+    Writer open() throws IOException;
+
+    /**
+     * Is called when the run ends, closes the writer
+     * @return location of the saved text
+     */
+    @NotNull
+    String close(@NotNull Writer writer) throws IOException;
+  }
+}
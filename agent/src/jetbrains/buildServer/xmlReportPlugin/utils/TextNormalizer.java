@@ -0,0 +1,152 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Text transformations applied to every description and message, done in a single scan over the text
+ * and a builder reused by the calling thread, so only the resulting string is allocated.
+ */
+public final class TextNormalizer {
+  private static final String HTML_SPACE = "&nbsp;";
+  // builders grown by huge texts are not kept
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>();
+
+  private TextNormalizer() {
+  }
+
+  /**
+   * Replaces <code>&amp;nbsp;</code> and line ends with spaces, collapses whitespace, removes single letter HTML tags
+   * like <code>&lt;b&gt;</code> and <code>&lt;/b&gt;</code> and trims the result
+   */
+  @NotNull
+  public static String formatText(@NotNull String s) {
+    final StringBuilder sb = acquireBuilder();
+    final int length = s.length();
+    boolean changed = false;
+    // the last appended character replaces a run of whitespace
+    boolean space = false;
+    for (int i = 0; i < length; ++i) {
+      char c = s.charAt(i);
+      if (c == '\r') {
+        changed = true;
+        continue;
+      }
+      if (c == '&' && s.startsWith(HTML_SPACE, i)) {
+        c = ' ';
+        i += HTML_SPACE.length() - 1;
+        changed = true;
+      }
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f') {
+        if (space || c != ' ') changed = true;
+        if (space) continue;
+        sb.append(' ');
+        space = true;
+      } else {
+        sb.append(c);
+        space = false;
+      }
+    }
+    if (removeHtmlTags(sb)) changed = true;
+    if (!changed) return s.trim();
+
+    int start = 0;
+    int end = sb.length();
+    while (start < end && sb.charAt(start) <= ' ') ++start;
+    while (start < end && sb.charAt(end - 1) <= ' ') --end;
+    return sb.substring(start, end);
+  }
+
+  /**
+   * @return the text with all occurrences of the first string removed and then all occurrences of the second one
+   */
+  @NotNull
+  public static String removeAll(@NotNull String s, @NotNull String first, @NotNull String second) {
+    final int index = first.isEmpty() ? -1 : s.indexOf(first);
+    if (index < 0) {
+      final int secondIndex = second.isEmpty() ? -1 : s.indexOf(second);
+      return secondIndex < 0 ? s : appendRemoved(acquireBuilder(), s, second, secondIndex).toString();
+    }
+    final StringBuilder sb = appendRemoved(acquireBuilder(), s, first, index);
+    // removal of the first string may form the second one
+    if (!second.isEmpty() && sb.indexOf(second) >= 0) remove(sb, second);
+    return sb.toString();
+  }
+
+  @NotNull
+  private static StringBuilder appendRemoved(@NotNull StringBuilder sb, @NotNull String s, @NotNull String target, int index) {
+    int from = 0;
+    while (index >= 0) {
+      sb.append(s, from, index);
+      from = index + target.length();
+      index = s.indexOf(target, from);
+    }
+    return sb.append(s, from, s.length());
+  }
+
+  // removes <x> and </x> in place, tags are searched in one pass, so removal of a tag doesn't form another one
+  private static boolean removeHtmlTags(@NotNull StringBuilder sb) {
+    final int length = sb.length();
+    int to = 0;
+    int from = 0;
+    while (from < length) {
+      final char c = sb.charAt(from);
+      if (c == '<') {
+        if (from + 2 < length && isTagName(sb.charAt(from + 1)) && sb.charAt(from + 2) == '>') {
+          from += 3;
+          continue;
+        }
+        if (from + 3 < length && sb.charAt(from + 1) == '/' && isTagName(sb.charAt(from + 2)) && sb.charAt(from + 3) == '>') {
+          from += 4;
+          continue;
+        }
+      }
+      sb.setCharAt(to++, c);
+      ++from;
+    }
+    sb.setLength(to);
+    return to < length;
+  }
+
+  private static boolean isTagName(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  private static void remove(@NotNull StringBuilder sb, @NotNull String target) {
+    final int targetLength = target.length();
+    final char first = target.charAt(0);
+    final int length = sb.length();
+    int to = 0;
+    int from = 0;
+    while (from < length) {
+      final char c = sb.charAt(from);
+      if (c == first && matches(sb, from, target)) {
+        from += targetLength;
+        continue;
+      }
+      sb.setCharAt(to++, c);
+      ++from;
+    }
+    sb.setLength(to);
+  }
+
+  private static boolean matches(@NotNull StringBuilder sb, int offset, @NotNull String target) {
+    if (offset + target.length() > sb.length()) return false;
+    for (int i = 1; i < target.length(); ++i) {
+      if (sb.charAt(offset + i) != target.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  @NotNull
+  private static StringBuilder acquireBuilder() {
+    StringBuilder sb = BUILDER.get();
+    if (sb == null || sb.capacity() > MAX_RETAINED_CAPACITY) {
+      sb = new StringBuilder(256);
+      BUILDER.set(sb);
+    }
+    sb.setLength(0);
+    return sb;
+  }
+}
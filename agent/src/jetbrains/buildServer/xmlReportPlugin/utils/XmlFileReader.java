@@ -0,0 +1,273 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reader of UTF-8 (ASCII) and ISO-8859-1 XML reports which decodes bytes straight into the caller's buffer.
+ * The file is read into a direct buffer and decoded from it by decoders reused by the parsing thread,
+ * so neither many small reports nor a huge one allocate intermediate byte and char buffers.
+ * Malformed input fails the read the same way the usual stream decoder does.
+ * Reports are read this way only if {@link #TEAMCITY_PROPERTY_ENABLED} is true.
+ */
+public final class XmlFileReader extends Reader {
+  public static final String TEAMCITY_PROPERTY_ENABLED = "teamcity.xmlReport.directInput.enabled";
+
+  static final int BUFFER_SIZE = 64 * 1024;
+  private static final int PROLOG_LENGTH = 4 * 1024;
+
+  private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>();
+  private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+  @NotNull
+  private final FileChannel myChannel;
+  @Nullable
+  private Buffers myBuffers;
+  @NotNull
+  private final ByteBuffer myBytes;
+  private CharsetDecoder myDecoder;
+  private boolean myEof;
+  private boolean myFlushed;
+  // second half of a surrogate pair which didn't fit into the previous read
+  private char myPendingChar;
+
+  private XmlFileReader(@NotNull FileChannel channel, @NotNull Buffers buffers) {
+    myChannel = channel;
+    myBuffers = buffers;
+    myBytes = buffers.myBytes;
+    myBytes.clear().flip();
+  }
+
+  /**
+   * @return reader of the report or null if the reader is disabled or the report encoding is not supported
+   * and the report should be read the usual way
+   */
+  @Nullable
+  public static Reader open(@NotNull File file) throws IOException {
+    if (!TeamCityProperties.getBoolean(TEAMCITY_PROPERTY_ENABLED)) return null;
+    return open(file, BUFFER_SIZE);
+  }
+
+  @Nullable
+  static XmlFileReader open(@NotNull File file, int bufferSize) throws IOException {
+    final XmlFileReader reader = new XmlFileReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), acquireBuffers(bufferSize));
+    boolean opened = false;
+    try {
+      reader.fill();
+      final CharsetDecoder decoder = reader.detectDecoder();
+      if (decoder == null) return null;
+      reader.myDecoder = decoder.reset();
+      opened = true;
+      return reader;
+    } finally {
+      if (!opened) reader.close();
+    }
+  }
+
+  /**
+   * Reader of a report in any encoding the JVM supports, decoded by a stream decoder.
+   * Unlike the usual way of reading, it lets the report be read through other readers
+   * @return reader of the report or null if the report encoding is not supported
+   */
+  @Nullable
+  public static Reader openStream(@NotNull File file) throws IOException {
+    final InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    boolean opened = false;
+    try {
+      is.mark(PROLOG_LENGTH);
+      final byte[] prolog = new byte[PROLOG_LENGTH];
+      int length = 0;
+      int read;
+      while (length < prolog.length && (read = is.read(prolog, length, prolog.length - length)) > 0) {
+        length += read;
+      }
+      is.reset();
+
+      final ByteBuffer bytes = ByteBuffer.wrap(prolog, 0, length);
+      final String encoding = detectEncoding(bytes);
+      if (encoding == null) return null;
+      // the UTF-8 byte order mark
+      if (bytes.position() > 0 && is.skip(bytes.position()) != bytes.position()) return null;
+      opened = true;
+      return new InputStreamReader(is, Charset.forName(encoding).newDecoder());
+    } finally {
+      if (!opened) is.close();
+    }
+  }
+
+  /**
+   * Skips the byte order mark
+   * @return decoder of the report encoding or null if it's not supported
+   */
+  @Nullable
+  private CharsetDecoder detectDecoder() {
+    final Buffers buffers = myBuffers;
+    assert buffers != null;
+    final String encoding = detectEncoding(myBytes);
+    if ("UTF-8".equals(encoding)) return buffers.myUtf8;
+    if ("ISO-8859-1".equals(encoding)) return buffers.myLatin1;
+    return null;
+  }
+
+  /**
+   * Skips the UTF-8 byte order mark, the UTF-16 one is skipped by the decoder
+   * @return canonical name of the encoding of the report starting with the bytes or null if it's not supported
+   */
+  @Nullable
+  private static String detectEncoding(@NotNull ByteBuffer bytes) {
+    final int limit = bytes.limit();
+    if (limit >= 3 && (bytes.get(0) & 0xFF) == 0xEF && (bytes.get(1) & 0xFF) == 0xBB && (bytes.get(2) & 0xFF) == 0xBF) {
+      bytes.position(3);
+      return "UTF-8";
+    }
+    if (limit >= 2) {
+      final int first = bytes.get(0) & 0xFF;
+      final int second = bytes.get(1) & 0xFF;
+      // UTF-32 is not supported
+      if (first == 0 && second == 0 || limit >= 4 && bytes.get(2) == 0 && bytes.get(3) == 0 && (second == 0 || second == 0xFE)) return null;
+      if (first == 0xFE && second == 0xFF || first == 0xFF && second == 0xFE) return "UTF-16";
+      if (first == 0) return "UTF-16BE";
+      if (second == 0) return "UTF-16LE";
+    }
+    if (!startsWith(bytes, "<?xml")) return "UTF-8";
+
+    final StringBuilder prolog = new StringBuilder();
+    for (int i = 0; i < limit; ++i) {
+      final char c = (char)(bytes.get(i) & 0xFF);
+      prolog.append(c);
+      if (c == '>') break;
+    }
+    if (prolog.charAt(prolog.length() - 1) != '>') return null;
+
+    final Matcher matcher = ENCODING.matcher(prolog);
+    if (!matcher.find()) return "UTF-8";
+    final Charset charset;
+    try {
+      charset = Charset.forName(matcher.group(1));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    // ASCII is a subset of UTF-8
+    return "US-ASCII".equals(charset.name()) ? "UTF-8" : charset.name();
+  }
+
+  private static boolean startsWith(@NotNull ByteBuffer bytes, @NotNull String prefix) {
+    if (bytes.limit() < prefix.length()) return false;
+    for (int i = 0; i < prefix.length(); ++i) {
+      if (bytes.get(i) != prefix.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  @NotNull
+  private static Buffers acquireBuffers(int size) {
+    final Buffers buffers = BUFFERS.get();
+    if (buffers == null || buffers.myBytes.capacity() != size) return new Buffers(size);
+    // a nested reader on the same thread gets its own buffers
+    BUFFERS.set(null);
+    return buffers;
+  }
+
+  private static void releaseBuffers(@NotNull Buffers buffers) {
+    if (buffers.myBytes.capacity() == BUFFER_SIZE) BUFFERS.set(buffers);
+  }
+
+  @Override
+  public int read(@NotNull char[] cbuf, int off, int len) throws IOException {
+    final Buffers buffers = myBuffers;
+    if (buffers == null) throw new IOException("Stream closed");
+    if (len == 0) return 0;
+
+    if (myPendingChar != 0) {
+      cbuf[off] = myPendingChar;
+      myPendingChar = 0;
+      return 1;
+    }
+    if (len == 1) {
+      // the decoder needs room for a surrogate pair
+      final char[] pair = buffers.myPair;
+      final int read = read(pair, 0, 2);
+      if (read > 0) cbuf[off] = pair[0];
+      if (read == 2) myPendingChar = pair[1];
+      return Math.min(read, 1);
+    }
+    if (myFlushed) return -1;
+
+    final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+    while (out.hasRemaining()) {
+      final CoderResult result = myDecoder.decode(myBytes, out, myEof);
+      if (result.isError()) result.throwException();
+      if (result.isOverflow()) break;
+      if (myEof) {
+        myDecoder.flush(out);
+        myFlushed = true;
+        break;
+      }
+      fill();
+    }
+    final int read = out.position() - off;
+    return read == 0 ? -1 : read;
+  }
+
+  /**
+   * Reads as many bytes as fit into the buffer keeping the unread ones.
+   * The channel reads into the direct buffer without a temporary one it would take for a heap buffer.
+   */
+  private void fill() throws IOException {
+    final ByteBuffer bytes = myBytes;
+    bytes.compact();
+    try {
+      while (bytes.hasRemaining()) {
+        if (myChannel.read(bytes) < 0) {
+          myEof = true;
+          break;
+        }
+      }
+    } finally {
+      bytes.flip();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    final Buffers buffers = myBuffers;
+    if (buffers == null) return;
+    myBuffers = null;
+    releaseBuffers(buffers);
+    myChannel.close();
+  }
+
+  private static final class Buffers {
+    @NotNull
+    private final ByteBuffer myBytes;
+    @NotNull
+    private final CharsetDecoder myUtf8 = createDecoder("UTF-8");
+    @NotNull
+    private final CharsetDecoder myLatin1 = createDecoder("ISO-8859-1");
+    @NotNull
+    private final char[] myPair = new char[2];
+
+    private Buffers(int size) {
+      myBytes = ByteBuffer.allocateDirect(size);
+    }
+
+    @NotNull
+    private static CharsetDecoder createDecoder(@NotNull String charset) {
+      return Charset.forName(charset).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with the usual JMH command line options and the GC profiler, which reports allocation rate
+ */
+public class BenchmarksMain {
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.ParsingException;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd.PmdCpdFactory;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing PMD CPD reports with large code fragments with fragment text hashed while the report is read
+ * or built into strings first. Run with GC profiler (see {@link BenchmarksMain}) to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CpdFragmentBenchmark {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String STREAMING_HASH_PROPERTY = "teamcity.xmlReport.pmdCpd.streamingHash.enabled";
+
+  @Param({"streaming", "text"})
+  public String hash;
+
+  @Param({"100", "100000"})
+  public int fragmentLines;
+
+  @Param({"20"})
+  public int duplications;
+
+  private File myDir;
+  private File myReport;
+  private NoOpParseParameters myParameters;
+  private PmdCpdFactory myFactory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    System.setProperty(STREAMING_HASH_PROPERTY, String.valueOf("streaming".equals(hash)));
+    myDir = FileUtil.createTempDirectory("xml-report-cpd-benchmark", "");
+    myReport = new File(myDir, "cpd-report.xml");
+    generate(myReport, duplications, fragmentLines);
+    myParameters = new NoOpParseParameters("pmdCpd", myDir);
+    myFactory = new PmdCpdFactory();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.clearProperty(STREAMING_HASH_PROPERTY);
+    FileUtil.delete(myDir);
+  }
+
+  @Benchmark
+  public ParsingResult parse() throws ParsingException {
+    final Parser parser = myFactory.createParser(myParameters);
+    parser.parse(myReport, null);
+    myParameters.drainReportedItems();
+    return parser.getParsingResult();
+  }
+
+  private static void generate(@NotNull File file, int duplications, int fragmentLines) throws IOException {
+    final Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8), 64 * 1024);
+    try {
+      w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<pmd-cpd>\n");
+      for (int i = 0; i < duplications; ++i) {
+        w.write("<duplication lines=\"" + fragmentLines + "\" tokens=\"" + fragmentLines * 10 + "\">\n" +
+                "<file line=\"1\" path=\"/src/org/example/Class" + i + ".java\"/>\n" +
+                "<file line=\"" + (i + 1) + "\" path=\"/src/org/example/Other" + i + ".java\"/>\n" +
+                "<codefragment>\n<![CDATA[\n");
+        for (int line = 0; line < fragmentLines; ++line) {
+          w.write("    final String value" + line + " = map.get(\"key" + line + "\") + \" & \" + other[" + i + "];\n");
+        }
+        w.write("]]>\n</codefragment>\n</duplication>\n");
+      }
+      w.write("</pmd-cpd>\n");
+    } finally {
+      w.close();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.ParseParameters;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Parse parameters with reporters which only count reported items,
+ * so benchmarks measure parsing rather than service message output
+ */
+public class NoOpParseParameters implements ParseParameters {
+  @NotNull
+  private final String myType;
+  @NotNull
+  private final File myCheckoutDir;
+  @NotNull
+  private final Map<String, String> myParameters = new HashMap<String, String>();
+  @NotNull
+  private final BuildProgressLogger myLogger = noOp(BuildProgressLogger.class);
+
+  private long myReportedItems;
+
+  public NoOpParseParameters(@NotNull String type, @NotNull File checkoutDir) {
+    myType = type;
+    myCheckoutDir = checkoutDir;
+  }
+
+  /**
+   * @return number of tests, inspections and duplicates reported since the previous call
+   */
+  public long drainReportedItems() {
+    final long items = myReportedItems;
+    myReportedItems = 0;
+    return items;
+  }
+
+  public boolean isVerbose() {
+    return false;
+  }
+
+  @NotNull
+  public BuildProgressLogger getThreadLogger() {
+    return myLogger;
+  }
+
+  @NotNull
+  public InspectionReporter getInspectionReporter() {
+    return new InspectionReporter() {
+      public void reportInspection(@NotNull InspectionResult inspection) {
+        ++myReportedItems;
+      }
+
+      public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+      }
+
+      public void info(@NotNull String message) {
+      }
+
+      public void warning(@NotNull String message) {
+      }
+
+      public void error(@NotNull String message) {
+      }
+
+      public void failure(@NotNull String message) {
+      }
+    };
+  }
+
+  @NotNull
+  public DuplicationReporter getDuplicationReporter() {
+    return new DuplicationReporter() {
+      public void startDuplicates() {
+      }
+
+      public void reportDuplicate(@NotNull DuplicationResult duplicate) {
+        ++myReportedItems;
+      }
+
+      public void finishDuplicates() {
+      }
+
+      public void info(@NotNull String message) {
+      }
+
+      public void warning(@NotNull String message) {
+      }
+
+      public void error(@NotNull String message) {
+      }
+
+      public void failure(@NotNull String message) {
+      }
+    };
+  }
+
+  @NotNull
+  public TestReporter getTestReporter() {
+    return new TestReporter() {
+      public void openTestSuite(@NotNull String name) {
+      }
+
+      public void openTest(@NotNull String name) {
+        ++myReportedItems;
+      }
+
+      public void testStdOutput(@NotNull String text) {
+      }
+
+      public void testErrOutput(@NotNull String text) {
+      }
+
+      public void testFail(@Nullable String error, @Nullable String stacktrace) {
+      }
+
+      public void testIgnored(@NotNull String message) {
+      }
+
+      public void closeTest(long duration) {
+      }
+
+      public void closeTestSuite() {
+      }
+
+      public void info(@NotNull String message) {
+      }
+
+      public void warning(@NotNull String message) {
+      }
+
+      public void error(@NotNull String message) {
+      }
+
+      public void failure(@NotNull String message) {
+      }
+    };
+  }
+
+  @NotNull
+  public Map<String, String> getParameters() {
+    return myParameters;
+  }
+
+  @NotNull
+  public String getType() {
+    return myType;
+  }
+
+  @NotNull
+  public File getCheckoutDir() {
+    return myCheckoutDir;
+  }
+
+  /**
+   * Creates an implementation of the interface which methods do nothing and return default values
+   */
+  @NotNull
+  public static <T> T noOp(@NotNull Class<T> clazz) {
+    return clazz.cast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        final Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) return false;
+        if (returnType == int.class) return 0;
+        if (returnType == long.class) return 0L;
+        if (returnType == short.class) return (short)0;
+        if (returnType == byte.class) return (byte)0;
+        if (returnType == double.class) return 0.0;
+        if (returnType == float.class) return 0.0f;
+        if (returnType == char.class) return '\0';
+        if (returnType == String.class && "toString".equals(method.getName())) return clazz.getSimpleName();
+        if (returnType.isInterface() && returnType.isAssignableFrom(clazz)) return proxy;
+        return null;
+      }
+    }));
+  }
+}
@@ -0,0 +1,118 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.agent.BuildAgentConfiguration;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.ParserFactory;
+import jetbrains.buildServer.xmlReportPlugin.ParsingException;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.AntJUnitFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.GTestFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.SurefireFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.checkstyle.CheckstyleFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.ctest.CTestFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.findBugs.FindBugsFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.jslint.JSLintFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.mstest.MSTestFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.mstest.TRXFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.mstest.VSTestFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.nUnit.NUnitFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.pmd.PmdFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd.PmdCpdFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.testng.TestNGFactory;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of report parsers on synthetic reports.
+ * Besides operations per second reports megabytes and items (tests, inspections or duplicates) per second,
+ * run with GC profiler (see {@link BenchmarksMain}) to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"junit", "surefire", "gtest", "nunit", "testng", "trx", "mstest", "vstest", "ctest", "findBugs", "pmd", "pmdCpd", "checkstyle", "jslint"})
+  public String type;
+
+  @Param({"10000"})
+  public int items;
+
+  private File myDir;
+  private File myReport;
+  private double myReportMegabytes;
+  private ParserFactory myFactory;
+  private NoOpParseParameters myParameters;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("xml-report-benchmark", "");
+    myReport = new File(myDir, type + "-report.xml");
+    ReportGenerator.generate(type, items, myReport);
+    myReportMegabytes = myReport.length() / (1024.0 * 1024.0);
+    myFactory = createFactory(type, myDir);
+    myParameters = new NoOpParseParameters(type, myDir);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Benchmark
+  public ParsingResult parse(Throughput throughput) throws ParsingException {
+    final Parser parser = myFactory.createParser(myParameters);
+    parser.parse(myReport, null);
+    throughput.megabytes += myReportMegabytes;
+    throughput.items += myParameters.drainReportedItems();
+    return parser.getParsingResult();
+  }
+
+  @NotNull
+  static ParserFactory createFactory(@NotNull String type, @NotNull final File cacheDir) {
+    if ("junit".equals(type)) return new AntJUnitFactory();
+    if ("surefire".equals(type)) return new SurefireFactory();
+    if ("gtest".equals(type)) return new GTestFactory();
+    if ("nunit".equals(type)) return new NUnitFactory();
+    if ("testng".equals(type)) return new TestNGFactory();
+    if ("trx".equals(type)) return new TRXFactory();
+    if ("mstest".equals(type)) return new MSTestFactory();
+    if ("vstest".equals(type)) return new VSTestFactory();
+    if ("ctest".equals(type)) return new CTestFactory();
+    if ("pmd".equals(type)) return new PmdFactory();
+    if ("pmdCpd".equals(type)) return new PmdCpdFactory();
+    if ("checkstyle".equals(type)) return new CheckstyleFactory();
+    if ("jslint".equals(type)) return new JSLintFactory();
+    if ("findBugs".equals(type)) {
+      // only the cache directory is used
+      final BuildAgentConfiguration configuration = (BuildAgentConfiguration)Proxy.newProxyInstance(
+        BuildAgentConfiguration.class.getClassLoader(), new Class[]{BuildAgentConfiguration.class},
+        (proxy, method, args) -> method.getReturnType() == File.class ? cacheDir : null);
+      return new FindBugsFactory(configuration);
+    }
+    throw new IllegalArgumentException("Unsupported report type: " + type);
+  }
+
+  /**
+   * Counters reported as rates per second
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public double megabytes;
+    public long items;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      megabytes = 0;
+      items = 0;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generates synthetic reports of the supported types.
+ * Each item is a test, an inspection or a duplication depending on the report type,
+ * every tenth test fails and every fifth one has output.
+ */
+public final class ReportGenerator {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int ITEMS_PER_GROUP = 50;
+
+  private ReportGenerator() {
+  }
+
+  public static void generate(@NotNull String type, int items, @NotNull File file) throws IOException {
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8), 64 * 1024);
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      if ("junit".equals(type) || "surefire".equals(type) || "gtest".equals(type)) {
+        junit(writer, items);
+      } else if ("nunit".equals(type)) {
+        nunit(writer, items);
+      } else if ("testng".equals(type)) {
+        testng(writer, items);
+      } else if ("trx".equals(type) || "mstest".equals(type) || "vstest".equals(type)) {
+        trx(writer, items);
+      } else if ("ctest".equals(type)) {
+        ctest(writer, items);
+      } else if ("findBugs".equals(type)) {
+        findBugs(writer, items);
+      } else if ("pmd".equals(type)) {
+        pmd(writer, items);
+      } else if ("pmdCpd".equals(type)) {
+        pmdCpd(writer, items);
+      } else if ("checkstyle".equals(type)) {
+        checkstyle(writer, items);
+      } else if ("jslint".equals(type)) {
+        jslint(writer, items);
+      } else {
+        throw new IllegalArgumentException("Unsupported report type: " + type);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static void junit(@NotNull Writer w, int items) throws IOException {
+    w.write("<testsuites>\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</testsuite>\n");
+        w.write("<testsuite name=\"org.example.Suite" + group(i) + "\" tests=\"" + ITEMS_PER_GROUP + "\" time=\"1.5\">\n");
+      }
+      w.write("  <testcase classname=\"org.example.Suite" + group(i) + "\" name=\"test" + i + "\" time=\"0.012\"");
+      if (!isFailed(i) && !hasOutput(i)) {
+        w.write("/>\n");
+        continue;
+      }
+      w.write(">\n");
+      if (isFailed(i)) w.write("    <failure message=\"expected:&lt;1&gt; but was:&lt;2&gt;\" type=\"java.lang.AssertionError\">" + stacktrace(i) + "</failure>\n");
+      if (hasOutput(i)) w.write("    <system-out>" + output(i) + "</system-out>\n");
+      w.write("  </testcase>\n");
+    }
+    if (items > 0) w.write("</testsuite>\n");
+    w.write("</testsuites>\n");
+  }
+
+  private static void nunit(@NotNull Writer w, int items) throws IOException {
+    w.write("<test-results name=\"tests.dll\" total=\"" + items + "\" errors=\"0\" failures=\"0\" not-run=\"0\" date=\"2020-01-01\" time=\"10:00:00\">\n");
+    w.write("<test-suite type=\"Assembly\" name=\"tests.dll\" executed=\"True\" result=\"Success\" success=\"True\" time=\"1.0\"><results>\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</results></test-suite>\n");
+        w.write("<test-suite type=\"TestFixture\" name=\"Suite" + group(i) + "\" executed=\"True\" result=\"Success\" success=\"True\" time=\"1.0\"><results>\n");
+      }
+      if (isFailed(i)) {
+        w.write("  <test-case name=\"Example.Suite" + group(i) + ".Test" + i + "\" executed=\"True\" result=\"Failure\" success=\"False\" time=\"0.012\" asserts=\"1\">\n");
+        w.write("    <failure><message><![CDATA[Expected: 1 But was: 2]]></message><stack-trace><![CDATA[" + stacktrace(i) + "]]></stack-trace></failure>\n");
+        w.write("  </test-case>\n");
+      } else {
+        w.write("  <test-case name=\"Example.Suite" + group(i) + ".Test" + i + "\" executed=\"True\" result=\"Success\" success=\"True\" time=\"0.012\" asserts=\"1\"/>\n");
+      }
+    }
+    if (items > 0) w.write("</results></test-suite>\n");
+    w.write("</results></test-suite>\n");
+    w.write("</test-results>\n");
+  }
+
+  private static void testng(@NotNull Writer w, int items) throws IOException {
+    w.write("<testng-results total=\"" + items + "\">\n<suite name=\"Suite\" duration-ms=\"1000\">\n<test name=\"Test\" duration-ms=\"1000\">\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</class>\n");
+        w.write("<class name=\"org.example.Suite" + group(i) + "\">\n");
+      }
+      w.write("  <test-method status=\"" + (isFailed(i) ? "FAIL" : "PASS") + "\" signature=\"test" + i + "()\" name=\"test" + i + "\" duration-ms=\"12\"");
+      if (!isFailed(i) && !hasOutput(i)) {
+        w.write("/>\n");
+        continue;
+      }
+      w.write(">\n");
+      if (isFailed(i)) {
+        w.write("    <exception class=\"java.lang.AssertionError\"><message><![CDATA[expected [1] but found [2]]]></message>" +
+                "<full-stacktrace><![CDATA[" + stacktrace(i) + "]]></full-stacktrace></exception>\n");
+      }
+      if (hasOutput(i)) w.write("    <reporter-output><line><![CDATA[" + output(i) + "]]></line></reporter-output>\n");
+      w.write("  </test-method>\n");
+    }
+    if (items > 0) w.write("</class>\n");
+    w.write("</test>\n</suite>\n</testng-results>\n");
+  }
+
+  private static void trx(@NotNull Writer w, int items) throws IOException {
+    w.write("<TestRun id=\"00000000-0000-0000-0000-000000000000\" name=\"run\" xmlns=\"http://microsoft.com/schemas/VisualStudio/TeamTest/2010\">\n");
+    w.write("<ResultSummary outcome=\"Completed\"><Counters total=\"" + items + "\"/></ResultSummary>\n");
+    w.write("<TestDefinitions>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("  <UnitTest name=\"Test" + i + "\" id=\"" + trxId(i) + "\"><TestMethod codeBase=\"tests.dll\" className=\"Example.Suite" + group(i) +
+              ", tests\" name=\"Test" + i + "\"/></UnitTest>\n");
+    }
+    w.write("</TestDefinitions>\n<Results>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("  <UnitTestResult executionId=\"" + trxId(i) + "\" testId=\"" + trxId(i) + "\" testName=\"Test" + i +
+              "\" duration=\"00:00:00.0120000\" outcome=\"" + (isFailed(i) ? "Failed" : "Passed") + "\"");
+      if (!isFailed(i) && !hasOutput(i)) {
+        w.write("/>\n");
+        continue;
+      }
+      w.write("><Output>");
+      if (hasOutput(i)) w.write("<StdOut>" + output(i) + "</StdOut>");
+      if (isFailed(i)) w.write("<ErrorInfo><Message>Assert.AreEqual failed.</Message><StackTrace>" + stacktrace(i) + "</StackTrace></ErrorInfo>");
+      w.write("</Output></UnitTestResult>\n");
+    }
+    w.write("</Results>\n</TestRun>\n");
+  }
+
+  private static void ctest(@NotNull Writer w, int items) throws IOException {
+    w.write("<Site BuildName=\"build\" BuildStamp=\"20200101-0000-Experimental\" Name=\"site\" Generator=\"ctest-3.0\">\n<Testing>\n");
+    w.write("<StartDateTime>Jan 01 00:00 UTC</StartDateTime>\n<StartTestTime>1577836800</StartTestTime>\n<TestList>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("  <Test>./bin/test" + i + "</Test>\n");
+    }
+    w.write("</TestList>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("<Test Status=\"" + (isFailed(i) ? "failed" : "passed") + "\">\n  <Name>test" + i + "</Name>\n  <Path>./bin</Path>\n  <FullName>./bin/test" + i +
+              "</FullName>\n  <FullCommandLine>/build/bin/test" + i + "</FullCommandLine>\n  <Results>\n" +
+              "    <NamedMeasurement type=\"numeric/double\" name=\"Execution Time\"><Value>0.012</Value></NamedMeasurement>\n" +
+              "    <NamedMeasurement type=\"text/string\" name=\"Completion Status\"><Value>Completed</Value></NamedMeasurement>\n" +
+              "    <Measurement><Value>" + (hasOutput(i) || isFailed(i) ? output(i) : "") + "</Value></Measurement>\n  </Results>\n</Test>\n");
+    }
+    w.write("<EndDateTime>Jan 01 00:10 UTC</EndDateTime>\n<EndTestTime>1577837400</EndTestTime>\n<ElapsedMinutes>10</ElapsedMinutes>\n</Testing>\n</Site>\n");
+  }
+
+  private static void findBugs(@NotNull Writer w, int items) throws IOException {
+    w.write("<BugCollection version=\"1.3.9\" sequence=\"0\" timestamp=\"0\" analysisTimestamp=\"0\" release=\"\">\n");
+    w.write("<Project projectName=\"example\"><Jar>classes</Jar><SrcDir>src</SrcDir></Project>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("<BugInstance type=\"PATTERN_" + (i % 20) + "\" priority=\"" + (i % 3 + 1) + "\" abbrev=\"EX\" category=\"CATEGORY_" + (i % 4) + "\">\n" +
+              "  <ShortMessage>Example bug</ShortMessage>\n  <LongMessage>Example bug " + i + " in org.example.Class" + group(i) + "</LongMessage>\n" +
+              "  <Class classname=\"org.example.Class" + group(i) + "\" primary=\"true\"><SourceLine classname=\"org.example.Class" + group(i) +
+              "\" sourcefile=\"Class" + group(i) + ".java\" sourcepath=\"org/example/Class" + group(i) + ".java\"/></Class>\n" +
+              "  <SourceLine classname=\"org.example.Class" + group(i) + "\" primary=\"true\" start=\"" + (i % 500 + 1) + "\" end=\"" + (i % 500 + 1) +
+              "\" sourcefile=\"Class" + group(i) + ".java\" sourcepath=\"org/example/Class" + group(i) + ".java\"/>\n</BugInstance>\n");
+    }
+    for (int i = 0; i < 4; ++i) {
+      w.write("<BugCategory category=\"CATEGORY_" + i + "\"><Description>Category " + i + "</Description><Details>&lt;p&gt;Category " + i +
+              " details&lt;/p&gt;</Details></BugCategory>\n");
+    }
+    for (int i = 0; i < 20; ++i) {
+      w.write("<BugPattern type=\"PATTERN_" + i + "\" abbrev=\"EX\" category=\"CATEGORY_" + (i % 4) + "\"><ShortDescription>Pattern " + i +
+              "</ShortDescription><Details>&lt;p&gt;Pattern " + i + " details&lt;/p&gt;</Details></BugPattern>\n");
+    }
+    w.write("</BugCollection>\n");
+  }
+
+  private static void pmd(@NotNull Writer w, int items) throws IOException {
+    w.write("<pmd version=\"6.0.0\" timestamp=\"2020-01-01T00:00:00.000\">\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</file>\n");
+        w.write("<file name=\"/src/org/example/Class" + group(i) + ".java\">\n");
+      }
+      w.write("  <violation beginline=\"" + (i % 500 + 1) + "\" endline=\"" + (i % 500 + 1) + "\" begincolumn=\"1\" endcolumn=\"10\" rule=\"Rule" + (i % 20) +
+              "\" ruleset=\"Ruleset" + (i % 4) + "\" package=\"org.example\" class=\"Class" + group(i) + "\" priority=\"" + (i % 5 + 1) + "\">\nExample violation " + i +
+              "\n  </violation>\n");
+    }
+    if (items > 0) w.write("</file>\n");
+    w.write("</pmd>\n");
+  }
+
+  private static void pmdCpd(@NotNull Writer w, int items) throws IOException {
+    w.write("<pmd-cpd>\n");
+    for (int i = 0; i < items; ++i) {
+      w.write("<duplication lines=\"12\" tokens=\"115\">\n" +
+              "<file line=\"" + (i % 500 + 1) + "\" path=\"/src/org/example/Class" + group(i) + ".java\"/>\n" +
+              "<file line=\"" + (i % 300 + 1) + "\" path=\"/src/org/example/Other" + group(i) + ".java\"/>\n" +
+              "<codefragment>\n<![CDATA[\n" + output(i) + "\n" + output(i + 1) + "\n]]>\n</codefragment>\n</duplication>\n");
+    }
+    w.write("</pmd-cpd>\n");
+  }
+
+  private static void checkstyle(@NotNull Writer w, int items) throws IOException {
+    w.write("<checkstyle version=\"8.0\">\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</file>\n");
+        w.write("<file name=\"/src/org/example/Class" + group(i) + ".java\">\n");
+      }
+      w.write("  <error line=\"" + (i % 500 + 1) + "\" column=\"5\" severity=\"" + (i % 3 == 0 ? "error" : "warning") +
+              "\" message=\"Example message " + i + "\" source=\"com.puppycrawl.tools.checkstyle.checks.Check" + (i % 20) + "\"/>\n");
+    }
+    if (items > 0) w.write("</file>\n");
+    w.write("</checkstyle>\n");
+  }
+
+  private static void jslint(@NotNull Writer w, int items) throws IOException {
+    w.write("<jslint>\n");
+    for (int i = 0; i < items; ++i) {
+      if (i % ITEMS_PER_GROUP == 0) {
+        if (i > 0) w.write("</file>\n");
+        w.write("<file name='js/module" + group(i) + ".js'>\n");
+      }
+      w.write("<issue line='" + (i % 500 + 1) + "' char='18' reason='Expected &apos;===&apos; and instead saw &apos;==&apos;.' evidence='    if (x == null) {'/>\n");
+    }
+    if (items > 0) w.write("</file>\n");
+    w.write("</jslint>\n");
+  }
+
+  private static int group(int i) {
+    return i / ITEMS_PER_GROUP;
+  }
+
+  private static boolean isFailed(int i) {
+    return i % 10 == 9;
+  }
+
+  private static boolean hasOutput(int i) {
+    return i % 5 == 0;
+  }
+
+  @NotNull
+  private static String output(int i) {
+    return "Output line of item " + i + " with some payload to make it realistic";
+  }
+
+  @NotNull
+  private static String stacktrace(int i) {
+    return "java.lang.AssertionError: expected 1 but was 2\n" +
+           "\tat org.example.Suite" + group(i) + ".test" + i + "(Suite" + group(i) + ".java:" + (i % 500 + 1) + ")\n" +
+           "\tat sun.reflect.NativeMethodAccessorImpl.invoke0(Native Method)\n" +
+           "\tat java.lang.reflect.Method.invoke(Method.java:498)\n";
+  }
+
+  @NotNull
+  private static String trxId(int i) {
+    return String.format("%08x-0000-0000-0000-%012x", i, i);
+  }
+}
@@ -0,0 +1,76 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.XmlFileReader;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Reading reports into characters the way the parsers get them: through the usual stream and charset decoder
+ * or through {@link XmlFileReader}. Small reports show buffer churn, large ones decoding throughput,
+ * run with GC profiler (see {@link BenchmarksMain}) to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportInputBenchmark {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Param({"stream", "direct"})
+  public String input;
+
+  @Param({"junit", "checkstyle"})
+  public String type;
+
+  @Param({"10", "100000"})
+  public int items;
+
+  private File myDir;
+  private File myReport;
+  private double myReportMegabytes;
+  // the size of the buffer XPP parser reads into
+  private final char[] myChars = new char[8 * 1024];
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    System.setProperty(XmlFileReader.TEAMCITY_PROPERTY_ENABLED, "true");
+    myDir = FileUtil.createTempDirectory("xml-report-input-benchmark", "");
+    myReport = new File(myDir, type + "-report.xml");
+    ReportGenerator.generate(type, items, myReport);
+    myReportMegabytes = myReport.length() / (1024.0 * 1024.0);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Benchmark
+  public long read(ParserBenchmark.Throughput throughput) throws IOException {
+    final Reader reader = "direct".equals(input) ? XmlFileReader.open(myReport) : openStream(myReport);
+    if (reader == null) throw new IllegalStateException("Unsupported report encoding");
+    long checksum = 0;
+    try {
+      int read;
+      while ((read = reader.read(myChars, 0, myChars.length)) >= 0) {
+        checksum += read + myChars[0];
+      }
+    } finally {
+      reader.close();
+    }
+    throughput.megabytes += myReportMegabytes;
+    ++throughput.items;
+    return checksum;
+  }
+
+  @NotNull
+  private static Reader openStream(@NotNull File file) throws IOException {
+    return new InputStreamReader(new BufferedInputStream(new FileInputStream(file)), UTF_8);
+  }
+}
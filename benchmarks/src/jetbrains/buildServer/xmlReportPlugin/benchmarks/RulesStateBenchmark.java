@@ -0,0 +1,62 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.ReportStateHolder.ReportState;
+import jetbrains.buildServer.xmlReportPlugin.RulesState;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Report state transitions done concurrently by the monitor and parsing threads on a large number of reports
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RulesStateBenchmark {
+  @Param({"100000"})
+  public int reports;
+
+  private File[] myReports;
+  private RulesState myRulesState;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    myReports = new File[reports];
+    myRulesState = new RulesState();
+    for (int i = 0; i < reports; ++i) {
+      myReports[i] = new File("reports/report" + i + ".xml");
+      myRulesState.setReportState(myReports[i], i % 2 == 0 ? ReportState.PROCESSED : ReportState.OUT_OF_DATE, i, i);
+    }
+  }
+
+  @Benchmark
+  public boolean transition() {
+    final File report = myReports[ThreadLocalRandom.current().nextInt(reports)];
+    final ReportState state = myRulesState.getReportState(report);
+    if (state == ReportState.ON_PROCESSING) return false;
+    if (myRulesState.compareAndSetReportState(report, state, ReportState.ON_PROCESSING, 1, 1)) {
+      myRulesState.setReportState(report, ReportState.PROCESSED, (ParsingResult)null);
+      return true;
+    }
+    return false;
+  }
+
+  @Benchmark
+  public ReportState getReportState() {
+    return myRulesState.getReportState(myReports[ThreadLocalRandom.current().nextInt(reports)]);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public int statistics() {
+    return myRulesState.getReportCount(ReportState.PROCESSED) +
+           myRulesState.getReportCount(ReportState.ERROR) +
+           myRulesState.getReportCount(ReportState.OUT_OF_DATE);
+  }
+}
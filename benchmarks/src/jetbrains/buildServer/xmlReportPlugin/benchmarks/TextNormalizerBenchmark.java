@@ -0,0 +1,70 @@
+package jetbrains.buildServer.xmlReportPlugin.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import jetbrains.buildServer.xmlReportPlugin.utils.TextNormalizer;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Formatting of FindBugs descriptions and removal of the base folder from reporter messages
+ * with the former regex based implementation and with {@link TextNormalizer}.
+ * Run with GC profiler (see {@link BenchmarksMain}) to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextNormalizerBenchmark {
+  private static final String DESCRIPTION =
+    "\n  <p> This method call passes a null value for a non-null method parameter.\r\n" +
+    "  Either the parameter is annotated as a parameter that should&nbsp;always be non-null,\r\n" +
+    "  or analysis has shown that it will always be <b>dereferenced</b>.\r\n  </p>\n    ";
+  private static final String BASE_FOLDER = "/home/agent/work/6f1e2c3a4b5d";
+  private static final String MESSAGE = "Failed to parse " + BASE_FOLDER + "/module/target/surefire-reports/TEST-org.example.SomeTest.xml";
+  private static final String PLAIN_MESSAGE = "2 tests found in report";
+
+  private static final Pattern HTML_SPACE = Pattern.compile("&nbsp;", Pattern.LITERAL);
+  private static final Pattern CARRIAGE_RETURN = Pattern.compile("\r", Pattern.LITERAL);
+  private static final Pattern NEW_LINE = Pattern.compile("\n", Pattern.LITERAL);
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+  private static final Pattern HTML_TAGS = Pattern.compile("<[a-z]>|</[a-z]>");
+
+  @Param({"regex", "scan"})
+  public String impl;
+
+  private final String mySlashPrefix = BASE_FOLDER.replace("\\", "/") + "/";
+  private final String myBackslashPrefix = BASE_FOLDER.replace("/", "\\") + "\\";
+
+  @Benchmark
+  public String formatText() {
+    return "scan".equals(impl) ? TextNormalizer.formatText(DESCRIPTION) : regexFormatText(DESCRIPTION);
+  }
+
+  @Benchmark
+  public String makeRelativePaths() {
+    return "scan".equals(impl) ? TextNormalizer.removeAll(MESSAGE, mySlashPrefix, myBackslashPrefix) : replaceMakeRelativePaths(MESSAGE);
+  }
+
+  @Benchmark
+  public String makeRelativePathsNoPath() {
+    return "scan".equals(impl) ? TextNormalizer.removeAll(PLAIN_MESSAGE, mySlashPrefix, myBackslashPrefix) : replaceMakeRelativePaths(PLAIN_MESSAGE);
+  }
+
+  @NotNull
+  private static String regexFormatText(@NotNull String s) {
+    s = HTML_SPACE.matcher(s).replaceAll(" ");
+    s = CARRIAGE_RETURN.matcher(s).replaceAll("");
+    s = NEW_LINE.matcher(s).replaceAll(" ");
+    s = SPACES.matcher(s).replaceAll(" ");
+    s = HTML_TAGS.matcher(s).replaceAll("");
+    return s.trim();
+  }
+
+  @NotNull
+  private static String replaceMakeRelativePaths(@NotNull String message) {
+    return message.replace(BASE_FOLDER.replace("\\", "/") + "/", "").replace(BASE_FOLDER.replace("/", "\\") + "\\", "");
+  }
+}
@@ -15,6 +15,7 @@ public class XmlReportPluginUtil {
                                                                       "pmd",
                                                                       "checkstyle",
                                                                       "jslint");
+  private static final List<String> DUPLICATION_TYPES = Collections.singletonList("pmdCpd");
 
   static {
     final Map<String, String> reportTypes = new HashMap<String, String>();
@@ -116,6 +117,10 @@ public class XmlReportPluginUtil {
     return INSPECTIONS_TYPES.contains(type);
   }
 
+  public static boolean isDuplicationType(@NotNull String type) {
+    return DUPLICATION_TYPES.contains(type);
+  }
+
   @Nullable
   public static String getReportTypeName(@NotNull String type) {
     return SUPPORTED_REPORT_TYPES.get(type);
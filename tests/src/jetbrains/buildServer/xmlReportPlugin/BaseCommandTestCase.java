@@ -79,4 +79,9 @@ public abstract class BaseCommandTestCase {
     }
     return file;
   }
-}
\ No newline at end of file
+
+  @NotNull
+  protected ParseParameters createParseParameters(@NotNull StringBuilder result, @NotNull String type) {
+    return TestUtil.createParseParameters(result, type, myBaseFolder);
+  }
+}
@@ -58,7 +58,14 @@ public abstract class BaseParserTestCase {
   protected ParsingResult parse(@NotNull Parser parser,
                                 @NotNull String reportName,
                                 @Nullable ParsingResult prevResult) throws Exception {
-    parser.parse(getReport(reportName), prevResult);
+    return parse(parser, getReport(reportName), prevResult);
+  }
+
+  @NotNull
+  protected ParsingResult parse(@NotNull Parser parser,
+                                @NotNull File report,
+                                @Nullable ParsingResult prevResult) throws Exception {
+    parser.parse(report, prevResult);
     final ParsingResult result = parser.getParsingResult();
     assertNotNull(result);
     return result;
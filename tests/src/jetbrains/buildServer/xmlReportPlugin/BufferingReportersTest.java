@@ -0,0 +1,175 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.BufferingDuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.BufferingInspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+@Test
+public class BufferingReportersTest {
+  private List<String> myEvents;
+
+  @BeforeMethod
+  public void setUp() {
+    myEvents = new ArrayList<String>();
+  }
+
+  @Test
+  public void testInspectionsReportedInBatches() {
+    final BufferingInspectionReporter reporter = new BufferingInspectionReporter(createInspectionReporter(), 2, new Object());
+    reporter.reportInspectionType(new InspectionTypeResult("id", "name", "description", "category"));
+    for (int i = 0; i < 5; ++i) {
+      reporter.reportInspection(new InspectionResult("file", "id", "message " + i, i, 1));
+    }
+    // only the last incomplete batch is kept
+    assertEquals(myEvents.toString(), "[type id, batch [0, 1], batch [2, 3]]");
+
+    reporter.warning("warning");
+    reporter.reportInspection(new InspectionResult("file", "id", "message 5", 5, 1));
+    assertEquals(myEvents.toString(), "[type id, batch [0, 1], batch [2, 3], batch [4], warning]");
+
+    reporter.flush();
+    assertEquals(myEvents.toString(), "[type id, batch [0, 1], batch [2, 3], batch [4], warning, batch [5]]");
+
+    myEvents.clear();
+    reporter.flush();
+    reporter.reportInspection(new InspectionResult("file", "id", "message 6", 6, 1));
+    reporter.flush();
+    assertEquals(myEvents.toString(), "[batch [6]]");
+  }
+
+  @Test
+  public void testDuplicatesReportedInBatches() {
+    final BufferingDuplicationReporter reporter = new BufferingDuplicationReporter(createDuplicationReporter(), 3, new Object());
+    reporter.startDuplicates();
+    for (int i = 0; i < 4; ++i) {
+      reporter.reportDuplicate(new DuplicationResult(i, 10));
+    }
+    assertEquals(myEvents.toString(), "[start, batch [0, 1, 2]]");
+
+    reporter.finishDuplicates();
+    assertEquals(myEvents.toString(), "[start, batch [0, 1, 2], batch [3], finish]");
+
+    reporter.flush();
+    assertEquals(myEvents.toString(), "[start, batch [0, 1, 2], batch [3], finish]");
+  }
+
+  @Test
+  public void testDuplicatesOfOneReportAtATime() throws Exception {
+    final Object lock = new Object();
+    final BufferingDuplicationReporter first = new BufferingDuplicationReporter(createDuplicationReporter(), 1, lock);
+    final BufferingDuplicationReporter second = new BufferingDuplicationReporter(createDuplicationReporter(), 1, lock);
+    first.startDuplicates();
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        second.startDuplicates();
+        started.countDown();
+        second.reportDuplicate(new DuplicationResult(2, 10));
+        second.finishDuplicates();
+      }
+    });
+    thread.start();
+    assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+
+    first.reportDuplicate(new DuplicationResult(1, 10));
+    // parsing failed before finishing duplicates
+    first.flush();
+    thread.join(10000);
+    synchronized (lock) {
+      assertEquals(myEvents.toString(), "[start, batch [1], start, batch [2], finish]");
+    }
+  }
+
+  @NotNull
+  private InspectionReporter createInspectionReporter() {
+    return new InspectionReporter() {
+      public void reportInspection(@NotNull InspectionResult inspection) {
+        myEvents.add("inspection " + inspection.getLine());
+      }
+
+      public void reportInspections(@NotNull List<InspectionResult> inspections) {
+        final List<Integer> lines = new ArrayList<Integer>();
+        for (InspectionResult inspection : inspections) {
+          lines.add(inspection.getLine());
+        }
+        myEvents.add("batch " + lines);
+      }
+
+      public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+        myEvents.add("type " + inspectionType.getId());
+      }
+
+      public void info(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void warning(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void error(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void failure(@NotNull String message) {
+        myEvents.add(message);
+      }
+    };
+  }
+
+  @NotNull
+  private DuplicationReporter createDuplicationReporter() {
+    return new DuplicationReporter() {
+      public void startDuplicates() {
+        myEvents.add("start");
+      }
+
+      public void reportDuplicate(@NotNull DuplicationResult duplicate) {
+        myEvents.add("duplicate " + duplicate.getLines());
+      }
+
+      public void reportDuplicates(@NotNull List<DuplicationResult> duplicates) {
+        final List<Integer> lines = new ArrayList<Integer>();
+        for (DuplicationResult duplicate : duplicates) {
+          lines.add(duplicate.getLines());
+        }
+        myEvents.add("batch " + lines);
+      }
+
+      public void finishDuplicates() {
+        myEvents.add("finish");
+      }
+
+      public void info(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void warning(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void error(@NotNull String message) {
+        myEvents.add(message);
+      }
+
+      public void failure(@NotNull String message) {
+        myEvents.add(message);
+      }
+    };
+  }
+}
@@ -0,0 +1,149 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class DirectoryScanCacheTest extends BaseTestCase {
+  // old enough for the listings to be trusted
+  private static final long PAST = System.currentTimeMillis() - 60 * 1000L;
+
+  @NotNull
+  private File myBaseFolder;
+  @NotNull
+  private List<String> myListedPaths;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myBaseFolder = createTempDir();
+    myListedPaths = new ArrayList<String>();
+  }
+
+  @Test
+  public void test_scans_matching_files() throws Exception {
+    setInternalProperty(DirectoryScanCache.TEAMCITY_PROPERTY_ENABLED, "true");
+    final Rules rules = new OptimizingIncludeExcludeRules(myBaseFolder, Collections.singletonList("**/build/test-results/**/*.xml"));
+    final File report = createFile("module/build/test-results/test/TEST-A.xml");
+    final File nested = createFile("build/test-results/TEST-B.xml");
+    createFile("module/build/test-results/test/A.txt");
+    createFile("module/build/classes/A.xml");
+    createFile("module/src/build.xml");
+
+    final Map<File, BasicFileAttributes> files = rules.scanFiles();
+    assertEquals(new HashSet<File>(Arrays.asList(report, nested)), files.keySet());
+    assertEquals(report.length(), files.get(report).size());
+    assertTrue(files.get(report).isRegularFile());
+  }
+
+  @Test
+  public void test_unchanged_directories_not_listed_again() throws Exception {
+    final File report = createFile("some/reports/a.xml");
+    setModifiedInPast("", "some", "some/reports");
+    final DirectoryScanCache cache = createCache("**/*.xml");
+
+    assertScanned(cache, "some/reports/a.xml");
+    final int listed = myListedPaths.size();
+    assertTrue(listed > 0);
+
+    FileUtil.writeFileAndReportErrors(report, "appended text which changes the length");
+    final Map<File, BasicFileAttributes> files = cache.scan(Collections.singletonList(myBaseFolder));
+    assertEquals(listed, myListedPaths.size());
+    assertEquals(report.length(), files.get(report).size());
+  }
+
+  @Test
+  public void test_changed_directory_listed_again() throws Exception {
+    createFile("some/reports/a.xml");
+    setModifiedInPast("", "some", "some/reports");
+    final DirectoryScanCache cache = createCache("**/*.xml");
+    assertScanned(cache, "some/reports/a.xml");
+
+    createFile("some/reports/b.xml");
+    assertTrue(new File(myBaseFolder, "some/reports").setLastModified(PAST + 1000));
+    assertScanned(cache, "some/reports/a.xml", "some/reports/b.xml");
+
+    assertTrue(new File(myBaseFolder, "some/reports/a.xml").delete());
+    assertTrue(new File(myBaseFolder, "some/reports").setLastModified(PAST + 2000));
+    assertScanned(cache, "some/reports/b.xml");
+  }
+
+  @Test
+  public void test_new_directory_found() throws Exception {
+    createFile("some/reports/a.xml");
+    setModifiedInPast("", "some", "some/reports");
+    final DirectoryScanCache cache = createCache("**/*.xml");
+    assertScanned(cache, "some/reports/a.xml");
+
+    // the listing of "some" is reused, but unchanged directories are still visited
+    createFile("some/reports/more/b.xml");
+    assertTrue(new File(myBaseFolder, "some/reports").setLastModified(PAST + 1000));
+    assertScanned(cache, "some/reports/a.xml", "some/reports/more/b.xml");
+  }
+
+  @Test
+  public void test_nested_roots_scanned_once() throws Exception {
+    createFile("some/reports/a.xml");
+    final DirectoryScanCache cache = createCache("**/*.xml");
+
+    final Map<File, BasicFileAttributes> files = cache.scan(Arrays.asList(new File(myBaseFolder, "some/reports"), myBaseFolder, new File(myBaseFolder, "missing")));
+    assertEquals(1, files.size());
+    assertEquals(new HashSet<String>(myListedPaths).size(), myListedPaths.size());
+  }
+
+  @Test
+  public void test_file_rules_folder() throws Exception {
+    final File report = createFile("reports/a.xml");
+    createFile("reports/inner/b.xml");
+    final Rules rules = new FileRules(new File(myBaseFolder, "reports"));
+
+    assertEquals(Collections.singleton(report), rules.scanFiles().keySet());
+    assertEquals(Collections.singleton(report), new FileRules(report).scanFiles().keySet());
+    assertTrue(new FileRules(new File(myBaseFolder, "missing.xml")).scanFiles().isEmpty());
+  }
+
+  @NotNull
+  private DirectoryScanCache createCache(@NotNull final String pattern) {
+    final Rules rules = new OptimizingIncludeExcludeRules(myBaseFolder, Collections.singletonList(pattern));
+    return new DirectoryScanCache(new DirectoryScanCache.PathFilter() {
+      public boolean acceptDirectory(@NotNull final String path) {
+        myListedPaths.add(path.substring(0, path.lastIndexOf('/')));
+        return true;
+      }
+
+      public boolean acceptFile(@NotNull final String path) {
+        return rules.matches(new File(path));
+      }
+    });
+  }
+
+  private void assertScanned(@NotNull DirectoryScanCache cache, @NotNull String... paths) {
+    final Set<File> expected = new HashSet<File>();
+    for (String path : paths) {
+      expected.add(new File(myBaseFolder, path));
+    }
+    assertEquals(expected, cache.scan(Collections.singletonList(myBaseFolder)).keySet());
+  }
+
+  private void setModifiedInPast(@NotNull String... dirs) {
+    for (String dir : dirs) {
+      assertTrue(new File(myBaseFolder, dir).setLastModified(PAST));
+    }
+  }
+
+  @NotNull
+  private File createFile(@NotNull String path) throws IOException {
+    final File file = new File(myBaseFolder, path);
+    FileUtil.createParentDirs(file);
+    FileUtil.writeFileAndReportErrors(file, "some text");
+    return file;
+  }
+}
@@ -0,0 +1,85 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import jetbrains.buildServer.xmlReportPlugin.inspections.BufferingInspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeRegistry;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.TeamCityInspectionReporter;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class InspectionTypeRegistryTest {
+  private int myReportedTypes;
+  private jetbrains.buildServer.agent.inspections.InspectionReporter myAgentReporter;
+
+  @BeforeMethod
+  public void setUp() {
+    myReportedTypes = 0;
+    myAgentReporter = (jetbrains.buildServer.agent.inspections.InspectionReporter)Proxy.newProxyInstance(
+      getClass().getClassLoader(), new Class[]{jetbrains.buildServer.agent.inspections.InspectionReporter.class}, new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          if ("reportInspectionType".equals(method.getName())) ++myReportedTypes;
+          return null;
+        }
+      });
+  }
+
+  @Test
+  public void testRegisterAndIntern() {
+    final InspectionTypeRegistry registry = new InspectionTypeRegistry();
+    assertTrue(registry.register("UnusedImport"));
+    assertFalse(registry.register("UnusedImport"));
+    assertTrue(registry.register("EmptyCatchBlock"));
+
+    final String category = new String("imports");
+    assertSame(registry.intern(category), category);
+    assertSame(registry.intern(new String("imports")), category);
+  }
+
+  @Test
+  public void testTypeSentOnceAcrossReports() {
+    final InspectionTypeRegistry registry = new InspectionTypeRegistry();
+    final TeamCityInspectionReporter first = createReporter(registry);
+    first.reportInspectionType(new InspectionTypeResult("UnusedImport", "Unused import", "imports", "imports"));
+    first.reportInspectionType(new InspectionTypeResult("UnusedImport", "Unused import", "imports", "imports"));
+    first.reportInspectionType(new InspectionTypeResult("EmptyCatchBlock", "Empty catch block", "basic", "basic"));
+    assertEquals(myReportedTypes, 2);
+
+    // other report may describe the same rule differently, only the id matters
+    final TeamCityInspectionReporter second = createReporter(registry);
+    second.reportInspectionType(new InspectionTypeResult("UnusedImport", "UnusedImport", "other", "other"));
+    second.reportInspectionType(new InspectionTypeResult(null, null, null, null));
+    second.reportInspectionType(new InspectionTypeResult(null, null, null, null));
+    assertEquals(myReportedTypes, 3);
+  }
+
+  @Test
+  public void testTypeSentEveryTimeWithoutRegistry() {
+    final TeamCityInspectionReporter reporter = createReporter(null);
+    reporter.reportInspectionType(new InspectionTypeResult("UnusedImport", "Unused import", "imports", "imports"));
+    reporter.reportInspectionType(new InspectionTypeResult("UnusedImport", "Unused import", "imports", "imports"));
+    assertEquals(myReportedTypes, 2);
+  }
+
+  @Test
+  public void testBufferingReporterKeepsTypeOnce() {
+    final BufferingInspectionReporter reporter = new BufferingInspectionReporter(createReporter(null));
+    for (int i = 0; i < 100; ++i) {
+      reporter.reportInspectionType(new InspectionTypeResult("UnusedImport", "Unused import", "imports", "imports"));
+    }
+    reporter.flush();
+    assertEquals(myReportedTypes, 1);
+  }
+
+  @NotNull
+  private TeamCityInspectionReporter createReporter(InspectionTypeRegistry registry) {
+    return new TeamCityInspectionReporter(myAgentReporter, new BuildLoggerForTesting(new StringBuilder()), new File("."), "InspectFailure", registry);
+  }
+}
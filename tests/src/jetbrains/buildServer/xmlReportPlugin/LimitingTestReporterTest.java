@@ -0,0 +1,175 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.tests.LimitingTestReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class LimitingTestReporterTest {
+  private File mySpillDir;
+  private List<String> myOutput;
+  private List<String> myStacktraces;
+  private TestReporter myDelegate;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    mySpillDir = new File(FileUtil.createTempDirectory("limitingTestReporter", ""), "output");
+    myOutput = new ArrayList<String>();
+    myStacktraces = new ArrayList<String>();
+    myDelegate = new TestReporter() {
+      public void openTestSuite(@NotNull String name) {
+      }
+
+      public void openTest(@NotNull String name) {
+      }
+
+      public void testStdOutput(@NotNull String text) {
+        myOutput.add(text);
+      }
+
+      public void testErrOutput(@NotNull String text) {
+        myOutput.add("err:" + text);
+      }
+
+      public void testFail(@Nullable String error, @Nullable String stacktrace) {
+        myStacktraces.add(stacktrace);
+      }
+
+      public void testIgnored(@NotNull String message) {
+      }
+
+      public void closeTest(long duration) {
+      }
+
+      public void closeTestSuite() {
+      }
+
+      public void info(@NotNull String message) {
+      }
+
+      public void warning(@NotNull String message) {
+      }
+
+      public void error(@NotNull String message) {
+      }
+
+      public void failure(@NotNull String message) {
+      }
+    };
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(mySpillDir.getParentFile());
+  }
+
+  @Test
+  public void testShortOutputNotChanged() {
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, 100, mySpillDir);
+    reporter.openTest("test");
+    reporter.testStdOutput("output");
+    reporter.testErrOutput("error");
+    reporter.testFail("failed", "stacktrace");
+
+    assertEquals(myOutput.toString(), "[output, err:error]");
+    assertEquals(myStacktraces.toString(), "[stacktrace]");
+    assertFalse(mySpillDir.exists());
+  }
+
+  @Test
+  public void testHeadAndTailKept() throws Exception {
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, 100, mySpillDir);
+    reporter.openTest("org.example.Test.method");
+    final String text = "HEAD" + repeat('a', 1000) + "TAIL";
+    reporter.testStdOutput(text);
+
+    assertEquals(myOutput.size(), 1);
+    final String reported = myOutput.get(0);
+    assertTrue(reported.startsWith("HEAD" + repeat('a', 46) + "\n...[908 characters of stdout skipped, full stdout is saved to "), reported);
+    assertTrue(reported.endsWith("]...\n" + repeat('a', 46) + "TAIL"), reported);
+
+    final File[] files = mySpillDir.listFiles();
+    assertNotNull(files);
+    assertEquals(files.length, 1);
+    assertTrue(files[0].getName().startsWith("org.example.Test.method-stdout-"), files[0].getName());
+    assertTrue(reported.contains(files[0].getAbsolutePath()));
+    assertEquals(FileUtil.readText(files[0], "UTF-8"), text);
+  }
+
+  @Test
+  public void testSavedOutputPublished() throws Exception {
+    final List<File> published = new ArrayList<File>();
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, 100, mySpillDir, new LimitingTestReporter.OutputPublisher() {
+      @NotNull
+      public String publish(@NotNull File file) {
+        published.add(file);
+        return "artifact " + file.getName();
+      }
+    });
+    reporter.openTest("test");
+    reporter.testStdOutput(repeat('a', 1000));
+
+    assertEquals(published.size(), 1);
+    assertEquals(FileUtil.readText(published.get(0), "UTF-8"), repeat('a', 1000));
+    assertTrue(myOutput.get(0).contains(", full stdout is saved to artifact " + published.get(0).getName() + "]"), myOutput.get(0));
+  }
+
+  @Test
+  public void testLimitIsPerTest() {
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, 100, null);
+    reporter.openTest("test1");
+    reporter.testStdOutput(repeat('a', 80));
+    reporter.testErrOutput(repeat('b', 80));
+    reporter.closeTest(0);
+
+    assertEquals(myOutput.get(0), repeat('a', 80));
+    assertEquals(myOutput.get(1), "err:" + repeat('b', 10) + "\n...[60 characters of stderr skipped]...\n" + repeat('b', 10));
+
+    reporter.openTest("test2");
+    reporter.testStdOutput(repeat('c', 80));
+    assertEquals(myOutput.get(2), repeat('c', 80));
+  }
+
+  @Test
+  public void testStacktraceLimited() {
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, 10, null);
+    reporter.openTest("test");
+    reporter.testFail("failed", "at Foo.bar()\nat Foo.baz()");
+    assertEquals(myStacktraces.toString(), "[at Fo\n...[15 characters of stacktrace skipped]...\nbaz()]");
+  }
+
+  @Test
+  public void testLongOutputReportedInChunks() {
+    final LimitingTestReporter reporter = new LimitingTestReporter(myDelegate, Integer.MAX_VALUE, null);
+    reporter.openTest("test");
+    final String text = repeat('a', 3 * 64 * 1024 + 5);
+    reporter.testStdOutput(text);
+
+    assertEquals(myOutput.size(), 4);
+    final StringBuilder joined = new StringBuilder();
+    for (String chunk : myOutput) {
+      assertTrue(chunk.length() <= 64 * 1024);
+      joined.append(chunk);
+    }
+    assertEquals(joined.toString(), text);
+  }
+
+  @NotNull
+  private static String repeat(char c, int count) {
+    final StringBuilder sb = new StringBuilder(count);
+    for (int i = 0; i < count; ++i) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+}
@@ -11,6 +11,7 @@ import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -122,10 +123,12 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
   @Test
   public void testFileDetected() throws Exception {
     final MonitorRulesCommand command = createMonitorRulesCommand();
-    command.run();
+    assertTrue(command.run());
 
     assertFileDetected();
     assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+
+    assertFalse(command.run());
   }
 
   @Test
@@ -0,0 +1,139 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class MonitorSchedulerTest {
+  @Test
+  public void testBacksOffWhileNothingChanges() {
+    final MonitorScheduler scheduler = new MonitorScheduler(50, 1000, 100);
+    assertEquals(scheduler.scanFinished(true, 0), 50);
+    assertEquals(scheduler.scanFinished(false, 0), 100);
+    assertEquals(scheduler.scanFinished(false, 0), 200);
+    assertEquals(scheduler.scanFinished(false, 0), 400);
+    assertEquals(scheduler.scanFinished(false, 0), 800);
+    assertEquals(scheduler.scanFinished(false, 0), 1000);
+    assertEquals(scheduler.scanFinished(false, 0), 1000);
+    assertEquals(scheduler.scanFinished(true, 0), 50);
+    assertEquals(scheduler.scanFinished(false, 0), 100);
+  }
+
+  @Test
+  public void testCpuBudget() {
+    final MonitorScheduler scheduler = new MonitorScheduler(50, 1000, 10);
+    // a scan which took a second may run again no earlier than 10 seconds after the monitor started
+    final long delay = scheduler.scanFinished(true, TimeUnit.SECONDS.toNanos(1));
+    assertTrue(delay > 8000 && delay <= 10000, String.valueOf(delay));
+  }
+
+  @Test
+  public void testWakeUpBeforeWait() {
+    final MonitorScheduler scheduler = new MonitorScheduler(50, 1000, 5);
+    scheduler.wakeUp();
+    final long started = System.nanoTime();
+    scheduler.await(TimeUnit.MINUTES.toMillis(1), null);
+    assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+  }
+
+  @Test
+  public void testWakeUpWhileWaiting() throws Exception {
+    assertWokenUp(null);
+  }
+
+  @Test
+  public void testWakeUpWhileWaitingForWatcher() throws Exception {
+    final ReportWatcher watcher = ReportWatcher.create();
+    try {
+      assertWokenUp(watcher);
+    } finally {
+      if (watcher != null) watcher.close();
+    }
+  }
+
+  @Test
+  public void testWatcherEventsNotLostOnWakeUp() throws Exception {
+    final ReportWatcher watcher = ReportWatcher.create();
+    if (watcher == null) return;
+    final File dir = FileUtil.createTempDirectory("monitorScheduler", "");
+    try {
+      final ReportWatcher.Subscription subscription = watcher.subscribe(Collections.singletonList(dir));
+      assertNull(subscription.drainChanges());
+      for (int i = 0; i < 10; ++i) {
+        final File report = new File(dir, "report" + i + ".xml");
+        FileUtil.writeFileAndReportErrors(report, "<testsuite/>");
+
+        final MonitorScheduler scheduler = new MonitorScheduler(50, 1000, 5);
+        final Thread monitor = new Thread(new Runnable() {
+          public void run() {
+            scheduler.await(TimeUnit.MINUTES.toMillis(1), watcher);
+          }
+        });
+        monitor.start();
+        // wakes the monitor up at different moments of its wait
+        Thread.sleep(i * 3);
+        scheduler.wakeUp();
+        monitor.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertChanged(watcher, subscription, report);
+      }
+    } finally {
+      watcher.close();
+      FileUtil.delete(dir);
+    }
+  }
+
+  private static void assertChanged(@NotNull ReportWatcher watcher, @NotNull ReportWatcher.Subscription subscription, @NotNull File report)
+    throws InterruptedException {
+    final Set<File> changes = new HashSet<File>();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!changes.contains(report) && System.nanoTime() < deadline) {
+      watcher.awaitChanges(100);
+      final Collection<File> drained = subscription.drainChanges();
+      assertNotNull(drained);
+      changes.addAll(drained);
+    }
+    assertTrue(changes.contains(report), changes.toString());
+  }
+
+  private static void assertWokenUp(@Nullable final ReportWatcher watcher) throws InterruptedException {
+    final MonitorScheduler scheduler = new MonitorScheduler(50, 1000, 5);
+    final CountDownLatch waiting = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(1);
+    final AtomicBoolean interrupted = new AtomicBoolean();
+    final Thread monitor = new Thread(new Runnable() {
+      public void run() {
+        waiting.countDown();
+        scheduler.await(TimeUnit.MINUTES.toMillis(1), watcher);
+        interrupted.set(Thread.currentThread().isInterrupted());
+        finished.countDown();
+      }
+    });
+    monitor.start();
+    assertTrue(waiting.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+
+    scheduler.wakeUp();
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertFalse(interrupted.get());
+    assertNextWaitNotSkipped(scheduler, watcher);
+  }
+
+  private static void assertNextWaitNotSkipped(@NotNull MonitorScheduler scheduler, @Nullable ReportWatcher watcher) {
+    final long started = System.nanoTime();
+    scheduler.await(200, watcher);
+    assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+}
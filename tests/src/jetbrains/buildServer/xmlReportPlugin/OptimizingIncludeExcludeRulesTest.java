@@ -274,6 +274,39 @@ public class OptimizingIncludeExcludeRulesTest extends BaseTestCase {
     assertExclude(createRules("some/path/**/*", "-:some/path/content/file.txt"), createFile("some/path/content/file.txt"));
   }
 
+  @Test
+  public void test_watch_roots() throws Exception {
+    final Rules rules = createRules("+:some/path/**/*.xml", "./another/*.xml", "##OUTER_DIR##/reports/result.xml");
+    createOuterFile("reports/result.xml");
+
+    final java.util.Collection<File> roots = rules.getWatchRoots();
+    assertNotNull(roots);
+    assertEquals(3, roots.size());
+    assertTrue(contains(roots, new File(myBaseFolder, "some/path")));
+    assertTrue(contains(roots, new File(myBaseFolder, "another")));
+    assertTrue(contains(roots, new File(myOuterFolder, "reports")));
+  }
+
+  @Test
+  public void test_no_watch_roots_with_exclusions() throws Exception {
+    assertNull(createRules("+:some/path/**/*", "-:some/path/content/**/*").getWatchRoots());
+  }
+
+  @Test
+  public void test_matches() throws Exception {
+    final Rules rules = createRules("+:some/path/**/*.xml", "./another/*.xml", "##OUTER_DIR##/reports/*.xml");
+
+    assertMatches(rules, createFile("some/path/file.xml"));
+    assertMatches(rules, createFile("some/path/content/file.xml"));
+    assertMatches(rules, createFile("another/file.xml"));
+    assertMatches(rules, createOuterFile("reports/file.xml"));
+
+    assertNotMatches(rules, createFile("some/path/file.txt"));
+    assertNotMatches(rules, createFile("another/content/file.xml"));
+    assertNotMatches(rules, createFile("file.xml"));
+    assertNotMatches(rules, createOuterFile("file.xml"));
+  }
+
   @NotNull
   private Rules createRules(@NotNull String... rules) {
     return createRules(myBaseFolder,
@@ -306,6 +339,16 @@ public class OptimizingIncludeExcludeRulesTest extends BaseTestCase {
     else assertTrue(contains);
   }
 
+  private void assertMatches(@NotNull Rules rules, @NotNull File file) throws Exception {
+    assertTrue(rules.matches(file));
+    assertInclude(rules, file);
+  }
+
+  private void assertNotMatches(@NotNull Rules rules, @NotNull File file) throws Exception {
+    assertFalse(rules.matches(file));
+    assertExclude(rules, file);
+  }
+
   private boolean contains(@NotNull java.util.Collection<File> files, @NotNull final File file) {
     return null != CollectionsUtil.findFirst(files, new Filter<File>() {
       public boolean accept(@NotNull final File data) {
@@ -0,0 +1,46 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class ParallelParsingStatisticsTest {
+  private static final long MS = 1000000L;
+
+  @Test
+  public void testNoTasks() {
+    final ParallelParsingStatistics statistics = new ParallelParsingStatistics();
+    assertEquals(statistics.getTaskCount(), 0);
+    assertEquals(statistics.getSpeedup(), 1.0);
+  }
+
+  @Test
+  public void testSequentialTasks() {
+    final ParallelParsingStatistics statistics = new ParallelParsingStatistics();
+    statistics.taskFinished(statistics.taskStarted(0), 100 * MS);
+    statistics.taskFinished(statistics.taskStarted(500 * MS), 600 * MS);
+
+    assertEquals(statistics.getTaskCount(), 2);
+    assertEquals(statistics.getMaxRunningTasks(), 1);
+    assertEquals(statistics.getBusyMillis(), 200);
+    assertEquals(statistics.getActiveMillis(), 200);
+    assertEquals(statistics.getSpeedup(), 1.0);
+  }
+
+  @Test
+  public void testOverlappingTasks() {
+    final ParallelParsingStatistics statistics = new ParallelParsingStatistics();
+    final long first = statistics.taskStarted(0);
+    final long second = statistics.taskStarted(0);
+    final long third = statistics.taskStarted(50 * MS);
+    statistics.taskFinished(third, 100 * MS);
+    statistics.taskFinished(first, 100 * MS);
+    statistics.taskFinished(second, 100 * MS);
+
+    assertEquals(statistics.getMaxRunningTasks(), 3);
+    assertEquals(statistics.getBusyMillis(), 250);
+    assertEquals(statistics.getActiveMillis(), 100);
+    assertEquals(statistics.getSpeedup(), 2.5);
+  }
+}
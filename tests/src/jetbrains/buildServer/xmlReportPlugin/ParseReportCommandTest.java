@@ -7,6 +7,8 @@ import java.util.Map;
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -42,7 +44,7 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
 
   @NotNull
   private ParseReportCommand createParseReportCommand(@NotNull Parser parser) {
-    return new ParseReportCommand(myFile, myParseParameters, myRulesState, createParserFactory(parser));
+    return new ParseReportCommand(myFile, myParseParameters, myRulesState, createParserFactory(parser), ParsingServices.NONE);
   }
 
   @NotNull
@@ -155,6 +157,46 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
     assertFileState(ReportStateHolder.ReportState.ERROR);
   }
 
+  @Test
+  public void testInspectionMessagesReportedWhileParsing() throws Exception {
+    final ParserFactory factory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return "test";
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.BEFORE_FINISH;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull final ParseParameters parameters) {
+        return new Parser() {
+          public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) {
+            parameters.getInspectionReporter().info("inspection message");
+            myResult.append("PARSED\n");
+            return true;
+          }
+
+          public ParsingResult getParsingResult() {
+            return ParseReportCommandTest.this.createParser(true, false).getParsingResult();
+          }
+        };
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return EMPTY_RESULT;
+      }
+    };
+    new ParseReportCommand(myFile, myParseParameters, myRulesState, factory, ParsingServices.NONE).run();
+
+    assertContains(myResult, "PARSED", "INFO: inspection message");
+    assertTrue(myResult.indexOf("INFO: inspection message") < myResult.indexOf("PARSED"), myResult.toString());
+    assertFileState(ReportStateHolder.ReportState.PROCESSED);
+  }
+
   @NotNull
   private ParseParameters createParseParameters() {
     return new
@@ -170,7 +212,31 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
 
         @NotNull
         public InspectionReporter getInspectionReporter() {
-          throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+          return new InspectionReporter() {
+            public void reportInspection(@NotNull InspectionResult inspection) {
+              throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+            }
+
+            public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+              throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+            }
+
+            public void info(@NotNull String message) {
+              myResult.append("INFO: ").append(message).append("\n");
+            }
+
+            public void warning(@NotNull String message) {
+              throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+            }
+
+            public void error(@NotNull String message) {
+              throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+            }
+
+            public void failure(@NotNull String message) {
+              throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+            }
+          };
         }
 
         @NotNull
@@ -0,0 +1,137 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParseResultCacheTest extends BaseCommandTestCase {
+  private File myCacheDir;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = new File(myBaseFolder, "cache");
+  }
+
+  @Test
+  public void testPutGet() throws Exception {
+    final ParseResultCache cache = new ParseResultCache(myCacheDir, 1000);
+    assertNull(cache.get("a"));
+
+    cache.put("a", new byte[]{1, 2, 3});
+    assertTrue(Arrays.equals(cache.get("a"), new byte[]{1, 2, 3}));
+
+    // entries are kept between agent restarts
+    final ParseResultCache reloaded = new ParseResultCache(myCacheDir, 1000);
+    assertTrue(Arrays.equals(reloaded.get("a"), new byte[]{1, 2, 3}));
+    assertEquals(reloaded.getSize(), 3);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() throws Exception {
+    final ParseResultCache cache = new ParseResultCache(myCacheDir, 800);
+    cache.put("a", new byte[100]);
+    cache.put("b", new byte[100]);
+    cache.put("c", new byte[100]);
+    assertNotNull(cache.get("a"));
+
+    for (int i = 0; i < 7; ++i) {
+      cache.put("new" + i, new byte[100]);
+    }
+
+    assertNull(cache.get("b"));
+    assertNull(cache.get("c"));
+    assertNotNull(cache.get("a"));
+    assertEquals(cache.getSize(), 800);
+    assertFalse(new File(myCacheDir, "b.events").exists());
+  }
+
+  @Test
+  public void testTooLargeEntryNotStored() throws Exception {
+    final ParseResultCache cache = new ParseResultCache(myCacheDir, 800);
+    cache.put("a", new byte[101]);
+    assertNull(cache.get("a"));
+    assertEquals(cache.getSize(), 0);
+  }
+
+  @Test
+  public void testUnchangedReportNotParsedAgain() throws Exception {
+    final ParseResultCache cache = new ParseResultCache(myCacheDir, 100000);
+    final File report = new File(myBaseFolder, "report.xml");
+    FileUtil.writeFile(report, "<pmd/>", "UTF-8");
+
+    final StringBuilder first = new StringBuilder();
+    final int[] parses = {0};
+    final RulesState firstBuild = new RulesState();
+    createCommand(report, firstBuild, cache, first, parses).run();
+    assertEquals(parses[0], 1);
+
+    final StringBuilder second = new StringBuilder();
+    final RulesState secondBuild = new RulesState();
+    createCommand(report, secondBuild, cache, second, parses).run();
+    assertEquals(parses[0], 1);
+    assertEquals(second.toString(), first.toString());
+    assertEquals(secondBuild.getReportState(report), ReportStateHolder.ReportState.PROCESSED);
+    assertEquals(((InspectionParsingResult)secondBuild.getParsingResult(report)).getWarnings(), 1);
+
+    FileUtil.writeFile(report, "<pmd></pmd>", "UTF-8");
+    createCommand(report, new RulesState(), cache, new StringBuilder(), parses).run();
+    assertEquals(parses[0], 2);
+  }
+
+  @NotNull
+  private ParseReportCommand createCommand(@NotNull File report,
+                                           @NotNull RulesState rulesState,
+                                           @NotNull ParseResultCache cache,
+                                           @NotNull final StringBuilder result,
+                                           @NotNull final int[] parses) {
+    final ParserFactory factory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return "pmd";
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.BEFORE_FINISH;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull final ParseParameters parameters) {
+        return new Parser() {
+          public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) {
+            ++parses[0];
+            parameters.getInspectionReporter().reportInspection(new InspectionResult("Foo.java", "UnusedImport", "Unused import", 3, 2));
+            return true;
+          }
+
+          public ParsingResult getParsingResult() {
+            return new InspectionParsingResult(0, 1, 0);
+          }
+        };
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return InspectionParsingResult.createEmptyResult();
+      }
+    };
+    return new ParseReportCommand(report, createParseParameters(result, "pmd"), rulesState, factory, new ParsingServices(null, null, null, cache));
+  }
+}
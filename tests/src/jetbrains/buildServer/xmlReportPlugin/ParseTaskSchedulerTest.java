@@ -0,0 +1,189 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ParseTaskSchedulerTest extends BaseCommandTestCase {
+  private ExecutorService myExecutor;
+  private List<String> myParsed;
+  private CountDownLatch myRelease;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myExecutor = Executors.newSingleThreadExecutor();
+    myParsed = Collections.synchronizedList(new ArrayList<String>());
+    myRelease = new CountDownLatch(1);
+  }
+
+  @AfterMethod
+  public void shutdown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testLargestFirst() throws Exception {
+    assertEquals(runAll(new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.LARGEST_FIRST)), Arrays.asList("large", "medium", "small", "tiny"));
+  }
+
+  @Test
+  public void testFifo() throws Exception {
+    assertEquals(runAll(new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.FIFO)), Arrays.asList("small", "large", "tiny", "medium"));
+  }
+
+  @Test
+  public void testSubmittedTogetherRunInOrder() throws Exception {
+    // the parsing thread is free, so a task submitted alone would start right away
+    final ParseTaskScheduler scheduler = new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.LARGEST_FIRST);
+    final List<Future<?>> futures = scheduler.submitAll(Arrays.asList(createCommand(createReport("small", 10), "type"),
+                                                                      createCommand(createReport("large", 1000), "type"),
+                                                                      createCommand(createReport("tiny", 1), "type"),
+                                                                      createCommand(createReport("medium", 100), "type")));
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    assertEquals(myParsed, Arrays.asList("large", "medium", "small", "tiny"));
+  }
+
+  @Test
+  public void testHeldUntilReleased() throws Exception {
+    final ParseTaskScheduler scheduler = new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.LARGEST_FIRST);
+    scheduler.hold();
+    final Future<?> small = scheduler.submit(createCommand(createReport("small", 10), "type"));
+    scheduler.hold();
+    final Future<?> large = scheduler.submit(createCommand(createReport("large", 1000), "type"));
+    scheduler.release();
+    assertEquals(scheduler.getQueueSize(), 2);
+
+    scheduler.release();
+    small.get(10, TimeUnit.SECONDS);
+    large.get(10, TimeUnit.SECONDS);
+    assertEquals(myParsed, Arrays.asList("large", "small"));
+  }
+
+  @Test
+  public void testCostEstimateByType() throws Exception {
+    final ParseTaskScheduler scheduler = new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.LARGEST_FIRST);
+    scheduler.taskFinished("slow", 1000, 100000);
+    scheduler.taskFinished("fast", 1000, 1000);
+
+    final ParseReportCommand slow = createCommand(createReport("slow", 100), "slow");
+    final ParseReportCommand fast = createCommand(createReport("fast", 1000), "fast");
+    assertTrue(scheduler.estimateCost(slow) > scheduler.estimateCost(fast));
+
+    // unknown types are estimated by the average of known ones
+    final ParseReportCommand unknown = createCommand(createReport("unknown", 100), "unknown");
+    assertEquals(scheduler.estimateCost(unknown), 100 * (100.0 + 1.0) / 2, 0.001);
+  }
+
+  @Test
+  public void testQueueDepthCountsSubmittedCommands() throws Exception {
+    final ReportParsingMetrics metrics = new ReportParsingMetrics();
+    final ParsingServices services = new ParsingServices(null, metrics, null, null);
+    final ParseTaskScheduler scheduler = new ParseTaskScheduler(myExecutor, ParseTaskScheduler.Order.LARGEST_FIRST);
+    createCommand(createReport("notSubmitted", 10), "type", services);
+    assertEquals(metrics.getMaxQueueDepth(), 0);
+
+    scheduler.hold();
+    final Future<?> small = scheduler.submit(createCommand(createReport("small", 10), "type", services));
+    final Future<?> large = scheduler.submit(createCommand(createReport("large", 1000), "type", services));
+    scheduler.release();
+    small.get(10, TimeUnit.SECONDS);
+    large.get(10, TimeUnit.SECONDS);
+    assertEquals(metrics.getMaxQueueDepth(), 2);
+    assertEquals(metrics.getReportCount(), 2);
+
+    // the queue is empty again
+    scheduler.submit(createCommand(createReport("tiny", 1), "type", services)).get(10, TimeUnit.SECONDS);
+    assertEquals(metrics.getMaxQueueDepth(), 2);
+  }
+
+  @NotNull
+  private List<String> runAll(@NotNull ParseTaskScheduler scheduler) throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    myExecutor.submit(new Callable<Object>() {
+      public Object call() throws Exception {
+        started.countDown();
+        return myRelease.await(10, TimeUnit.SECONDS);
+      }
+    });
+    started.await();
+
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+    futures.add(scheduler.submit(createCommand(createReport("small", 10), "type")));
+    futures.add(scheduler.submit(createCommand(createReport("large", 1000), "type")));
+    futures.add(scheduler.submit(createCommand(createReport("tiny", 1), "type")));
+    futures.add(scheduler.submit(createCommand(createReport("medium", 100), "type")));
+    assertEquals(scheduler.getQueueSize(), 4);
+
+    myRelease.countDown();
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    return myParsed;
+  }
+
+  @NotNull
+  private File createReport(@NotNull String name, int size) throws Exception {
+    final File file = new File(myBaseFolder, name);
+    FileUtil.writeToFile(file, new byte[size]);
+    return file;
+  }
+
+  @NotNull
+  private ParseReportCommand createCommand(@NotNull File report, @NotNull final String type) {
+    return createCommand(report, type, ParsingServices.NONE);
+  }
+
+  @NotNull
+  private ParseReportCommand createCommand(@NotNull File report, @NotNull final String type, @NotNull ParsingServices services) {
+    final Parser parser = new Parser() {
+      public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) {
+        myParsed.add(file.getName());
+        return true;
+      }
+
+      public ParsingResult getParsingResult() {
+        return EMPTY_RESULT;
+      }
+    };
+    final ParserFactory factory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return type;
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.RUNTIME;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull ParseParameters parameters) {
+        return parser;
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return EMPTY_RESULT;
+      }
+    };
+    return new ParseReportCommand(report, createParseParameters(new StringBuilder(), type), new RulesState(), factory, services);
+  }
+}
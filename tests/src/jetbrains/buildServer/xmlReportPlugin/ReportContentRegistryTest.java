@@ -0,0 +1,212 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ReportContentRegistryTest extends BaseCommandTestCase {
+  private ReportContentRegistry myRegistry;
+  private List<String> myParsed;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myRegistry = new ReportContentRegistry();
+    myParsed = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @Test
+  public void testSameContentAtDifferentPaths() throws Exception {
+    final File first = createReport("surefire-reports/TEST-Foo.xml", "<testsuite/>");
+    final File copy = createReport("results/TEST-Foo.xml", "<testsuite/>");
+
+    final ReportContentRegistry.Claim owner = myRegistry.claim("junit", first);
+    assertNull(owner.getOwner());
+    assertSame(myRegistry.claim("junit", first), owner);
+    assertNull(myRegistry.claim("surefire", copy).getOwner());
+
+    final ReportContentRegistry.Claim copyClaim = myRegistry.claim("junit", copy);
+    assertEquals(copyClaim.getOwner(), first);
+    owner.finish(true);
+    assertTrue(copyClaim.awaitOwner());
+    assertEquals(myRegistry.getSkippedCount(), 1);
+  }
+
+  @Test
+  public void testDifferentContent() throws Exception {
+    final File first = createReport("a.xml", "<testsuite name=\"a\"/>");
+    final File second = createReport("b.xml", "<testsuite name=\"b\"/>");
+    myRegistry.claim("junit", first);
+    assertNull(myRegistry.claim("junit", second).getOwner());
+    assertFalse(ReportContentRegistry.computeKey("junit", first).equals(ReportContentRegistry.computeKey("junit", second)));
+    assertNull(ReportContentRegistry.computeKey("junit", new File(myBaseFolder, "missing.xml")));
+  }
+
+  @Test
+  public void testHashedOnlyWhenSizesMatch() throws Exception {
+    myRegistry.claim("junit", createReport("a.xml", "<testsuite/>"));
+    myRegistry.claim("junit", createReport("b.xml", "<testsuite name=\"b\"/>"));
+    myRegistry.claim("surefire", createReport("c.xml", "<testsuite/>"));
+    assertEquals(myRegistry.getHashedCount(), 0);
+
+    // both the new report and the first report of the same size are hashed, the first one once
+    myRegistry.claim("junit", createReport("d.xml", "<testsuitE/>"));
+    assertEquals(myRegistry.getHashedCount(), 2);
+    assertEquals(myRegistry.claim("junit", createReport("e.xml", "<testsuite/>")).getOwner(), new File(myBaseFolder, "a.xml"));
+    assertEquals(myRegistry.getHashedCount(), 3);
+  }
+
+  @Test
+  public void testDuplicateReportNotParsed() throws Exception {
+    final File first = createReport("surefire-reports/TEST-Foo.xml", "<testsuite/>");
+    final File copy = createReport("results/TEST-Foo.xml", "<testsuite/>");
+    final RulesState rulesState = new RulesState();
+
+    createCommand(first, rulesState, true).run();
+    createCommand(copy, rulesState, true).run();
+
+    assertEquals(myParsed, Collections.singletonList(first.getName()));
+    assertEquals(rulesState.getReportState(copy), ReportStateHolder.ReportState.PROCESSED);
+    assertEquals(myRegistry.getSkippedCount(), 1);
+  }
+
+  @Test
+  public void testDuplicateOfFailedReportParsed() throws Exception {
+    final File first = createReport("surefire-reports/TEST-Foo.xml", "<testsuite/>");
+    final File copy = createReport("results/TEST-Foo.xml", "<testsuite/>");
+    final RulesState rulesState = new RulesState();
+
+    createCommand(first, rulesState, false).run();
+    createCommand(copy, rulesState, true).run();
+
+    assertEquals(myParsed.size(), 2);
+    assertEquals(myRegistry.getSkippedCount(), 0);
+  }
+
+  @Test
+  public void testDuplicateWaitsForOwner() throws Exception {
+    final File first = createReport("surefire-reports/TEST-Foo.xml", "<testsuite/>");
+    final File copy = createReport("results/TEST-Foo.xml", "<testsuite/>");
+    final RulesState rulesState = new RulesState();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final Thread owner = startCommand(createCommand(first, rulesState, true, release));
+    final Thread duplicate = startCommand(createCommand(copy, rulesState, true));
+    duplicate.join(200);
+    assertTrue(duplicate.isAlive());
+    assertEquals(rulesState.getReportState(copy), ReportStateHolder.ReportState.UNKNOWN);
+
+    release.countDown();
+    owner.join(5000);
+    duplicate.join(5000);
+    assertEquals(myParsed, Collections.singletonList(first.getName()));
+    assertEquals(rulesState.getReportState(copy), ReportStateHolder.ReportState.PROCESSED);
+    assertEquals(myRegistry.getSkippedCount(), 1);
+  }
+
+  @Test
+  public void testDuplicateParsedWhenOwnerFails() throws Exception {
+    final File first = createReport("surefire-reports/TEST-Foo.xml", "<testsuite/>");
+    final File copy = createReport("results/TEST-Foo.xml", "<testsuite/>");
+    final RulesState rulesState = new RulesState();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final Thread owner = startCommand(createCommand(first, rulesState, false, release));
+    final Thread duplicate = startCommand(createCommand(copy, rulesState, true));
+    duplicate.join(200);
+    assertTrue(duplicate.isAlive());
+
+    release.countDown();
+    owner.join(5000);
+    duplicate.join(5000);
+    assertEquals(myParsed, Arrays.asList(first.getName(), copy.getName()));
+    assertEquals(rulesState.getReportState(first), ReportStateHolder.ReportState.ERROR);
+    assertEquals(rulesState.getReportState(copy), ReportStateHolder.ReportState.PROCESSED);
+    assertEquals(myRegistry.getSkippedCount(), 0);
+  }
+
+  @NotNull
+  private static Thread startCommand(@NotNull ParseReportCommand command) throws InterruptedException {
+    final Thread thread = new Thread(command);
+    thread.start();
+    // the first started command claims the content
+    Thread.sleep(50);
+    return thread;
+  }
+
+  @NotNull
+  private File createReport(@NotNull String path, @NotNull String content) throws Exception {
+    final File file = new File(myBaseFolder, path);
+    FileUtil.createParentDirs(file);
+    FileUtil.writeFile(file, content, "UTF-8");
+    return file;
+  }
+
+  @NotNull
+  private ParseReportCommand createCommand(@NotNull File report, @NotNull RulesState rulesState, boolean succeed) {
+    return createCommand(report, rulesState, succeed, null);
+  }
+
+  /**
+   * @param release latch the parser waits for before finishing, null not to wait
+   */
+  @NotNull
+  private ParseReportCommand createCommand(@NotNull File report, @NotNull RulesState rulesState, final boolean succeed,
+                                           @Nullable final CountDownLatch release) {
+    final ParserFactory factory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return "junit";
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.RUNTIME;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull ParseParameters parameters) {
+        return new Parser() {
+          public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) {
+            myParsed.add(file.getName());
+            if (release != null) {
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                return false;
+              }
+            }
+            return succeed;
+          }
+
+          public ParsingResult getParsingResult() {
+            return EMPTY_RESULT;
+          }
+        };
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return EMPTY_RESULT;
+      }
+    };
+    return new ParseReportCommand(report, createParseParameters(new StringBuilder(), "junit"), rulesState, factory, new ParsingServices(null, null, myRegistry, null));
+  }
+}
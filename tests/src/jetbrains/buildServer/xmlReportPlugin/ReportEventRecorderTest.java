@@ -0,0 +1,108 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.AntJUnitFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.checkstyle.CheckstyleFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.pmd.PmdFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd.PmdCpdFactory;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ReportEventRecorderTest {
+  @DataProvider(name = "reports")
+  public Object[][] reports() {
+    return new Object[][]{
+      {new PmdFactory(), "pmd", "simple.xml"},
+      {new PmdFactory(), "pmd", "inner.xml"},
+      {new CheckstyleFactory(), "checkstyle", "big.xml"},
+      {new CheckstyleFactory(), "checkstyle", "oneErrorOneWarningOneInfo.xml"},
+      {new PmdCpdFactory(), "pmdCpd", "result.xml"},
+      {new AntJUnitFactory(), "junit", "nineCases.xml"},
+      {new AntJUnitFactory(), "junit", "caseWithSystemErr.xml"},
+      {new AntJUnitFactory(), "junit", "TEST-ru.rambler.xmpp.server.core.cm.JDBCPgPersistenceManagerImplTest.xml"},
+    };
+  }
+
+  @Test(dataProvider = "reports")
+  public void testReplayReportsSameEvents(@NotNull ParserFactory factory, @NotNull String folder, @NotNull String fileName) throws Exception {
+    final File report = TestUtil.getTestDataFile(fileName, folder);
+
+    final StringBuilder parsed = new StringBuilder();
+    final ReportEventRecorder recorder = new ReportEventRecorder(Long.MAX_VALUE);
+    final Parser parser = factory.createParser(recorder.wrap(createParseParameters(parsed, folder)));
+    parser.parse(report, null);
+    final ParsingResult result = parser.getParsingResult();
+    assertNotNull(result);
+    final byte[] record = recorder.toByteArray(result);
+    assertNotNull(record);
+    assertTrue(parsed.length() > 0);
+
+    final StringBuilder replayed = new StringBuilder();
+    final ParsingResult replayedResult = ReportEventRecorder.replay(record, createParseParameters(replayed, folder), factory.createEmptyResult());
+
+    assertEquals(replayed.toString(), parsed.toString());
+    assertEquals(describe(replayedResult), describe(result));
+  }
+
+  @Test
+  public void testRecordLimit() throws Exception {
+    final ReportEventRecorder recorder = new ReportEventRecorder(100);
+    final Parser parser = new CheckstyleFactory().createParser(recorder.wrap(createParseParameters(new StringBuilder(), "checkstyle")));
+    parser.parse(TestUtil.getTestDataFile("big.xml", "checkstyle"), null);
+    assertNull(recorder.toByteArray(parser.getParsingResult()));
+  }
+
+  @Test
+  public void testCorruptedRecordNotReported() throws Exception {
+    final ReportEventRecorder recorder = new ReportEventRecorder(Long.MAX_VALUE);
+    final Parser parser = new PmdFactory().createParser(recorder.wrap(createParseParameters(new StringBuilder(), "pmd")));
+    parser.parse(TestUtil.getTestDataFile("simple.xml", "pmd"), null);
+    final byte[] record = recorder.toByteArray(parser.getParsingResult());
+    assertNotNull(record);
+
+    final byte[] truncated = new byte[record.length - 2];
+    System.arraycopy(record, 0, truncated, 0, truncated.length);
+    final StringBuilder replayed = new StringBuilder();
+    try {
+      ReportEventRecorder.replay(truncated, createParseParameters(replayed, "pmd"), new PmdFactory().createEmptyResult());
+      fail("Corrupted record replayed");
+    } catch (IOException e) {
+      assertEquals(replayed.length(), 0);
+    }
+  }
+
+  @NotNull
+  private static String describe(@NotNull ParsingResult result) {
+    if (result instanceof InspectionParsingResult) {
+      final InspectionParsingResult inspections = (InspectionParsingResult)result;
+      return "inspections " + inspections.getErrors() + " " + inspections.getWarnings() + " " + inspections.getInfos();
+    }
+    if (result instanceof TestParsingResult) {
+      final TestParsingResult tests = (TestParsingResult)result;
+      return "tests " + tests.getSuites() + " " + tests.getTests();
+    }
+    if (result instanceof DuplicationParsingResult) {
+      return "duplicates " + ((DuplicationParsingResult)result).getDuplicates();
+    }
+    return result.getClass().getName();
+  }
+
+  @NotNull
+  private static ParseParameters createParseParameters(@NotNull StringBuilder result, @NotNull String folder) throws IOException {
+    return TestUtil.createParseParameters(result, folder, TestUtil.getTestDataFile(null, folder));
+  }
+}
@@ -0,0 +1,84 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.Map;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ReportParsingMetricsTest {
+  private static final long MS = 1000000L;
+
+  @Test
+  public void testNoReports() {
+    final ReportParsingMetrics metrics = new ReportParsingMetrics();
+    assertEquals(metrics.getReportCount(), 0);
+
+    final Map<String, Long> statistics = metrics.getStatistics();
+    assertEquals(statistics.size(), 3);
+    assertEquals(statistics.get("xmlReport.parseTimeMs"), Long.valueOf(0));
+  }
+
+  @Test
+  public void testQueueDepth() {
+    final ReportParsingMetrics metrics = new ReportParsingMetrics();
+    metrics.reportQueued(0);
+    metrics.reportQueued(0);
+    metrics.reportStarted(10 * MS);
+    metrics.reportQueued(20 * MS);
+    metrics.reportQueued(20 * MS);
+    metrics.reportStarted(30 * MS);
+
+    assertEquals(metrics.getMaxQueueDepth(), 3);
+  }
+
+  @Test
+  public void testPerTypeStatistics() {
+    final ReportParsingMetrics metrics = new ReportParsingMetrics();
+    final File first = new File("first.xml");
+    final File second = new File("second.xml");
+    metrics.reportParsed("junit", first, 300, 10 * MS, 100 * MS, 1000, 5);
+    metrics.reportParsed("junit", first, 200, 30 * MS, 50 * MS, 500, 2);
+    metrics.reportParsed("junit", second, 100, 0, 20 * MS, 100, 1);
+    metrics.reportParsed("pmd", new File("pmd.xml"), -10, 0, 30 * MS, 2000, 7);
+    metrics.finishWaited(40 * MS);
+
+    assertEquals(metrics.getReportCount(), 3);
+
+    final Map<String, Long> statistics = metrics.getStatistics();
+    assertEquals(statistics.get("xmlReport.junit.reports"), Long.valueOf(2));
+    assertEquals(statistics.get("xmlReport.junit.reparses"), Long.valueOf(1));
+    assertEquals(statistics.get("xmlReport.junit.bytes"), Long.valueOf(1600));
+    assertEquals(statistics.get("xmlReport.junit.items"), Long.valueOf(8));
+    assertEquals(statistics.get("xmlReport.junit.parseTimeMs"), Long.valueOf(170));
+    assertEquals(statistics.get("xmlReport.junit.queueTimeMs"), Long.valueOf(40));
+    assertEquals(statistics.get("xmlReport.junit.maxQueueTimeMs"), Long.valueOf(30));
+    assertEquals(statistics.get("xmlReport.junit.maxDiscoveryLatencyMs"), Long.valueOf(300));
+    assertEquals(statistics.get("xmlReport.pmd.reparses"), Long.valueOf(0));
+    assertEquals(statistics.get("xmlReport.pmd.maxDiscoveryLatencyMs"), Long.valueOf(0));
+    assertEquals(statistics.get("xmlReport.parseTimeMs"), Long.valueOf(200));
+    assertEquals(statistics.get("xmlReport.finishWaitMs"), Long.valueOf(40));
+  }
+
+  @Test
+  public void testJson() {
+    final ReportParsingMetrics metrics = new ReportParsingMetrics();
+    metrics.reportParsed("junit", new File("dir\\\"quoted\".xml"), 5, 0, 20 * MS, 100, 1);
+
+    final String json = metrics.toJson();
+    assertTrue(json.contains("\"junit\": {\"reports\": 1, \"parses\": 1"), json);
+    assertTrue(json.contains("quoted\\\".xml\", \"type\": \"junit\", \"lastDiscoveryLatencyMs\": 5"), json);
+    assertTrue(json.contains("\\\\"), json);
+  }
+
+  @Test
+  public void testReportedItems() {
+    assertEquals(ReportParsingMetrics.getReportedItems(new TestParsingResult(1, 10), null), 10);
+    assertEquals(ReportParsingMetrics.getReportedItems(new TestParsingResult(2, 15), new TestParsingResult(1, 10)), 5);
+    assertEquals(ReportParsingMetrics.getReportedItems(new InspectionParsingResult(1, 2, 3), null), 6);
+  }
+}
@@ -0,0 +1,106 @@
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.xmlReportPlugin.ReportStateHolder.ReportState;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class RulesStateTest {
+  private static final ParsingResult RESULT = TestParsingResult.createEmptyResult();
+
+  @Test
+  public void testUnknownReport() {
+    final RulesState state = new RulesState();
+    final File report = new File("report.xml");
+
+    assertEquals(state.getReportState(report), ReportState.UNKNOWN);
+    assertNull(state.getLastModified(report));
+    assertNull(state.getLength(report));
+    assertNull(state.getParsingResult(report));
+    assertEquals(state.getReportCount(ReportState.PROCESSED), 0);
+  }
+
+  @Test
+  public void testCompareAndSet() {
+    final RulesState state = new RulesState();
+    final File report = new File("report.xml");
+
+    assertTrue(state.compareAndSetReportState(report, ReportState.UNKNOWN, ReportState.ON_PROCESSING, 10, 20));
+    assertFalse(state.compareAndSetReportState(report, ReportState.UNKNOWN, ReportState.ON_PROCESSING, 30, 40));
+    assertEquals(state.getReportState(report), ReportState.ON_PROCESSING);
+    assertEquals(state.getLastModified(report), Long.valueOf(10));
+    assertEquals(state.getLength(report), Long.valueOf(20));
+
+    state.setReportState(report, ReportState.ERROR, RESULT);
+    assertTrue(state.compareAndSetReportState(report, ReportState.ERROR, ReportState.ON_PROCESSING, 30, 40));
+    assertSame(state.getParsingResult(report), RESULT);
+    assertEquals(state.getLastModified(report), Long.valueOf(30));
+  }
+
+  @Test
+  public void testIndexesFollowTransitions() {
+    final RulesState state = new RulesState();
+    final File first = new File("first.xml");
+    final File second = new File("second.xml");
+    final File third = new File("third.xml");
+
+    state.setReportState(first, ReportState.ON_PROCESSING, 1, 1);
+    state.setReportState(second, ReportState.ON_PROCESSING, 1, 1);
+    state.setReportState(third, ReportState.OUT_OF_DATE, 1, 1);
+    assertEquals(state.getReportCount(ReportState.ON_PROCESSING), 2);
+
+    state.setReportState(first, ReportState.PROCESSED, RESULT);
+    state.setReportState(second, ReportState.ERROR, RESULT);
+
+    assertEquals(state.getReportCount(ReportState.ON_PROCESSING), 0);
+    assertEquals(state.getReportCount(ReportState.PROCESSED), 1);
+    assertEquals(state.getReportCount(ReportState.ERROR), 1);
+    assertEquals(state.getProcessedFiles().keySet(), Collections.singleton(first));
+    assertEquals(state.getFailedToProcessFiles().keySet(), Collections.singleton(second));
+    assertEquals(state.getOutOfDateFiles(), Collections.singletonList(third));
+
+    state.setReportState(second, ReportState.PROCESSED, RESULT);
+    assertEquals(state.getReportCount(ReportState.PROCESSED), 2);
+    assertTrue(state.getFailedToProcessFiles().isEmpty());
+  }
+
+  @Test
+  public void testSingleWinnerOfConcurrentTransition() throws Exception {
+    final RulesState state = new RulesState();
+    final int threads = 4;
+    final int files = 10000;
+    final AtomicInteger won = new AtomicInteger();
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < threads; ++t) {
+        futures.add(executor.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            barrier.await();
+            for (int i = 0; i < files; ++i) {
+              if (state.compareAndSetReportState(new File("report" + i + ".xml"), ReportState.UNKNOWN, ReportState.ON_PROCESSING, i, i)) {
+                won.incrementAndGet();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) future.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(won.get(), files);
+    assertEquals(state.getReportCount(ReportState.ON_PROCESSING), files);
+  }
+}
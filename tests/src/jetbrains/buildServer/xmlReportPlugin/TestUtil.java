@@ -6,6 +6,8 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicatingFragment;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
@@ -179,4 +181,51 @@ public final class TestUtil {
       }
     };
   }
-}
\ No newline at end of file
+
+  /**
+   * @return parameters which write all reported events to the builder
+   */
+  @NotNull
+  public static ParseParameters createParseParameters(@NotNull final StringBuilder result, @NotNull final String type, @NotNull final File checkoutDir) {
+    return new ParseParameters() {
+      public boolean isVerbose() {
+        return false;
+      }
+
+      @NotNull
+      public BuildProgressLogger getThreadLogger() {
+        return new BuildLoggerForTesting(result);
+      }
+
+      @NotNull
+      public InspectionReporter getInspectionReporter() {
+        return createInspectionReporter(result);
+      }
+
+      @NotNull
+      public DuplicationReporter getDuplicationReporter() {
+        return createDuplicationReporter(result);
+      }
+
+      @NotNull
+      public TestReporter getTestReporter() {
+        return createTestResultsWriter(result);
+      }
+
+      @NotNull
+      public Map<String, String> getParameters() {
+        return Collections.emptyMap();
+      }
+
+      @NotNull
+      public String getType() {
+        return type;
+      }
+
+      @NotNull
+      public File getCheckoutDir() {
+        return checkoutDir;
+      }
+    };
+  }
+}
@@ -2,13 +2,20 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit;
 
+import java.io.File;
+import java.io.Reader;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.ReportCheckpoint;
 import jetbrains.buildServer.xmlReportPlugin.tests.SecondDurationParser;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 @Test
 public class AntJUnitReportParserTest extends BaseParserTestCase {
@@ -607,4 +614,117 @@ public class AntJUnitReportParserTest extends BaseParserTestCase {
                        "------------------------\n" +
                        "EndSuite\n");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testResumeGrowingReport() throws Exception {
+    final File report = FileUtil.createTempFile("growing", ".xml");
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                               "<testsuite name=\"TestCase\" tests=\"3\">\n" +
+                               "  <testcase classname=\"TestCase\" name=\"test1\" time=\"0\"/>\n" +
+                               "  <testcase classname=\"TestCase\" name=\"test2\" time=\"0\">\n" +
+                               "    <system-out><![CDATA[</testcase>]]></system-out>\n" +
+                               "  </testcase>\n" +
+                               "  <testcase classname=\"TestCase\" name=\"te", "UTF-8");
+
+    final ParsingResult first = parse(getParser(), report, null);
+    assertEquals(((TestParsingResult)first).getTests(), 2);
+    assertNotNull(((TestParsingResult)first).getCheckpoint());
+
+    FileUtil.writeFile(report, FileUtil.readText(report, "UTF-8") + "st3\" time=\"0\"/>\n" +
+                               "</testsuite>\n", "UTF-8");
+
+    final ParsingResult second = parse(getParser(), report, first);
+    assertEquals(((TestParsingResult)second).getTests(), 3);
+    assertEquals(((TestParsingResult)second).getSuites(), 1);
+    assertResultEquals("TestSuite:TestCase\n" +
+                       "  Test:TestCase.test1\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "  Test:TestCase.test2\n" +
+                       "    StdOutput:</testcase>\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:TestCase.test3\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n");
+  }
+
+  @Test
+  public void testResumeKeepsDocumentType() throws Exception {
+    final File report = FileUtil.createTempFile("growing", ".xml");
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                               "<!DOCTYPE testsuite [\n" +
+                               "  <!ENTITY suite \"TestCase\">\n" +
+                               "]>\n" +
+                               "<testsuite name=\"TestCase\" tests=\"2\">\n" +
+                               "  <testcase classname=\"TestCase\" name=\"test1\" time=\"0\"/>\n" +
+                               "  <testcase classname=\"TestCase\" name=\"te", "UTF-8");
+
+    final ParsingResult first = parse(getParser(), report, null);
+    assertEquals(((TestParsingResult)first).getTests(), 1);
+    final ReportCheckpoint checkpoint = ((TestParsingResult)first).getCheckpoint();
+    assertNotNull(checkpoint);
+    final Reader reader = checkpoint.openReader(report);
+    try {
+      final StringBuilder text = new StringBuilder();
+      final char[] buffer = new char[1024];
+      int read;
+      while ((read = reader.read(buffer)) != -1) text.append(buffer, 0, read);
+      assertTrue(text.toString().startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE testsuite [\n  <!ENTITY suite \"TestCase\">\n]>\n<testsuite name=\"TestCase\" tests=\"2\">"));
+    } finally {
+      reader.close();
+    }
+
+    FileUtil.writeFile(report, FileUtil.readText(report, "UTF-8") + "st2\" time=\"0\"/>\n" +
+                               "</testsuite>\n", "UTF-8");
+
+    final ParsingResult second = parse(getParser(), report, first);
+    assertEquals(((TestParsingResult)second).getTests(), 2);
+    assertResultEquals("TestSuite:TestCase\n" +
+                       "  Test:TestCase.test1\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:TestCase.test2\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n");
+  }
+
+  @Test
+  public void testReportRewrittenBelowCheckpoint() throws Exception {
+    final File report = FileUtil.createTempFile("growing", ".xml");
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                               "<testsuite name=\"TestCase\" tests=\"2\">\n" +
+                               "  <testcase classname=\"TestCase\" name=\"test1\" time=\"0\"/>\n" +
+                               "  <testcase classname=\"TestCase\" name=\"te", "UTF-8");
+
+    final ParsingResult first = parse(getParser(), report, null);
+    assertNotNull(((TestParsingResult)first).getCheckpoint());
+
+    // another run rewrote the report, the checkpoint doesn't match it anymore
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                               "<testsuite name=\"TestCase\" tests=\"2\">\n" +
+                               "  <testcase classname=\"TestCase\" name=\"new1\" time=\"0\"/>\n" +
+                               "  <testcase classname=\"TestCase\" name=\"new2\" time=\"0\"/>\n" +
+                               "</testsuite>\n", "UTF-8");
+
+    final ParsingResult second = parse(getParser(), report, first);
+    assertEquals(((TestParsingResult)second).getTests(), 2);
+    // tests reported before are skipped as if there was no checkpoint
+    assertResultEquals("TestSuite:TestCase\n" +
+                       "  Test:TestCase.test1\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:TestCase.new2\n" +
+                       "  EndTest:0\n" +
+                       "------------------------\n" +
+                       "EndSuite\n");
+  }
+}
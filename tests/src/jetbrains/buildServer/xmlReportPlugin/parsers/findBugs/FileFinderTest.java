@@ -0,0 +1,142 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class FileFinderTest extends BaseTestCase {
+  @NotNull
+  private File myBaseDir;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myBaseDir = createTempDir();
+  }
+
+  @Test
+  public void test_finds_in_archives_directories_and_classes() throws Exception {
+    final File jar = createJar("lib/a.jar", "org/a/A.class", "org/a/A$Inner.class", "META-INF/MANIFEST.MF");
+    final File src = createFiles("src", "org/a/A.java", "org/b/B.java");
+    final File classFile = createFiles("classes", "org/c/C.class");
+
+    final FileFinder finder = new FileFinder(new FindBugsFileIndex());
+    finder.addJar(jar.getAbsolutePath());
+    finder.addJar(src.getAbsolutePath());
+    finder.addJar(new File(classFile, "org/c/C.class").getAbsolutePath());
+
+    assertEquals(jar.getAbsolutePath() + ":org/a/A.class", finder.getVeryFullFilePath("org/a/A.class"));
+    assertEquals(jar.getAbsolutePath() + ":org/a/A.class", finder.getVeryFullFilePath("a\\A.class"));
+    assertEquals(new File(src, "org/b/B.java").getPath(), finder.getVeryFullFilePath("org/b/B.java"));
+    assertEquals(new File(src, "org/b/B.java").getPath(), finder.getVeryFullFilePath("B.java"));
+    assertEquals(new File(classFile, "org/c/C.class").getAbsolutePath(), finder.getVeryFullFilePath("org/c/C.class"));
+
+    // only whole path components match
+    assertNull(finder.getVeryFullFilePath("rg/a/A.class"));
+    assertNull(finder.getVeryFullFilePath("A$Inner.class"));
+    assertNull(finder.getVeryFullFilePath("org/x/A.java"));
+    assertNull(finder.getVeryFullFilePath(null));
+    finder.close();
+  }
+
+  @Test
+  public void test_first_entry_wins() throws Exception {
+    final File first = createFiles("first", "x/A.java");
+    final File second = createFiles("second", "y/x/A.java", "x/B.java");
+
+    final FileFinder finder = new FileFinder(new FindBugsFileIndex());
+    finder.addJar(first.getAbsolutePath());
+    assertEquals(new File(first, "x/A.java").getPath(), finder.getVeryFullFilePath("A.java"));
+    assertNull(finder.getVeryFullFilePath("x/B.java"));
+
+    finder.addJar(second.getAbsolutePath());
+    assertEquals(new File(first, "x/A.java").getPath(), finder.getVeryFullFilePath("x/A.java"));
+    assertEquals(new File(second, "y/x/A.java").getPath(), finder.getVeryFullFilePath("y/x/A.java"));
+    assertEquals(new File(second, "x/B.java").getPath(), finder.getVeryFullFilePath("x/B.java"));
+  }
+
+  @Test
+  public void test_archive_index_shared_until_modified() throws Exception {
+    final File jar = createJar("a.jar", "org/a/A.class");
+    final FindBugsFileIndex index = new FindBugsFileIndex();
+
+    final FindBugsFileIndex.PathIndex paths = index.getArchiveIndex(jar);
+    assertNotNull(paths);
+    assertSame(paths, index.getArchiveIndex(jar));
+
+    final long lastModified = jar.lastModified();
+    createJar("a.jar", "org/b/B.class");
+    assertTrue(jar.setLastModified(lastModified + 2000));
+
+    final FileFinder finder = new FileFinder(index);
+    finder.addJar(jar.getAbsolutePath());
+    assertNull(finder.getVeryFullFilePath("org/a/A.class"));
+    assertEquals(jar.getAbsolutePath() + ":org/b/B.class", finder.getVeryFullFilePath("org/b/B.class"));
+    assertNotSame(paths, index.getArchiveIndex(jar));
+  }
+
+  @Test
+  public void test_least_recently_used_archives_evicted() throws Exception {
+    final File a = createJar("a.jar", "org/a/A.class");
+    final File b = createJar("b.jar", "org/b/B.class");
+    final File c = createJar("c.jar", "org/c/C.class");
+    final FindBugsFileIndex index = new FindBugsFileIndex(2 * "org/a/A.class".length());
+
+    final FindBugsFileIndex.PathIndex aPaths = index.getArchiveIndex(a);
+    final FindBugsFileIndex.PathIndex bPaths = index.getArchiveIndex(b);
+    assertSame(aPaths, index.getArchiveIndex(a));
+    index.getArchiveIndex(c);
+
+    assertSame(aPaths, index.getArchiveIndex(a));
+    assertNotSame(bPaths, index.getArchiveIndex(b));
+  }
+
+  @Test
+  public void test_broken_archive_ignored() throws Exception {
+    final File jar = new File(myBaseDir, "broken.jar");
+    FileUtil.writeFileAndReportErrors(jar, "not a zip");
+    final File src = createFiles("src", "A.java");
+
+    final FileFinder finder = new FileFinder(new FindBugsFileIndex());
+    finder.addJar(jar.getAbsolutePath());
+    finder.addJar(src.getAbsolutePath());
+    assertEquals(new File(src, "A.java").getPath(), finder.getVeryFullFilePath("A.java"));
+  }
+
+  @NotNull
+  private File createJar(@NotNull String path, @NotNull String... entries) throws IOException {
+    final File jar = new File(myBaseDir, path);
+    FileUtil.createParentDirs(jar);
+    final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.write(entry.getBytes("UTF-8"));
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return jar;
+  }
+
+  @NotNull
+  private File createFiles(@NotNull String root, @NotNull String... paths) throws IOException {
+    final File dir = new File(myBaseDir, root);
+    for (String path : paths) {
+      final File file = new File(dir, path);
+      FileUtil.createParentDirs(file);
+      FileUtil.writeFileAndReportErrors(file, path);
+    }
+    return dir;
+  }
+}
@@ -0,0 +1,145 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.findBugs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class FindBugsPluginCacheTest extends BaseTestCase {
+  @NotNull
+  private File myFindBugsHome;
+  @NotNull
+  private File myCacheFile;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myFindBugsHome = createTempDir();
+    myCacheFile = new File(createTempDir(), "cache/findBugsPlugins.bin");
+  }
+
+  @Test
+  public void test_reads_core_and_plugins() throws Exception {
+    createPlugin("lib/findbugs.jar", "CORE_PATTERN", "Core pattern");
+    createPlugin("plugin/custom.jar", "CUSTOM_PATTERN", "Custom pattern");
+
+    final List<FindBugsPluginCache.Plugin> plugins = new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome);
+
+    assertEquals(2, plugins.size());
+    assertPattern(plugins.get(0), "CORE_PATTERN", "Core pattern");
+    assertPattern(plugins.get(1), "CUSTOM_PATTERN", "Custom pattern");
+    assertEquals("CATEGORY", plugins.get(0).getCategories().get(0).getId());
+    assertEquals("Category details", plugins.get(0).getCategories().get(0).getDescription());
+  }
+
+  @Test
+  public void test_persisted_between_instances() throws Exception {
+    final File jar = createPlugin("lib/findbugs.jar", "CORE_PATTERN", "Core pattern");
+    new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome);
+    assertTrue(myCacheFile.isFile());
+
+    // the jar can't be read anymore but has the same size and timestamp, so the cached definitions are used
+    final long lastModified = jar.lastModified();
+    final long length = jar.length();
+    FileUtil.writeToFile(jar, new byte[(int)length]);
+    assertEquals(length, jar.length());
+    assertTrue(jar.setLastModified(lastModified));
+
+    final List<FindBugsPluginCache.Plugin> plugins = new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome);
+    assertEquals(1, plugins.size());
+    assertPattern(plugins.get(0), "CORE_PATTERN", "Core pattern");
+  }
+
+  @Test
+  public void test_changed_plugin_reread() throws Exception {
+    final File jar = createPlugin("lib/findbugs.jar", "CORE_PATTERN", "Core pattern");
+    final FindBugsPluginCache cache = new FindBugsPluginCache(myCacheFile);
+    cache.getPlugins(myFindBugsHome);
+
+    final long lastModified = jar.lastModified();
+    createPlugin("lib/findbugs.jar", "NEW_PATTERN", "Changed core pattern");
+    assertTrue(jar.setLastModified(lastModified + 10000));
+
+    assertPattern(cache.getPlugins(myFindBugsHome).get(0), "NEW_PATTERN", "Changed core pattern");
+    assertPattern(new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome).get(0), "NEW_PATTERN", "Changed core pattern");
+  }
+
+  @Test
+  public void test_corrupted_cache_ignored() throws Exception {
+    createPlugin("lib/findbugs.jar", "CORE_PATTERN", "Core pattern");
+    FileUtil.writeToFile(myCacheFile, new byte[]{0x46, 0x42, 0x50, 0x43, 0, 0, 0, 1, 0, 0});
+
+    assertPattern(new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome).get(0), "CORE_PATTERN", "Core pattern");
+  }
+
+  @Test
+  public void test_declared_encoding_used() throws Exception {
+    createPlugin("lib/findbugs.jar", "ISO-8859-1", "CORE_PATTERN", "Mod\u00e8le");
+
+    assertPattern(new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome).get(0), "CORE_PATTERN", "Mod\u00e8le");
+  }
+
+  @Test
+  public void test_failed_plugin_cached() throws Exception {
+    final File jar = createPlugin("lib/findbugs.jar", "UTF-8", "CORE_PATTERN", "<broken");
+    final List<FindBugsPluginCache.Plugin> plugins = new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome);
+    assertEquals(1, plugins.size());
+    assertTrue(plugins.get(0).isFailed());
+
+    // the jar isn't read again while it has the same size and timestamp
+    final long lastModified = jar.lastModified();
+    final long length = jar.length();
+    FileUtil.writeToFile(jar, new byte[(int)length]);
+    assertTrue(jar.setLastModified(lastModified));
+
+    assertTrue(new FindBugsPluginCache(myCacheFile).getPlugins(myFindBugsHome).get(0).isFailed());
+  }
+
+  private static void assertPattern(@NotNull FindBugsPluginCache.Plugin plugin, @NotNull String type, @NotNull String name) {
+    assertFalse(plugin.isFailed());
+    assertEquals(1, plugin.getPatterns().size());
+    assertEquals(type, plugin.getPatterns().get(0).getId());
+    assertEquals(name, plugin.getPatterns().get(0).getName());
+    assertEquals("Pattern details", plugin.getPatterns().get(0).getDescription());
+  }
+
+  @NotNull
+  private File createPlugin(@NotNull String path, @NotNull String type, @NotNull String name) throws IOException {
+    return createPlugin(path, "UTF-8", type, name);
+  }
+
+  @NotNull
+  private File createPlugin(@NotNull String path, @NotNull String encoding, @NotNull String type, @NotNull String name) throws IOException {
+    final File jar = new File(myFindBugsHome, path);
+    FileUtil.createParentDirs(jar);
+
+    final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      out.putNextEntry(new ZipEntry("messages.xml"));
+      out.write(("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n" +
+                 "<MessageCollection>\n" +
+                 "  <BugCategory category=\"CATEGORY\">\n" +
+                 "    <Description>Category</Description>\n" +
+                 "    <Details><![CDATA[<p>category details</p>]]></Details>\n" +
+                 "  </BugCategory>\n" +
+                 "  <BugPattern type=\"" + type + "\">\n" +
+                 "    <ShortDescription>" + name + "</ShortDescription>\n" +
+                 "    <Details><![CDATA[<p>Pattern details</p>]]></Details>\n" +
+                 "  </BugPattern>\n" +
+                 "</MessageCollection>\n").getBytes(encoding));
+      out.closeEntry();
+    } finally {
+      FileUtil.close(out);
+    }
+    return jar;
+  }
+}
@@ -9,19 +9,34 @@ import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.TestUtil;
 import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertTrue;
+
 @Test
 public class FindBugsReportParserTest extends BaseParserTestCase {
   private static final String FINDBUGS_HOME = System.getProperty("findbugs");
   private static final String TYPE = "findBugs";
 
+  // 0 for the default
+  private int myMaxDeferredBugs;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myMaxDeferredBugs = 0;
+  }
+
   @NotNull
   @Override
   protected Parser getParser() {
     try {
-      return new FindBugsReportParser(getInspectionReporter(), FINDBUGS_HOME != null && new File(FINDBUGS_HOME).exists() ? FINDBUGS_HOME : TestUtil
-        .getTestDataPath(TYPE, null), getBaseDir());
+      final String findBugsHome = FINDBUGS_HOME != null && new File(FINDBUGS_HOME).exists() ? FINDBUGS_HOME : TestUtil.getTestDataPath(TYPE, null);
+      if (myMaxDeferredBugs == 0) return new FindBugsReportParser(getInspectionReporter(), findBugsHome, getBaseDir());
+      return new FindBugsReportParser(getInspectionReporter(), findBugsHome, getBaseDir(), true,
+                                      new FindBugsPluginCache(null), new FindBugsFileIndex(), myMaxDeferredBugs);
     } catch (FileNotFoundException e) {
       throw new RuntimeException(e);
     }
@@ -105,4 +120,50 @@ public class FindBugsReportParserTest extends BaseParserTestCase {
   public void testMultipleSourceLine() throws Exception {
     runTest("sourceLine.sample.xml");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSimpleInTwoPasses() throws Exception {
+    myMaxDeferredBugs = 1;
+    runTest("simple.sample.xml");
+  }
+
+  @Test
+  public void testCategoryInTwoPasses() throws Exception {
+    myMaxDeferredBugs = 1;
+    runTest("category.sample.xml");
+  }
+
+  @Test
+  public void testBuildFailsErrorsInTwoPasses() throws Exception {
+    myMaxDeferredBugs = 5;
+    runTest("failureErr.sample.xml");
+  }
+
+  @Test
+  public void testReportDefinitionsTakePrecedence() throws Exception {
+    assertReportDefinitionsTakePrecedence();
+  }
+
+  @Test
+  public void testReportDefinitionsTakePrecedenceInTwoPasses() throws Exception {
+    myMaxDeferredBugs = 1;
+    assertReportDefinitionsTakePrecedence();
+  }
+
+  private void assertReportDefinitionsTakePrecedence() throws Exception {
+    final File report = new File(getBaseDir(), "reportPattern.xml");
+    // NM_BAD_EQUAL is also defined by the plugin
+    FileUtil.writeFileAndReportErrors(report, FileUtil.readText(getReport("simple.sample.xml"))
+      .replace("##BASE_DIR##", getBaseDir().getAbsolutePath().replace("\\", "/"))
+      .replace("<Errors/>", "<BugPattern type=\"NM_BAD_EQUAL\" abbrev=\"Nm\" category=\"CORRECTNESS\">" +
+                            "<ShortDescription>Report short description</ShortDescription><Details>Report details</Details></BugPattern><Errors/>"));
+    try {
+      parse(report.getName());
+    } finally {
+      FileUtil.delete(report);
+    }
+    final String result = prepareResult();
+    assertTrue(result.contains("myId='NM_BAD_EQUAL', myName='Report short description'"), result);
+    assertTrue(result.contains("myId='UUF_UNUSED_FIELD', myName='Unused field'"), result);
+  }
+}
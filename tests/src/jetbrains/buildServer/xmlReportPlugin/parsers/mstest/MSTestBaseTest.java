@@ -143,11 +143,53 @@ public class MSTestBaseTest {
     doTest("hyung-choi-autodesk-com.trx", "hyung-choi-autodesk-com.trx.gold");
   }
 
+  @Test
+  public void test_VS2010_two_pass() throws IOException {
+    doTest("vs2010.trx", "vs2010.trx.gold", false, 0);
+  }
+
+  @Test
+  public void test_notExecuted_two_pass() throws IOException {
+    doTest("notExecuted.trx", "notExecuted.trx.gold", false, 0);
+  }
+
+  @Test
+  public void test_vs2005_deferred_results() throws IOException {
+    assertEquals(doTest("tests-vs2005.trx", "tests-vs2005.trx.gold", true, 100), 2);
+  }
+
+  @Test
+  public void test_vs2005_too_many_deferred_results() throws IOException {
+    assertEquals(doTest("tests-vs2005.trx", "tests-vs2005.trx.gold", true, 0), 2);
+  }
+
+  @Test
+  public void test_definitions_before_results_single_pass() throws IOException {
+    assertEquals(doTest("stofl.trx", "stofl.trx.gold", true, 0), 1);
+  }
+
+  @Test
+  public void test_results_before_definitions_deferred() throws IOException {
+    assertEquals(doTest("resultsBeforeDefinitions.trx", "stofl.trx.gold", true, 2), 1);
+  }
+
+  @Test
+  public void test_results_before_definitions_too_many_deferred_results() throws IOException {
+    assertEquals(doTest("resultsBeforeDefinitions.trx", "stofl.trx.gold", true, 1), 2);
+  }
+
   public static File getTestData(final String path) throws FileNotFoundException {
     return new File(TestUtil.getTestDataPath(path, "mstest").replace("\\", "/"));
   }
 
   private void doTest(String file, String gold) throws IOException {
+    doTest(file, gold, true, 1000);
+  }
+
+  /**
+   * @return number of times the report was read
+   */
+  private int doTest(String file, String gold, boolean singlePass, int maxDeferredResults) throws IOException {
     final StringBuilder sb = new StringBuilder();
     final TRXParser ps = new TRXParser(new TestReporter() {
       public void openTestSuite(@NotNull final String name) {
@@ -198,12 +240,13 @@ public class MSTestBaseTest {
       public void failure(@NotNull final String message) {
         sb.append("-->Problem: ").append(message).append("\r\n");
       }
-    }, "MSTest");
+    }, "MSTest", singlePass, maxDeferredResults);
 
     ps.parse(getTestData(file), null);
 
     String actual = sb.toString().replace(getTestData("").getPath(), "#PATH#").replace("#PATH#/", "#PATH#\\");
     compareFiles(gold, actual);
+    return ps.getPassCount();
   }
 
   private void compareFiles(final String gold, final String actual) throws IOException {
@@ -2,8 +2,11 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.nUnit;
 
+import java.io.File;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.testng.Assert;
@@ -271,4 +274,38 @@ public class NUnitReportParserTest extends BaseParserTestCase {
     parse("TestResults_TW46544.xml");
     assertResultEquals(getExpectedResult("TW46544.gold"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testResumeGrowingReport() throws Exception {
+    final File report = FileUtil.createTempFile("growing", ".xml");
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\"?>\n" +
+                               "<test-results name=\"NUnitTests.nunit\" total=\"2\">\n" +
+                               "  <test-suite name=\"TestCase\" success=\"True\" time=\"0.016\">\n" +
+                               "    <results>\n" +
+                               "      <test-case name=\"test1\" executed=\"True\" success=\"True\" time=\"0.016\"/>\n" +
+                               "      <test-case name=\"te", "UTF-8");
+
+    final TestParsingResult first = (TestParsingResult)parse(getParser(), report, null);
+    Assert.assertEquals(first.getTests(), 1);
+    Assert.assertNotNull(first.getCheckpoint());
+
+    FileUtil.writeFile(report, FileUtil.readText(report, "UTF-8") + "st2\" executed=\"True\" success=\"True\" time=\"0.016\"/>\n" +
+                               "    </results>\n" +
+                               "  </test-suite>\n" +
+                               "</test-results>\n", "UTF-8");
+
+    final TestParsingResult second = (TestParsingResult)parse(getParser(), report, first);
+    Assert.assertEquals(second.getTests(), 2);
+    Assert.assertEquals(second.getSuites(), 1);
+    assertResultEquals("TestSuite:TestCase\n" +
+                       "  Test:test1\n" +
+                       "  EndTest:16\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:test2\n" +
+                       "  EndTest:16\n" +
+                       "------------------------\n" +
+                       "EndSuite\n");
+  }
+}
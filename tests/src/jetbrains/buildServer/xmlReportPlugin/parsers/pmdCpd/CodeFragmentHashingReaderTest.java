@@ -0,0 +1,95 @@
+package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class CodeFragmentHashingReaderTest {
+  @Test
+  public void testCData() throws Exception {
+    assertHash("<![CDATA[\n  int a = b;\n  return a;\n]]>", "int a = b;\n  return a;");
+    assertHash("\n<![CDATA[\n  if (a[b[0]]] > 0) x = \"]]\";  \n]]>\n", "if (a[b[0]]] > 0) x = \"]]\";");
+    assertHash("<![CDATA[a]]><![CDATA[ b ]]>c", "a b c");
+  }
+
+  @Test
+  public void testReferences() throws Exception {
+    assertHash(" a &lt; b &amp;&amp; c &gt; d &quot;&apos; ", "a < b && c > d \"'");
+    assertHash("&#65;&#x42;&#x1F600;", "AB\uD83D\uDE00");
+    assertHash("&#13;&#10;a&#13;", "a");
+    assertHash("a&#13;&#10;b", "a\r\nb");
+  }
+
+  @Test
+  public void testLineEndsNormalized() throws Exception {
+    assertHash("a\r\nb\rc\n\r\nd", "a\nb\nc\n\nd");
+    assertHash("<![CDATA[a\r\nb]]>", "a\nb");
+  }
+
+  @Test
+  public void testCommentsAndNestedElementsSkipped() throws Exception {
+    assertHash("a<!-- </codefragment> -->b", "ab");
+    assertHash("a<b>c</b><d/>e", "ace");
+  }
+
+  @Test
+  public void testWhitespace() throws Exception {
+    assertHash("", "");
+    assertHash(" \n\t ", "");
+    assertHash("a \n b\t\n", "a \n b");
+  }
+
+  @Test
+  public void testDocumentRewritten() throws Exception {
+    final String document = "<?xml version=\"1.0\"?>\n<!-- <codefragment>comment</codefragment> -->\n" +
+                            "<pmd-cpd><duplication lines=\"1\" tokens=\"2\"><file line=\"1\" path=\"a>b\"/>" +
+                            "<codefragments>x</codefragments><codefragment/><codefragment a='>'>" +
+                            "<![CDATA[ code ]]></codefragment ><codefragment>text</codefragment></duplication></pmd-cpd>";
+    final String expected = "<?xml version=\"1.0\"?>\n<!-- <codefragment>comment</codefragment> -->\n" +
+                            "<pmd-cpd><duplication lines=\"1\" tokens=\"2\"><file line=\"1\" path=\"a>b\"/>" +
+                            "<codefragments>x</codefragments><codefragment/><codefragment a='>'>" +
+                            "code".hashCode() + "</codefragment ><codefragment>" + "text".hashCode() + "</codefragment></duplication></pmd-cpd>";
+    assertEquals(read(new CodeFragmentHashingReader(new StringReader(document)), 3), expected);
+    assertEquals(read(new CodeFragmentHashingReader(new OneCharReader(document)), 1024), expected);
+  }
+
+  @Test
+  public void testHashNotRecognized() {
+    assertEquals(CodeFragmentHashingReader.getHash("-12345"), -12345);
+    assertEquals(CodeFragmentHashingReader.getHash(" code "), "code".hashCode());
+  }
+
+  private static void assertHash(@NotNull String content, @NotNull String text) throws IOException {
+    final String document = "<pmd-cpd><codefragment>" + content + "</codefragment></pmd-cpd>";
+    final String expected = "<pmd-cpd><codefragment>" + text.trim().hashCode() + "</codefragment></pmd-cpd>";
+    assertEquals(read(new CodeFragmentHashingReader(new StringReader(document)), 1024), expected, content);
+    assertEquals(read(new CodeFragmentHashingReader(new OneCharReader(document)), 2), expected, content);
+  }
+
+  @NotNull
+  private static String read(@NotNull Reader reader, int bufferSize) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    final char[] buffer = new char[bufferSize];
+    int read;
+    while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+      sb.append(buffer, 0, read);
+    }
+    return sb.toString();
+  }
+
+  private static class OneCharReader extends StringReader {
+    private OneCharReader(@NotNull String s) {
+      super(s);
+    }
+
+    @Override
+    public int read(@NotNull char[] cbuf, int off, int len) throws IOException {
+      return super.read(cbuf, off, Math.min(1, len));
+    }
+  }
+}
@@ -5,9 +5,12 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
 import jetbrains.buildServer.util.TestFor;
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+
 /**
  * User: vbedrosova
  * Date: 07.09.2010
@@ -38,6 +41,12 @@ public class PmdCpdReportParserTest extends BaseParserTestCase {
     runTest("result2.xml");
   }
 
+  @Test
+  public void testDuplicatesCounted() throws Exception {
+    final ParsingResult result = parse("result.xml");
+    assertEquals(((PmdCpdParsingResult)result).getDuplicates(), 51);
+  }
+
   private void runTest(final String reportName) throws Exception {
     parse(reportName);
     assertResultEquals(getExpectedResult(reportName + ".gold"));
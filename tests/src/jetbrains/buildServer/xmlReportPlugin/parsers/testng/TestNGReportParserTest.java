@@ -2,14 +2,18 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.testng;
 
+import java.io.File;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.MillisecondDurationParser;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 
 @Test
 public class TestNGReportParserTest extends BaseParserTestCase {
@@ -588,4 +592,50 @@ public class TestNGReportParserTest extends BaseParserTestCase {
       "EndSuite\n" +
       "EndSuite\n");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testResumeGrowingReport() throws Exception {
+    final File report = FileUtil.createTempFile("growing", ".xml");
+    FileUtil.writeFile(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                               "<testng-results total=\"2\" passed=\"2\" failed=\"0\" skipped=\"0\">\n" +
+                               "  <suite name=\"Surefire suite\" duration-ms=\"14\">\n" +
+                               "    <test name=\"Surefire test\" duration-ms=\"14\">\n" +
+                               "      <class name=\"TestCase\">\n" +
+                               "        <test-method signature=\"test1()\" name=\"test1\" duration-ms=\"5\" status=\"PASS\">\n" +
+                               "        </test-method>\n" +
+                               "        <test-method signature=\"test2()\" name=\"te", "UTF-8");
+
+    final TestParsingResult first = (TestParsingResult)parse(getParser(), report, null);
+    assertEquals(first.getTests(), 1);
+    assertNotNull(first.getCheckpoint());
+
+    FileUtil.writeFile(report, FileUtil.readText(report, "UTF-8") + "st2\" duration-ms=\"2\" status=\"PASS\">\n" +
+                               "        </test-method>\n" +
+                               "      </class>\n" +
+                               "    </test>\n" +
+                               "  </suite>\n" +
+                               "</testng-results>\n", "UTF-8");
+
+    final TestParsingResult second = (TestParsingResult)parse(getParser(), report, first);
+    assertEquals(second.getTests(), 2);
+    assertEquals(second.getSuites(), 3);
+    assertResultEquals("TestSuite:Surefire suite\n" +
+                       "TestSuite:Surefire test\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:TestCase.test1\n" +
+                       "  EndTest:5\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "EndSuite\n" +
+                       "EndSuite\n" +
+                       "TestSuite:Surefire suite\n" +
+                       "TestSuite:Surefire test\n" +
+                       "TestSuite:TestCase\n" +
+                       "  Test:TestCase.test2\n" +
+                       "  EndTest:2\n" +
+                       "------------------------\n" +
+                       "EndSuite\n" +
+                       "EndSuite\n" +
+                       "EndSuite\n");
+  }
+}
@@ -0,0 +1,203 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Random;
+import java.util.TimeZone;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares results with the former <code>String.split</code>, <code>Double.parseDouble</code> and <code>SimpleDateFormat</code> based implementations
+ */
+@Test
+public class NumberDecoderTest {
+  private static final String[] PIECES = {
+    "0", "1", "5", "9", "00", "123", "9999999999", " ", "\t", ",", ".", "'", "\u00A0", "-", "+", ":", "e", "E-3", "d", "x",
+    "NaN", "Infinity", "a", "T", "\u0661"
+  };
+
+  @Test
+  public void testParseInt() {
+    assertInt("0");
+    assertInt("-17");
+    assertInt("+17");
+    assertInt("2147483647");
+    assertInt("2147483648");
+    assertInt("-2147483648");
+    assertInt("-2147483649");
+    assertInt("99999999999999999999");
+    assertInt("");
+    assertInt("-");
+    assertInt(" 1");
+    assertInt("1.0");
+    assertInt("\u0661\u0662");
+    assertEquals(NumberDecoder.parseInt(null, 42), 42);
+    final Random random = new Random(7);
+    for (int i = 0; i < 100000; ++i) {
+      assertInt(randomText(random));
+    }
+  }
+
+  @Test
+  public void testParseLong() {
+    assertEquals(NumberDecoder.parseLong("9223372036854775807"), Long.MAX_VALUE);
+    assertEquals(NumberDecoder.parseLong("-9223372036854775807"), -Long.MAX_VALUE);
+    assertEquals(NumberDecoder.parseLong("9223372036854775808"), NumberDecoder.INVALID);
+    assertEquals(NumberDecoder.parseLong("12 "), NumberDecoder.INVALID);
+    assertEquals(NumberDecoder.parseLong(null), NumberDecoder.INVALID);
+  }
+
+  @Test
+  public void testParseSecondsLocales() {
+    assertSeconds("1.5", 1500);
+    assertSeconds("1,5", 1500);
+    assertSeconds("1,234.5", 1234500);
+    assertSeconds("1.234,5", 1234500);
+    assertSeconds("1'234.5", 1234500);
+    assertSeconds("1\u00A0234,5", 1234500);
+    assertSeconds("1\u00A0234", 1234000);
+    assertSeconds(" 0.0005 ", 1);
+    assertSeconds("0.0004999", 0);
+    assertSeconds("-0.25", -250);
+    assertSeconds("1.5E2", 150000);
+    assertSeconds("1,2,3", NumberDecoder.INVALID);
+    assertSeconds("1.2.3", NumberDecoder.INVALID);
+    assertSeconds("1 234", NumberDecoder.INVALID);
+    assertSeconds("abc", NumberDecoder.INVALID);
+    assertSeconds("", NumberDecoder.INVALID);
+    assertSeconds("'", NumberDecoder.INVALID);
+  }
+
+  @Test
+  public void testParseSecondsRandom() {
+    final Random random = new Random(11);
+    for (int i = 0; i < 100000; ++i) {
+      final String text = randomText(random);
+      assertEquals(NumberDecoder.parseSecondsAsMillis(text), Legacy.parseSeconds(text), text);
+    }
+    for (int i = 0; i < 100000; ++i) {
+      final String text = random.nextInt(100000) + "." + random.nextInt(10000000);
+      assertEquals(NumberDecoder.parseSecondsAsMillis(text), Legacy.parseSeconds(text), text);
+    }
+  }
+
+  @Test
+  public void testParseTimeSpan() {
+    assertTimeSpan("01:01:01.00");
+    assertTimeSpan("00:00:00.0002279");
+    assertTimeSpan("00:00:01.0074699");
+    assertTimeSpan("1:2:3:");
+    assertTimeSpan("1:2::");
+    assertTimeSpan("::3");
+    assertTimeSpan("1:2:3:4");
+    assertTimeSpan("1:2");
+    assertTimeSpan("1,5:00:00");
+    final Random random = new Random(13);
+    for (int i = 0; i < 100000; ++i) {
+      assertTimeSpan(randomText(random));
+    }
+  }
+
+  @Test
+  public void testParseDateTime() {
+    assertDateTime("2010-02-12T14:44:45.9393792+00:00");
+    assertDateTime("1970-01-01T00:00:00");
+    assertDateTime("1969-12-31T23:59:59");
+    assertDateTime("2000-02-29T12:00:00");
+    assertDateTime("2100-03-01T00:00:00");
+    assertDateTime("2010-13-32T25:61:61");
+    assertDateTime("2010-00-00T00:00:00");
+    assertDateTime("2010-02-12T14:44");
+    assertDateTime("2010-www02-12T14:44:43.8081661+00:00");
+    assertDateTime(" ");
+    final Random random = new Random(17);
+    for (int i = 0; i < 10000; ++i) {
+      assertDateTime(String.format("%04d-%02d-%02dT%02d:%02d:%02d.%07d+01:00", 1600 + random.nextInt(800), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                                   random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(10000000)));
+    }
+  }
+
+  private static void assertInt(@NotNull String text) {
+    assertEquals(NumberDecoder.parseInteger(text), Legacy.parseInt(text), text);
+  }
+
+  private static void assertSeconds(@NotNull String text, long expected) {
+    assertEquals(NumberDecoder.parseSecondsAsMillis(text), expected, text);
+    assertEquals(NumberDecoder.parseSecondsAsMillis(text), Legacy.parseSeconds(text), text);
+  }
+
+  private static void assertTimeSpan(@NotNull String text) {
+    assertEquals(NumberDecoder.parseTimeSpanMillis(text), Legacy.parseTimeSpan(text), text);
+  }
+
+  private static void assertDateTime(@NotNull String text) {
+    assertEquals(NumberDecoder.parseDateTimeSeconds(text), Legacy.parseDateTime(text), text);
+  }
+
+  @NotNull
+  private static String randomText(@NotNull Random random) {
+    final StringBuilder sb = new StringBuilder();
+    final int pieces = random.nextInt(8);
+    for (int j = 0; j < pieces; ++j) {
+      sb.append(PIECES[random.nextInt(PIECES.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static final class Legacy {
+    private static long parseInt(@NotNull String s) {
+      try {
+        return Integer.parseInt(s);
+      } catch (NumberFormatException e) {
+        return NumberDecoder.INVALID;
+      }
+    }
+
+    private static long parseSeconds(@NotNull String str) {
+      final int commaIndex = str.lastIndexOf(",");
+      final int dotIndex = str.lastIndexOf(".");
+      String result;
+      if (commaIndex > dotIndex) {
+        result = str.replace(".", "").replace(",", ".");
+      } else if (commaIndex < dotIndex) {
+        result = str.replace(",", "");
+      } else {
+        result = str;
+      }
+      try {
+        final double seconds = Double.parseDouble(result.replace("'", "").replace("\u00A0", ""));
+        // NaN is not distinguished from malformed values anymore
+        return Double.isNaN(seconds) ? NumberDecoder.INVALID : Math.round(seconds * 1000.0);
+      } catch (NumberFormatException e) {
+        return NumberDecoder.INVALID;
+      }
+    }
+
+    private static long parseTimeSpan(@NotNull String duration) {
+      try {
+        String[] durations = duration.split(":");
+        if (durations.length != 3) return NumberDecoder.INVALID;
+        final double seconds = Double.parseDouble(durations[2]);
+        final double minutes = Double.parseDouble(durations[1]);
+        final double hours = Double.parseDouble(durations[0]);
+        if (Double.isNaN(seconds) || Double.isNaN(minutes) || Double.isNaN(hours)) return NumberDecoder.INVALID;
+        return (long)(Math.ceil(1000 * seconds) + 1000 * (60 * (minutes + 60 * hours)));
+      } catch (NumberFormatException e) {
+        return NumberDecoder.INVALID;
+      }
+    }
+
+    private static long parseDateTime(@NotNull String time) {
+      final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+      sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+      try {
+        return sdf.parse(time).getTime() / 1000;
+      } catch (ParseException e) {
+        return NumberDecoder.INVALID;
+      }
+    }
+  }
+}
@@ -4,6 +4,7 @@ package jetbrains.buildServer.xmlReportPlugin.utils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.xmlReportPlugin.TestUtil;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -46,6 +47,49 @@ public class ParserUtilsTest {
     doTestReportComplete("xml-bomb.xml", false);
   }
 
+  @Test
+  public void testIsReportTailComplete_Simple() throws Exception {
+    Assert.assertTrue(ParserUtils.isReportTailComplete(getReport("simple.xml"), "pmd"));
+  }
+
+  @Test
+  public void testIsReportTailComplete_WrongRoot() throws Exception {
+    Assert.assertFalse(ParserUtils.isReportTailComplete(getReport("simple.xml"), "checkstyle"));
+  }
+
+  @Test(timeOut = 5 * 1000)
+  public void testIsReportTailComplete_XML_Bomb() throws Exception {
+    Assert.assertFalse(ParserUtils.isReportTailComplete(getReport("xml-bomb.xml"), "lolz"));
+  }
+
+  @DataProvider(name = "tailCompleteData")
+  public Object[][] tailCompleteData() {
+    return new Object[][] {
+      {"<pmd></pmd>", true},
+      {"<?xml version=\"1.0\"?>\n<!-- header -->\n<pmd>\n<file/>\n</pmd>\n<!-- footer -->\n", true},
+      {"<x:pmd xmlns:x=\"urn:pmd\"></x:pmd>", true},
+      {"<?xml version=\"1.0\"?>\n<pmd/>\n", true},
+      {"<pmd>\n<file>", false},
+      {"<pmd><file></file></pmd", false},
+      {"<pmd><file><![CDATA[</pmd>", false},
+      {"<pmd><!-- </pmd>", false},
+      {"<checkstyle></checkstyle>", false},
+      {"<pmd><file></file></checkstyle>", false},
+      {"", false},
+    };
+  }
+
+  @Test(dataProvider = "tailCompleteData")
+  public void testIsReportTailComplete(String content, Boolean expected) throws Exception {
+    final File report = File.createTempFile("report", ".xml");
+    try {
+      FileUtil.writeFile(report, content, "UTF-8");
+      Assert.assertEquals(Boolean.valueOf(ParserUtils.isReportTailComplete(report, "pmd")), expected, content);
+    } finally {
+      FileUtil.delete(report);
+    }
+  }
+
   @DataProvider(name = "isNumberData")
   public Object[][] isNumberData() {
     return new Object[][] {
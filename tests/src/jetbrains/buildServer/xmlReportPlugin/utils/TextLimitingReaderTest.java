@@ -0,0 +1,183 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.TestUtil;
+import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.tests.LimitingTestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class TextLimitingReaderTest {
+  // 136 characters of text are kept, 68 of the head and 68 of the tail
+  private static final int MAX_LENGTH = 200;
+
+  @DataProvider(name = "chunks")
+  public Object[][] chunks() {
+    return new Object[][]{{1}, {7}, {8192}};
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testMarkupNotChanged(int chunk) throws Exception {
+    final String longValue = repeat('v', 1000);
+    final String xml = "<?xml version=\"1.0\"?>\n<!-- " + longValue + " -> > -->\n" +
+                       "<a b=\"x > y\" c='" + longValue + "'><b>short text</b><c><![CDATA[short ]] data]]></c></a>";
+    assertEquals(read(xml, chunk), xml);
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testLongTextCut(int chunk) throws Exception {
+    final String text = "HEAD" + repeat('a', 1000) + "TAIL";
+    final String limited = "HEAD" + repeat('a', 64) + "\n...[872 characters skipped]...\n" + repeat('a', 64) + "TAIL";
+    assertTrue(limited.length() <= MAX_LENGTH);
+    assertEquals(read("<a><b>" + text + "</b><c>" + text + "</c></a>", chunk), "<a><b>" + limited + "</b><c>" + limited + "</c></a>");
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testLongCDataCut(int chunk) throws Exception {
+    final String xml = "<a><![CDATA[" + repeat('b', 1000) + "]]]></a>";
+    assertEquals(read(xml, chunk), "<a><![CDATA[" + repeat('b', 68) + "\n...[865 characters skipped]...\n" + repeat('b', 67) + "]]]></a>");
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testEntityNotSplit(int chunk) throws Exception {
+    final String xml = "<a>" + repeat('x', 66) + "&amp;" + repeat('y', 1000) + "&lt;" + repeat('z', 66) + "</a>";
+    assertEquals(read(xml, chunk), "<a>" + repeat('x', 66) + "&amp;\n...[1004 characters skipped]...\n" + repeat('z', 66) + "</a>");
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testSurrogatePairNotSplit(int chunk) throws Exception {
+    final String xml = "<a>" + repeat('x', 67) + "\uD83D\uDE00" + repeat('y', 1000) + "\uD83D\uDE00" + repeat('z', 67) + "</a>";
+    assertEquals(read(xml, chunk), "<a>" + repeat('x', 67) + "\uD83D\uDE00\n...[1002 characters skipped]...\n" + repeat('z', 67) + "</a>");
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testCutTextSaved(int chunk) throws Exception {
+    final String text = "HEAD&amp;&#x41;&#66;" + repeat('a', 1000) + "&lt;TAIL";
+    final String cdata = "HEAD" + repeat('b', 1000) + "&amp;]]";
+    final List<String> saved = new ArrayList<String>();
+    final TextLimitingReader.Spill spill = new TextLimitingReader.Spill() {
+      @NotNull
+      public Writer open() {
+        return new StringWriter();
+      }
+
+      @NotNull
+      public String close(@NotNull Writer writer) {
+        saved.add(writer.toString());
+        return "file&" + saved.size();
+      }
+    };
+    final String result = read(new TextLimitingReader(new StringReader("<a>" + text + "</a><b><![CDATA[" + cdata + "]]></b><c>short</c>"), MAX_LENGTH, spill), chunk);
+
+    assertEquals(saved, Arrays.asList("HEAD&AB" + repeat('a', 1000) + "<TAIL", cdata));
+    assertTrue(result.contains(" characters skipped, full text is saved to file&amp;1]"), result);
+    assertTrue(result.contains(" characters skipped, full text is saved to file&2]"), result);
+    assertTrue(result.endsWith("<c>short</c>"), result);
+  }
+
+  @Test
+  public void testParserSavesCutText() throws Exception {
+    final File dir = FileUtil.createTempDirectory("textLimitingReader", "");
+    try {
+      final File report = new File(dir, "report.xml");
+      final String longText = "HEAD\u0436" + repeat('a', 100000) + "TAIL";
+      FileUtil.writeToFile(report, ("<?xml version=\"1.0\" encoding=\"windows-1251\"?>\n<a>" + longText + "</a>").getBytes("windows-1251"));
+      final File spillDir = new File(dir, "output");
+      final StringBuilder text = new StringBuilder();
+      final BaseXmlXppAbstractParser parser = new BaseXmlXppAbstractParser() {
+        @Override
+        protected List<XmlHandler> getRootHandlers() {
+          return Collections.singletonList(elementsPath(new TextHandler() {
+            public void setText(@NotNull String s) {
+              text.append(s);
+            }
+          }, "a"));
+        }
+      };
+      parser.limitText(new LimitingTestReporter(TestUtil.createTestResultsWriter(new StringBuilder()), MAX_LENGTH, spillDir));
+      parser.parse(report);
+
+      assertTrue(text.toString().startsWith("HEAD\u0436"), text.toString());
+      assertTrue(text.toString().endsWith("TAIL"), text.toString());
+      assertTrue(text.length() < 1000, text.toString());
+      final File[] saved = spillDir.listFiles();
+      assertNotNull(saved);
+      assertEquals(saved.length, 1);
+      assertTrue(text.toString().contains(saved[0].getAbsolutePath()), text.toString());
+      assertEquals(FileUtil.readText(saved[0], "UTF-8"), longText);
+    } finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  @Test
+  public void testParserReadsLimitedText() throws Exception {
+    final File dir = FileUtil.createTempDirectory("textLimitingReader", "");
+    try {
+      final File report = new File(dir, "report.xml");
+      FileUtil.writeFileAndReportErrors(report, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<a>HEAD" + repeat('a', 100000) + "TAIL</a>");
+      final StringBuilder text = new StringBuilder();
+      new BaseXmlXppAbstractParser() {
+        @Override
+        protected int getMaxTextLength() {
+          return MAX_LENGTH;
+        }
+
+        @Override
+        protected List<XmlHandler> getRootHandlers() {
+          return Collections.singletonList(elementsPath(new TextHandler() {
+            public void setText(@NotNull String s) {
+              text.append(s);
+            }
+          }, "a"));
+        }
+      }.parse(report);
+
+      assertTrue(text.length() <= MAX_LENGTH, text.toString());
+      assertTrue(text.toString().startsWith("HEAD"), text.toString());
+      assertTrue(text.toString().endsWith("TAIL"), text.toString());
+    } finally {
+      FileUtil.delete(dir);
+    }
+  }
+
+  @NotNull
+  private static String read(@NotNull String xml, int chunk) throws IOException {
+    return read(new TextLimitingReader(new StringReader(xml), MAX_LENGTH), chunk);
+  }
+
+  @NotNull
+  private static String read(@NotNull Reader reader, int chunk) throws IOException {
+    final StringBuilder result = new StringBuilder();
+    final char[] buffer = new char[chunk];
+    int read;
+    while ((read = reader.read(buffer, 0, chunk)) >= 0) {
+      result.append(buffer, 0, read);
+    }
+    reader.close();
+    return result.toString();
+  }
+
+  @NotNull
+  private static String repeat(char c, int count) {
+    final StringBuilder sb = new StringBuilder(count);
+    for (int i = 0; i < count; ++i) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,109 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.TestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares results with the former regex based implementations
+ */
+@Test
+public class TextNormalizerTest {
+  private static final String[] PIECES = {
+    "a", "Z", " ", "  ", "\t", "\n", "\r", "\r\n", "\u000B", "\f", "\u00A0", "\u0001", "&nbsp;", "&nb", "sp;", "&",
+    "<", ">", "/", "b", "<b>", "</b>", "<B>", "<br>", "<p/>", "</", "<<", "C:\\work", "C:/work", "/", "\\", "work"
+  };
+
+  @Test
+  public void testFormatText() {
+    assertFormatted("");
+    assertFormatted("   ");
+    assertFormatted("plain text");
+    assertFormatted("  <p>Found a <b>possible</b>&nbsp;null\r\n pointer\tdereference</p>\n  ");
+    assertFormatted("&nb\rsp; kept");
+    assertFormatted("<<b>b> tags are removed in one pass </</b>i>");
+    assertFormatted("a <b> c\u0001");
+    assertFormatted("\u00A0 non-breaking \u00A0");
+  }
+
+  @Test
+  public void testFormatTextRandom() {
+    final Random random = new Random(17);
+    for (int i = 0; i < 100000; ++i) {
+      assertFormatted(randomText(random));
+    }
+  }
+
+  @Test
+  public void testFormatTextFindBugsReports() throws Exception {
+    final File[] reports = TestUtil.getTestDataFile(null, "findBugs").listFiles();
+    if (reports == null) return;
+    for (File report : reports) {
+      if (!report.isFile()) continue;
+      final String text = FileUtil.readText(report, "UTF-8");
+      assertFormatted(text);
+      for (String line : text.split("\n")) {
+        assertFormatted(line);
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveAll() {
+    assertRemoved("C:\\work\\a\\b.java: C:/work/a/b.java", "C:\\work");
+    assertRemoved("no paths", "C:\\work");
+    assertRemoved("/work/a and \\work\\b", "/work");
+    // removal of the first prefix forms the second one
+    assertRemoved("C:C:/work/\\work\\", "C:/work");
+    final Random random = new Random(42);
+    for (int i = 0; i < 100000; ++i) {
+      assertRemoved(randomText(random), random.nextBoolean() ? "C:\\work" : "/work");
+    }
+  }
+
+  private static void assertFormatted(@NotNull String text) {
+    assertEquals(TextNormalizer.formatText(text), Legacy.formatText(text), text);
+  }
+
+  private static void assertRemoved(@NotNull String text, @NotNull String baseFolder) {
+    final String slashPrefix = baseFolder.replace("\\", "/") + "/";
+    final String backslashPrefix = baseFolder.replace("/", "\\") + "\\";
+    assertEquals(TextNormalizer.removeAll(text, slashPrefix, backslashPrefix), text.replace(slashPrefix, "").replace(backslashPrefix, ""), text);
+  }
+
+  @NotNull
+  private static String randomText(@NotNull Random random) {
+    final StringBuilder sb = new StringBuilder();
+    final int pieces = random.nextInt(12);
+    for (int j = 0; j < pieces; ++j) {
+      sb.append(PIECES[random.nextInt(PIECES.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static final class Legacy {
+    private static final Pattern HTML_SPACE = Pattern.compile("&nbsp;", Pattern.LITERAL);
+    private static final Pattern CARRIAGE_RETURN = Pattern.compile("\r", Pattern.LITERAL);
+    private static final Pattern NEW_LINE = Pattern.compile("\n", Pattern.LITERAL);
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern HTML_TAGS = Pattern.compile("<[a-z]>|</[a-z]>");
+
+    @NotNull
+    private static String formatText(@NotNull String s) {
+      s = HTML_SPACE.matcher(s).replaceAll(" ");
+      s = CARRIAGE_RETURN.matcher(s).replaceAll("");
+      s = NEW_LINE.matcher(s).replaceAll(" ");
+      s = SPACES.matcher(s).replaceAll(" ");
+      s = HTML_TAGS.matcher(s).replaceAll("");
+      return s.trim();
+    }
+  }
+}
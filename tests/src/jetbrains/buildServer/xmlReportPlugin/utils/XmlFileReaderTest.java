@@ -0,0 +1,134 @@
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.MalformedInputException;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class XmlFileReaderTest {
+  private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+  // one, two, three and four byte characters so that sequences cross the buffer boundaries
+  private static final String TEXT = "<a b=\"\u00E9\u00E8\">x\u0436\u20AC\u4E2D\uD83D\uDE00</a>\n";
+
+  private File myDir;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myDir = FileUtil.createTempDirectory("xmlFileReader", "");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @DataProvider(name = "chunks")
+  public Object[][] chunks() {
+    return new Object[][]{{1}, {7}, {8192}};
+  }
+
+  @Test(dataProvider = "chunks")
+  public void testUtf8(int chunk) throws Exception {
+    final StringBuilder content = new StringBuilder(PROLOG);
+    for (int i = 0; i < 50; ++i) {
+      content.append(TEXT);
+    }
+    final File file = write(content.toString().getBytes("UTF-8"));
+    for (int bufferSize = 61; bufferSize < 70; ++bufferSize) {
+      assertEquals(read(XmlFileReader.open(file, bufferSize), chunk), content.toString());
+    }
+  }
+
+  @Test
+  public void testByteOrderMarkSkipped() throws Exception {
+    final byte[] text = TEXT.getBytes("UTF-8");
+    final byte[] bytes = new byte[text.length + 3];
+    bytes[0] = (byte)0xEF;
+    bytes[1] = (byte)0xBB;
+    bytes[2] = (byte)0xBF;
+    System.arraycopy(text, 0, bytes, 3, text.length);
+    assertEquals(read(XmlFileReader.open(write(bytes), 64), 8192), TEXT);
+  }
+
+  @Test
+  public void testLatin1() throws Exception {
+    final String content = "<?xml version='1.0' encoding='ISO-8859-1'?><a>\u00E9\u00FF</a>";
+    assertEquals(read(XmlFileReader.open(write(content.getBytes("ISO-8859-1")), 64), 8192), content);
+  }
+
+  @Test
+  public void testOtherEncodingsNotSupported() throws Exception {
+    assertNull(XmlFileReader.open(write("<?xml version=\"1.0\" encoding=\"windows-1251\"?><a/>".getBytes("windows-1251")), 64));
+    assertNull(XmlFileReader.open(write("<a/>".getBytes("UTF-16")), 64));
+    assertNull(XmlFileReader.open(write("<a/>".getBytes("UTF-16LE")), 64));
+  }
+
+  @Test
+  public void testOtherEncodingsReadAsStream() throws Exception {
+    final String content = "<?xml version=\"1.0\" encoding=\"windows-1251\"?><a>\u0436</a>";
+    assertEquals(read(XmlFileReader.openStream(write(content.getBytes("windows-1251"))), 8192), content);
+    assertEquals(read(XmlFileReader.openStream(write("<a>\u0436</a>".getBytes("UTF-16"))), 8192), "<a>\u0436</a>");
+    assertEquals(read(XmlFileReader.openStream(write("<a>\u0436</a>".getBytes("UTF-16LE"))), 8192), "<a>\u0436</a>");
+    assertEquals(read(XmlFileReader.openStream(write(("\uFEFF" + TEXT).getBytes("UTF-8"))), 8192), TEXT);
+    assertNull(XmlFileReader.openStream(write("<?xml version=\"1.0\" encoding=\"unknown\"?><a/>".getBytes("UTF-8"))));
+  }
+
+  @Test(dataProvider = "malformed")
+  public void testMalformedInputFails(@NotNull byte[] malformed) throws Exception {
+    final byte[] text = TEXT.getBytes("UTF-8");
+    // the malformed bytes are read after the first buffer
+    final byte[] bytes = new byte[text.length * 2 + malformed.length];
+    System.arraycopy(text, 0, bytes, 0, text.length);
+    System.arraycopy(text, 0, bytes, text.length, text.length);
+    System.arraycopy(malformed, 0, bytes, text.length * 2, malformed.length);
+    try {
+      read(XmlFileReader.open(write(bytes), 64), 8192);
+      fail("Malformed input read");
+    } catch (MalformedInputException e) {
+      // expected
+    }
+  }
+
+  @DataProvider(name = "malformed")
+  public Object[][] malformed() {
+    return new Object[][]{{new byte[]{(byte)0xC3, 'b'}}, {new byte[]{(byte)0xFF, '<', 'a', '/', '>'}}, {new byte[]{'<', 'a', '/', '>', (byte)0xE2, (byte)0x82}}};
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    assertNull(XmlFileReader.open(write(TEXT.getBytes("UTF-8"))));
+  }
+
+  @NotNull
+  private File write(@NotNull byte[] bytes) throws IOException {
+    final File file = new File(myDir, "report.xml");
+    FileUtil.writeToFile(file, bytes);
+    return file;
+  }
+
+  @NotNull
+  private static String read(@Nullable Reader reader, int chunk) throws IOException {
+    assertNotNull(reader);
+    final StringBuilder result = new StringBuilder();
+    final char[] buffer = new char[chunk];
+    try {
+      int read;
+      while ((read = reader.read(buffer, 0, chunk)) >= 0) {
+        result.append(buffer, 0, read);
+      }
+    } finally {
+      reader.close();
+    }
+    return result.toString();
+  }
+}